@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.benchmarks;
+
+import com.messagemedia.restapi.client.v1.RestApiClientBuilder;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.RestApiResponse;
+import com.messagemedia.restapi.client.v1.messaging.RestApiMessagingClient;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends messages from many threads through pools of different sizes, against an HTTP server running in the same process which answers
+ * after a short delay, as the API would.
+ * <p/>
+ * Every call holds a connection for the whole exchange, so the pool either opens as many connections as there are calls in flight, each
+ * with its own handshake, or makes the calls queue for fewer connections. The result is the distribution of the latency of a call, whose
+ * tail shows the queueing, and the number of connections the server accepted, printed once a run is over, which is the number of
+ * handshakes.
+ * <p/>
+ * Reused connections are checked for staleness either on every lease or only once they have been idle for a while, see
+ * {@link RestApiClientBuilder#validateAfterInactivity(int)}. Under load connections are reused right away, so the check shows as the cost
+ * of a blocking read per call.
+ * <p/>
+ * The server speaks plain HTTP/1.1, {@link Http2Benchmark} compares it with HTTP/2. With TLS every connection also costs a handshake of a
+ * few milliseconds of CPU on both sides, which this benchmark does not measure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(64)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class ConnectionPoolBenchmark {
+
+    private static final long SERVER_LATENCY = 2;
+
+    @Param({"4", "16", "200"})
+    private int maxConnections;
+
+    @Param({"0", "2000"})
+    private int validateAfterInactivity;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private RestApiMessagingClient client;
+    private MessageList messages;
+    private final Set<InetSocketAddress> connections = Collections.newSetFromMap(new ConcurrentHashMap<InetSocketAddress, Boolean>());
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        messages = PayloadCodecBenchmark.messages(1);
+        final byte[] response = PayloadCodecBenchmark.sentMessages(1).getBytes("UTF-8");
+
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                // a connection is known by the port of the client
+                connections.add(exchange.getRemoteAddress());
+                drain(exchange.getRequestBody());
+                try {
+                    Thread.sleep(SERVER_LATENCY);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(202, response.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(response);
+                out.close();
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+
+        String endpoint = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        client = RestApiClientBuilder.newBuilder("nG8FJvTMvuzZpU8dgB4X", "ETPsdn8eMPyG4u3TTGAeD6p7IbkLjA")
+                                     .endpoint(endpoint)
+                                     .maxConnections(maxConnections)
+                                     .validateAfterInactivity(validateAfterInactivity)
+                                     .build()
+                                     .messaging();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println();
+        System.out.println("Connections opened with a pool of " + maxConnections + ": " + connections.size());
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public RestApiResponse<MessageList> sendMessages() throws RestApiException {
+        return client.sendMessages(messages.getMessages());
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) != -1) {
+            continue;
+        }
+        in.close();
+    }
+}
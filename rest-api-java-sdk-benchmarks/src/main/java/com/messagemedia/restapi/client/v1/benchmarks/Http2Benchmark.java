@@ -0,0 +1,157 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.benchmarks;
+
+import com.messagemedia.restapi.client.v1.RestApiClient;
+import com.messagemedia.restapi.client.v1.RestApiClientBuilder;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.RestApiResponse;
+import com.messagemedia.restapi.client.v1.messaging.RestApiMessagingClient;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
+import com.messagemedia.restapi.client.v1.transport.JdkHttpTransport;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends messages from many threads over HTTP/1.1 and over HTTP/2, against a server running in the same process which speaks both, and
+ * answers after a short delay, as the API would.
+ * <p/>
+ * Over HTTP/1.1 every call in flight holds a connection of its own, so the client opens as many connections as there are calls in flight,
+ * each with its own handshake. Over HTTP/2 the calls of all threads share a single connection as concurrent streams. The result is the
+ * distribution of the latency of a call, and the number of connections the server accepted, printed once a run is over, which is the
+ * number of handshakes.
+ * <p/>
+ * The server speaks HTTP/2 in clear text, which the JDK client reaches by upgrading a connection from HTTP/1.1 with a request without a
+ * body, made by {@link RestApiClient#isAlive()} before the run. With TLS, HTTP/2 is negotiated during the handshake instead, and every
+ * connection saved also saves a few milliseconds of CPU on both sides, which this benchmark does not measure. The JDK transport is told
+ * that signed requests may go over HTTP/2, which is safe here only because this server does not check signatures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(64)
+@Fork(1)
+public class Http2Benchmark {
+
+    private static final long SERVER_LATENCY = 2;
+
+    @Param({"apache", "jdk-http1", "jdk-http2"})
+    private String transport;
+
+    private Server server;
+    private RestApiMessagingClient client;
+    private MessageList messages;
+    private final Set<Integer> connections = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        messages = PayloadCodecBenchmark.messages(1);
+        final byte[] response = PayloadCodecBenchmark.sentMessages(1).getBytes("UTF-8");
+
+        server = new Server();
+        HttpConfiguration config = new HttpConfiguration();
+        ServerConnector connector = new ServerConnector(server, new HttpConnectionFactory(config), new HTTP2CServerConnectionFactory(config));
+        connector.setHost("127.0.0.1");
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse httpResponse)
+                    throws IOException {
+                // a connection is known by the port of the client
+                connections.add(request.getRemotePort());
+                drain(request.getInputStream());
+                try {
+                    Thread.sleep(SERVER_LATENCY);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                httpResponse.setStatus(202);
+                httpResponse.setContentType("application/json");
+                httpResponse.setContentLength(response.length);
+                httpResponse.getOutputStream().write(response);
+                baseRequest.setHandled(true);
+            }
+        });
+        server.start();
+
+        RestApiClientBuilder builder = RestApiClientBuilder.newBuilder("nG8FJvTMvuzZpU8dgB4X", "ETPsdn8eMPyG4u3TTGAeD6p7IbkLjA")
+                                                           .endpoint("http://127.0.0.1:" + connector.getLocalPort() + "/");
+        if ("jdk-http1".equals(transport)) {
+            builder.transport(new JdkHttpTransport(HttpClient.Version.HTTP_1_1, 60 * 1000, 60 * 1000));
+        } else if ("jdk-http2".equals(transport)) {
+            // the server does not check signatures, the signed requests may go over HTTP/2
+            HttpClient http2 = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).connectTimeout(Duration.ofMinutes(1)).build();
+            builder.transport(new JdkHttpTransport(http2, 60 * 1000, true));
+        }
+        RestApiClient restApiClient = builder.build();
+        if (!restApiClient.isAlive()) {
+            throw new IllegalStateException("The server did not answer");
+        }
+        client = restApiClient.messaging();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        System.out.println();
+        System.out.println("Connections opened by " + transport + ": " + connections.size());
+        server.stop();
+    }
+
+    @Benchmark
+    public RestApiResponse<MessageList> sendMessages() throws RestApiException {
+        return client.sendMessages(messages.getMessages());
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) != -1) {
+            continue;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.benchmarks;
+
+import com.messagemedia.restapi.client.v1.internal.util.JsonUtilities;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the compact wire format with the indented one, for batches of messages as the API returns them.
+ * <p/>
+ * The size of both documents is printed once per batch size, so that the bytes saved per batch can be read off next to the time saved.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonCodecBenchmark {
+
+    @Param({"1", "100", "1000"})
+    private int batchSize;
+
+    private MessageList messageList;
+    private byte[] compact;
+    private byte[] pretty;
+
+    @Setup
+    public void setUp() throws IOException {
+        messageList = JsonUtilities.bytesToObject(PayloadCodecBenchmark.sentMessages(batchSize).getBytes("UTF-8"), MessageList.class);
+        compact = JsonUtilities.objectToBytes(messageList);
+        pretty = JsonUtilities.objectToPrettyString(messageList).getBytes("UTF-8");
+        System.out.println();
+        System.out.println("Batch of " + batchSize + ": compact " + compact.length + " bytes, indented " + pretty.length + " bytes, saved "
+                           + (pretty.length - compact.length) + " bytes");
+    }
+
+    @Benchmark
+    public byte[] writeCompact() throws IOException {
+        return JsonUtilities.objectToBytes(messageList);
+    }
+
+    @Benchmark
+    public String writeIndented() throws IOException {
+        return JsonUtilities.objectToPrettyString(messageList);
+    }
+
+    @Benchmark
+    public MessageList readCompact() throws IOException {
+        return JsonUtilities.bytesToObject(compact, MessageList.class);
+    }
+
+    @Benchmark
+    public MessageList readIndented() throws IOException {
+        return JsonUtilities.bytesToObject(pretty, MessageList.class);
+    }
+}
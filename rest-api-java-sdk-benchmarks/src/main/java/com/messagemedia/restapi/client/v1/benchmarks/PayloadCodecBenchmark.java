@@ -0,0 +1,166 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.benchmarks;
+
+import com.messagemedia.restapi.client.v1.internal.util.JsonUtilities;
+import com.messagemedia.restapi.client.v1.messaging.deliveryreports.DeliveryReportList;
+import com.messagemedia.restapi.client.v1.messaging.messages.Message;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageBuilder;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
+import com.messagemedia.restapi.client.v1.messaging.replies.ReplyList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes and parses the three payloads the SDK exchanges in bulk: the messages it sends, and the replies and delivery reports it checks.
+ * <p/>
+ * Replies and delivery reports are only ever parsed by the SDK, their serialization is measured for completeness. Both are built from JSON,
+ * the same way they arrive from the API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadCodecBenchmark {
+
+    @Param({"1", "100", "1000"})
+    private int batchSize;
+
+    private MessageList messages;
+    private ReplyList replies;
+    private DeliveryReportList deliveryReports;
+    private byte[] messagesJson;
+    private byte[] repliesJson;
+    private byte[] deliveryReportsJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        messages = messages(batchSize);
+        messagesJson = sentMessages(batchSize).getBytes("UTF-8");
+        repliesJson = replies(batchSize).getBytes("UTF-8");
+        replies = JsonUtilities.bytesToObject(repliesJson, ReplyList.class);
+        deliveryReportsJson = deliveryReports(batchSize).getBytes("UTF-8");
+        deliveryReports = JsonUtilities.bytesToObject(deliveryReportsJson, DeliveryReportList.class);
+    }
+
+    static MessageList messages(int count) {
+        List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(new MessageBuilder().content("Your one-time code is " + (100000 + i))
+                                             .destinationNumber("+614915701" + (10 + i % 90))
+                                             .callbackUrl("https://example.com/callback")
+                                             .deliveryReport(true)
+                                             .metadataProperty("order", "A" + i)
+                                             .build());
+        }
+        return new MessageList(messages);
+    }
+
+    /**
+     * @return the response to sending {@link #messages(int)}, which carries the IDs and the status the API assigned
+     */
+    static String sentMessages(int count) {
+        StringBuilder json = new StringBuilder("{\"messages\": [");
+        for (int i = 0; i < count; i++) {
+            json.append(i == 0 ? "" : ",")
+                .append("{\"message_id\": \"877c19ef-fa2e-4cec-827a-e1df9b5").append(10000 + i).append("\",")
+                .append("\"status\": \"queued\",")
+                .append("\"content\": \"Your one-time code is ").append(100000 + i).append("\",")
+                .append("\"destination_number\": \"+614915701").append(10 + i % 90).append("\",")
+                .append("\"callback_url\": \"https://example.com/callback\",")
+                .append("\"delivery_report\": true,")
+                .append("\"metadata\": {\"order\": \"A").append(i).append("\"}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String replies(int count) {
+        StringBuilder json = new StringBuilder("{\"replies\": [");
+        for (int i = 0; i < count; i++) {
+            json.append(i == 0 ? "" : ",")
+                .append("{\"reply_id\": \"a175e797-2b54-468b-9850-41a3eab3").append(10000 + i).append("\",")
+                .append("\"message_id\": \"877c19ef-fa2e-4cec-827a-e1df9b5").append(10000 + i).append("\",")
+                .append("\"content\": \"Yes, see you then\",")
+                .append("\"source_number\": \"+614915701").append(10 + i % 90).append("\",")
+                .append("\"destination_number\": \"+61491570156\",")
+                .append("\"date_received\": \"2016-03-10T12:00:00+11:00\",")
+                .append("\"metadata\": {\"order\": \"A").append(i).append("\"}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String deliveryReports(int count) {
+        StringBuilder json = new StringBuilder("{\"delivery_reports\": [");
+        for (int i = 0; i < count; i++) {
+            json.append(i == 0 ? "" : ",")
+                .append("{\"delivery_report_id\": \"01e1fa0a-6e27-4945-9cdb-18644b4d").append(10000 + i).append("\",")
+                .append("\"message_id\": \"877c19ef-fa2e-4cec-827a-e1df9b5").append(10000 + i).append("\",")
+                .append("\"source_number\": \"+614915701").append(10 + i % 90).append("\",")
+                .append("\"status\": \"delivered\",")
+                .append("\"delay\": 512,")
+                .append("\"date_received\": \"2016-03-10T12:00:00+11:00\",")
+                .append("\"metadata\": {\"order\": \"A").append(i).append("\"}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    @Benchmark
+    public byte[] writeMessages() throws IOException {
+        return JsonUtilities.objectToBytes(messages);
+    }
+
+    @Benchmark
+    public MessageList readMessages() throws IOException {
+        return JsonUtilities.bytesToObject(messagesJson, MessageList.class);
+    }
+
+    @Benchmark
+    public byte[] writeReplies() throws IOException {
+        return JsonUtilities.objectToBytes(replies);
+    }
+
+    @Benchmark
+    public ReplyList readReplies() throws IOException {
+        return JsonUtilities.bytesToObject(repliesJson, ReplyList.class);
+    }
+
+    @Benchmark
+    public byte[] writeDeliveryReports() throws IOException {
+        return JsonUtilities.objectToBytes(deliveryReports);
+    }
+
+    @Benchmark
+    public DeliveryReportList readDeliveryReports() throws IOException {
+        return JsonUtilities.bytesToObject(deliveryReportsJson, DeliveryReportList.class);
+    }
+}
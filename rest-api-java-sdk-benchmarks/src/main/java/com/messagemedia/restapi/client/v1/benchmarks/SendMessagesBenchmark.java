@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.benchmarks;
+
+import com.messagemedia.restapi.client.v1.RestApiClientBuilder;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.RestApiResponse;
+import com.messagemedia.restapi.client.v1.messaging.RestApiMessagingClient;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends messages end to end through the blocking client, against an HTTP server running in the same process which answers instantly.
+ * <p/>
+ * The result is the cost of a call on the client side: building, serializing, signing, the HTTP exchange over loopback and parsing the
+ * response. To see how calls scale with the number of calling threads, run the benchmark at several thread counts with
+ * <pre>
+ * java -cp benchmarks.jar com.messagemedia.restapi.client.v1.benchmarks.SendMessagesBenchmark [max threads]
+ * </pre>
+ * which runs it at 1, 2, 4 and so on up to the given number of threads, by default twice the number of processors.
+ * <p/>
+ * The server disables Nagle's algorithm, otherwise every response would wait for the delayed acknowledgement of the client.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class SendMessagesBenchmark {
+
+    @Param({"1", "100"})
+    private int batchSize;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private RestApiMessagingClient client;
+    private MessageList messages;
+
+    public static void main(String[] args) throws RunnerException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 2;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            new Runner(new OptionsBuilder().include(SendMessagesBenchmark.class.getSimpleName())
+                                           .threads(threads)
+                                           .build()).run();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        messages = PayloadCodecBenchmark.messages(batchSize);
+        final byte[] response = PayloadCodecBenchmark.sentMessages(batchSize).getBytes("UTF-8");
+
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                drain(exchange.getRequestBody());
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(202, response.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(response);
+                out.close();
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+
+        String endpoint = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        client = RestApiClientBuilder.newBuilder("nG8FJvTMvuzZpU8dgB4X", "ETPsdn8eMPyG4u3TTGAeD6p7IbkLjA").endpoint(endpoint).build().messaging();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public RestApiResponse<MessageList> sendMessages() throws RestApiException {
+        return client.sendMessages(messages.getMessages());
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) != -1) {
+            continue;
+        }
+        in.close();
+    }
+}
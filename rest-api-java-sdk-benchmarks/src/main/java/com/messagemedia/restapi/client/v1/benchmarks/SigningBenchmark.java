@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.benchmarks;
+
+import com.messagemedia.restapi.client.v1.internal.http.interceptors.HmacMmv2Interceptor;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signs requests the way every request is signed before it is sent: the interceptor sets the Content-Type and Date headers and adds the
+ * Authorization header.
+ * <p/>
+ * A fresh request is signed every time, so that the Date header is set by the interceptor as it is in production. Run with <code>-t</code> to
+ * check that signing from several threads scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SigningBenchmark {
+
+    private static final String URI = "https://api.messagemedia.com/v1/messages";
+
+    private HmacMmv2Interceptor interceptor;
+    private HttpContext context;
+
+    @Setup
+    public void setUp() {
+        interceptor = new HmacMmv2Interceptor("nG8FJvTMvuzZpU8dgB4X", "ETPsdn8eMPyG4u3TTGAeD6p7IbkLjA");
+        context = new BasicHttpContext();
+    }
+
+    @Benchmark
+    public HttpUriRequest signGet() throws HttpException, IOException {
+        HttpUriRequest request = new HttpGet(URI + "/877c19ef-fa2e-4cec-827a-e1df9b5509f7");
+        interceptor.process(request, context);
+        return request;
+    }
+
+    @Benchmark
+    public HttpUriRequest signPost() throws HttpException, IOException {
+        HttpUriRequest request = new HttpPost(URI);
+        interceptor.process(request, context);
+        return request;
+    }
+
+    @Benchmark
+    public HttpUriRequest signPostWithContentMd5() throws HttpException, IOException {
+        HttpUriRequest request = new HttpPost(URI);
+        request.setHeader(HttpHeaders.CONTENT_MD5, "Q2hlY2sgSW50ZWdyaXR5IQ==");
+        interceptor.process(request, context);
+        return request;
+    }
+}
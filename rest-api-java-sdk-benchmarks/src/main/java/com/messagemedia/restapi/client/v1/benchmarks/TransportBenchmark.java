@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.benchmarks;
+
+import com.messagemedia.restapi.client.v1.RestApiClientBuilder;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.RestApiResponse;
+import com.messagemedia.restapi.client.v1.messaging.RestApiMessagingClient;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
+import com.messagemedia.restapi.client.v1.transport.JdkHttpTransport;
+import com.messagemedia.restapi.client.v1.transport.LoopbackTransport;
+import com.messagemedia.restapi.client.v1.transport.Transport;
+import com.messagemedia.restapi.client.v1.transport.UrlConnectionTransport;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the same messages through each transport: the Apache client, the HTTP client of Java 11, the {@link java.net.HttpURLConnection}
+ * of older JDKs, all against an HTTP/1.1 server running in the same process which answers at once, and the in-memory loopback, which
+ * answers with the same body.
+ * <p/>
+ * The loopback is what the client costs without any I/O: serializing, signing and parsing. What the other transports take on top of it is
+ * their own overhead plus the loopback interface and the server, which are the same for all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class TransportBenchmark {
+
+    private static final int MESSAGES = 10;
+
+    @Param({"apache", "jdk", "urlconnection", "loopback"})
+    private String transport;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private RestApiMessagingClient client;
+    private MessageList messages;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        messages = PayloadCodecBenchmark.messages(MESSAGES);
+        final byte[] response = PayloadCodecBenchmark.sentMessages(MESSAGES).getBytes("UTF-8");
+
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                drain(exchange.getRequestBody());
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(202, response.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(response);
+                out.close();
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+
+        RestApiClientBuilder builder = RestApiClientBuilder.newBuilder("nG8FJvTMvuzZpU8dgB4X", "ETPsdn8eMPyG4u3TTGAeD6p7IbkLjA")
+                                                           .endpoint("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        Transport selected = createTransport(new String(response, "UTF-8"));
+        if (selected != null) {
+            builder.transport(selected);
+        }
+        client = builder.build().messaging();
+    }
+
+    private Transport createTransport(String response) {
+        if ("jdk".equals(transport)) {
+            return new JdkHttpTransport(HttpClient.Version.HTTP_1_1, 60 * 1000, 60 * 1000);
+        }
+        if ("urlconnection".equals(transport)) {
+            return new UrlConnectionTransport(60 * 1000, 60 * 1000);
+        }
+        if ("loopback".equals(transport)) {
+            return LoopbackTransport.responding(202, response);
+        }
+        // the default transport is the Apache client
+        return null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public RestApiResponse<MessageList> sendMessages() throws RestApiException {
+        return client.sendMessages(messages.getMessages());
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) != -1) {
+            continue;
+        }
+        in.close();
+    }
+}
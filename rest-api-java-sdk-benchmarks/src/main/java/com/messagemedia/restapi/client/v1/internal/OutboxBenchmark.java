@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.internal.util.JsonUtilities;
+import com.messagemedia.restapi.client.v1.messaging.messages.Message;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageBuilder;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends single message lists to the outbox and acknowledges them, as the messaging client does around every send, from as many threads
+ * as a busy sender has calls in flight. The forces to disk are shared by the threads which wait at the same time, so the throughput depends
+ * on the number of threads at least as much as on the disk. The journal is kept in the temporary directory, set java.io.tmpdir to
+ * measure another disk.
+ * <p/>
+ * Lives in the package of {@link Outbox}, which is not public.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(64)
+@Fork(1)
+public class OutboxBenchmark {
+
+    private File directory;
+    private Outbox outbox;
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = File.createTempFile("outbox", "");
+        if (!directory.delete() || !directory.mkdir()) {
+            throw new IOException("Failed to create " + directory);
+        }
+        outbox = new Outbox(directory, Outbox.SEGMENT_SIZE_DEFAULT);
+        Message message = new MessageBuilder().content("Hello, World!").destinationNumber("+61491570156").build();
+        payload = JsonUtilities.objectToBytes(new MessageList(Collections.singletonList(message)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        outbox.close();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public void appendAndAcknowledge() throws IOException {
+        outbox.acknowledge(outbox.append(payload));
+    }
+}
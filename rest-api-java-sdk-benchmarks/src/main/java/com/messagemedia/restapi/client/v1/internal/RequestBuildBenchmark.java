@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.messaging.messages.Message;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageBuilder;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static com.messagemedia.restapi.client.v1.internal.RestApiMessagingClientImpl.URL_CHECK_MESSAGE;
+import static com.messagemedia.restapi.client.v1.internal.RestApiMessagingClientImpl.URL_MESSAGES;
+import static com.messagemedia.restapi.client.v1.internal.RestApiMessagingClientImpl.URL_REPLIES;
+
+/**
+ * Builds the requests of the messaging client up to the Apache request which is handed to the HTTP client, without sending them.
+ * <p/>
+ * Lives in the package of {@link RestRequestBuilder}, which is not public.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestBuildBenchmark {
+
+    private RestClient client;
+    private MessageList messages;
+
+    @Setup
+    public void setUp() {
+        client = new RestClient(new ClientSettings("https://api.messagemedia.com/", "nG8FJvTMvuzZpU8dgB4X", "ETPsdn8eMPyG4u3TTGAeD6p7IbkLjA"));
+        Message message = new MessageBuilder().content("Hello, World!").destinationNumber("+61491570156").build();
+        messages = new MessageList(Collections.singletonList(message));
+    }
+
+    @Benchmark
+    public HttpUriRequest buildGet() {
+        return client.get(URL_REPLIES).build().getHttpRequest();
+    }
+
+    @Benchmark
+    public HttpUriRequest buildGetWithPathVariable() {
+        return client.get(URL_CHECK_MESSAGE).pathVariable("messageId", "877c19ef-fa2e-4cec-827a-e1df9b5509f7").build().getHttpRequest();
+    }
+
+    @Benchmark
+    public HttpUriRequest buildPostWithBody() {
+        return client.post(URL_MESSAGES).body(messages).build().getHttpRequest();
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.AsyncRestApiClient;
+import com.messagemedia.restapi.client.v1.RestApiCallback;
+import com.messagemedia.restapi.client.v1.RestApiClientBuilder;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.RestApiResponse;
+import com.messagemedia.restapi.client.v1.messaging.RestApiMessagingClient;
+import com.messagemedia.restapi.client.v1.messaging.messages.Message;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageBuilder;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Starts a large number of callers at once, each sending one message, against an HTTP server running in the same process which answers
+ * after a short delay, and measures the time until all of them have been answered.
+ * <p/>
+ * The blocking client runs every caller on a virtual thread of its own, with the client in its virtual thread mode. The asynchronous client
+ * is the hand-written pipeline to compare with: one thread sends all the messages and counts the callbacks. Both share a pool of the same
+ * size, which bounds the requests in flight. Virtual threads need Java 21 or later; on older JVMs the blocking callers fall back to a pool
+ * of platform threads as large as the connection pool, which is what an application would do there.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Dsun.net.httpserver.nodelay=true", "-Xmx2g"})
+public class VirtualThreadBenchmark {
+
+    private static final long SERVER_LATENCY = 2;
+    private static final int MAX_CONNECTIONS = 200;
+    private static final String RESPONSE = "{\"messages\": [{\"message_id\": \"877c19ef-fa2e-4cec-827a-e1df9b510000\", \"status\": \"queued\", "
+                                           + "\"content\": \"Hello, World!\", \"destination_number\": \"+61491570156\"}]}";
+
+    @Param({"100000"})
+    private int callers;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private RestApiMessagingClient blockingClient;
+    private AsyncRestApiClient asyncClient;
+    private ThreadFactory virtualThreads;
+    private ExecutorService platformThreads;
+    private List<Message> messages;
+    private final AtomicInteger failures = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        messages = Collections.singletonList(new MessageBuilder().content("Hello, World!").destinationNumber("+61491570156").build());
+        final byte[] response = RESPONSE.getBytes("UTF-8");
+
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                drain(exchange.getRequestBody());
+                try {
+                    Thread.sleep(SERVER_LATENCY);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(202, response.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(response);
+                out.close();
+            }
+        });
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        String endpoint = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        blockingClient = RestApiClientBuilder.newBuilder("nG8FJvTMvuzZpU8dgB4X", "ETPsdn8eMPyG4u3TTGAeD6p7IbkLjA")
+                                             .endpoint(endpoint)
+                                             .maxConnections(MAX_CONNECTIONS)
+                                             .virtualThreads(true)
+                                             .build()
+                                             .messaging();
+        asyncClient = RestApiClientBuilder.newBuilder("nG8FJvTMvuzZpU8dgB4X", "ETPsdn8eMPyG4u3TTGAeD6p7IbkLjA")
+                                          .endpoint(endpoint)
+                                          .maxConnections(MAX_CONNECTIONS)
+                                          .buildAsync();
+        virtualThreads = VirtualThreads.factory("caller-");
+        if (virtualThreads == null) {
+            System.out.println();
+            System.out.println("No virtual threads in this JVM, the blocking callers share " + MAX_CONNECTIONS + " platform threads");
+            platformThreads = Executors.newFixedThreadPool(MAX_CONNECTIONS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.println();
+        System.out.println("Failed calls: " + failures.get());
+        asyncClient.close();
+        if (platformThreads != null) {
+            platformThreads.shutdownNow();
+        }
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public void blocking() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(callers);
+        Runnable caller = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blockingClient.sendMessages(messages);
+                } catch (RestApiException e) {
+                    failures.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+        for (int i = 0; i < callers; i++) {
+            if (virtualThreads != null) {
+                virtualThreads.newThread(caller).start();
+            } else {
+                platformThreads.execute(caller);
+            }
+        }
+        done.await();
+    }
+
+    @Benchmark
+    public void async() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(callers);
+        RestApiCallback<RestApiResponse<MessageList>> callback = new RestApiCallback<RestApiResponse<MessageList>>() {
+            @Override
+            public void completed(RestApiResponse<MessageList> result) {
+                done.countDown();
+            }
+
+            @Override
+            public void failed(RestApiException exception) {
+                failures.incrementAndGet();
+                done.countDown();
+            }
+        };
+        for (int i = 0; i < callers; i++) {
+            asyncClient.messaging().sendMessages(messages).addCallback(callback);
+        }
+        done.await();
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) != -1) {
+            continue;
+        }
+        in.close();
+    }
+}
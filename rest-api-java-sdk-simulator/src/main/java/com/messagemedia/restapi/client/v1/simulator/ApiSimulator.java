@@ -0,0 +1,187 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.simulator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A local simulator of the MessageMedia v1 messaging API, to test clients against at full speed without touching the network.
+ * <p/>
+ * It accepts batches of up to 100 messages, moves them through their status lifecycle, and queues their delivery reports and replies, which
+ * are handed out 100 at a time, oldest first, until they are confirmed. See {@link MessageStore} for the lifecycle. It can verify HMAC
+ * signatures and inject latency, errors and throttling, see {@link SimulatorSettings}.
+ * <p/>
+ * The simulator can be embedded into tests, or run standalone with {@link Main}.
+ */
+public final class ApiSimulator implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(ApiSimulator.class.getName());
+    private static final String NO_DELAY = "sun.net.httpserver.nodelay";
+
+    static {
+        // without it every response waits for the delayed acknowledgement of the client, which caps a connection at about 25 requests per second
+        if (System.getProperty(NO_DELAY) == null) {
+            System.setProperty(NO_DELAY, "true");
+        }
+    }
+
+    private final SimulatorSettings settings;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final MessageStore store;
+    private final MessagingApi api;
+    private final Throttle throttle;
+    private final HmacVerifier verifier;
+
+    /**
+     * Creates and starts the simulator.
+     *
+     * @param settings the settings
+     * @throws IOException if the port can not be bound
+     */
+    public ApiSimulator(SimulatorSettings settings) throws IOException {
+        this.settings = settings;
+        this.store = new MessageStore(settings);
+        this.api = new MessagingApi(store);
+        this.throttle = settings.getMaxRequestsPerSecond() > 0 ? new Throttle(settings.getMaxRequestsPerSecond()) : null;
+        this.verifier = settings.getKey() != null ? new HmacVerifier(settings.getKey(), settings.getSecret()) : null;
+        this.executor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress(settings.getPort()), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange(exchange);
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return the port the simulator listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return the endpoint to configure clients with
+     */
+    public String getEndpoint() {
+        return "http://localhost:" + getPort() + "/";
+    }
+
+    /**
+     * @return the number of replies which have not been confirmed yet
+     */
+    public int getPendingReplies() {
+        return store.getReplies().size();
+    }
+
+    /**
+     * @return the number of delivery reports which have not been confirmed yet
+     */
+    public int getPendingDeliveryReports() {
+        return store.getDeliveryReports().size();
+    }
+
+    /**
+     * Stops the simulator. Its messages are lost.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        store.close();
+    }
+
+    private void exchange(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = read(exchange.getRequestBody());
+            pause();
+            send(exchange, respond(exchange, body));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private SimulatorResponse respond(HttpExchange exchange, byte[] body) {
+        if (verifier != null && !verifier.verify(exchange)) {
+            return SimulatorResponse.error(401, "Invalid signature");
+        }
+        if (throttle != null && !throttle.tryAcquire()) {
+            return SimulatorResponse.throttled();
+        }
+        if (ThreadLocalRandom.current().nextDouble() < settings.getErrorRate()) {
+            return SimulatorResponse.error(500, "Simulated error");
+        }
+        return api.handle(exchange.getRequestMethod(), exchange.getRequestURI().getPath(), body);
+    }
+
+    private void pause() throws InterruptedException {
+        long jitter = settings.getLatencyJitter();
+        long latency = settings.getLatency() + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+        if (latency > 0) {
+            Thread.sleep(latency);
+        }
+    }
+
+    private static void send(HttpExchange exchange, SimulatorResponse response) throws IOException {
+        if (response.getRetryAfter() > 0) {
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(response.getRetryAfter()));
+        }
+        byte[] body = response.getBody();
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, exchange.getRequestMethod() + " " + exchange.getRequestURI() + " " + response.getStatus());
+        }
+        if (body.length == 0) {
+            exchange.sendResponseHeaders(response.getStatus(), -1);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(response.getStatus(), body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.simulator;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import org.apache.commons.codec.binary.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Verifies the HMAC signature of a request the way the API does: the headers listed in the Authorization header are signed in order, with
+ * the pseudo header <code>request-line</code> standing for the request line.
+ */
+final class HmacVerifier {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String ALGORITHM = "HmacSHA1";
+    private static final String REQUEST_LINE = "request-line";
+    private static final Pattern PARAMETER = Pattern.compile("(\\w+)=\"([^\"]*)\"");
+    private static final Map<String, String> SIGNED_NAMES = new HashMap<String, String>();
+
+    static {
+        // the names as they appear in the signed string, which differ from the ones listed in the Authorization header
+        SIGNED_NAMES.put("date", "Date");
+        SIGNED_NAMES.put("content-md5", "Content-MD5");
+    }
+
+    private final String key;
+    private final SecretKeySpec secret;
+
+    HmacVerifier(String key, String secret) {
+        this.key = key;
+        this.secret = new SecretKeySpec(secret.getBytes(UTF_8), ALGORITHM);
+    }
+
+    /**
+     * @param exchange the request
+     * @return true if the request is signed with the credentials of the simulator
+     */
+    boolean verify(HttpExchange exchange) {
+        Map<String, String> parameters = parameters(exchange.getRequestHeaders().getFirst("Authorization"));
+        String headers = parameters.get("headers");
+        String signature = parameters.get("signature");
+        if (!key.equals(parameters.get("username")) || headers == null || signature == null) {
+            return false;
+        }
+        String toSign = stringToSign(exchange, headers.split(" "));
+        return toSign != null && MessageDigest.isEqual(sign(toSign).getBytes(UTF_8), signature.getBytes(UTF_8));
+    }
+
+    private static Map<String, String> parameters(String authorization) {
+        Map<String, String> parameters = new HashMap<String, String>();
+        if (authorization != null && authorization.startsWith("hmac ")) {
+            Matcher matcher = PARAMETER.matcher(authorization);
+            while (matcher.find()) {
+                parameters.put(matcher.group(1), matcher.group(2));
+            }
+        }
+        return parameters;
+    }
+
+    private static String stringToSign(HttpExchange exchange, String[] names) {
+        Headers headers = exchange.getRequestHeaders();
+        StringBuilder toSign = new StringBuilder();
+        for (String name : names) {
+            if (toSign.length() > 0) {
+                toSign.append('\n');
+            }
+            if (REQUEST_LINE.equals(name)) {
+                toSign.append(exchange.getRequestMethod()).append(' ').append(exchange.getRequestURI()).append(' ').append(exchange.getProtocol());
+            } else {
+                String value = headers.getFirst(name);
+                if (value == null) {
+                    return null;
+                }
+                String signedName = SIGNED_NAMES.get(name.toLowerCase(Locale.ENGLISH));
+                toSign.append(signedName != null ? signedName : name).append(": ").append(value);
+            }
+        }
+        return toSign.toString();
+    }
+
+    private String sign(String toSign) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(secret);
+            return Base64.encodeBase64String(mac.doFinal(toSign.getBytes(UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA1 is not available", e);
+        }
+    }
+}
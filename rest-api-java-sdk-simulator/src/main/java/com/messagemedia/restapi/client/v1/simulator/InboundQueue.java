@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.simulator;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The unconfirmed replies or delivery reports of the account, oldest first. Items are handed out until they are confirmed.
+ */
+final class InboundQueue {
+
+    private final String idField;
+    private final Map<String, ObjectNode> pending = new LinkedHashMap<String, ObjectNode>();
+
+    /**
+     * @param idField the field holding the ID of an item, by which it is confirmed
+     */
+    InboundQueue(String idField) {
+        this.idField = idField;
+    }
+
+    synchronized void add(ObjectNode item) {
+        pending.put(item.get(idField).asText(), item);
+    }
+
+    /**
+     * @param limit the maximum number of items
+     * @return the oldest unconfirmed items
+     */
+    synchronized List<ObjectNode> oldest(int limit) {
+        List<ObjectNode> items = new ArrayList<ObjectNode>(Math.min(limit, pending.size()));
+        Iterator<ObjectNode> iterator = pending.values().iterator();
+        while (iterator.hasNext() && items.size() < limit) {
+            items.add(iterator.next());
+        }
+        return items;
+    }
+
+    /**
+     * Removes the items. Unknown IDs, for example of items which have been confirmed already, are ignored.
+     *
+     * @param ids the IDs of the items
+     */
+    synchronized void confirm(Iterable<String> ids) {
+        for (String id : ids) {
+            pending.remove(id);
+        }
+    }
+
+    synchronized int size() {
+        return pending.size();
+    }
+}
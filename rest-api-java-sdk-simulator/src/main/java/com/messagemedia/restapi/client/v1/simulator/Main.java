@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.simulator;
+
+import com.lexicalscope.jewel.cli.ArgumentValidationException;
+import com.lexicalscope.jewel.cli.CliFactory;
+import com.lexicalscope.jewel.cli.Option;
+import com.lexicalscope.jewel.cli.ValidationFailure;
+
+import java.io.IOException;
+
+/**
+ * Runs the {@link ApiSimulator} standalone, until the process is stopped. Run with <code>--help</code> to list the options.
+ */
+public final class Main {
+
+    /**
+     * The command line options.
+     */
+    public interface Options {
+
+        @Option(description = "The port to listen on", defaultValue = "8080")
+        int getPort();
+
+        @Option(description = "The API key requests must be signed with. Signatures are not checked if it is not set.", defaultToNull = true)
+        String getApiKey();
+
+        @Option(description = "The secret key requests must be signed with", defaultToNull = true)
+        String getSecretKey();
+
+        @Option(description = "The time in milliseconds every request is held before it is answered", defaultValue = "0")
+        long getLatency();
+
+        @Option(description = "The maximum time in milliseconds randomly added to the latency", defaultValue = "0")
+        long getLatencyJitter();
+
+        @Option(description = "The share of requests, between 0 and 1, answered with 500", defaultValue = "0")
+        double getErrorRate();
+
+        @Option(description = "The number of requests per second above which requests are answered with 429, 0 to never throttle",
+                defaultValue = "0")
+        int getMaxRequestsPerSecond();
+
+        @Option(description = "The time in milliseconds a message stays queued", defaultValue = "100")
+        long getProcessingDelay();
+
+        @Option(description = "The time in milliseconds between processing and delivering a message", defaultValue = "1000")
+        long getDeliveryDelay();
+
+        @Option(description = "The share of messages, between 0 and 1, which fail to be delivered", defaultValue = "0")
+        double getDeliveryFailureRate();
+
+        @Option(description = "The share of delivered messages, between 0 and 1, which are replied to", defaultValue = "0")
+        double getReplyRate();
+
+        @Option(helpRequest = true)
+        boolean getHelp();
+    }
+
+    private Main() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Options options = null;
+        try {
+            options = CliFactory.parseArguments(Options.class, args);
+        } catch (ArgumentValidationException e) {
+            for (ValidationFailure each : e.getValidationFailures()) {
+                System.out.println(each.getMessage());
+            }
+            System.exit(1);
+        }
+
+        SimulatorSettings settings = new SimulatorSettings().port(options.getPort())
+                                                            .latency(options.getLatency(), options.getLatencyJitter())
+                                                            .errorRate(options.getErrorRate())
+                                                            .maxRequestsPerSecond(options.getMaxRequestsPerSecond())
+                                                            .processingDelay(options.getProcessingDelay())
+                                                            .deliveryDelay(options.getDeliveryDelay())
+                                                            .deliveryFailureRate(options.getDeliveryFailureRate())
+                                                            .replyRate(options.getReplyRate());
+        if (options.getApiKey() != null) {
+            settings.credentials(options.getApiKey(), options.getSecretKey());
+        }
+        ApiSimulator simulator = new ApiSimulator(settings);
+        System.out.println("MessageMedia API simulator listening on " + simulator.getEndpoint());
+    }
+}
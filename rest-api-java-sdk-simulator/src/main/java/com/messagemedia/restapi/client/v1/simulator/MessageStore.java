@@ -0,0 +1,233 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.simulator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.ISODateTimeFormat;
+
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The messages of the simulated account and the replies and delivery reports they produce.
+ * <p/>
+ * A message is queued when it is submitted, or scheduled if it is scheduled for later. It is processed after the processing delay or once it
+ * is due, and delivered, or fails, after the delivery delay. Its delivery report is queued then if it asked for one, and the recipient may
+ * reply to it. Messages can be cancelled as long as they have not been processed.
+ * <p/>
+ * Every message is a JSON object which is only accessed while holding its lock.
+ */
+final class MessageStore {
+
+    static final String MESSAGE_ID = "message_id";
+    static final String STATUS = "status";
+    static final String QUEUED = "queued";
+    static final String SCHEDULED = "scheduled";
+    static final String PROCESSED = "processed";
+    static final String CANCELLED = "cancelled";
+    static final String DELIVERED = "delivered";
+    static final String FAILED = "failed";
+
+    private static final String DESTINATION_NUMBER = "destination_number";
+    private static final String METADATA = "metadata";
+    private static final String DEFAULT_SOURCE_NUMBER = "+61491570156";
+
+    private final SimulatorSettings settings;
+    private final ConcurrentMap<String, ObjectNode> messages = new ConcurrentHashMap<String, ObjectNode>();
+    private final Queue<String> submissionOrder = new ConcurrentLinkedQueue<String>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final InboundQueue replies = new InboundQueue("reply_id");
+    private final InboundQueue deliveryReports = new InboundQueue("delivery_report_id");
+    private final ScheduledThreadPoolExecutor lifecycle;
+
+    MessageStore(SimulatorSettings settings) {
+        this.settings = settings;
+        this.lifecycle = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "simulator-lifecycle");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Accepts a message.
+     *
+     * @param request the message as sent by the client
+     * @return the message as stored, with its ID and status
+     */
+    ObjectNode submit(ObjectNode request) {
+        final String id = UUID.randomUUID().toString();
+        ObjectNode message = request.deepCopy();
+        message.put(MESSAGE_ID, id);
+        long due = dueIn(message.get(SCHEDULED));
+        message.put(STATUS, due > 0 ? SCHEDULED : QUEUED);
+        ObjectNode copy = message.deepCopy();
+
+        messages.put(id, message);
+        submissionOrder.add(id);
+        if (size.incrementAndGet() > settings.getMaxMessages()) {
+            forgetOldest();
+        }
+        lifecycle.schedule(new Runnable() {
+            @Override
+            public void run() {
+                process(id);
+            }
+        }, Math.max(due, settings.getProcessingDelay()), TimeUnit.MILLISECONDS);
+        return copy;
+    }
+
+    private static long dueIn(JsonNode scheduled) {
+        if (scheduled == null || !scheduled.isTextual()) {
+            return 0;
+        }
+        return ISODateTimeFormat.dateTimeParser().parseDateTime(scheduled.asText()).getMillis() - System.currentTimeMillis();
+    }
+
+    private void forgetOldest() {
+        String oldest = submissionOrder.poll();
+        if (oldest != null) {
+            messages.remove(oldest);
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * @param id the ID of the message
+     * @return a copy of the message, or null if there is no such message
+     */
+    ObjectNode get(String id) {
+        ObjectNode message = messages.get(id);
+        if (message == null) {
+            return null;
+        }
+        synchronized (message) {
+            return message.deepCopy();
+        }
+    }
+
+    /**
+     * @param id the ID of the message
+     * @return a copy of the cancelled message, or null if there is no such message
+     * @throws IllegalArgumentException if the message has been processed already
+     */
+    ObjectNode cancel(String id) {
+        ObjectNode message = messages.get(id);
+        if (message == null) {
+            return null;
+        }
+        synchronized (message) {
+            String status = message.get(STATUS).asText();
+            if (!QUEUED.equals(status) && !SCHEDULED.equals(status)) {
+                throw new IllegalArgumentException("The message is " + status + " and can not be cancelled anymore");
+            }
+            message.put(STATUS, CANCELLED);
+            return message.deepCopy();
+        }
+    }
+
+    InboundQueue getReplies() {
+        return replies;
+    }
+
+    InboundQueue getDeliveryReports() {
+        return deliveryReports;
+    }
+
+    void close() {
+        lifecycle.shutdownNow();
+    }
+
+    private void process(final String id) {
+        ObjectNode message = messages.get(id);
+        if (message == null) {
+            return;
+        }
+        synchronized (message) {
+            if (message.get(STATUS).asText().equals(CANCELLED)) {
+                return;
+            }
+            message.put(STATUS, PROCESSED);
+        }
+        lifecycle.schedule(new Runnable() {
+            @Override
+            public void run() {
+                deliver(id);
+            }
+        }, settings.getDeliveryDelay(), TimeUnit.MILLISECONDS);
+    }
+
+    private void deliver(String id) {
+        ObjectNode message = messages.get(id);
+        if (message == null) {
+            return;
+        }
+        boolean delivered = ThreadLocalRandom.current().nextDouble() >= settings.getDeliveryFailureRate();
+        ObjectNode copy;
+        synchronized (message) {
+            message.put(STATUS, delivered ? DELIVERED : FAILED);
+            copy = message.deepCopy();
+        }
+        if (copy.path("delivery_report").asBoolean(false)) {
+            deliveryReports.add(deliveryReport(copy));
+        }
+        if (delivered && ThreadLocalRandom.current().nextDouble() < settings.getReplyRate()) {
+            replies.add(reply(copy));
+        }
+    }
+
+    private ObjectNode deliveryReport(ObjectNode message) {
+        ObjectNode report = inbound(message, "delivery_report_id");
+        report.put(STATUS, message.get(STATUS).asText());
+        report.put("delay", settings.getDeliveryDelay());
+        return report;
+    }
+
+    private static ObjectNode reply(ObjectNode message) {
+        ObjectNode reply = inbound(message, "reply_id");
+        reply.put("content", "Reply to " + message.get(MESSAGE_ID).asText());
+        reply.put(DESTINATION_NUMBER, message.path("source_number").asText(DEFAULT_SOURCE_NUMBER));
+        return reply;
+    }
+
+    private static ObjectNode inbound(ObjectNode message, String idField) {
+        ObjectNode item = JsonNodeFactory.instance.objectNode();
+        item.put(idField, UUID.randomUUID().toString());
+        item.put(MESSAGE_ID, message.get(MESSAGE_ID).asText());
+        item.put("source_number", message.get(DESTINATION_NUMBER).asText());
+        item.put("date_received", ISODateTimeFormat.dateTimeNoMillis().print(new DateTime(DateTimeZone.UTC)));
+        if (message.has(METADATA)) {
+            item.set(METADATA, message.get(METADATA));
+        }
+        return item;
+    }
+}
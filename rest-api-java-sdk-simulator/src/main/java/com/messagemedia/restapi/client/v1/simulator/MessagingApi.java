@@ -0,0 +1,192 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.simulator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.messagemedia.restapi.client.v1.internal.util.JsonUtilities;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The endpoints of the v1 messaging API, on top of a {@link MessageStore}.
+ */
+final class MessagingApi {
+
+    static final int MAX_BATCH_SIZE = 100;
+    static final int PAGE_SIZE = 100;
+
+    private static final String MESSAGES = "/v1/messages";
+    private static final String MESSAGE = MESSAGES + "/{messageId}";
+    private static final String REPLIES = "/v1/replies";
+    private static final String DELIVERY_REPORTS = "/v1/delivery_reports";
+    private static final String CONFIRMED = "/confirmed";
+
+    /**
+     * Handles the requests to one endpoint.
+     */
+    private interface Route {
+        SimulatorResponse handle(String messageId, byte[] body) throws IOException;
+    }
+
+    private final MessageStore store;
+    private final Map<String, Route> routes = new HashMap<String, Route>();
+    private final Set<String> paths = new HashSet<String>();
+
+    MessagingApi(MessageStore store) {
+        this.store = store;
+        route("GET", "/v1/status", new Route() {
+            @Override
+            public SimulatorResponse handle(String messageId, byte[] body) {
+                return SimulatorResponse.empty(200);
+            }
+        });
+        route("POST", MESSAGES, new Route() {
+            @Override
+            public SimulatorResponse handle(String messageId, byte[] body) throws IOException {
+                return sendMessages(body);
+            }
+        });
+        route("GET", MESSAGE, new Route() {
+            @Override
+            public SimulatorResponse handle(String messageId, byte[] body) throws IOException {
+                return message(MessagingApi.this.store.get(messageId));
+            }
+        });
+        route("PUT", MESSAGE, new Route() {
+            @Override
+            public SimulatorResponse handle(String messageId, byte[] body) throws IOException {
+                return cancelMessage(messageId, body);
+            }
+        });
+        inbound(REPLIES, "replies", "reply_ids", store.getReplies());
+        inbound(DELIVERY_REPORTS, "delivery_reports", "delivery_report_ids", store.getDeliveryReports());
+    }
+
+    private void route(String method, String path, Route route) {
+        routes.put(method + " " + path, route);
+        paths.add(path);
+    }
+
+    private void inbound(String path, final String field, final String idsField, final InboundQueue queue) {
+        route("GET", path, new Route() {
+            @Override
+            public SimulatorResponse handle(String messageId, byte[] body) throws IOException {
+                ObjectNode page = JsonNodeFactory.instance.objectNode();
+                page.putArray(field).addAll(queue.oldest(PAGE_SIZE));
+                return SimulatorResponse.of(200, page);
+            }
+        });
+        route("POST", path + CONFIRMED, new Route() {
+            @Override
+            public SimulatorResponse handle(String messageId, byte[] body) throws IOException {
+                queue.confirm(texts(JsonUtilities.bytesToTree(body).get(idsField), idsField));
+                return SimulatorResponse.empty(202);
+            }
+        });
+    }
+
+    /**
+     * @param method the HTTP method
+     * @param path   the path of the request
+     * @param body   the body of the request
+     * @return the response
+     */
+    SimulatorResponse handle(String method, String path, byte[] body) {
+        String messageId = messageId(path);
+        String template = messageId != null ? MESSAGE : path;
+        Route route = routes.get(method + " " + template);
+        if (route == null) {
+            return paths.contains(template) ? SimulatorResponse.error(405, "Method not allowed") : SimulatorResponse.error(404, "Not found");
+        }
+        try {
+            return route.handle(messageId, body);
+        } catch (IllegalArgumentException e) {
+            return SimulatorResponse.error(400, e.getMessage());
+        } catch (IOException e) {
+            return SimulatorResponse.error(400, "Invalid JSON: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the ID if the path is the one of a message, otherwise null
+     */
+    private static String messageId(String path) {
+        if (!path.startsWith(MESSAGES + "/")) {
+            return null;
+        }
+        String messageId = path.substring(MESSAGES.length() + 1);
+        return !messageId.isEmpty() && messageId.indexOf('/') < 0 ? messageId : null;
+    }
+
+    private SimulatorResponse sendMessages(byte[] body) throws IOException {
+        JsonNode messages = JsonUtilities.bytesToTree(body).get("messages");
+        if (messages == null || !messages.isArray() || messages.size() == 0 || messages.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("messages must contain between 1 and " + MAX_BATCH_SIZE + " messages");
+        }
+        for (JsonNode message : messages) {
+            validate(message);
+        }
+        ObjectNode response = JsonNodeFactory.instance.objectNode();
+        ArrayNode accepted = response.putArray("messages");
+        for (JsonNode message : messages) {
+            accepted.add(store.submit((ObjectNode) message));
+        }
+        return SimulatorResponse.of(202, response);
+    }
+
+    private static void validate(JsonNode message) {
+        if (!message.isObject()) {
+            throw new IllegalArgumentException("Every message must be an object");
+        }
+        for (String field : new String[]{"content", "destination_number"}) {
+            if (message.path(field).asText().isEmpty()) {
+                throw new IllegalArgumentException(field + " is required");
+            }
+        }
+    }
+
+    private SimulatorResponse cancelMessage(String messageId, byte[] body) throws IOException {
+        if (!MessageStore.CANCELLED.equalsIgnoreCase(JsonUtilities.bytesToTree(body).path(MessageStore.STATUS).asText())) {
+            throw new IllegalArgumentException("status must be cancelled");
+        }
+        return message(store.cancel(messageId));
+    }
+
+    private static SimulatorResponse message(ObjectNode message) throws IOException {
+        return message != null ? SimulatorResponse.of(200, message) : SimulatorResponse.error(404, "Message not found");
+    }
+
+    private static List<String> texts(JsonNode array, String field) {
+        if (array == null || !array.isArray()) {
+            throw new IllegalArgumentException(field + " must be an array");
+        }
+        List<String> texts = new ArrayList<String>(array.size());
+        for (JsonNode element : array) {
+            texts.add(element.asText());
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.simulator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.messagemedia.restapi.client.v1.internal.util.JsonUtilities;
+
+import java.io.IOException;
+
+/**
+ * The status and the body of a response of the simulator.
+ */
+final class SimulatorResponse {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final int status;
+    private final byte[] body;
+    private final int retryAfter;
+
+    private SimulatorResponse(int status, byte[] body, int retryAfter) {
+        this.status = status;
+        this.body = body;
+        this.retryAfter = retryAfter;
+    }
+
+    static SimulatorResponse of(int status, JsonNode body) throws IOException {
+        return new SimulatorResponse(status, JsonUtilities.objectToBytes(body), 0);
+    }
+
+    static SimulatorResponse empty(int status) {
+        return new SimulatorResponse(status, EMPTY, 0);
+    }
+
+    /**
+     * @param status  the status code
+     * @param message the message of the error, in the format of the API
+     * @return the response
+     */
+    static SimulatorResponse error(int status, String message) {
+        ObjectNode error = JsonNodeFactory.instance.objectNode().put("message", message);
+        try {
+            return of(status, error);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write the error " + message, e);
+        }
+    }
+
+    /**
+     * @return a 429 response, asking the client to retry after a second
+     */
+    static SimulatorResponse throttled() {
+        SimulatorResponse error = error(429, "Too many requests");
+        return new SimulatorResponse(error.status, error.body, 1);
+    }
+
+    int getStatus() {
+        return status;
+    }
+
+    byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * @return the seconds after which the client should retry, or 0 if the response does not ask the client to retry
+     */
+    int getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.simulator;
+
+/**
+ * The settings of an {@link ApiSimulator}. Unset values fall back to a simulator which answers instantly, never fails and accepts any
+ * credentials.
+ * <p/>
+ * Instances of this class are NOT thread-safe. They must not be modified once a simulator has been created from them.
+ */
+public final class SimulatorSettings {
+
+    private int port;
+    private String key;
+    private String secret;
+    private long latency;
+    private long latencyJitter;
+    private double errorRate;
+    private int maxRequestsPerSecond;
+    private long processingDelay = 100;
+    private long deliveryDelay = 1000;
+    private double deliveryFailureRate;
+    private double replyRate;
+    private int maxMessages = 1000000;
+
+    /**
+     * @param port the port to listen on, or 0 for any free port
+     * @return this object for method chaining
+     */
+    public SimulatorSettings port(int port) {
+        this.port = port;
+        return this;
+    }
+
+    /**
+     * Makes the simulator verify the HMAC signature of every request, and answer 401 if it does not match these credentials.
+     *
+     * @param key    the API key
+     * @param secret the secret key
+     * @return this object for method chaining
+     */
+    public SimulatorSettings credentials(String key, String secret) {
+        this.key = key;
+        this.secret = secret;
+        return this;
+    }
+
+    /**
+     * @param latency       the time in milliseconds every request is held before it is answered
+     * @param latencyJitter the maximum time in milliseconds randomly added to the latency
+     * @return this object for method chaining
+     */
+    public SimulatorSettings latency(long latency, long latencyJitter) {
+        this.latency = latency;
+        this.latencyJitter = latencyJitter;
+        return this;
+    }
+
+    /**
+     * @param errorRate the share of requests, between 0 and 1, answered with 500 instead of being processed
+     * @return this object for method chaining
+     */
+    public SimulatorSettings errorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * @param maxRequestsPerSecond the number of requests per second above which requests are answered with 429, or 0 to never throttle
+     * @return this object for method chaining
+     */
+    public SimulatorSettings maxRequestsPerSecond(int maxRequestsPerSecond) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        return this;
+    }
+
+    /**
+     * @param processingDelay the time in milliseconds a message stays queued before it is processed. Defaults to 100 milliseconds.
+     * @return this object for method chaining
+     */
+    public SimulatorSettings processingDelay(long processingDelay) {
+        this.processingDelay = processingDelay;
+        return this;
+    }
+
+    /**
+     * @param deliveryDelay the time in milliseconds between processing a message and its delivery. Defaults to 1 second.
+     * @return this object for method chaining
+     */
+    public SimulatorSettings deliveryDelay(long deliveryDelay) {
+        this.deliveryDelay = deliveryDelay;
+        return this;
+    }
+
+    /**
+     * @param deliveryFailureRate the share of messages, between 0 and 1, which fail to be delivered
+     * @return this object for method chaining
+     */
+    public SimulatorSettings deliveryFailureRate(double deliveryFailureRate) {
+        this.deliveryFailureRate = deliveryFailureRate;
+        return this;
+    }
+
+    /**
+     * @param replyRate the share of delivered messages, between 0 and 1, which the recipient replies to
+     * @return this object for method chaining
+     */
+    public SimulatorSettings replyRate(double replyRate) {
+        this.replyRate = replyRate;
+        return this;
+    }
+
+    /**
+     * @param maxMessages the number of messages kept for status checks. The oldest messages are forgotten beyond it. Defaults to 1,000,000.
+     * @return this object for method chaining
+     */
+    public SimulatorSettings maxMessages(int maxMessages) {
+        this.maxMessages = maxMessages;
+        return this;
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    String getSecret() {
+        return secret;
+    }
+
+    long getLatency() {
+        return latency;
+    }
+
+    long getLatencyJitter() {
+        return latencyJitter;
+    }
+
+    double getErrorRate() {
+        return errorRate;
+    }
+
+    int getMaxRequestsPerSecond() {
+        return maxRequestsPerSecond;
+    }
+
+    long getProcessingDelay() {
+        return processingDelay;
+    }
+
+    long getDeliveryDelay() {
+        return deliveryDelay;
+    }
+
+    double getDeliveryFailureRate() {
+        return deliveryFailureRate;
+    }
+
+    double getReplyRate() {
+        return replyRate;
+    }
+
+    int getMaxMessages() {
+        return maxMessages;
+    }
+}
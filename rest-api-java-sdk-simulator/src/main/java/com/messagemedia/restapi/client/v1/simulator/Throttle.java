@@ -0,0 +1,50 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.simulator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate of requests with a token bucket which holds up to one second worth of requests.
+ */
+final class Throttle {
+
+    private final double permitsPerNano;
+    private final double capacity;
+    private double tokens;
+    private long last = System.nanoTime();
+
+    Throttle(int permitsPerSecond) {
+        this.permitsPerNano = permitsPerSecond / (double) TimeUnit.SECONDS.toNanos(1);
+        this.capacity = permitsPerSecond;
+        this.tokens = permitsPerSecond;
+    }
+
+    /**
+     * @return true if the request may be processed, false if it exceeds the rate
+     */
+    synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - last) * permitsPerNano);
+        last = now;
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+}
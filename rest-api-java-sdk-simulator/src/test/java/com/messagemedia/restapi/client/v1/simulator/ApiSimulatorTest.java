@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.simulator;
+
+import com.messagemedia.restapi.client.v1.RestApiClientBuilder;
+import com.messagemedia.restapi.client.v1.RestApiClientException;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.messaging.RestApiMessagingClient;
+import com.messagemedia.restapi.client.v1.messaging.deliveryreports.DeliveryReport;
+import com.messagemedia.restapi.client.v1.messaging.messages.Message;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageBuilder;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageStatus;
+import com.messagemedia.restapi.client.v1.messaging.replies.Reply;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ApiSimulatorTest {
+
+    private static final String API_KEY = "key";
+    private static final String SECRET_KEY = "secret";
+    private static final long TIMEOUT = 5000;
+
+    private ApiSimulator simulator;
+
+    @After
+    public void tearDown() {
+        simulator.close();
+    }
+
+    @Test
+    public void testMessageLifecycle() throws Exception {
+        RestApiMessagingClient client = start(new SimulatorSettings().processingDelay(10).deliveryDelay(10).replyRate(1));
+
+        Message sent = client.sendMessage(message()).getPayload();
+        assertEquals(MessageStatus.QUEUED, sent.getStatus());
+
+        List<DeliveryReport> deliveryReports = awaitDeliveryReports(client);
+        assertEquals(1, deliveryReports.size());
+        assertEquals(sent.getMessageId(), deliveryReports.get(0).getMessageId());
+        assertEquals(MessageStatus.DELIVERED, deliveryReports.get(0).getStatus());
+        assertEquals(MessageStatus.DELIVERED, client.getMessage(sent.getMessageId()).getPayload().getStatus());
+        assertEquals("same until confirmed", deliveryReports, client.checkDeliveryReports().getPayload().getDeliveryReports());
+
+        client.confirmDeliveryReports(Collections.singletonList(deliveryReports.get(0).getDeliveryReportId()));
+        assertTrue(client.checkDeliveryReports().getPayload().getDeliveryReports().isEmpty());
+
+        List<Reply> replies = client.checkReplies().getPayload().getReplies();
+        assertEquals(1, replies.size());
+        assertEquals(sent.getMessageId(), replies.get(0).getMessageId());
+        client.confirmReplies(Collections.singletonList(replies.get(0).getReplyId()));
+        assertEquals(0, simulator.getPendingReplies());
+    }
+
+    @Test
+    public void testCancelQueuedMessage() throws Exception {
+        RestApiMessagingClient client = start(new SimulatorSettings().processingDelay(TIMEOUT));
+
+        Message sent = client.sendMessage(message()).getPayload();
+
+        assertEquals(MessageStatus.CANCELLED, client.cancelMessage(sent.getMessageId()).getPayload().getStatus());
+        assertEquals(MessageStatus.CANCELLED, client.getMessage(sent.getMessageId()).getPayload().getStatus());
+    }
+
+    @Test
+    public void testRejectsOversizedBatchesAndUnknownMessages() throws Exception {
+        RestApiMessagingClient client = start(new SimulatorSettings());
+        List<Message> messages = new ArrayList<Message>();
+        for (int i = 0; i <= MessagingApi.MAX_BATCH_SIZE; i++) {
+            messages.add(message());
+        }
+
+        assertStatus(400, client, messages);
+        try {
+            client.getMessage("unknown");
+            fail();
+        } catch (RestApiClientException e) {
+            assertEquals(404, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void testVerifiesSignatures() throws Exception {
+        simulator = new ApiSimulator(new SimulatorSettings().credentials(API_KEY, SECRET_KEY));
+        RestApiMessagingClient client = RestApiClientBuilder.newBuilder(API_KEY, "wrong").endpoint(simulator.getEndpoint()).build().messaging();
+
+        assertStatus(401, client, Collections.singletonList(message()));
+    }
+
+    @Test
+    public void testThrottles() throws Exception {
+        RestApiMessagingClient client = start(new SimulatorSettings().maxRequestsPerSecond(1));
+
+        client.sendMessage(message());
+
+        assertStatus(429, client, Collections.singletonList(message()));
+    }
+
+    private RestApiMessagingClient start(SimulatorSettings settings) throws IOException {
+        simulator = new ApiSimulator(settings.credentials(API_KEY, SECRET_KEY));
+        return RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY).endpoint(simulator.getEndpoint()).build().messaging();
+    }
+
+    private static Message message() {
+        return new MessageBuilder().content("Hello, World!").destinationNumber("+61491570156").deliveryReport(true).build();
+    }
+
+    private static void assertStatus(int status, RestApiMessagingClient client, List<Message> messages) throws RestApiException {
+        try {
+            client.sendMessages(messages);
+            fail();
+        } catch (RestApiClientException e) {
+            assertEquals(status, e.getStatusCode());
+        }
+    }
+
+    private static List<DeliveryReport> awaitDeliveryReports(RestApiMessagingClient client) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        List<DeliveryReport> deliveryReports = client.checkDeliveryReports().getPayload().getDeliveryReports();
+        while (deliveryReports.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            deliveryReports = client.checkDeliveryReports().getPayload().getDeliveryReports();
+        }
+        return deliveryReports;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.transport;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpVersion;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.ProtocolException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Sends requests with the HTTP client of the JDK, {@link HttpClient}, on Java 11 or later. The client keeps its own connections, and
+ * speaks HTTP/2 if it is asked to: it then sends the requests of all threads over a single connection per host, negotiated with ALPN over
+ * TLS, or upgraded from HTTP/1.1 over plain HTTP. The JDK client only upgrades a connection with a request without a body, so over plain
+ * HTTP the first request should be one, such as {@link com.messagemedia.restapi.client.v1.RestApiClient#isAlive()}: until then, every
+ * request in flight opens an HTTP/1.1 connection of its own.
+ * <p/>
+ * The SDK signs the request line as HTTP/1.1, and HTTP/2 has no request line the API could check the signature against, so the requests
+ * whose signature covers the request line are always sent over HTTP/1.1, unless the server is known to check HTTP/2 requests against
+ * their HTTP/1.1 request line. The JDK client refuses to send a Date header before Java 12, and the signature covers it, so this
+ * transport needs Java 12 or later to run.
+ * <p/>
+ * The body of a request is pulled from its entity with {@link HttpEntity#getContent()}.
+ */
+public final class JdkHttpTransport implements Transport {
+
+    private static final ProtocolVersion HTTP_2 = new ProtocolVersion("HTTP", 2, 0);
+    // listed in the Authorization header of the HMAC scheme when the signature covers the request line
+    private static final String REQUEST_LINE = "request-line";
+
+    private final HttpClient client;
+    private final Duration socketTimeout;
+    private final boolean signedOverHttp2;
+
+    /**
+     * @param version        the version of HTTP the client sends requests with, the requests signed over their request line are sent
+     *                       over HTTP/1.1 whatever the version
+     * @param connectTimeout the time in milliseconds to wait for a connection to be established, 0 waits forever
+     * @param socketTimeout  the time in milliseconds to wait for the response to a request, 0 waits forever
+     */
+    public JdkHttpTransport(HttpClient.Version version, int connectTimeout, int socketTimeout) {
+        this(connectTimeout > 0 ? HttpClient.newBuilder().version(version).connectTimeout(Duration.ofMillis(connectTimeout)).build()
+                                : HttpClient.newBuilder().version(version).build(), socketTimeout);
+    }
+
+    /**
+     * @param client        the client, which must not follow redirects, as the SDK signs the URI it requested
+     * @param socketTimeout the time in milliseconds to wait for the response to a request, 0 waits forever
+     */
+    public JdkHttpTransport(HttpClient client, int socketTimeout) {
+        this(client, socketTimeout, false);
+    }
+
+    /**
+     * @param client          the client, which must not follow redirects, as the SDK signs the URI it requested
+     * @param socketTimeout   the time in milliseconds to wait for the response to a request, 0 waits forever
+     * @param signedOverHttp2 whether the requests whose signature covers the request line may be sent over HTTP/2, only for a server which
+     *                        checks their signature against the HTTP/1.1 request line
+     */
+    public JdkHttpTransport(HttpClient client, int socketTimeout, boolean signedOverHttp2) {
+        this.client = client;
+        this.socketTimeout = socketTimeout > 0 ? Duration.ofMillis(socketTimeout) : null;
+        this.signedOverHttp2 = signedOverHttp2;
+    }
+
+    @Override
+    public org.apache.http.HttpResponse execute(HttpUriRequest request) throws IOException {
+        HttpRequest.Builder sent = HttpRequest.newBuilder(request.getURI()).method(request.getMethod(), publisher(request));
+        if (socketTimeout != null) {
+            sent.timeout(socketTimeout);
+        }
+        if (!signedOverHttp2 && signsRequestLine(request)) {
+            sent.version(HttpClient.Version.HTTP_1_1);
+        }
+        for (Header header : request.getAllHeaders()) {
+            try {
+                sent.header(header.getName(), header.getValue());
+            } catch (IllegalArgumentException e) {
+                throw new ProtocolException("The JDK client can not send the header " + header.getName() + ": " + e.getMessage());
+            }
+        }
+        try {
+            return read(client.send(sent.build(), HttpResponse.BodyHandlers.ofInputStream()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response");
+        }
+    }
+
+    private static boolean signsRequestLine(HttpUriRequest request) {
+        Header authorization = request.getFirstHeader(HttpHeaders.AUTHORIZATION);
+        return authorization != null && authorization.getValue().contains(REQUEST_LINE);
+    }
+
+    private static HttpRequest.BodyPublisher publisher(HttpUriRequest request) {
+        HttpEntity body = request instanceof HttpEntityEnclosingRequest ? ((HttpEntityEnclosingRequest) request).getEntity() : null;
+        if (body == null) {
+            return HttpRequest.BodyPublishers.noBody();
+        }
+        HttpRequest.BodyPublisher publisher = HttpRequest.BodyPublishers.ofInputStream(new Content(body));
+        long length = body.getContentLength();
+        return length >= 0 ? HttpRequest.BodyPublishers.fromPublisher(publisher, length) : publisher;
+    }
+
+    private static org.apache.http.HttpResponse read(HttpResponse<InputStream> received) {
+        ProtocolVersion version = received.version() == HttpClient.Version.HTTP_2 ? HTTP_2 : HttpVersion.HTTP_1_1;
+        BasicHttpResponse response = new BasicHttpResponse(version, received.statusCode(), null);
+        for (Map.Entry<String, List<String>> header : received.headers().map().entrySet()) {
+            for (String value : header.getValue()) {
+                response.addHeader(header.getKey(), value);
+            }
+        }
+        InputStreamEntity entity = new InputStreamEntity(received.body(), received.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH)
+                                                                                           .orElse(-1));
+        entity.setContentType(received.headers().firstValue(HttpHeaders.CONTENT_TYPE).orElse(null));
+        entity.setContentEncoding(received.headers().firstValue(HttpHeaders.CONTENT_ENCODING).orElse(null));
+        response.setEntity(entity);
+        return response;
+    }
+
+    /**
+     * The body of a request, opened when the client starts sending it.
+     */
+    private static final class Content implements Supplier<InputStream> {
+
+        private final HttpEntity body;
+
+        private Content(HttpEntity body) {
+            this.body = body;
+        }
+
+        @Override
+        public InputStream get() {
+            try {
+                return body.getContent();
+            } catch (IOException e) {
+                // the client fails the request with an IOException of its own
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.transport;
+
+import com.messagemedia.restapi.client.v1.RestApiClient;
+import com.messagemedia.restapi.client.v1.RestApiClientBuilder;
+import com.messagemedia.restapi.client.v1.messaging.RestApiMessagingClient;
+import com.messagemedia.restapi.client.v1.messaging.messages.Message;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageBuilder;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class JdkHttpTransportTest {
+
+    private static final String KEY = "nG8FJvTMvuzZpU8dgB4X";
+    private static final String SECRET = "ETPsdn8eMPyG4u3TTGAeD6p7IbkLjA";
+    private static final String MESSAGE = "{\"content\": \"Hello, World!\", \"destination_number\": \"+61491570156\", \"message_id\": \"test\", "
+                                          + "\"status\": \"queued\"}";
+
+    private HttpServer server;
+    private final List<Headers> headers = new CopyOnWriteArrayList<Headers>();
+    private final List<String> bodies = new CopyOnWriteArrayList<String>();
+    private RestApiMessagingClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                headers.add(exchange.getRequestHeaders());
+                bodies.add(read(exchange.getRequestBody()));
+                byte[] response = ("POST".equals(exchange.getRequestMethod()) ? "{\"messages\": [" + MESSAGE + "]}" : MESSAGE).getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(exchange.getRequestMethod().equals("POST") ? 202 : 200, response.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(response);
+                out.close();
+            }
+        });
+        server.start();
+        client = RestApiClientBuilder.newBuilder(KEY, SECRET)
+                                     .endpoint("http://127.0.0.1:" + server.getAddress().getPort() + "/")
+                                     .transport(new JdkHttpTransport(HttpClient.Version.HTTP_1_1, 1000, 1000))
+                                     .build()
+                                     .messaging();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toString("UTF-8");
+    }
+
+    @Test
+    public void testSignedRequestsAreSentWithTheirBody() throws Exception {
+        List<Message> messages = Collections.singletonList(new MessageBuilder().content("Hello, World!").destinationNumber("+61491570156").build());
+
+        assertEquals("test", client.sendMessages(messages).getPayload().getMessages().get(0).getMessageId());
+
+        assertNotNull(headers.get(0).getFirst("Date"));
+        assertTrue(headers.get(0).getFirst("Authorization").startsWith("hmac username=\"" + KEY + "\""));
+        assertTrue(bodies.get(0).contains("\"destination_number\":\"+61491570156\""));
+    }
+
+    @Test
+    public void testRequestsWithoutBodyAreSent() throws Exception {
+        assertEquals("test", client.getMessage("test").getPayload().getMessageId());
+        assertEquals("", bodies.get(0));
+    }
+
+    /**
+     * Starts a server which speaks HTTP/1.1 and HTTP/2 in clear text, and records the request line and the headers of every request.
+     */
+    private Server http2Server(final List<String> requestLines, final List<String> dates, final List<String> authorizations) throws Exception {
+        Server http2Server = new Server();
+        HttpConfiguration config = new HttpConfiguration();
+        ServerConnector connector = new ServerConnector(http2Server, new HttpConnectionFactory(config), new HTTP2CServerConnectionFactory(config));
+        connector.setHost("127.0.0.1");
+        http2Server.addConnector(connector);
+        http2Server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
+                String query = request.getQueryString();
+                requestLines.add(request.getMethod() + " " + request.getRequestURI() + (query != null ? "?" + query : "") + " "
+                                 + request.getProtocol());
+                dates.add(request.getHeader("Date"));
+                authorizations.add(request.getHeader("Authorization"));
+                response.setContentType("application/json");
+                response.getOutputStream().write(MESSAGE.getBytes("UTF-8"));
+                baseRequest.setHandled(true);
+            }
+        });
+        http2Server.start();
+        return http2Server;
+    }
+
+    private static String endpoint(Server server) {
+        return "http://127.0.0.1:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort() + "/";
+    }
+
+    private static String sign(String data) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA1"));
+        return Base64.getEncoder().encodeToString(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testSignedRequestsAreSentOverHttp11WhenHttp2IsAsked() throws Exception {
+        List<String> requestLines = new CopyOnWriteArrayList<String>();
+        List<String> dates = new CopyOnWriteArrayList<String>();
+        List<String> authorizations = new CopyOnWriteArrayList<String>();
+        Server http2Server = http2Server(requestLines, dates, authorizations);
+        try {
+            RestApiClient http2Client = RestApiClientBuilder.newBuilder(KEY, SECRET)
+                                                            .endpoint(endpoint(http2Server))
+                                                            .transport(new JdkHttpTransport(HttpClient.Version.HTTP_2, 1000, 1000))
+                                                            .build();
+
+            assertTrue(http2Client.isAlive());
+            assertEquals("test", http2Client.messaging().getMessage("test").getPayload().getMessageId());
+
+            // the signature covers the request line the server received
+            assertEquals(2, requestLines.size());
+            for (int i = 0; i < requestLines.size(); i++) {
+                assertTrue(requestLines.get(i).endsWith(" HTTP/1.1"));
+                assertEquals("hmac username=\"" + KEY + "\", algorithm=\"hmac-sha1\", headers=\"Date request-line\", signature=\""
+                             + sign("Date: " + dates.get(i) + "\n" + requestLines.get(i)) + "\"", authorizations.get(i));
+            }
+        } finally {
+            http2Server.stop();
+        }
+    }
+
+    @Test
+    public void testRequestsAreSentOverHttp2OnceTheConnectionIsUpgraded() throws Exception {
+        List<String> requestLines = new CopyOnWriteArrayList<String>();
+        Server http2Server = http2Server(requestLines, new CopyOnWriteArrayList<String>(), new CopyOnWriteArrayList<String>());
+        try {
+            // a server which checks the signature of HTTP/2 requests against their HTTP/1.1 request line
+            RestApiClient http2Client = RestApiClientBuilder.newBuilder(KEY, SECRET)
+                                                            .endpoint(endpoint(http2Server))
+                                                            .transport(new JdkHttpTransport(HttpClient.newBuilder()
+                                                                                                      .version(HttpClient.Version.HTTP_2)
+                                                                                                      .build(), 1000, true))
+                                                            .build();
+
+            assertTrue(http2Client.isAlive());
+            assertEquals("test", http2Client.messaging().getMessage("test").getPayload().getMessageId());
+
+            // the first request upgrades the connection
+            assertTrue(requestLines.get(0).endsWith(" HTTP/1.1"));
+            assertTrue(requestLines.get(1).endsWith(" HTTP/2.0"));
+        } finally {
+            http2Server.stop();
+        }
+    }
+}
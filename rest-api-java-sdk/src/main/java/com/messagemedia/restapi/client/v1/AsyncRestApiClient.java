@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1;
+
+import com.messagemedia.restapi.client.v1.messaging.AsyncRestApiMessagingClient;
+import com.messagemedia.restapi.client.v1.metrics.ConnectionPoolStats;
+
+import java.io.Closeable;
+
+/**
+ * MessageMedia REST API Client with a non-blocking transport.
+ * <p/>
+ * Calls never block the caller. They return a {@link RestApiFuture} instead, which completes once the response arrives. A small number of
+ * I/O threads drives all concurrent calls.
+ * <p/>
+ * Instances of this client can be created using {@link RestApiClientBuilder#buildAsync()}. They hold I/O threads and connections and must be
+ * closed once they are not needed anymore.
+ */
+public interface AsyncRestApiClient extends Closeable {
+
+    /**
+     * Checks if the service is up and running and can be reached by the client.
+     *
+     * @return a future which completes with <code>true</code> if alive, <code>false</code> otherwise.
+     */
+    RestApiFuture<Boolean> isAlive();
+
+    /**
+     * Provides access to the messaging features provided by the Rest API.
+     *
+     * @return A client that provides access to the messaging features
+     */
+    AsyncRestApiMessagingClient messaging();
+
+    /**
+     * Takes a snapshot of the connection pool, to size it from the load it actually sees.
+     *
+     * @return the statistics of the pool
+     */
+    ConnectionPoolStats getConnectionPoolStats();
+
+    /**
+     * Shuts down the I/O threads and closes all connections. Pending calls fail.
+     */
+    void close();
+
+}
@@ -21,7 +21,8 @@ import java.io.Closeable;
 /**
  * Certain edge cases make it necessary to execute a REST API call under a context. Normally you should not need to use it.
  * <p/>
- * A Context is always bound to the thread that created it.
+ * A Context built with {@link ContextBuilder#build()} is bound to the thread that created it. A context built with
+ * {@link ContextBuilder#buildDetached()} is passed to the calls explicitly instead, see {@link ContextAwareRestApiClient#messaging(Context)}.
  */
 public interface Context extends Closeable {
 
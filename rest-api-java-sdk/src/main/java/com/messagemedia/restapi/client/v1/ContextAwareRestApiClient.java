@@ -16,6 +16,8 @@
 
 package com.messagemedia.restapi.client.v1;
 
+import com.messagemedia.restapi.client.v1.messaging.RestApiMessagingClient;
+
 /**
  * This interface provides support for making requests under a specific context. Normally you should not need to use it.
  */
@@ -25,4 +27,15 @@ public interface ContextAwareRestApiClient extends RestApiClient {
      * @return a ContextBuilder which builds a context for this instance.
      */
     ContextBuilder createContextBuilder();
+
+    /**
+     * Gets a messaging client which makes all its calls in the given context, whatever context is set on the calling thread. This lets one
+     * client serve any number of sub-accounts or users from any thread: the messaging clients of all contexts share the connections, the
+     * limits and the worker threads of this client, and are cheap to create. With
+     * {@link RestApiClientBuilder#fairScheduling(boolean)}, a context sending many requests can not starve the others.
+     *
+     * @param context the context, usually built with {@link ContextBuilder#buildDetached()}
+     * @return the messaging client
+     */
+    RestApiMessagingClient messaging(Context context);
 }
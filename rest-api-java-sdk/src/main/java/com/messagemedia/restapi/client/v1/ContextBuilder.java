@@ -43,7 +43,18 @@ public interface ContextBuilder {
      * This methods builds and sets the context. This context needs to be closed by the caller once it should not be used anymore.
      *
      * @return The new context
+     * @throws IllegalStateException if a context is set on the current thread already, or if the client was built for virtual threads, see
+     *                               {@link RestApiClientBuilder#virtualThreads(boolean)}
      */
     Context build();
 
+    /**
+     * Builds a context without setting it on the current thread. It only applies to the clients it is passed to, see
+     * {@link ContextAwareRestApiClient#messaging(Context)}, and can be used by any number of threads at the same time. Closing it has no
+     * effect.
+     *
+     * @return The new context
+     */
+    Context buildDetached();
+
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1;
+
+/**
+ * The classes of operations which can be given their own rate limit, see
+ * {@link RestApiClientBuilder#rateLimit(OperationClass, double)}.
+ */
+public enum OperationClass {
+
+    /**
+     * Sending and cancelling messages.
+     */
+    SEND,
+
+    /**
+     * Checking and confirming replies and delivery reports.
+     */
+    POLL,
+
+    /**
+     * Looking up the status of a message, and checking whether the API is alive.
+     */
+    STATUS
+}
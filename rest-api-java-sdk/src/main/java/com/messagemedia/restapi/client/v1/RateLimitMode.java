@@ -0,0 +1,35 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1;
+
+/**
+ * What happens to a request which exceeds the rate limit of its {@link OperationClass}.
+ */
+public enum RateLimitMode {
+
+    /**
+     * The request waits until there is capacity for it. The blocking client blocks the caller, the asynchronous client returns at once and
+     * sends the request later.
+     */
+    WAIT,
+
+    /**
+     * The request is not sent. The blocking client throws a {@link RestApiThrottledException}, the asynchronous client returns a future which
+     * has failed with it.
+     */
+    FAIL_FAST
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1;
+
+/**
+ * Receives the outcome of a {@link RestApiFuture}.
+ *
+ * @param <T> the type of the result
+ */
+public interface RestApiCallback<T> {
+
+    /**
+     * Called when the call completed successfully.
+     *
+     * @param result the result of the call
+     */
+    void completed(T result);
+
+    /**
+     * Called when the call failed or was cancelled.
+     *
+     * @param exception the reason of the failure
+     */
+    void failed(RestApiException exception);
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1;
+
+/**
+ * An exception thrown by the MessageMedia REST API SDK.
+ * <p/>
+ * This exception means that the request was not sent, because too many of the recent requests to the same endpoint failed or were slow.
+ * The circuit of the endpoint stays open until a probe finds the API alive again, see
+ * {@link RestApiClientBuilder#circuitBreaker(boolean)}.
+ * <p/>
+ */
+public class RestApiCircuitOpenException extends RestApiException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String endpoint;
+    private final long retryAfter;
+
+    public RestApiCircuitOpenException(String endpoint, long retryAfter) {
+        super("The circuit of " + endpoint + " is open, the request has not been sent");
+        this.endpoint = endpoint;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return the path template of the endpoint, for example <code>/v1/messages/{messageId}</code>
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return the time in milliseconds until the circuit is probed again, 0 if a probe is under way
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
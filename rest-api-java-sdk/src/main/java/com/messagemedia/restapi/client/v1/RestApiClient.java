@@ -16,6 +16,7 @@
 package com.messagemedia.restapi.client.v1;
 
 import com.messagemedia.restapi.client.v1.messaging.RestApiMessagingClient;
+import com.messagemedia.restapi.client.v1.metrics.ConnectionPoolStats;
 
 /**
  * MessageMedia REST API Client
@@ -40,4 +41,12 @@ public interface RestApiClient {
      */
     RestApiMessagingClient messaging();
 
+    /**
+     * Takes a snapshot of the connection pool, to size it from the load it actually sees.
+     *
+     * @return the statistics of the pool, or null if the client sends its requests through a transport set with
+     * {@link RestApiClientBuilder#transport(com.messagemedia.restapi.client.v1.transport.Transport)}
+     */
+    ConnectionPoolStats getConnectionPoolStats();
+
 }
@@ -15,8 +15,16 @@
  */
 package com.messagemedia.restapi.client.v1;
 
+import com.messagemedia.restapi.client.v1.internal.AsyncRestApiClientImpl;
+import com.messagemedia.restapi.client.v1.internal.ClientSettings;
 import com.messagemedia.restapi.client.v1.internal.ContextAwareRestApiClientImpl;
 import com.messagemedia.restapi.client.v1.internal.RestApiClientImpl;
+import com.messagemedia.restapi.client.v1.metrics.RestApiMetricsListener;
+import com.messagemedia.restapi.client.v1.transport.Transport;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.Map;
 
 /**
  * Builder class to create {@link RestApiClient}
@@ -31,6 +39,40 @@ public final class RestApiClientBuilder {
     private Integer maxConnections;
     private Integer socketTimeout;
     private Integer connectTimeout;
+    private Integer ioThreads;
+    private Integer bulkChunkSize;
+    private Integer bulkMaxInFlight;
+    private Integer sendLinger;
+    private Integer maxSendBatchSize;
+    private Integer pollInterval;
+    private Integer maxPollInterval;
+    private RestApiMetricsListener metricsListener;
+    private final Map<OperationClass, Double> rateLimits = new EnumMap<OperationClass, Double>(OperationClass.class);
+    private RateLimitMode rateLimitMode;
+    private Integer maxRetries;
+    private boolean retrySends;
+    private Integer retryBackoff;
+    private Integer maxRetryBackoff;
+    private Double retryBudget;
+    private Double hedgePercentile;
+    private Double hedgeBudget;
+    private boolean circuitBreaker;
+    private Integer circuitBreakerFailureRate;
+    private Integer circuitBreakerSlowCall;
+    private Integer circuitBreakerOpenTime;
+    private File outbox;
+    private Integer deduplicationWindow;
+    private Integer deduplicationCapacity;
+    private boolean deduplicationBloomFilter;
+    private Integer statusCacheSize;
+    private Integer statusCacheTtl;
+    private Transport transport;
+    private boolean virtualThreads;
+    private boolean fairScheduling;
+    private Integer compressionThreshold;
+    private Integer keepAlive;
+    private Integer validateAfterInactivity;
+    private Integer evictionInterval;
     private AuthorizationScheme authorizationScheme = AuthorizationScheme.HMAC_MM_V2;
 
     /**
@@ -102,6 +144,441 @@ public final class RestApiClientBuilder {
         return this;
     }
 
+    /**
+     * Sets the number of I/O threads of the client created by {@link #buildAsync()}. Defaults to the number of available processors.
+     *
+     * @param ioThreads the number of I/O threads
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder ioThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of messages sent with a single request by the bulk send operations. Defaults to 100.
+     *
+     * @param bulkChunkSize the maximum number of messages per request
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder bulkChunkSize(int bulkChunkSize) {
+        this.bulkChunkSize = bulkChunkSize;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of concurrent requests of the bulk send operations. Defaults to 8.
+     *
+     * @param bulkMaxInFlight the maximum number of concurrent requests
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder bulkMaxInFlight(int bulkMaxInFlight) {
+        this.bulkMaxInFlight = bulkMaxInFlight;
+        return this;
+    }
+
+    /**
+     * Enables coalescing of single messages: every message passed to <code>sendMessage</code> waits for at most this time, so that messages
+     * sent at about the same time with the same properties share one request. Disabled by default.
+     *
+     * @param sendLinger the maximum time in milliseconds a message is held back, or 0 to send every message with its own request
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder sendLinger(int sendLinger) {
+        this.sendLinger = sendLinger;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of single messages coalesced into one request, see {@link #sendLinger(int)}. Defaults to 100.
+     *
+     * @param maxSendBatchSize the maximum number of messages per request
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder maxSendBatchSize(int maxSendBatchSize) {
+        this.maxSendBatchSize = maxSendBatchSize;
+        return this;
+    }
+
+    /**
+     * Sets the time the pollers of replies and delivery reports wait before checking again, once a check returned everything there was.
+     * Defaults to 1 second.
+     *
+     * @param pollInterval the minimum time in milliseconds between two checks which do not return a backlog
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     * @see com.messagemedia.restapi.client.v1.messaging.InboundPoller
+     */
+    public RestApiClientBuilder pollInterval(int pollInterval) {
+        this.pollInterval = pollInterval;
+        return this;
+    }
+
+    /**
+     * Sets the maximum time the pollers of replies and delivery reports wait between two checks. The wait doubles with every check which
+     * returns nothing, up to this time. Defaults to 30 seconds.
+     *
+     * @param maxPollInterval the maximum time in milliseconds between two checks
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     * @see com.messagemedia.restapi.client.v1.messaging.InboundPoller
+     */
+    public RestApiClientBuilder maxPollInterval(int maxPollInterval) {
+        this.maxPollInterval = maxPollInterval;
+        return this;
+    }
+
+    /**
+     * Sets the listener which receives the measurements of every request: latency, sizes, status code, and the time spent serializing,
+     * signing and waiting for a connection. Use {@link com.messagemedia.restapi.client.v1.metrics.HistogramMetricsListener} to aggregate
+     * them per endpoint. No measurements are taken by default.
+     *
+     * @param metricsListener the listener, called from the threads which send the requests
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder metricsListener(RestApiMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+        return this;
+    }
+
+    /**
+     * Limits the rate of the requests of an operation class on the client side. The limit tightens by itself when the server answers with
+     * HTTP status code 429, a <code>Retry-After</code> header or rate limit headers saying that nothing is left, and recovers gradually
+     * afterwards. No operation class is limited by default.
+     *
+     * @param operationClass    the operation class
+     * @param requestsPerSecond the maximum number of requests per second, a short burst of up to one second worth of requests is allowed
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     * @see #rateLimitMode(RateLimitMode)
+     */
+    public RestApiClientBuilder rateLimit(OperationClass operationClass, double requestsPerSecond) {
+        if (!(requestsPerSecond > 0)) {
+            throw new IllegalArgumentException("The rate limit must be positive, got " + requestsPerSecond);
+        }
+        this.rateLimits.put(operationClass, requestsPerSecond);
+        return this;
+    }
+
+    /**
+     * Sets what happens to a request which exceeds the rate limit of its operation class. Defaults to {@link RateLimitMode#WAIT}.
+     *
+     * @param rateLimitMode the mode
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     * @see #rateLimit(OperationClass, double)
+     */
+    public RestApiClientBuilder rateLimitMode(RateLimitMode rateLimitMode) {
+        this.rateLimitMode = rateLimitMode;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of retries of a request which failed transiently: the connection broke, or the server answered with HTTP
+     * status code 429, 502, 503 or 504. Only idempotent requests are retried, which are all but sends unless {@link #retrySends(boolean)} is
+     * set. Defaults to 2.
+     *
+     * @param maxRetries the maximum number of retries per request, 0 to disable retries
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder maxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * Retries sends which failed transiently as well. A send whose response got lost may then be delivered twice. Disabled by default.
+     *
+     * @param retrySends whether sends are retried
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder retrySends(boolean retrySends) {
+        this.retrySends = retrySends;
+        return this;
+    }
+
+    /**
+     * Sets the wait before retries. The wait doubles with every retry up to the maximum, and is picked at random between 0 and that value, so
+     * that clients which failed together do not retry together. A <code>Retry-After</code> header of the server sets the minimum wait.
+     * The asynchronous client waits on a timer, without holding a thread per retry. Defaults to 100 milliseconds and 10 seconds.
+     *
+     * @param retryBackoff    the wait in milliseconds before the first retry
+     * @param maxRetryBackoff the maximum wait in milliseconds before a retry
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder retryBackoff(int retryBackoff, int maxRetryBackoff) {
+        this.retryBackoff = retryBackoff;
+        this.maxRetryBackoff = maxRetryBackoff;
+        return this;
+    }
+
+    /**
+     * Sets the number of retries the client may make per request, so that retries do not multiply the load on a failing server. Once the
+     * budget is used up, failures are passed on without retrying. Defaults to 0.1, a retry per 10 requests.
+     *
+     * @param retryBudget the number of retries allowed per request
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder retryBudget(double retryBudget) {
+        this.retryBudget = retryBudget;
+        return this;
+    }
+
+    /**
+     * Hedges the status lookups of the client created by {@link #buildAsync()}: if a lookup has not been answered within the given
+     * percentile of the latency of the recent lookups, the same request is sent a second time, on another pooled connection. The first
+     * response is used, the other request is cancelled. This cuts the tail latency caused by a few slow connections. Disabled by default.
+     *
+     * @param hedgePercentile the percentile after which a lookup is hedged, between 0 and 100, for example 95
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     * @see #hedgeBudget(double)
+     */
+    public RestApiClientBuilder hedgeStatusLookups(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+        return this;
+    }
+
+    /**
+     * Sets the number of hedged requests allowed per status lookup, see {@link #hedgeStatusLookups(double)}. The cap keeps hedging from
+     * doubling the load on a server which is slow for everyone. Defaults to 0.05, a hedge per 20 lookups.
+     *
+     * @param hedgeBudget the number of hedged requests allowed per lookup, below 1
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder hedgeBudget(double hedgeBudget) {
+        this.hedgeBudget = hedgeBudget;
+        return this;
+    }
+
+    /**
+     * Enables a circuit breaker per endpoint. Once too many of the recent requests to an endpoint failed or were slow, further requests to
+     * it fail at once with a {@link RestApiCircuitOpenException}, instead of tying up threads until they time out. When the open time is
+     * over, the next request checks whether the API is alive, like {@link RestApiClient#isAlive()} does, and is sent as a trial if it is.
+     * A successful trial closes the circuit again. Disabled by default.
+     *
+     * @param circuitBreaker whether requests are guarded by circuit breakers
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder circuitBreaker(boolean circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+        return this;
+    }
+
+    /**
+     * Sets the share of failed or slow requests to an endpoint which opens its circuit, see {@link #circuitBreaker(boolean)}. The share is
+     * taken over the last 10 seconds, once they hold at least 20 requests. A request fails if its connection failed or the server answered
+     * with a 5xx HTTP status code. Defaults to 50 percent.
+     *
+     * @param failureRate the share in percent
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder circuitBreakerFailureRate(int failureRate) {
+        this.circuitBreakerFailureRate = failureRate;
+        return this;
+    }
+
+    /**
+     * Sets the latency from which a request counts as slow for the circuit breakers, see {@link #circuitBreaker(boolean)}. Defaults to 10
+     * seconds.
+     *
+     * @param slowCall the latency in milliseconds
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder circuitBreakerSlowCall(int slowCall) {
+        this.circuitBreakerSlowCall = slowCall;
+        return this;
+    }
+
+    /**
+     * Sets the time a circuit stays open before the API is probed again, see {@link #circuitBreaker(boolean)}. Defaults to 10 seconds.
+     *
+     * @param openTime the time in milliseconds
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder circuitBreakerOpenTime(int openTime) {
+        this.circuitBreakerOpenTime = openTime;
+        return this;
+    }
+
+    /**
+     * Keeps the message lists being sent in a journal in the given directory, so that they are not lost if the process dies before the API
+     * has answered. A message list is written to the journal before it is sent, and marked as sent once the API has accepted it, or refused
+     * it with a client error other than 429. After a 429, a server error or a failure without any answer, the caller still gets the
+     * exception, but the journal owns the message list from then on: the client sends it again in the background, with a backoff set by
+     * {@link #retryBackoff(int, int)}, until the API accepts or refuses it, so the caller must not send it again. The message lists still
+     * pending when the process dies or the client is closed are sent again when a client is next created with the same directory. Messages
+     * are sent at least once: they may be sent twice if the API received them but its answer was lost.
+     * <p/>
+     * The directory is created if needed, and can only be used by one client at a time. Disabled by default.
+     *
+     * @param directory the directory of the journal
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder outbox(File directory) {
+        this.outbox = directory;
+        return this;
+    }
+
+    /**
+     * Stops the pollers from handing the same reply or delivery report to their handler twice. The API returns them again until they have
+     * been confirmed, so retries and overlapping pollers see some of them more than once. The pollers of a client remember the IDs they
+     * handled for up to the given window, and only confirm the repeats. Disabled by default.
+     *
+     * @param window the time in milliseconds the IDs are remembered for at most, they are remembered for at least half of it
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder deduplicationWindow(int window) {
+        this.deduplicationWindow = window;
+        return this;
+    }
+
+    /**
+     * Sets the number of IDs remembered within half a deduplication window, see {@link #deduplicationWindow(int)}. If more replies or
+     * delivery reports are handled in that time, the oldest IDs are forgotten early. The IDs of each kind of items take at most 86 bytes per
+     * unit of capacity, about 4 MB with the default of 50000.
+     *
+     * @param capacity the number of IDs
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder deduplicationCapacity(int capacity) {
+        this.deduplicationCapacity = capacity;
+        return this;
+    }
+
+    /**
+     * Puts a Bloom filter in front of the remembered IDs, see {@link #deduplicationWindow(int)}, which answers most lookups of new IDs from
+     * memory a sixteenth of the size. Worth it when the capacity is large. Disabled by default.
+     *
+     * @param bloomFilter whether the IDs are fronted by a Bloom filter
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder deduplicationBloomFilter(boolean bloomFilter) {
+        this.deduplicationBloomFilter = bloomFilter;
+        return this;
+    }
+
+    /**
+     * Caches the latest known state of the messages sent recently, so that most status lookups do not have to call the API. Sent messages
+     * are cached from the response to the send, and every message returned by a lookup or a cancellation is cached as well. The delivery
+     * reports which the client checks for update the status of the cached messages. Disabled by default.
+     *
+     * @param size the number of messages cached, the least recently used are evicted first
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder statusCacheSize(int size) {
+        this.statusCacheSize = size;
+        return this;
+    }
+
+    /**
+     * Sets the time a cached message is served after it was last updated, see {@link #statusCacheSize(int)}. Messages which are delivered,
+     * failed, expired, cancelled or rejected do not change anymore and are served until they are evicted. Defaults to 10 seconds.
+     *
+     * @param ttl the time in milliseconds
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder statusCacheTtl(int ttl) {
+        this.statusCacheTtl = ttl;
+        return this;
+    }
+
+    /**
+     * Sets the transport which sends the requests of the blocking clients, see {@link Transport}. The SDK ships one for the Apache client,
+     * one for the {@link java.net.HttpURLConnection} of the JDK and an in-memory one for tests, see the {@code transport} package. The
+     * {@code rest-api-java-sdk-transport-jdk} module adds one for the HTTP client of Java 11, which can speak HTTP/2. The connection
+     * settings of this builder only apply to the default transport, an Apache client with a pool of {@link #maxConnections(Integer)}
+     * connections. The asynchronous client always uses its own Apache client.
+     *
+     * @param transport the transport
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder transport(Transport transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    /**
+     * Prepares the blocking client for being called from virtual threads which the application starts, on Java 21 or later. The calls of
+     * the blocking client still run on the thread of the caller, the client does not move them to virtual threads: an application which
+     * starts one virtual thread per call can run as many calls at the same time as it has threads, and the client sends them as fast as its
+     * connections allow.
+     * <p/>
+     * The client keeps nothing per thread in this mode, since threads which are created for a single call would otherwise build their own
+     * signer each. Contexts are not set on threads either: they are passed per call with
+     * {@link ContextAwareRestApiClient#messaging(Context)}, and {@link ContextBuilder#build()} fails. Only the bulk sends, which the client
+     * runs on threads of its own, run on virtual threads, as long as the JVM supports them. Disabled by default.
+     *
+     * @param virtualThreads whether the client is prepared for virtual threads
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder virtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    /**
+     * Shares the connections of the blocking client fairly between the contexts its calls are made in, see
+     * {@link ContextAwareRestApiClient#messaging(Context)}. Once all connections are in use, the requests wait per context, and every
+     * connection which becomes free goes to the next context in turn. A context with thousands of requests waiting thus delays the requests
+     * of the others by one request per context at most, instead of by all of its own. Calls made without a context count as one more
+     * context. A connection becomes free once the response it received has been read. Fair scheduling only applies to the blocking client,
+     * the requests of the asynchronous client are not scheduled. Disabled by default.
+     *
+     * @param fairScheduling whether the connections are shared fairly between contexts
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder fairScheduling(boolean fairScheduling) {
+        this.fairScheduling = fairScheduling;
+        return this;
+    }
+
+    /**
+     * Compresses the bodies of requests larger than the given size with gzip. Bodies are compressed before they are signed, so the signature
+     * and Content-MD5 cover the bytes actually sent. Responses compressed by the API are always decompressed while they are read. Disabled
+     * by default.
+     *
+     * @param bytes the size in bytes above which a request body is compressed, 0 to compress all bodies
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder compressionThreshold(int bytes) {
+        this.compressionThreshold = bytes;
+        return this;
+    }
+
+    /**
+     * Sets the longest time an idle connection is kept for reuse. A server announcing a shorter timeout in its Keep-Alive header is
+     * followed. Defaults to 30 seconds.
+     *
+     * @param millis the longest time in milliseconds an idle connection is kept, must be positive
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder keepAlive(int millis) {
+        this.keepAlive = millis;
+        return this;
+    }
+
+    /**
+     * Sets the time after which an idle connection of the blocking client is checked before it is reused. A connection which the server
+     * closed meanwhile is replaced by a new one, instead of failing the request with a NoHttpResponseException. Connections reused sooner
+     * are not checked, which saves a blocking read per request. By default every reused connection is checked; a delay of a few seconds
+     * suits servers which keep idle connections open for longer than that.
+     *
+     * @param millis the idle time in milliseconds after which a connection is checked, 0 to check every reused connection, or a negative
+     *               value to never check connections
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder validateAfterInactivity(int millis) {
+        this.validateAfterInactivity = millis;
+        return this;
+    }
+
+    /**
+     * Sets how often the idle connections whose keep-alive expired are closed in the background. Defaults to 5 seconds.
+     *
+     * @param millis the time in milliseconds between two evictions, or 0 to close expired connections only when the pool comes across them
+     * @return A RestApiClientBuilder object which can be used for method chaining.
+     */
+    public RestApiClientBuilder evictionInterval(int millis) {
+        this.evictionInterval = millis;
+        return this;
+    }
+
     /**
      * Sets an AuthorizationScheme. Don't use it unless you are told so.
      *
@@ -123,7 +600,57 @@ public final class RestApiClientBuilder {
     }
 
     private RestApiClientImpl buildImpl() {
-        return new RestApiClientImpl(endpoint, apiKey, secretKey, maxConnections, connectTimeout, socketTimeout, authorizationScheme);
+        return new RestApiClientImpl(settings());
+    }
+
+    private ClientSettings settings() {
+        return new ClientSettings(endpoint, apiKey, secretKey).maxConnections(maxConnections)
+                                                              .connectTimeout(connectTimeout)
+                                                              .socketTimeout(socketTimeout)
+                                                              .ioThreads(ioThreads)
+                                                              .bulkChunkSize(bulkChunkSize)
+                                                              .bulkMaxInFlight(bulkMaxInFlight)
+                                                              .sendLinger(sendLinger)
+                                                              .maxSendBatchSize(maxSendBatchSize)
+                                                              .pollInterval(pollInterval)
+                                                              .maxPollInterval(maxPollInterval)
+                                                              .metricsListener(metricsListener)
+                                                              .rateLimits(rateLimits)
+                                                              .rateLimitMode(rateLimitMode)
+                                                              .maxRetries(maxRetries)
+                                                              .retrySends(retrySends)
+                                                              .retryBackoff(retryBackoff)
+                                                              .maxRetryBackoff(maxRetryBackoff)
+                                                              .retryBudget(retryBudget)
+                                                              .hedgePercentile(hedgePercentile)
+                                                              .hedgeBudget(hedgeBudget)
+                                                              .circuitBreaker(circuitBreaker)
+                                                              .circuitBreakerFailureRate(circuitBreakerFailureRate)
+                                                              .circuitBreakerSlowCall(circuitBreakerSlowCall)
+                                                              .circuitBreakerOpenTime(circuitBreakerOpenTime)
+                                                              .outbox(outbox)
+                                                              .deduplicationWindow(deduplicationWindow)
+                                                              .deduplicationCapacity(deduplicationCapacity)
+                                                              .deduplicationBloomFilter(deduplicationBloomFilter)
+                                                              .statusCacheSize(statusCacheSize)
+                                                              .statusCacheTtl(statusCacheTtl)
+                                                              .transport(transport)
+                                                              .virtualThreads(virtualThreads)
+                                                              .fairScheduling(fairScheduling)
+                                                              .compressionThreshold(compressionThreshold)
+                                                              .keepAlive(keepAlive)
+                                                              .validateAfterInactivity(validateAfterInactivity)
+                                                              .evictionInterval(evictionInterval)
+                                                              .authorizationScheme(authorizationScheme);
+    }
+
+    /**
+     * Builds the {@link AsyncRestApiClient}, whose calls never block the caller. The client must be closed once it is not needed anymore.
+     *
+     * @return the {@link AsyncRestApiClient} ready to use
+     */
+    public AsyncRestApiClient buildAsync() {
+        return new AsyncRestApiClientImpl(settings());
     }
 
     /**
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1;
+
+import java.util.concurrent.Future;
+
+/**
+ * The pending result of an asynchronous REST API call.
+ * <p/>
+ * If the call fails, {@link #get()} throws an {@link java.util.concurrent.ExecutionException} whose cause is the {@link RestApiException}
+ * that the equivalent blocking call would have thrown.
+ *
+ * @param <T> the type of the result
+ */
+public interface RestApiFuture<T> extends Future<T> {
+
+    /**
+     * Registers a callback which is notified once this future completes. If the future has already completed, the callback is notified
+     * immediately on the calling thread.
+     * <p/>
+     * Callbacks are usually run on one of the I/O threads of the client. They must return quickly and must never block.
+     *
+     * @param callback the callback to notify
+     */
+    void addCallback(RestApiCallback<? super T> callback);
+
+}
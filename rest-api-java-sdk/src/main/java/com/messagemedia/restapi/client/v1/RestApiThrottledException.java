@@ -0,0 +1,52 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An exception thrown by the MessageMedia REST API SDK.
+ * <p/>
+ * This exception means that too many requests have been made. Either the server rejected the request with HTTP status code 429, or the
+ * request exceeded the rate limit of the client and was not sent at all, see {@link RateLimitMode#FAIL_FAST}.
+ * <p/>
+ */
+public class RestApiThrottledException extends RestApiClientException {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int TOO_MANY_REQUESTS = 429;
+
+    private final long retryAfter;
+
+    public RestApiThrottledException(String message, long retryAfter) {
+        this(message, Collections.singletonList("HTTP status code " + TOO_MANY_REQUESTS), retryAfter);
+    }
+
+    public RestApiThrottledException(String message, List<String> details, long retryAfter) {
+        super(message, TOO_MANY_REQUESTS, details);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return the time in milliseconds to wait before trying again, or -1 if it is unknown
+     */
+    public long getRetryAfter() {
+        return retryAfter;
+    }
+}
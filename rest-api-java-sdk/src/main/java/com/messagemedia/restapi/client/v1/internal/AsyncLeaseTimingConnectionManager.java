@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.metrics.ConnectionPoolStats;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.NHttpClientConnection;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The connection pool of the asynchronous client. It records how long every request waited for its connection, see {@link RequestRecorder}.
+ * <p/>
+ * The wait ends when the pool hands out the connection, on an I/O thread. It includes connecting if the pool had to open a new connection.
+ * <p/>
+ * Idle connections need no validation here: the I/O reactor watches them, and drops those the server closes as soon as it does.
+ */
+class AsyncLeaseTimingConnectionManager extends PoolingNHttpClientConnectionManager implements ConnectionPool {
+
+    private final int keepAlive;
+
+    /**
+     * @param ioReactorConfig the configuration of the I/O reactor
+     * @param maxConnections  the maximum number of connections
+     * @param keepAlive       the longest time in milliseconds an idle connection is kept
+     * @throws IOReactorException if the I/O reactor can not be created
+     */
+    AsyncLeaseTimingConnectionManager(IOReactorConfig ioReactorConfig, int maxConnections, int keepAlive) throws IOReactorException {
+        super(new DefaultConnectingIOReactor(ioReactorConfig));
+        setMaxTotal(maxConnections);
+        setDefaultMaxPerRoute(maxConnections);
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Future<NHttpClientConnection> requestConnection(HttpRoute route, Object state, long connectTimeout, long leaseTimeout, TimeUnit tunit,
+                                                           final FutureCallback<NHttpClientConnection> callback) {
+        final RequestRecorder recorder = RequestRecorder.current();
+        if (recorder == null) {
+            return super.requestConnection(route, state, connectTimeout, leaseTimeout, tunit, callback);
+        }
+        final long start = System.nanoTime();
+        return super.requestConnection(route, state, connectTimeout, leaseTimeout, tunit, new FutureCallback<NHttpClientConnection>() {
+            @Override
+            public void completed(NHttpClientConnection connection) {
+                recorder.leased(System.nanoTime() - start);
+                callback.completed(connection);
+            }
+
+            @Override
+            public void failed(Exception e) {
+                recorder.leased(System.nanoTime() - start);
+                callback.failed(e);
+            }
+
+            @Override
+            public void cancelled() {
+                callback.cancelled();
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void evict() {
+        closeExpiredConnections();
+        closeIdleConnections(keepAlive, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConnectionPoolStats getStats() {
+        PoolStats stats = getTotalStats();
+        return new ConnectionPoolStats(stats.getLeased(), stats.getAvailable(), stats.getPending(), stats.getMax());
+    }
+}
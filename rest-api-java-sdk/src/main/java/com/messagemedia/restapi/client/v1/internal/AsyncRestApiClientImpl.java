@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.AsyncRestApiClient;
+import com.messagemedia.restapi.client.v1.RestApiCallback;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.RestApiFuture;
+import com.messagemedia.restapi.client.v1.messaging.AsyncRestApiMessagingClient;
+import com.messagemedia.restapi.client.v1.metrics.ConnectionPoolStats;
+
+/**
+ * Default implementation for {@link AsyncRestApiClient}
+ */
+public class AsyncRestApiClientImpl implements AsyncRestApiClient {
+
+    private final AsyncRestClient client;
+    private final AsyncRestApiMessagingClientImpl messagingClient;
+
+    public AsyncRestApiClientImpl(ClientSettings settings) {
+        client = new AsyncRestClient(settings);
+        try {
+            messagingClient = new AsyncRestApiMessagingClientImpl(client, settings);
+        } catch (RestApiException e) {
+            client.close();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RestApiFuture<Boolean> isAlive() {
+        final DefaultRestApiFuture<Boolean> alive = new DefaultRestApiFuture<Boolean>();
+        client.get(RestApiClientImpl.URL_STATUS).executeAsync().addCallback(new RestApiCallback<RestResponse>() {
+            @Override
+            public void completed(RestResponse response) {
+                response.close();
+                alive.complete(response.isSuccessful());
+            }
+
+            @Override
+            public void failed(RestApiException exception) {
+                alive.complete(false);
+            }
+        });
+        return alive;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AsyncRestApiMessagingClient messaging() {
+        return messagingClient;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConnectionPoolStats getConnectionPoolStats() {
+        return client.getConnectionPoolStats();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        messagingClient.close();
+        client.close();
+    }
+}
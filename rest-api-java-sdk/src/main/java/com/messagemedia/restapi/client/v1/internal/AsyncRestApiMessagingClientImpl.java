@@ -0,0 +1,393 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.Context;
+import com.messagemedia.restapi.client.v1.RestApiCallback;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.RestApiFuture;
+import com.messagemedia.restapi.client.v1.RestApiResponse;
+import com.messagemedia.restapi.client.v1.messaging.AsyncRestApiMessagingClient;
+import com.messagemedia.restapi.client.v1.messaging.InboundHandler;
+import com.messagemedia.restapi.client.v1.messaging.InboundPoller;
+import com.messagemedia.restapi.client.v1.messaging.deliveryreports.DeliveryReport;
+import com.messagemedia.restapi.client.v1.messaging.deliveryreports.DeliveryReportList;
+import com.messagemedia.restapi.client.v1.messaging.messages.Message;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageListProperties;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageSendResult;
+import com.messagemedia.restapi.client.v1.messaging.replies.Reply;
+import com.messagemedia.restapi.client.v1.messaging.replies.ReplyList;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ContentType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static com.messagemedia.restapi.client.v1.internal.RestApiMessagingClientImpl.*;
+
+/**
+ * Default implementation for {@link AsyncRestApiMessagingClient}
+ */
+public class AsyncRestApiMessagingClientImpl implements AsyncRestApiMessagingClient {
+
+    private static final RestApiFutures.Transformer<RestApiResponse<MessageList>, RestApiResponse<Message>> SINGLE_MESSAGE =
+            new RestApiFutures.Transformer<RestApiResponse<MessageList>, RestApiResponse<Message>>() {
+                @Override
+                public RestApiResponse<Message> apply(RestApiResponse<MessageList> response) throws RestApiException {
+                    List<Message> messages = response.getPayload().getMessages();
+                    if (messages.size() == 1) {
+                        return RestApiResponseFactory.success(response.getResponseCode(), messages.get(0));
+                    } else {
+                        throw new RestApiException("Received " + messages.size() + " messages in the body response. Should not happen.");
+                    }
+                }
+            };
+
+    private static final RestApiFutures.Transformer<RestApiResponse<ReplyList>, List<Reply>> REPLIES =
+            new RestApiFutures.Transformer<RestApiResponse<ReplyList>, List<Reply>>() {
+                @Override
+                public List<Reply> apply(RestApiResponse<ReplyList> response) {
+                    return replies(response);
+                }
+            };
+
+    private static final RestApiFutures.Transformer<RestApiResponse<DeliveryReportList>, List<DeliveryReport>> DELIVERY_REPORTS =
+            new RestApiFutures.Transformer<RestApiResponse<DeliveryReportList>, List<DeliveryReport>>() {
+                @Override
+                public List<DeliveryReport> apply(RestApiResponse<DeliveryReportList> response) {
+                    return deliveryReports(response);
+                }
+            };
+
+    private final AsyncRestClient client;
+    private final BulkMessageSender bulkSender;
+    private final BulkMessageSender.ChunkSender chunkSender = new BulkMessageSender.ChunkSender() {
+        @Override
+        public RestApiFuture<RestApiResponse<MessageList>> send(List<Message> messages, MessageListProperties properties) {
+            return sendMessages(messages, properties);
+        }
+    };
+
+    private final OutboxReplayer.EntrySender entrySender = new OutboxReplayer.EntrySender() {
+        @Override
+        public RestApiFuture<RestResponse> send(Outbox.Entry entry) {
+            return client.post(URL_MESSAGES).contentType(ContentType.APPLICATION_JSON).body(entry.getPayload()).executeAsync();
+        }
+    };
+
+    private final MessageBatcher batcher;
+    private final Outbox outbox;
+    private final OutboxReplayer replayer;
+    private final DeduplicationIndex replyIds;
+    private final DeduplicationIndex deliveryReportIds;
+    private final MessageStatusCache statusCache;
+    private final long pollInterval;
+    private final long maxPollInterval;
+    private final List<InboundPoller> pollers = new ArrayList<InboundPoller>();
+
+    /**
+     * Creates the messaging client.
+     *
+     * @param client   the rest client
+     * @param settings the settings of the bulk sends, the coalescing of single messages, the outbox, the status cache and the pollers
+     * @throws RestApiException if the outbox can not be opened
+     */
+    AsyncRestApiMessagingClientImpl(AsyncRestClient client, ClientSettings settings) throws RestApiException {
+        this.client = client;
+        this.bulkSender = new BulkMessageSender(settings.getBulkChunkSize(), settings.getBulkMaxInFlight());
+        this.pollInterval = settings.getPollInterval();
+        this.maxPollInterval = settings.getMaxPollInterval();
+        this.batcher = settings.getSendLinger() > 0 ? new MessageBatcher(new MessageBatcher.BatchSender() {
+            @Override
+            public RestApiFuture<RestApiResponse<MessageList>> send(List<Message> messages, MessageListProperties properties, Context context) {
+                return sendMessages(messages, properties);
+            }
+        }, settings.getSendLinger(), settings.getMaxSendBatchSize()) : null;
+        this.replyIds = settings.createDeduplicationIndex();
+        this.deliveryReportIds = settings.createDeduplicationIndex();
+        this.statusCache = settings.createStatusCache();
+        this.outbox = settings.createOutbox();
+        this.replayer = outbox != null ? new OutboxReplayer(outbox, settings.getRetryBackoff(), settings.getMaxRetryBackoff()) : null;
+        if (replayer != null) {
+            // sent again as soon as the client is created, the results are logged
+            replayer.start(entrySender);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RestApiFuture<RestApiResponse<Message>> sendMessage(Message message) {
+        return sendMessage(message, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RestApiFuture<RestApiResponse<Message>> sendMessage(Message message, MessageListProperties messageListProperties) {
+        if (batcher != null) {
+            return batcher.send(message, messageListProperties, null);
+        }
+        return RestApiFutures.transform(sendMessages(Collections.singletonList(message), messageListProperties), SINGLE_MESSAGE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RestApiFuture<RestApiResponse<MessageList>> sendMessages(List<Message> messages) {
+        return sendMessages(messages, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RestApiFuture<RestApiResponse<MessageList>> sendMessages(List<Message> messages, MessageListProperties messageListProperties) {
+        MessageList messageList = new MessageList(messages, messageListProperties);
+        if (outbox != null) {
+            Outbox.Entry entry;
+            try {
+                entry = journal(outbox, messageList);
+            } catch (RestApiException e) {
+                return RestApiFutures.failed(e);
+            }
+            return cacheSent(parseResponse(send(entry), MessageList.class));
+        }
+        return cacheSent(parseResponse(client.post(URL_MESSAGES).body(messageList).executeAsync(), MessageList.class));
+    }
+
+    private RestApiFuture<RestApiResponse<MessageList>> cacheSent(RestApiFuture<RestApiResponse<MessageList>> response) {
+        if (statusCache == null) {
+            return response;
+        }
+        return RestApiFutures.transform(response, new RestApiFutures.Transformer<RestApiResponse<MessageList>, RestApiResponse<MessageList>>() {
+            @Override
+            public RestApiResponse<MessageList> apply(RestApiResponse<MessageList> sent) {
+                if (sent.getPayload() != null) {
+                    statusCache.sent(sent.getPayload().getMessages(), System.nanoTime());
+                }
+                return sent;
+            }
+        });
+    }
+
+    /**
+     * Sends an entry of the outbox. It is acknowledged once the API accepted or refused it. After a 429, a server error or no answer at
+     * all, the caller is told, and the outbox owns the entry: it is sent again in the background until the API accepts or refuses it.
+     */
+    private RestApiFuture<RestResponse> send(final Outbox.Entry entry) {
+        RestApiFuture<RestResponse> response = entrySender.send(entry);
+        response.addCallback(new RestApiCallback<RestResponse>() {
+            @Override
+            public void completed(RestResponse result) {
+                if (OutboxReplayer.isRetryable(result.getResultCode())) {
+                    replayer.resend(entry, entrySender, OutboxReplayer.retryAfter(result));
+                } else {
+                    outbox.acknowledge(entry);
+                }
+            }
+
+            @Override
+            public void failed(RestApiException exception) {
+                replayer.resend(entry, entrySender, OutboxReplayer.retryAfter(exception));
+            }
+        });
+        return response;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RestApiFuture<List<MessageSendResult>> sendMessagesInBulk(List<Message> messages) {
+        return sendMessagesInBulk(messages, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RestApiFuture<List<MessageSendResult>> sendMessagesInBulk(List<Message> messages, MessageListProperties messageListProperties) {
+        return bulkSender.send(chunkSender, messages, messageListProperties);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RestApiFuture<RestApiResponse<Message>> getMessage(String messageId) {
+        Message cached = statusCache != null ? statusCache.get(messageId, System.nanoTime()) : null;
+        if (cached != null) {
+            return RestApiFutures.completed(RestApiResponseFactory.success(HttpStatus.SC_OK, cached));
+        }
+        return cache(parseResponse(client.get(URL_CHECK_MESSAGE).pathVariable("messageId", messageId).executeAsync(), Message.class));
+    }
+
+    private RestApiFuture<RestApiResponse<Message>> cache(RestApiFuture<RestApiResponse<Message>> response) {
+        if (statusCache == null) {
+            return response;
+        }
+        return RestApiFutures.transform(response, new RestApiFutures.Transformer<RestApiResponse<Message>, RestApiResponse<Message>>() {
+            @Override
+            public RestApiResponse<Message> apply(RestApiResponse<Message> message) {
+                statusCache.put(message.getPayload(), System.nanoTime());
+                return message;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RestApiFuture<RestApiResponse<Message>> cancelMessage(String messageId) {
+        return cache(parseResponse(client.put(URL_CHECK_MESSAGE).pathVariable("messageId", messageId).body(CANCEL_MESSAGE_PAYLOAD)
+                                         .executeAsync(), Message.class));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RestApiFuture<RestApiResponse<ReplyList>> checkReplies() {
+        return parseResponse(client.get(URL_REPLIES).executeAsync(), ReplyList.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RestApiFuture<RestApiResponse<Void>> confirmReplies(Collection<String> replyIds) {
+        return parseResponse(client.post(URL_CONFIRM_REPLIES).body(new ReplyConfirmation(replyIds)).executeAsync(), Void.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RestApiFuture<RestApiResponse<DeliveryReportList>> checkDeliveryReports() {
+        RestApiFuture<RestApiResponse<DeliveryReportList>> response = parseResponse(client.get(URL_DELIVERY_REPORTS).executeAsync(),
+                                                                                    DeliveryReportList.class);
+        if (statusCache == null) {
+            return response;
+        }
+        return RestApiFutures.transform(response, new RestApiFutures.Transformer<RestApiResponse<DeliveryReportList>,
+                RestApiResponse<DeliveryReportList>>() {
+            @Override
+            public RestApiResponse<DeliveryReportList> apply(RestApiResponse<DeliveryReportList> reports) {
+                statusCache.reported(deliveryReports(reports), System.nanoTime());
+                return reports;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RestApiFuture<RestApiResponse<Void>> confirmDeliveryReports(Collection<String> deliveryReportIds) {
+        DeliveryReportConfirmation confirmation = new DeliveryReportConfirmation(deliveryReportIds);
+        return parseResponse(client.post(URL_CONFIRM_DELIVERY_REPORT).body(confirmation).executeAsync(), Void.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InboundPoller pollReplies(InboundHandler<Reply> handler) {
+        return register(new InboundPollerImpl<Reply>("replies", new InboundPollerImpl.Source<Reply>() {
+            @Override
+            public RestApiFuture<List<Reply>> check() {
+                return RestApiFutures.transform(checkReplies(), REPLIES);
+            }
+
+            @Override
+            public String idOf(Reply reply) {
+                return reply.getReplyId();
+            }
+
+            @Override
+            public RestApiFuture<?> confirm(Collection<String> ids) {
+                return confirmReplies(ids);
+            }
+        }, handler, replyIds, pollInterval, maxPollInterval));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InboundPoller pollDeliveryReports(InboundHandler<DeliveryReport> handler) {
+        return register(new InboundPollerImpl<DeliveryReport>("delivery-reports", new InboundPollerImpl.Source<DeliveryReport>() {
+            @Override
+            public RestApiFuture<List<DeliveryReport>> check() {
+                return RestApiFutures.transform(checkDeliveryReports(), DELIVERY_REPORTS);
+            }
+
+            @Override
+            public String idOf(DeliveryReport deliveryReport) {
+                return deliveryReport.getDeliveryReportId();
+            }
+
+            @Override
+            public RestApiFuture<?> confirm(Collection<String> ids) {
+                return confirmDeliveryReports(ids);
+            }
+        }, handler, deliveryReportIds, pollInterval, maxPollInterval));
+    }
+
+    private InboundPoller register(InboundPoller poller) {
+        synchronized (pollers) {
+            pollers.add(poller);
+        }
+        return poller;
+    }
+
+    /**
+     * Stops the pollers, fails the messages still waiting to be coalesced into a request and closes the outbox.
+     */
+    void close() {
+        synchronized (pollers) {
+            for (InboundPoller poller : pollers) {
+                poller.stop();
+            }
+            pollers.clear();
+        }
+        if (batcher != null) {
+            batcher.close();
+        }
+        if (outbox != null) {
+            replayer.close();
+            outbox.close();
+        }
+    }
+
+    private <T> RestApiFuture<RestApiResponse<T>> parseResponse(RestApiFuture<RestResponse> response, final Class<T> clazz) {
+        return RestApiFutures.transform(response, new RestApiFutures.Transformer<RestResponse, RestApiResponse<T>>() {
+            @Override
+            public RestApiResponse<T> apply(RestResponse source) throws RestApiException {
+                return RestApiResponseFactory.parse(source, clazz);
+            }
+        });
+    }
+}
@@ -0,0 +1,558 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.messagemedia.restapi.client.v1.RestApiCallback;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.RestApiFuture;
+import com.messagemedia.restapi.client.v1.metrics.ConnectionPoolStats;
+import com.messagemedia.restapi.client.v1.metrics.RestApiMetricsListener;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Performs REST operations against the MessageMedia REST API without blocking the caller.
+ * <p/>
+ * Requests are written and responses are read by a small, fixed number of I/O threads, so the number of concurrent requests is only bounded by
+ * the connection pool and not by the number of threads.
+ */
+class AsyncRestClient {
+
+    private final CloseableHttpAsyncClient httpClient;
+    private final String endpoint;
+    private final RestApiMetricsListener metricsListener;
+    private final RateLimits rateLimits;
+    private final Retries retries;
+    private final Hedging hedging;
+    private final CircuitBreakers breakers;
+    private final Compression compression;
+    private final ScheduledThreadPoolExecutor timer;
+    private final AsyncLeaseTimingConnectionManager connectionManager;
+    private final Future<?> eviction;
+    private final Set<DefaultRestApiFuture<RestResponse>> delayed =
+            Collections.newSetFromMap(new ConcurrentHashMap<DefaultRestApiFuture<RestResponse>, Boolean>());
+
+    public AsyncRestClient(ClientSettings settings) {
+        this.endpoint = settings.getEndpoint();
+        this.metricsListener = settings.getMetricsListener();
+        this.rateLimits = settings.createRateLimits();
+        this.retries = settings.createRetries();
+        this.hedging = settings.createHedging();
+        this.compression = settings.createCompression();
+        this.timer = rateLimits.isEnabled() || retries.isEnabled() || hedging != null ? timer() : null;
+
+        RequestConfig config = RequestConfig.custom()
+                                            .setConnectTimeout(settings.getConnectTimeout())
+                                            .setSocketTimeout(settings.getSocketTimeout())
+                                            .build();
+
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                                                         .setIoThreadCount(settings.getIoThreads())
+                                                         .setConnectTimeout(settings.getConnectTimeout())
+                                                         .setSoTimeout(settings.getSocketTimeout())
+                                                         .build();
+
+        breakers = settings.createCircuitBreakers(config);
+
+        // the I/O reactor times a connection out from its last activity, idle time included: a connection idle for almost the socket timeout
+        // would time out while it waits for the response, so it expires from the pool before that
+        int keepAlive = Math.max(1, Math.min(settings.getKeepAlive(), settings.getSocketTimeout() / 2));
+        try {
+            connectionManager = new AsyncLeaseTimingConnectionManager(ioReactorConfig, settings.getMaxConnections(), keepAlive);
+        } catch (IOReactorException e) {
+            throw new RestApiException("Failed to create the I/O reactor", e);
+        }
+        eviction = settings.getEvictionInterval() > 0 ? ConnectionEvictor.schedule(connectionManager, settings.getEvictionInterval()) : null;
+
+        httpClient = HttpAsyncClients.custom()
+                                     .addInterceptorFirst(RestClient.toRequestInterceptor(settings.getAuthorizationScheme(), settings.getKey(),
+                                                                                          settings.getSecret(), false))
+                                     .setConnectionManager(connectionManager)
+                                     .setKeepAliveStrategy(new KeepAliveStrategy(keepAlive))
+                                     .disableCookieManagement()
+                                     .setUserAgent(RestClient.USER_AGENT)
+                                     .setDefaultRequestConfig(config)
+                                     .build();
+        httpClient.start();
+    }
+
+    private static ScheduledThreadPoolExecutor timer() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "rest-api-delayed-requests");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Creates a {@link RestRequestBuilder} for a GET operation
+     *
+     * @param path The path
+     * @return The rest request builder
+     */
+    public RestRequestBuilder get(String path) {
+        return RestRequestBuilder.create(endpoint, path, HttpMethod.GET, this);
+    }
+
+    /**
+     * Creates a {@link RestRequestBuilder} for a PUT operation
+     *
+     * @param path the path
+     * @return the rest request builder
+     */
+    public RestRequestBuilder put(String path) {
+        return RestRequestBuilder.create(endpoint, path, HttpMethod.PUT, this);
+    }
+
+    /**
+     * Creates a {@link RestRequestBuilder} for a POST operation
+     *
+     * @param path the path
+     * @return the rest request builder
+     */
+    public RestRequestBuilder post(String path) {
+        return RestRequestBuilder.create(endpoint, path, HttpMethod.POST, this);
+    }
+
+    /**
+     * Sends the rest request, and retries it if it failed transiently, see {@link Retries}. The returned future fails with a
+     * {@link RestApiException} if something goes wrong. If the operation class of the request is rate limited, every attempt is held back
+     * until there is a permit for it, or fails at once if it must not wait. Attempts which have to wait are scheduled on a timer, no thread
+     * is blocked. Status lookups are hedged if hedging is enabled, see {@link Hedging}. If circuit breakers are enabled, attempts to an
+     * endpoint whose circuit is open fail at once, see {@link CircuitBreaker}. If a metrics listener is set, it receives the
+     * measurements of every attempt before the future completes.
+     *
+     * @param req the request
+     * @return a future of the rest response
+     */
+    RestApiFuture<RestResponse> execute(RestRequest req) {
+        DefaultRestApiFuture<RestResponse> result = new DefaultRestApiFuture<RestResponse>();
+        retries.requested();
+        if (hedging != null && Hedging.appliesTo(req)) {
+            hedge(req, result);
+        } else {
+            submit(req, result, 0);
+        }
+        return result;
+    }
+
+    private void hedge(final RestRequest req, DefaultRestApiFuture<RestResponse> result) {
+        long delay = hedging.requested();
+        final Race race = new Race(result);
+        race.enter(attempt(req));
+        if (delay < 0) {
+            race.start(null);
+            return;
+        }
+        ScheduledFuture<?> task;
+        try {
+            task = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (!race.isOver() && hedging.tryHedge()) {
+                        race.enter(attempt(req));
+                    }
+                }
+            }, delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // the client is being closed
+            task = null;
+        }
+        race.start(task);
+    }
+
+    private DefaultRestApiFuture<RestResponse> attempt(RestRequest req) {
+        DefaultRestApiFuture<RestResponse> attempt = new DefaultRestApiFuture<RestResponse>();
+        submit(req, attempt, 0);
+        return attempt;
+    }
+
+    private void submit(final RestRequest req, final DefaultRestApiFuture<RestResponse> result, final int attempt) {
+        final RateLimiter limiter = rateLimits.limiterFor(req);
+        long wait;
+        try {
+            wait = limiter != null ? rateLimits.reserve(limiter) : 0;
+        } catch (RestApiException e) {
+            result.fail(e);
+            return;
+        }
+        if (wait == 0) {
+            send(req, limiter, result, attempt);
+        } else {
+            later(result, wait, new Runnable() {
+                @Override
+                public void run() {
+                    send(req, limiter, result, attempt);
+                }
+            });
+        }
+    }
+
+    private void retry(final RestRequest req, final DefaultRestApiFuture<RestResponse> result, final int attempt, long backoff) {
+        later(result, backoff, new Runnable() {
+            @Override
+            public void run() {
+                submit(req, result, attempt + 1);
+            }
+        });
+    }
+
+    /**
+     * Runs the next step of a request after a delay, unless the request gets cancelled or the client closed in the meantime.
+     */
+    private void later(final DefaultRestApiFuture<RestResponse> result, long delay, final Runnable step) {
+        delayed.add(result);
+        final ScheduledFuture<?> task;
+        try {
+            task = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (delayed.remove(result)) {
+                        step.run();
+                    }
+                }
+            }, delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            delayed.remove(result);
+            result.fail(new RestApiException("The client has been closed"));
+            return;
+        }
+        result.setCancellationHandler(new Runnable() {
+            @Override
+            public void run() {
+                delayed.remove(result);
+                task.cancel(false);
+            }
+        });
+    }
+
+    private void send(RestRequest req, RateLimiter limiter, DefaultRestApiFuture<RestResponse> result, int attempt) {
+        if (result.isDone()) {
+            return;
+        }
+        CircuitBreaker breaker = breakers != null ? breakers.breakerFor(req) : null;
+        if (breaker == null) {
+            exchange(req, limiter, null, result, attempt);
+            return;
+        }
+        switch (breaker.admit(System.nanoTime())) {
+            case ALLOW:
+                exchange(req, limiter, breaker, result, attempt);
+                break;
+            case PROBE:
+                probe(req, limiter, breaker, result, attempt);
+                break;
+            default:
+                result.fail(CircuitBreakers.rejected(req, breaker));
+        }
+    }
+
+    private void probe(final RestRequest req, final RateLimiter limiter, final CircuitBreaker breaker,
+                       final DefaultRestApiFuture<RestResponse> result, final int attempt) {
+        try {
+            sendProbe(req, limiter, breaker, result, attempt);
+        } catch (RuntimeException e) {
+            // for example the client has been closed, the circuit must not stay in the probing state
+            breaker.probed(false, System.nanoTime());
+            result.fail(new RestApiException("Failed to probe the API", e));
+        }
+    }
+
+    private void sendProbe(final RestRequest req, final RateLimiter limiter, final CircuitBreaker breaker,
+                           final DefaultRestApiFuture<RestResponse> result, final int attempt) {
+        httpClient.execute(breakers.probe(get(RestApiClientImpl.URL_STATUS).build()), new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                boolean alive = false;
+                try {
+                    RestResponse restResponse = new RestResponse(response);
+                    restResponse.close();
+                    alive = restResponse.isSuccessful();
+                } finally {
+                    probed(alive);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                probed(false);
+            }
+
+            @Override
+            public void cancelled() {
+                probed(false);
+            }
+
+            private void probed(boolean alive) {
+                breaker.probed(alive, System.nanoTime());
+                if (alive) {
+                    exchange(req, limiter, breaker, result, attempt);
+                } else {
+                    result.fail(CircuitBreakers.rejected(req, breaker));
+                }
+            }
+        });
+    }
+
+    private void exchange(final RestRequest req, final RateLimiter limiter, final CircuitBreaker breaker,
+                          final DefaultRestApiFuture<RestResponse> result, final int attempt) {
+        HttpUriRequest request = compressed(req, breaker, result);
+        if (request == null) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final RequestRecorder recorder = metricsListener != null ? new RequestRecorder(req) : null;
+        HttpClientContext context = HttpClientContext.create();
+        if (recorder != null) {
+            context.setAttribute(RequestRecorder.CONTEXT_ATTRIBUTE, recorder);
+            recorder.attach();
+        }
+        final Future<HttpResponse> exchange;
+        try {
+            exchange = httpClient.execute(request, context, new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse response) {
+                    if (recorder != null) {
+                        recorder.responded(response);
+                        recorder.report(metricsListener);
+                    }
+                    RestResponse restResponse = new RestResponse(response);
+                    if (breaker != null) {
+                        record(breaker, CircuitBreakers.isFailure(restResponse.getResultCode()), start);
+                    }
+                    responded(req, limiter, result, attempt, restResponse);
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    if (recorder != null) {
+                        recorder.report(metricsListener);
+                    }
+                    if (breaker != null) {
+                        record(breaker, Retries.isTransient(e), start);
+                    }
+                    long backoff = retries.backoff(req, e, attempt);
+                    if (backoff >= 0) {
+                        retry(req, result, attempt, backoff);
+                    } else {
+                        fail(result, e);
+                    }
+                }
+
+                @Override
+                public void cancelled() {
+                    if (breaker != null) {
+                        breaker.abandoned(System.nanoTime());
+                    }
+                    result.cancel(false);
+                }
+            });
+        } finally {
+            if (recorder != null) {
+                RequestRecorder.detach();
+            }
+        }
+        result.setCancellationHandler(new Runnable() {
+            @Override
+            public void run() {
+                exchange.cancel(true);
+            }
+        });
+        if (result.isCancelled()) {
+            // cancelled while a delayed attempt was being sent
+            exchange.cancel(true);
+        }
+    }
+
+    private HttpUriRequest compressed(RestRequest req, CircuitBreaker breaker, DefaultRestApiFuture<RestResponse> result) {
+        HttpUriRequest request = req.getHttpRequest();
+        try {
+            compression.prepare(request);
+            return request;
+        } catch (IOException e) {
+            if (breaker != null) {
+                breaker.abandoned(System.nanoTime());
+            }
+            fail(result, e);
+            return null;
+        }
+    }
+
+    private static void record(CircuitBreaker breaker, boolean failed, long start) {
+        long now = System.nanoTime();
+        breaker.record(failed, now - start, now);
+    }
+
+    private void responded(RestRequest req, RateLimiter limiter, DefaultRestApiFuture<RestResponse> result, int attempt, RestResponse response) {
+        if (limiter != null) {
+            RateLimits.update(limiter, response);
+        }
+        long backoff = retries.backoff(req, response, attempt);
+        if (backoff >= 0) {
+            response.close();
+            retry(req, result, attempt, backoff);
+        } else if (!result.complete(response)) {
+            response.close();
+        }
+    }
+
+    /**
+     * Completes a hedged request with the first of its attempts which got a response, and cancels the others. The request only fails once all
+     * of its attempts have failed.
+     */
+    private final class Race {
+
+        private final DefaultRestApiFuture<RestResponse> result;
+        private final long start = System.nanoTime();
+        private final List<DefaultRestApiFuture<RestResponse>> attempts = new ArrayList<DefaultRestApiFuture<RestResponse>>(2);
+        private int running;
+
+        private Race(DefaultRestApiFuture<RestResponse> result) {
+            this.result = result;
+        }
+
+        private void start(final ScheduledFuture<?> hedge) {
+            result.setCancellationHandler(new Runnable() {
+                @Override
+                public void run() {
+                    if (hedge != null) {
+                        hedge.cancel(false);
+                    }
+                    cancelAll();
+                }
+            });
+        }
+
+        private boolean isOver() {
+            return result.isDone();
+        }
+
+        private void enter(final DefaultRestApiFuture<RestResponse> attempt) {
+            synchronized (this) {
+                attempts.add(attempt);
+                running++;
+            }
+            attempt.addCallback(new RestApiCallback<RestResponse>() {
+                @Override
+                public void completed(RestResponse response) {
+                    won(response);
+                }
+
+                @Override
+                public void failed(RestApiException exception) {
+                    lost(exception);
+                }
+            });
+            if (result.isDone()) {
+                // the race ended while this attempt was entered
+                attempt.cancel(false);
+            }
+        }
+
+        private void won(RestResponse response) {
+            if (!result.complete(response)) {
+                response.close();
+                return;
+            }
+            // lookups which lost against a hedge took at least this long
+            hedging.record(System.nanoTime() - start);
+            cancelAll();
+        }
+
+        private void lost(RestApiException exception) {
+            synchronized (this) {
+                if (--running > 0) {
+                    return;
+                }
+            }
+            result.fail(exception);
+        }
+
+        private void cancelAll() {
+            List<DefaultRestApiFuture<RestResponse>> entered;
+            synchronized (this) {
+                entered = new ArrayList<DefaultRestApiFuture<RestResponse>>(attempts);
+            }
+            for (DefaultRestApiFuture<RestResponse> attempt : entered) {
+                attempt.cancel(false);
+            }
+        }
+    }
+
+    private static void fail(DefaultRestApiFuture<RestResponse> result, Exception e) {
+        if (e instanceof JsonProcessingException) {
+            result.fail(new RestApiException("Exception trying to serialize the body of the request", e));
+        } else {
+            result.fail(new RestApiException("IO Exception", e));
+        }
+    }
+
+    /**
+     * @return a snapshot of the connection pool
+     */
+    ConnectionPoolStats getConnectionPoolStats() {
+        return connectionManager.getStats();
+    }
+
+    /**
+     * Stops the I/O threads and closes all pooled connections. Requests still held back by the rate limits or waiting to be retried fail.
+     */
+    void close() {
+        if (eviction != null) {
+            eviction.cancel(false);
+        }
+        if (timer != null) {
+            timer.shutdownNow();
+            for (DefaultRestApiFuture<RestResponse> result : delayed) {
+                if (delayed.remove(result)) {
+                    result.fail(new RestApiException("The client has been closed"));
+                }
+            }
+        }
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            throw new RestApiException("Failed to close the HTTP client", e);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.RestApiCallback;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.RestApiFuture;
+import com.messagemedia.restapi.client.v1.RestApiResponse;
+import com.messagemedia.restapi.client.v1.messaging.messages.Message;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageListProperties;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageSendResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends any number of messages by splitting them into chunks of at most {@link #getChunkSize()} messages, and keeping at most
+ * {@link #getMaxInFlight()} chunks in flight at the same time.
+ * <p/>
+ * Instances of this class are thread-safe.
+ */
+final class BulkMessageSender {
+
+    static final int CHUNK_SIZE_DEFAULT = 100;
+    static final int MAX_IN_FLIGHT_DEFAULT = 8;
+
+    /**
+     * Sends one chunk of messages as a single request.
+     */
+    interface ChunkSender {
+
+        /**
+         * Sends the messages with a single request.
+         *
+         * @param messages   the messages, never empty
+         * @param properties the message list properties, may be null
+         * @return the future response
+         */
+        RestApiFuture<RestApiResponse<MessageList>> send(List<Message> messages, MessageListProperties properties);
+    }
+
+    private final int chunkSize;
+    private final int maxInFlight;
+
+    BulkMessageSender(int chunkSize, int maxInFlight) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("The chunk size must be at least 1");
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("The number of requests in flight must be at least 1");
+        }
+        this.chunkSize = chunkSize;
+        this.maxInFlight = maxInFlight;
+    }
+
+    int getChunkSize() {
+        return chunkSize;
+    }
+
+    int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Sends the messages. The returned future completes once every chunk has been answered; it never fails, failures are reported per message.
+     *
+     * @param sender     sends the chunks
+     * @param messages   the messages to send
+     * @param properties the message list properties applied to every chunk, may be null
+     * @return the future results, in the same order as the messages
+     */
+    RestApiFuture<List<MessageSendResult>> send(ChunkSender sender, List<Message> messages, MessageListProperties properties) {
+        if (messages.isEmpty()) {
+            return RestApiFutures.completed(Collections.<MessageSendResult>emptyList());
+        }
+        return new Batch(sender, new ArrayList<Message>(messages), properties).start();
+    }
+
+    /**
+     * The state of a single bulk send.
+     */
+    private final class Batch {
+
+        private final ChunkSender sender;
+        private final List<Message> messages;
+        private final MessageListProperties properties;
+        private final MessageSendResult[] results;
+        private final int chunkCount;
+        private final AtomicInteger nextChunk = new AtomicInteger();
+        private final AtomicInteger pendingChunks;
+        private final AtomicInteger launchRequests = new AtomicInteger();
+        private final Set<RestApiFuture<?>> inFlight = Collections.newSetFromMap(new ConcurrentHashMap<RestApiFuture<?>, Boolean>());
+        private final DefaultRestApiFuture<List<MessageSendResult>> result = new DefaultRestApiFuture<List<MessageSendResult>>();
+
+        Batch(ChunkSender sender, List<Message> messages, MessageListProperties properties) {
+            this.sender = sender;
+            this.messages = messages;
+            this.properties = properties;
+            this.results = new MessageSendResult[messages.size()];
+            this.chunkCount = (messages.size() + chunkSize - 1) / chunkSize;
+            this.pendingChunks = new AtomicInteger(chunkCount);
+        }
+
+        RestApiFuture<List<MessageSendResult>> start() {
+            result.setCancellationHandler(new Runnable() {
+                @Override
+                public void run() {
+                    for (RestApiFuture<?> future : inFlight) {
+                        future.cancel(true);
+                    }
+                }
+            });
+            for (int i = 0; i < Math.min(maxInFlight, chunkCount); i++) {
+                launchNext();
+            }
+            return result;
+        }
+
+        /**
+         * Sends the next chunk. Chunks answered on the calling thread are picked up by the loop instead of recursing into this method again.
+         */
+        private void launchNext() {
+            if (launchRequests.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                int chunk = nextChunk.getAndIncrement();
+                if (chunk < chunkCount && !result.isDone()) {
+                    sendChunk(chunk * chunkSize, Math.min((chunk + 1) * chunkSize, messages.size()));
+                }
+            } while (launchRequests.decrementAndGet() != 0);
+        }
+
+        private void sendChunk(final int from, final int to) {
+            final RestApiFuture<RestApiResponse<MessageList>> future = sender.send(messages.subList(from, to), properties);
+            inFlight.add(future);
+            future.addCallback(new RestApiCallback<RestApiResponse<MessageList>>() {
+                @Override
+                public void completed(RestApiResponse<MessageList> response) {
+                    MessageList payload = response.getPayload();
+                    List<Message> accepted = payload != null ? payload.getMessages() : Collections.<Message>emptyList();
+                    if (accepted.size() == to - from) {
+                        for (int i = from; i < to; i++) {
+                            results[i] = MessageSendResult.success(messages.get(i), accepted.get(i - from), response.getResponseCode());
+                        }
+                        chunkDone(future);
+                    } else {
+                        failed(new RestApiException("Received " + accepted.size() + " messages in the body response, expected " + (to - from)));
+                    }
+                }
+
+                @Override
+                public void failed(RestApiException exception) {
+                    for (int i = from; i < to; i++) {
+                        results[i] = MessageSendResult.failure(messages.get(i), exception);
+                    }
+                    chunkDone(future);
+                }
+            });
+        }
+
+        private void chunkDone(RestApiFuture<?> future) {
+            inFlight.remove(future);
+            if (pendingChunks.decrementAndGet() == 0) {
+                // the atomic decrement publishes the results written by the other chunks
+                result.complete(Collections.unmodifiableList(Arrays.asList(results)));
+            } else {
+                launchNext();
+            }
+        }
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.internal.util.JsonUtilities;
+import com.messagemedia.restapi.client.v1.messaging.CallbackReceiver;
+import com.messagemedia.restapi.client.v1.messaging.InboundHandler;
+import com.messagemedia.restapi.client.v1.messaging.deliveryreports.DeliveryReport;
+import com.messagemedia.restapi.client.v1.messaging.deliveryreports.DeliveryReportList;
+import com.messagemedia.restapi.client.v1.messaging.replies.Reply;
+import com.messagemedia.restapi.client.v1.messaging.replies.ReplyList;
+import org.apache.http.ContentTooLongException;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.nio.DefaultHttpServerIODispatch;
+import org.apache.http.impl.nio.DefaultNHttpServerConnectionFactory;
+import org.apache.http.impl.nio.reactor.DefaultListeningIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncRequestConsumer;
+import org.apache.http.nio.protocol.BasicAsyncResponseProducer;
+import org.apache.http.nio.protocol.HttpAsyncExchange;
+import org.apache.http.nio.protocol.HttpAsyncRequestConsumer;
+import org.apache.http.nio.protocol.HttpAsyncRequestHandler;
+import org.apache.http.nio.protocol.HttpAsyncResponseProducer;
+import org.apache.http.nio.protocol.HttpAsyncService;
+import org.apache.http.nio.protocol.UriHttpAsyncRequestHandlerMapper;
+import org.apache.http.nio.reactor.ListenerEndpoint;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.apache.http.nio.util.SimpleInputBuffer;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpProcessorBuilder;
+import org.apache.http.protocol.ResponseConnControl;
+import org.apache.http.protocol.ResponseContent;
+import org.apache.http.protocol.ResponseDate;
+import org.apache.http.protocol.ResponseServer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Default implementation for {@link CallbackReceiver}, built on the non-blocking HTTP server of HttpCore NIO.
+ * <p/>
+ * The I/O threads only buffer the bodies. Parsing and handling happens on the handler threads, whose queue is bounded: once it is full,
+ * callbacks are answered with 503 Service Unavailable straight from the I/O thread, which pushes back on the sender without buffering more.
+ */
+public class CallbackReceiverImpl implements CallbackReceiver {
+
+    private static final Logger LOGGER = Logger.getLogger(CallbackReceiverImpl.class.getName());
+
+    private static final long SHUTDOWN_GRACE_MILLIS = 5000;
+    private static final String RETRY_AFTER_SECONDS = "1";
+    private static final String POST = "POST";
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    static {
+        JsonUtilities.precompile(Reply.class, DeliveryReport.class);
+    }
+
+    /**
+     * The settings a receiver is created with.
+     */
+    public static final class Settings {
+
+        private final String host;
+        private final int port;
+        private final String path;
+        private final int ioThreads;
+        private final int handlerThreads;
+        private final int queueCapacity;
+        private final int maxBodySize;
+
+        //Checkstyle: START IGNORING
+        public Settings(String host, int port, String path, int ioThreads, int handlerThreads, int queueCapacity, int maxBodySize) {
+        //Checkstyle: RESUME
+            this.host = host;
+            this.port = port;
+            this.path = path;
+            this.ioThreads = ioThreads;
+            this.handlerThreads = handlerThreads;
+            this.queueCapacity = queueCapacity;
+            this.maxBodySize = maxBodySize;
+        }
+    }
+
+    private final String path;
+    private final int maxBodySize;
+    private final InboundHandler<Reply> replyHandler;
+    private final InboundHandler<DeliveryReport> deliveryReportHandler;
+    private final ThreadPoolExecutor handlers;
+    private final DefaultListeningIOReactor ioReactor;
+    private final int port;
+
+    /**
+     * Creates the receiver and starts listening.
+     *
+     * @param settings              the settings
+     * @param replyHandler          the handler of the replies, may be null
+     * @param deliveryReportHandler the handler of the delivery reports, may be null
+     * @throws RestApiException if the receiver can not listen
+     */
+    public CallbackReceiverImpl(Settings settings, InboundHandler<Reply> replyHandler, InboundHandler<DeliveryReport> deliveryReportHandler) {
+        this.path = settings.path;
+        this.maxBodySize = settings.maxBodySize;
+        this.replyHandler = replyHandler;
+        this.deliveryReportHandler = deliveryReportHandler;
+        final int id = THREAD_COUNTER.incrementAndGet();
+        this.handlers = new ThreadPoolExecutor(settings.handlerThreads, settings.handlerThreads, 0, TimeUnit.MILLISECONDS,
+                                               new ArrayBlockingQueue<Runnable>(settings.queueCapacity), new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "rest-api-callback-handler-" + id + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        UriHttpAsyncRequestHandlerMapper mapper = new UriHttpAsyncRequestHandlerMapper();
+        mapper.register("*", new CallbackHandler());
+        HttpAsyncService service = new ReceiverService(mapper);
+        final DefaultHttpServerIODispatch dispatch = new DefaultHttpServerIODispatch(service, new DefaultNHttpServerConnectionFactory());
+        try {
+            ioReactor = new DefaultListeningIOReactor(IOReactorConfig.custom()
+                                                                     .setIoThreadCount(settings.ioThreads)
+                                                                     .setSoReuseAddress(true)
+                                                                     .setTcpNoDelay(true)
+                                                                     .build());
+            InetSocketAddress address = settings.host != null ? new InetSocketAddress(settings.host, settings.port)
+                                                              : new InetSocketAddress(settings.port);
+            ListenerEndpoint endpoint = ioReactor.listen(address);
+            Thread reactorThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        ioReactor.execute(dispatch);
+                    } catch (IOException e) {
+                        LOGGER.log(Level.SEVERE, "The callback receiver stopped", e);
+                    }
+                }
+            }, "rest-api-callback-receiver-" + id);
+            reactorThread.setDaemon(true);
+            reactorThread.start();
+            endpoint.waitFor();
+            if (endpoint.getException() != null) {
+                throw endpoint.getException();
+            }
+            port = ((InetSocketAddress) endpoint.getAddress()).getPort();
+        } catch (IOException e) {
+            handlers.shutdownNow();
+            throw new RestApiException("Failed to listen on port " + settings.port, e);
+        } catch (InterruptedException e) {
+            handlers.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new RestApiException("Interrupted while starting to listen on port " + settings.port, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        handlers.shutdown();
+        try {
+            handlers.awaitTermination(SHUTDOWN_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+            ioReactor.shutdown(SHUTDOWN_GRACE_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new RestApiException("Failed to stop the callback receiver", e);
+        }
+    }
+
+    /**
+     * Passes the callbacks to the handler threads, or turns them away.
+     */
+    private final class CallbackHandler implements HttpAsyncRequestHandler<byte[]> {
+
+        @Override
+        public HttpAsyncRequestConsumer<byte[]> processRequest(HttpRequest request, HttpContext context) {
+            return new BodyConsumer(maxBodySize);
+        }
+
+        @Override
+        public void handle(final byte[] body, final HttpAsyncExchange exchange, HttpContext context) {
+            HttpRequest request = exchange.getRequest();
+            if (!POST.equals(request.getRequestLine().getMethod())) {
+                respond(exchange, HttpStatus.SC_METHOD_NOT_ALLOWED, "Callbacks must be posted");
+            } else if (!matchesPath(request.getRequestLine().getUri())) {
+                respond(exchange, HttpStatus.SC_NOT_FOUND, "Not a callback path");
+            } else {
+                try {
+                    handlers.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            dispatch(body, exchange);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    exchange.getResponse().setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+                    respond(exchange, HttpStatus.SC_SERVICE_UNAVAILABLE, "Too many callbacks");
+                }
+            }
+        }
+    }
+
+    private boolean matchesPath(String uri) {
+        if ("/".equals(path)) {
+            return true;
+        }
+        int query = uri.indexOf('?');
+        String requestPath = query >= 0 ? uri.substring(0, query) : uri;
+        return requestPath.equals(path);
+    }
+
+    /**
+     * Parses a callback and passes it to its handler, from a handler thread.
+     */
+    private void dispatch(byte[] body, HttpAsyncExchange exchange) {
+        try {
+            route(body.length > 0 ? JsonUtilities.bytesToTree(body) : null, exchange);
+        } catch (JsonProcessingException e) {
+            LOGGER.log(Level.FINE, "Invalid callback", e);
+            respond(exchange, HttpStatus.SC_BAD_REQUEST, "Invalid callback");
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to read a callback", e);
+            respond(exchange, HttpStatus.SC_INTERNAL_SERVER_ERROR, "Failed to read the callback");
+        }
+    }
+
+    private void route(JsonNode node, HttpAsyncExchange exchange) throws IOException {
+        if (has(node, "reply_id", "replies")) {
+            handleReplies(node, exchange);
+        } else if (has(node, "delivery_report_id", "delivery_reports")) {
+            handleDeliveryReports(node, exchange);
+        } else {
+            respond(exchange, HttpStatus.SC_BAD_REQUEST, "Not a reply or delivery report");
+        }
+    }
+
+    private static boolean has(JsonNode node, String idField, String listField) {
+        return node != null && (node.has(idField) || node.has(listField));
+    }
+
+    private void handleReplies(JsonNode node, HttpAsyncExchange exchange) throws IOException {
+        if (replyHandler == null) {
+            respond(exchange, HttpStatus.SC_NOT_FOUND, "Replies are not received here");
+        } else if (node.has("replies")) {
+            handle(replyHandler, JsonUtilities.treeToObject(node, ReplyList.class).getReplies(), exchange);
+        } else {
+            handle(replyHandler, Collections.singletonList(JsonUtilities.treeToObject(node, Reply.class)), exchange);
+        }
+    }
+
+    private void handleDeliveryReports(JsonNode node, HttpAsyncExchange exchange) throws IOException {
+        if (deliveryReportHandler == null) {
+            respond(exchange, HttpStatus.SC_NOT_FOUND, "Delivery reports are not received here");
+        } else if (node.has("delivery_reports")) {
+            handle(deliveryReportHandler, JsonUtilities.treeToObject(node, DeliveryReportList.class).getDeliveryReports(), exchange);
+        } else {
+            handle(deliveryReportHandler, Collections.singletonList(JsonUtilities.treeToObject(node, DeliveryReport.class)), exchange);
+        }
+    }
+
+    private <T> void handle(InboundHandler<T> handler, List<T> items, HttpAsyncExchange exchange) {
+        try {
+            for (T item : items) {
+                handler.handle(item);
+            }
+            respond(exchange, HttpStatus.SC_OK, null);
+        //Checkstyle: START IGNORING
+        } catch (Exception e) {
+        //Checkstyle: RESUME
+            LOGGER.log(Level.WARNING, "Failed to handle a callback, it will be pushed again", e);
+            respond(exchange, HttpStatus.SC_INTERNAL_SERVER_ERROR, "Failed to handle the callback");
+        }
+    }
+
+    private static void respond(HttpAsyncExchange exchange, int status, String message) {
+        HttpResponse response = exchange.getResponse();
+        response.setStatusCode(status);
+        if (message != null) {
+            response.setEntity(new StringEntity(message, ContentType.TEXT_PLAIN));
+        }
+        try {
+            exchange.submitResponse(new BasicAsyncResponseProducer(response));
+        } catch (IllegalStateException e) {
+            // the connection timed out or was closed by the sender in the meantime
+            LOGGER.log(Level.FINE, "Failed to respond to a callback", e);
+        }
+    }
+
+    /**
+     * Buffers the body of a callback, up to the maximum size.
+     */
+    private static final class BodyConsumer extends AbstractAsyncRequestConsumer<byte[]> {
+
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private final int maxBodySize;
+        private SimpleInputBuffer buffer;
+
+        private BodyConsumer(int maxBodySize) {
+            this.maxBodySize = maxBodySize;
+        }
+
+        @Override
+        protected void onRequestReceived(HttpRequest request) {
+            // nothing to do until the body arrives
+        }
+
+        @Override
+        protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) throws IOException {
+            long length = entity.getContentLength();
+            if (length > maxBodySize) {
+                throw new ContentTooLongException("Callbacks are limited to " + maxBodySize + " bytes");
+            }
+            buffer = new SimpleInputBuffer(length > 0 ? (int) length : INITIAL_CAPACITY, HeapByteBufferAllocator.INSTANCE);
+        }
+
+        @Override
+        protected void onContentReceived(ContentDecoder decoder, IOControl ioControl) throws IOException {
+            buffer.consumeContent(decoder);
+            if (buffer.length() > maxBodySize) {
+                throw new ContentTooLongException("Callbacks are limited to " + maxBodySize + " bytes");
+            }
+        }
+
+        @Override
+        protected byte[] buildResult(HttpContext context) throws IOException {
+            if (buffer == null) {
+                return new byte[0];
+            }
+            byte[] body = new byte[buffer.length()];
+            int read = 0;
+            while (read < body.length) {
+                read += buffer.read(body, read, body.length - read);
+            }
+            return body;
+        }
+
+        @Override
+        protected void releaseResources() {
+            buffer = null;
+        }
+    }
+
+    /**
+     * Answers oversized callbacks with 413 and logs through java.util.logging.
+     */
+    private static final class ReceiverService extends HttpAsyncService {
+
+        private ReceiverService(UriHttpAsyncRequestHandlerMapper mapper) {
+            super(HttpProcessorBuilder.create()
+                                      .add(new ResponseDate())
+                                      .add(new ResponseServer(RestClient.USER_AGENT))
+                                      .add(new ResponseContent())
+                                      .add(new ResponseConnControl())
+                                      .build(), mapper);
+        }
+
+        @Override
+        protected HttpAsyncResponseProducer handleException(Exception ex, HttpContext context) {
+            if (ex instanceof ContentTooLongException) {
+                HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_REQUEST_TOO_LONG, "Request Entity Too Large");
+                response.setEntity(new StringEntity(ex.getMessage(), ContentType.TEXT_PLAIN));
+                return new BasicAsyncResponseProducer(response);
+            }
+            return super.handleException(ex, context);
+        }
+
+        @Override
+        protected void log(Exception ex) {
+            if (!(ex instanceof InterruptedIOException)) {
+                LOGGER.log(Level.FINE, "Callback connection failed", ex);
+            }
+        }
+    }
+}
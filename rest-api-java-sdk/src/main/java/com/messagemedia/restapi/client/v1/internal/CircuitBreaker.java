@@ -0,0 +1,209 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The circuit breaker of one endpoint.
+ * <p/>
+ * While the circuit is closed, the outcome of every request is recorded in a rolling window of {@link #BUCKETS} buckets. The circuit opens
+ * once the window holds at least {@link #MIN_REQUESTS} requests, and the share of the failed ones, or of the slow ones, reaches the threshold.
+ * Requests are rejected at once while the circuit is open. When the open time is over, the next request probes the API first. If the probe
+ * succeeds, that request is let through as a trial, and closes the circuit if it succeeds as well. Otherwise the circuit opens again.
+ * <p/>
+ * Instances of this class are thread-safe. The methods taking a time expect it from {@link System#nanoTime()}.
+ */
+final class CircuitBreaker {
+
+    /**
+     * What to do with a request.
+     */
+    enum Admission {
+        /** Send the request. */
+        ALLOW,
+        /** Probe the API, report the result with {@link #probed(boolean, long)}, and send the request if it was alive. */
+        PROBE,
+        /** Reject the request. */
+        REJECT
+    }
+
+    private enum State {
+        CLOSED, OPEN, PROBING, HALF_OPEN
+    }
+
+    static final int BUCKETS = 10;
+    static final int MIN_REQUESTS = 20;
+
+    private static final double PERCENT = 100;
+
+    private final double threshold;
+    private final long slowCall;
+    private final long openTime;
+    private final long bucketTime;
+    private final long[] epochs = new long[BUCKETS];
+    private final int[] requests = new int[BUCKETS];
+    private final int[] failures = new int[BUCKETS];
+    private final int[] slowCalls = new int[BUCKETS];
+    private State state = State.CLOSED;
+    private long openUntil;
+
+    /**
+     * @param threshold the share in percent of failed or slow requests which opens the circuit
+     * @param slowCall  the latency in nanoseconds from which a request counts as slow
+     * @param openTime  the time in nanoseconds the circuit stays open before it is probed
+     * @param window    the time in nanoseconds the rolling window covers
+     */
+    CircuitBreaker(double threshold, long slowCall, long openTime, long window) {
+        this.threshold = threshold / PERCENT;
+        this.slowCall = slowCall;
+        this.openTime = openTime;
+        this.bucketTime = Math.max(1, window / BUCKETS);
+        reset();
+    }
+
+    /**
+     * Decides what to do with a request.
+     *
+     * @param now the current time
+     * @return the admission of the request
+     */
+    synchronized Admission admit(long now) {
+        switch (state) {
+            case CLOSED:
+                return Admission.ALLOW;
+            case OPEN:
+                if (now - openUntil < 0) {
+                    return Admission.REJECT;
+                }
+                state = State.PROBING;
+                return Admission.PROBE;
+            default:
+                // a probe or a trial is under way
+                return Admission.REJECT;
+        }
+    }
+
+    /**
+     * @param now the current time
+     * @return the time in milliseconds until the circuit is probed again
+     */
+    synchronized long getRetryAfter(long now) {
+        return state == State.OPEN ? Math.max(0, TimeUnit.NANOSECONDS.toMillis(openUntil - now)) : 0;
+    }
+
+    /**
+     * Reports the result of a probe requested by {@link Admission#PROBE}.
+     *
+     * @param alive whether the API answered the probe successfully
+     * @param now   the current time
+     */
+    synchronized void probed(boolean alive, long now) {
+        if (alive) {
+            state = State.HALF_OPEN;
+        } else {
+            open(now);
+        }
+    }
+
+    /**
+     * Records the outcome of a request which has been let through.
+     *
+     * @param failed  whether the request failed transiently or the server answered with an error
+     * @param latency the latency of the request in nanoseconds
+     * @param now     the current time
+     */
+    synchronized void record(boolean failed, long latency, long now) {
+        boolean slow = latency >= slowCall;
+        if (state == State.HALF_OPEN) {
+            trialed(!failed && !slow, now);
+        } else if (state == State.CLOSED) {
+            int bucket = bucket(now);
+            requests[bucket]++;
+            failures[bucket] += failed ? 1 : 0;
+            slowCalls[bucket] += slow ? 1 : 0;
+            if (isTripped(now)) {
+                open(now);
+            }
+        }
+    }
+
+    private void trialed(boolean succeeded, long now) {
+        if (succeeded) {
+            state = State.CLOSED;
+            reset();
+        } else {
+            open(now);
+        }
+    }
+
+    /**
+     * Records that a request which has been let through was cancelled before its outcome was known. If it was the trial, the next request
+     * probes the API again.
+     *
+     * @param now the current time
+     */
+    synchronized void abandoned(long now) {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+            openUntil = now;
+        }
+    }
+
+    synchronized boolean isClosed() {
+        return state == State.CLOSED;
+    }
+
+    private int bucket(long now) {
+        long epoch = now / bucketTime;
+        // nanoTime may be negative
+        int bucket = (int) ((epoch % BUCKETS + BUCKETS) % BUCKETS);
+        if (epochs[bucket] != epoch) {
+            epochs[bucket] = epoch;
+            requests[bucket] = 0;
+            failures[bucket] = 0;
+            slowCalls[bucket] = 0;
+        }
+        return bucket;
+    }
+
+    private boolean isTripped(long now) {
+        long oldest = now / bucketTime - BUCKETS;
+        int total = 0;
+        int failed = 0;
+        int slow = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (epochs[i] > oldest) {
+                total += requests[i];
+                failed += failures[i];
+                slow += slowCalls[i];
+            }
+        }
+        return total >= MIN_REQUESTS && Math.max(failed, slow) >= threshold * total;
+    }
+
+    private void open(long now) {
+        state = State.OPEN;
+        openUntil = now + openTime;
+    }
+
+    private void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            epochs[i] = Long.MIN_VALUE;
+        }
+    }
+}
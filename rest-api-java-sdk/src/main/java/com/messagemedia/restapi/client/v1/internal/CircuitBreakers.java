@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.RestApiCircuitOpenException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The circuit breakers of a client, one {@link CircuitBreaker} per endpoint, created on first use.
+ * <p/>
+ * Requests to the status endpoint are never rejected, as they are what probes the API. A request fails if the connection failed, see
+ * {@link Retries#isTransient(Throwable)}, or if the server answered with a 5xx HTTP status code.
+ */
+final class CircuitBreakers {
+
+    static final int FAILURE_RATE_DEFAULT = 50;
+    static final int SLOW_CALL_DEFAULT = 10 * 1000;
+    static final int OPEN_TIME_DEFAULT = 10 * 1000;
+    static final long WINDOW = TimeUnit.SECONDS.toNanos(10);
+
+    // a probe must not hang for as long as a degraded API lets requests hang
+    private static final int PROBE_TIMEOUT = 5 * 1000;
+    private static final int SERVER_ERROR = 500;
+
+    private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<String, CircuitBreaker>();
+    private final int failureRate;
+    private final long slowCall;
+    private final long openTime;
+    private final RequestConfig probeConfig;
+
+    /**
+     * @param failureRate the share in percent of failed or slow requests which opens a circuit
+     * @param slowCall    the latency in milliseconds from which a request counts as slow
+     * @param openTime    the time in milliseconds a circuit stays open before it is probed
+     * @param probeConfig the configuration of the client, whose timeouts are cut for probes
+     */
+    CircuitBreakers(int failureRate, int slowCall, int openTime, RequestConfig probeConfig) {
+        this.failureRate = failureRate;
+        this.slowCall = TimeUnit.MILLISECONDS.toNanos(slowCall);
+        this.openTime = TimeUnit.MILLISECONDS.toNanos(openTime);
+        this.probeConfig = RequestConfig.copy(probeConfig)
+                                        .setConnectTimeout(Math.min(PROBE_TIMEOUT, probeConfig.getConnectTimeout()))
+                                        .setSocketTimeout(Math.min(PROBE_TIMEOUT, probeConfig.getSocketTimeout()))
+                                        .build();
+    }
+
+    /**
+     * @param req the request
+     * @return the breaker of the endpoint of the request, or null if the request is a probe
+     */
+    CircuitBreaker breakerFor(RestRequest req) {
+        String endpoint = req.getEndpoint();
+        if (RestApiClientImpl.URL_STATUS.equals(endpoint)) {
+            return null;
+        }
+        CircuitBreaker breaker = breakers.get(endpoint);
+        if (breaker == null) {
+            breaker = new CircuitBreaker(failureRate, slowCall, openTime, WINDOW);
+            CircuitBreaker existing = breakers.putIfAbsent(endpoint, breaker);
+            if (existing != null) {
+                breaker = existing;
+            }
+        }
+        return breaker;
+    }
+
+    static RestApiCircuitOpenException rejected(RestRequest req, CircuitBreaker breaker) {
+        return new RestApiCircuitOpenException(req.getEndpoint(), breaker.getRetryAfter(System.nanoTime()));
+    }
+
+    static boolean isFailure(int statusCode) {
+        return statusCode >= SERVER_ERROR;
+    }
+
+    /**
+     * Builds the request which probes whether the API is alive, with shortened timeouts.
+     *
+     * @param probe the status request
+     * @return the http request
+     */
+    HttpUriRequest probe(RestRequest probe) {
+        HttpUriRequest request = probe.getHttpRequest();
+        ((HttpRequestBase) request).setConfig(probeConfig);
+        return request;
+    }
+}
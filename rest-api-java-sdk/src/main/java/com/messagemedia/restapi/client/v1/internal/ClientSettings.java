@@ -0,0 +1,433 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.AuthorizationScheme;
+import com.messagemedia.restapi.client.v1.OperationClass;
+import com.messagemedia.restapi.client.v1.RateLimitMode;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.metrics.RestApiMetricsListener;
+import com.messagemedia.restapi.client.v1.transport.Transport;
+import org.apache.http.client.config.RequestConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The settings a client is created with. Unset optional values fall back to their defaults.
+ * <p/>
+ * Instances of this class are NOT thread-safe. They must not be modified once a client has been created from them.
+ */
+public final class ClientSettings {
+
+    private final String endpoint;
+    private final String key;
+    private final String secret;
+    private Integer maxConnections;
+    private Integer connectTimeout;
+    private Integer socketTimeout;
+    private Integer ioThreads;
+    private Integer bulkChunkSize;
+    private Integer bulkMaxInFlight;
+    private Integer sendLinger;
+    private Integer maxSendBatchSize;
+    private Integer pollInterval;
+    private Integer maxPollInterval;
+    private RestApiMetricsListener metricsListener;
+    private final Map<OperationClass, Double> rateLimits = new EnumMap<OperationClass, Double>(OperationClass.class);
+    private RateLimitMode rateLimitMode;
+    private Integer maxRetries;
+    private boolean retrySends;
+    private Integer retryBackoff;
+    private Integer maxRetryBackoff;
+    private Double retryBudget;
+    private Double hedgePercentile;
+    private Double hedgeBudget;
+    private boolean circuitBreaker;
+    private Integer circuitBreakerFailureRate;
+    private Integer circuitBreakerSlowCall;
+    private Integer circuitBreakerOpenTime;
+    private File outbox;
+    private Integer deduplicationWindow;
+    private Integer deduplicationCapacity;
+    private boolean deduplicationBloomFilter;
+    private Integer statusCacheSize;
+    private Integer statusCacheTtl;
+    private Transport transport;
+    private boolean virtualThreads;
+    private boolean fairScheduling;
+    private Integer compressionThreshold;
+    private Integer keepAlive;
+    private Integer validateAfterInactivity;
+    private Integer evictionInterval;
+    private AuthorizationScheme authorizationScheme = AuthorizationScheme.HMAC_MM_V2;
+
+    public ClientSettings(String endpoint, String key, String secret) {
+        this.endpoint = endpoint;
+        this.key = key;
+        this.secret = secret;
+    }
+
+    public ClientSettings maxConnections(Integer maxConnections) {
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    public ClientSettings connectTimeout(Integer connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    public ClientSettings socketTimeout(Integer socketTimeout) {
+        this.socketTimeout = socketTimeout;
+        return this;
+    }
+
+    public ClientSettings ioThreads(Integer ioThreads) {
+        this.ioThreads = ioThreads;
+        return this;
+    }
+
+    public ClientSettings bulkChunkSize(Integer bulkChunkSize) {
+        this.bulkChunkSize = bulkChunkSize;
+        return this;
+    }
+
+    public ClientSettings bulkMaxInFlight(Integer bulkMaxInFlight) {
+        this.bulkMaxInFlight = bulkMaxInFlight;
+        return this;
+    }
+
+    public ClientSettings sendLinger(Integer sendLinger) {
+        this.sendLinger = sendLinger;
+        return this;
+    }
+
+    public ClientSettings maxSendBatchSize(Integer maxSendBatchSize) {
+        this.maxSendBatchSize = maxSendBatchSize;
+        return this;
+    }
+
+    public ClientSettings pollInterval(Integer pollInterval) {
+        this.pollInterval = pollInterval;
+        return this;
+    }
+
+    public ClientSettings maxPollInterval(Integer maxPollInterval) {
+        this.maxPollInterval = maxPollInterval;
+        return this;
+    }
+
+    public ClientSettings metricsListener(RestApiMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+        return this;
+    }
+
+    public ClientSettings rateLimit(OperationClass operationClass, Double requestsPerSecond) {
+        if (requestsPerSecond != null) {
+            rateLimits.put(operationClass, requestsPerSecond);
+        } else {
+            rateLimits.remove(operationClass);
+        }
+        return this;
+    }
+
+    public ClientSettings rateLimits(Map<OperationClass, Double> rateLimits) {
+        for (Map.Entry<OperationClass, Double> rateLimit : rateLimits.entrySet()) {
+            rateLimit(rateLimit.getKey(), rateLimit.getValue());
+        }
+        return this;
+    }
+
+    public ClientSettings rateLimitMode(RateLimitMode rateLimitMode) {
+        this.rateLimitMode = rateLimitMode;
+        return this;
+    }
+
+    public ClientSettings maxRetries(Integer maxRetries) {
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    public ClientSettings retrySends(boolean retrySends) {
+        this.retrySends = retrySends;
+        return this;
+    }
+
+    public ClientSettings retryBackoff(Integer retryBackoff) {
+        this.retryBackoff = retryBackoff;
+        return this;
+    }
+
+    public ClientSettings maxRetryBackoff(Integer maxRetryBackoff) {
+        this.maxRetryBackoff = maxRetryBackoff;
+        return this;
+    }
+
+    public ClientSettings retryBudget(Double retryBudget) {
+        this.retryBudget = retryBudget;
+        return this;
+    }
+
+    public ClientSettings hedgePercentile(Double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+        return this;
+    }
+
+    public ClientSettings hedgeBudget(Double hedgeBudget) {
+        this.hedgeBudget = hedgeBudget;
+        return this;
+    }
+
+    public ClientSettings circuitBreaker(boolean circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+        return this;
+    }
+
+    public ClientSettings circuitBreakerFailureRate(Integer circuitBreakerFailureRate) {
+        this.circuitBreakerFailureRate = circuitBreakerFailureRate;
+        return this;
+    }
+
+    public ClientSettings circuitBreakerSlowCall(Integer circuitBreakerSlowCall) {
+        this.circuitBreakerSlowCall = circuitBreakerSlowCall;
+        return this;
+    }
+
+    public ClientSettings circuitBreakerOpenTime(Integer circuitBreakerOpenTime) {
+        this.circuitBreakerOpenTime = circuitBreakerOpenTime;
+        return this;
+    }
+
+    public ClientSettings outbox(File outbox) {
+        this.outbox = outbox;
+        return this;
+    }
+
+    public ClientSettings deduplicationWindow(Integer deduplicationWindow) {
+        this.deduplicationWindow = deduplicationWindow;
+        return this;
+    }
+
+    public ClientSettings deduplicationCapacity(Integer deduplicationCapacity) {
+        this.deduplicationCapacity = deduplicationCapacity;
+        return this;
+    }
+
+    public ClientSettings deduplicationBloomFilter(boolean deduplicationBloomFilter) {
+        this.deduplicationBloomFilter = deduplicationBloomFilter;
+        return this;
+    }
+
+    public ClientSettings statusCacheSize(Integer statusCacheSize) {
+        this.statusCacheSize = statusCacheSize;
+        return this;
+    }
+
+    public ClientSettings statusCacheTtl(Integer statusCacheTtl) {
+        this.statusCacheTtl = statusCacheTtl;
+        return this;
+    }
+
+    public ClientSettings transport(Transport transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    public ClientSettings virtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    public ClientSettings fairScheduling(boolean fairScheduling) {
+        this.fairScheduling = fairScheduling;
+        return this;
+    }
+
+    public ClientSettings compressionThreshold(Integer compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+        return this;
+    }
+
+    public ClientSettings keepAlive(Integer keepAlive) {
+        this.keepAlive = keepAlive;
+        return this;
+    }
+
+    public ClientSettings validateAfterInactivity(Integer validateAfterInactivity) {
+        this.validateAfterInactivity = validateAfterInactivity;
+        return this;
+    }
+
+    public ClientSettings evictionInterval(Integer evictionInterval) {
+        this.evictionInterval = evictionInterval;
+        return this;
+    }
+
+    public ClientSettings authorizationScheme(AuthorizationScheme authorizationScheme) {
+        this.authorizationScheme = authorizationScheme;
+        return this;
+    }
+
+    String getEndpoint() {
+        return endpoint;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    String getSecret() {
+        return secret;
+    }
+
+    int getMaxConnections() {
+        return maxConnections != null ? maxConnections : RestClient.MAX_CONNECTIONS_DEFAULT;
+    }
+
+    int getConnectTimeout() {
+        return connectTimeout != null ? connectTimeout : RestClient.CONNECT_TIMEOUT_DEFAULT;
+    }
+
+    int getSocketTimeout() {
+        return socketTimeout != null ? socketTimeout : RestClient.SOCKET_TIMEOUT_DEFAULT;
+    }
+
+    int getKeepAlive() {
+        return keepAlive != null ? keepAlive : RestClient.KEEP_ALIVE_DEFAULT;
+    }
+
+    int getValidateAfterInactivity() {
+        return validateAfterInactivity != null ? validateAfterInactivity : RestClient.VALIDATE_AFTER_INACTIVITY_DEFAULT;
+    }
+
+    int getEvictionInterval() {
+        return evictionInterval != null ? evictionInterval : RestClient.EVICTION_INTERVAL_DEFAULT;
+    }
+
+    int getIoThreads() {
+        return ioThreads != null ? ioThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    int getBulkChunkSize() {
+        return bulkChunkSize != null ? bulkChunkSize : BulkMessageSender.CHUNK_SIZE_DEFAULT;
+    }
+
+    int getBulkMaxInFlight() {
+        return bulkMaxInFlight != null ? bulkMaxInFlight : BulkMessageSender.MAX_IN_FLIGHT_DEFAULT;
+    }
+
+    int getSendLinger() {
+        return sendLinger != null ? sendLinger : 0;
+    }
+
+    int getMaxSendBatchSize() {
+        return maxSendBatchSize != null ? maxSendBatchSize : BulkMessageSender.CHUNK_SIZE_DEFAULT;
+    }
+
+    long getPollInterval() {
+        return pollInterval != null ? pollInterval : InboundPollerImpl.MIN_INTERVAL_DEFAULT;
+    }
+
+    long getMaxPollInterval() {
+        return maxPollInterval != null ? maxPollInterval : Math.max(InboundPollerImpl.MAX_INTERVAL_DEFAULT, getPollInterval());
+    }
+
+    int getRetryBackoff() {
+        return retryBackoff != null ? retryBackoff : Retries.BACKOFF_DEFAULT;
+    }
+
+    int getMaxRetryBackoff() {
+        return maxRetryBackoff != null ? maxRetryBackoff : Retries.MAX_BACKOFF_DEFAULT;
+    }
+
+    RestApiMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    RateLimits createRateLimits() {
+        return new RateLimits(rateLimits, rateLimitMode != null ? rateLimitMode : RateLimitMode.WAIT);
+    }
+
+    Retries createRetries() {
+        return new Retries(maxRetries != null ? maxRetries : Retries.MAX_RETRIES_DEFAULT, retrySends,
+                           getRetryBackoff(), getMaxRetryBackoff(),
+                           retryBudget != null ? retryBudget : Retries.BUDGET_DEFAULT);
+    }
+
+    Hedging createHedging() {
+        return hedgePercentile != null ? new Hedging(hedgePercentile, hedgeBudget != null ? hedgeBudget : Hedging.BUDGET_DEFAULT) : null;
+    }
+
+    CircuitBreakers createCircuitBreakers(RequestConfig config) {
+        if (!circuitBreaker) {
+            return null;
+        }
+        return new CircuitBreakers(circuitBreakerFailureRate != null ? circuitBreakerFailureRate : CircuitBreakers.FAILURE_RATE_DEFAULT,
+                                   circuitBreakerSlowCall != null ? circuitBreakerSlowCall : CircuitBreakers.SLOW_CALL_DEFAULT,
+                                   circuitBreakerOpenTime != null ? circuitBreakerOpenTime : CircuitBreakers.OPEN_TIME_DEFAULT, config);
+    }
+
+    Outbox createOutbox() throws RestApiException {
+        if (outbox == null) {
+            return null;
+        }
+        try {
+            return new Outbox(outbox, Outbox.SEGMENT_SIZE_DEFAULT);
+        } catch (IOException e) {
+            throw new RestApiException("Failed to open the outbox " + outbox, e);
+        }
+    }
+
+    DeduplicationIndex createDeduplicationIndex() {
+        if (deduplicationWindow == null) {
+            return null;
+        }
+        return new DeduplicationIndex(deduplicationWindow, deduplicationCapacity != null ? deduplicationCapacity
+                                                                                          : DeduplicationIndex.CAPACITY_DEFAULT,
+                                      deduplicationBloomFilter);
+    }
+
+    MessageStatusCache createStatusCache() {
+        return statusCacheSize != null ? new MessageStatusCache(statusCacheSize, statusCacheTtl != null ? statusCacheTtl
+                                                                                                    : MessageStatusCache.TTL_DEFAULT) : null;
+    }
+
+    Transport getTransport() {
+        return transport;
+    }
+
+    boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    FairScheduler createScheduler() {
+        // a permit is held for as long as the connection of its response, so with one permit per connection a request which has its turn
+        // always finds a free connection
+        return fairScheduling ? new FairScheduler(getMaxConnections()) : null;
+    }
+
+    Compression createCompression() {
+        return new Compression(compressionThreshold != null ? compressionThreshold : -1);
+    }
+
+    AuthorizationScheme getAuthorizationScheme() {
+        return authorizationScheme;
+    }
+}
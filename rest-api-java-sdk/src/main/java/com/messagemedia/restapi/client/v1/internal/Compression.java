@@ -0,0 +1,252 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHeader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses the bodies of requests with gzip once they are larger than a threshold, and decompresses the responses which the API sent
+ * compressed. Every request accepts gzip responses, and these are decompressed while they are read, never buffered.
+ * <p/>
+ * The content encoding has to be known before the body is sent. A body whose length is not known upfront, such as a {@link JsonEntity}, is
+ * serialized once without being kept, only to count its bytes up to the threshold. If it ends before, the original entity is sent as is,
+ * still streamed. Otherwise it is compressed while it is sent, with chunked transfer encoding. A body which can only be read once has its
+ * first bytes up to the threshold read ahead instead, and sent before the rest. A body whose length is known is compressed in memory, so
+ * that it keeps a length. Requests are compressed before they are signed: if a Content-MD5 header is set, the compressed body is buffered
+ * and the header set to its digest, which is what the server receives.
+ * <p/>
+ * Instances of this class are immutable.
+ */
+final class Compression {
+
+    static final String GZIP = "gzip";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final int threshold;
+
+    /**
+     * @param threshold the size in bytes from which request bodies are compressed, or a negative value to never compress them
+     */
+    Compression(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Asks for a compressed response, and compresses the body of the request if it is large enough.
+     *
+     * @param request the request, whose body is replaced if it is compressed
+     * @throws IOException if the body can not be serialized
+     */
+    void prepare(HttpRequest request) throws IOException {
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, GZIP);
+        if (threshold < 0 || !(request instanceof HttpEntityEnclosingRequest)) {
+            return;
+        }
+        HttpEntityEnclosingRequest enclosing = (HttpEntityEnclosingRequest) request;
+        HttpEntity body = enclosing.getEntity();
+        if (!isCompressible(body)) {
+            return;
+        }
+        if (body.getContentLength() < 0 && !body.isRepeatable()) {
+            body = readAhead(body);
+            enclosing.setEntity(body);
+        }
+        if (exceedsThreshold(body)) {
+            enclosing.setEntity(compress(request, body));
+            request.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+    }
+
+    private static boolean isCompressible(HttpEntity body) {
+        return body != null && body.getContentEncoding() == null;
+    }
+
+    private boolean exceedsThreshold(HttpEntity body) throws IOException {
+        if (body.getContentLength() >= 0) {
+            return body.getContentLength() > threshold;
+        }
+        if (!body.isRepeatable()) {
+            // what is left of a body which can only be read once after it was read ahead
+            return true;
+        }
+        ThresholdProbe probe = new ThresholdProbe(threshold);
+        try {
+            body.writeTo(probe);
+        } catch (IOException e) {
+            // thrown by the probe to stop the serialization, but maybe wrapped by the entity
+            if (!probe.isExceeded()) {
+                throw e;
+            }
+        }
+        return probe.isExceeded();
+    }
+
+    /**
+     * Reads a body which can only be read once up to the threshold, so that it can be sent either way.
+     *
+     * @return the body if it is not longer than the threshold, or else a body which sends what was read ahead, then the rest
+     */
+    private HttpEntity readAhead(HttpEntity body) throws IOException {
+        InputStream content = body.getContent();
+        byte[] ahead = new byte[threshold + 1];
+        int length = 0;
+        int read = 0;
+        while (length < ahead.length && read >= 0) {
+            read = content.read(ahead, length, ahead.length - length);
+            length += Math.max(read, 0);
+        }
+        AbstractHttpEntity replayed;
+        if (length <= threshold) {
+            content.close();
+            replayed = new ByteArrayEntity(ahead, 0, length);
+        } else {
+            replayed = new InputStreamEntity(new SequenceInputStream(new ByteArrayInputStream(ahead), content), -1);
+        }
+        replayed.setContentType(body.getContentType());
+        return replayed;
+    }
+
+    private static HttpEntity compress(HttpRequest request, HttpEntity body) throws IOException {
+        boolean digest = request.containsHeader(HttpHeaders.CONTENT_MD5);
+        if (body.getContentLength() < 0 && !digest) {
+            return new GzipEntity(body);
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUFFER_SIZE);
+        GZIPOutputStream gzip = new GZIPOutputStream(buffer, BUFFER_SIZE);
+        body.writeTo(gzip);
+        gzip.close();
+        byte[] bytes = buffer.toByteArray();
+        if (digest) {
+            request.setHeader(HttpHeaders.CONTENT_MD5, Base64.encodeBase64String(DigestUtils.md5(bytes)));
+        }
+        ByteArrayEntity sent = new ByteArrayEntity(bytes);
+        sent.setContentType(body.getContentType());
+        sent.setContentEncoding(GZIP);
+        return sent;
+    }
+
+    /**
+     * Replaces the body of a compressed response by one which decompresses it while it is read.
+     *
+     * @param response the response
+     */
+    static void decompress(HttpResponse response) {
+        HttpEntity entity = response.getEntity();
+        Header encoding = response.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+        if (entity != null && encoding != null && GZIP.equalsIgnoreCase(encoding.getValue().trim())) {
+            response.setEntity(new GzipDecompressingEntity(entity));
+            response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+            // they describe the compressed body
+            response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+            response.removeHeaders(HttpHeaders.CONTENT_MD5);
+        }
+    }
+
+    /**
+     * A body which is compressed while it is written, with chunked transfer encoding.
+     */
+    private static final class GzipEntity extends HttpEntityWrapper {
+
+        private GzipEntity(HttpEntity wrapped) {
+            super(wrapped);
+        }
+
+        @Override
+        public Header getContentEncoding() {
+            return new BasicHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public boolean isChunked() {
+            return true;
+        }
+
+        /**
+         * Compresses the body into memory. Only used by transports which pull the body instead of letting the entity write it.
+         */
+        @Override
+        public InputStream getContent() throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+            writeTo(out);
+            return new ByteArrayInputStream(out.toByteArray());
+        }
+
+        @Override
+        public void writeTo(OutputStream outstream) throws IOException {
+            GZIPOutputStream gzip = new GZIPOutputStream(outstream, BUFFER_SIZE);
+            super.writeTo(gzip);
+            // the stream of the connection is closed by the transport
+            gzip.finish();
+        }
+    }
+
+    /**
+     * Counts what is written without keeping it, and fails as soon as the threshold is exceeded.
+     */
+    private static final class ThresholdProbe extends OutputStream {
+
+        private final int threshold;
+        private long count;
+
+        private ThresholdProbe(int threshold) {
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            count += len;
+            if (isExceeded()) {
+                throw new IOException("The body exceeds the compression threshold");
+            }
+        }
+
+        private boolean isExceeded() {
+            return count > threshold;
+        }
+    }
+}
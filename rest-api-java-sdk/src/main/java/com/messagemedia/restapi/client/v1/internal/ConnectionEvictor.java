@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closes the expired idle connections of the pools in the background, so that they are not left half-closed by the server until the next
+ * request picks them up.
+ * <p/>
+ * A single daemon thread serves all pools. It only holds them weakly: the blocking client is never closed, and its pool must still be
+ * collected once the client is not used anymore.
+ */
+final class ConnectionEvictor {
+
+    private static final ScheduledThreadPoolExecutor EXECUTOR;
+
+    static {
+        EXECUTOR = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "rest-api-connection-evictor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        EXECUTOR.setRemoveOnCancelPolicy(true);
+    }
+
+    private ConnectionEvictor() {
+    }
+
+    /**
+     * Evicts the expired connections of a pool periodically, until the returned future is cancelled or the pool is collected.
+     *
+     * @param pool         the pool
+     * @param periodMillis the time between two evictions, in milliseconds
+     * @return the future of the evictions
+     */
+    static Future<?> schedule(ConnectionPool pool, long periodMillis) {
+        Eviction eviction = new Eviction(pool);
+        eviction.future = EXECUTOR.scheduleWithFixedDelay(eviction, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        return eviction.future;
+    }
+
+    private static final class Eviction implements Runnable {
+
+        private final WeakReference<ConnectionPool> pool;
+        private volatile Future<?> future;
+
+        private Eviction(ConnectionPool pool) {
+            this.pool = new WeakReference<ConnectionPool>(pool);
+        }
+
+        @Override
+        public void run() {
+            ConnectionPool current = pool.get();
+            if (current != null) {
+                current.evict();
+            } else if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.metrics.ConnectionPoolStats;
+
+/**
+ * The connection pool of a client, as seen by {@link ConnectionEvictor} and by the pool statistics.
+ */
+interface ConnectionPool {
+
+    /**
+     * Closes the idle connections whose keep-alive has expired.
+     */
+    void evict();
+
+    /**
+     * @return a snapshot of the pool
+     */
+    ConnectionPoolStats getStats();
+
+}
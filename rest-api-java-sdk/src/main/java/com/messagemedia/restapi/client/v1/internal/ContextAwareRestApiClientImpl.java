@@ -20,6 +20,7 @@ import com.messagemedia.restapi.client.v1.Context;
 import com.messagemedia.restapi.client.v1.ContextAwareRestApiClient;
 import com.messagemedia.restapi.client.v1.ContextBuilder;
 import com.messagemedia.restapi.client.v1.messaging.RestApiMessagingClient;
+import com.messagemedia.restapi.client.v1.metrics.ConnectionPoolStats;
 
 /**
  * This class wraps a normal Rest API client and passes on the context to it's rest client.
@@ -63,4 +64,20 @@ public class ContextAwareRestApiClientImpl implements ContextAwareRestApiClient
     public RestApiMessagingClient messaging() {
         return delegate.messaging();
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConnectionPoolStats getConnectionPoolStats() {
+        return delegate.getConnectionPoolStats();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RestApiMessagingClient messaging(Context context) {
+        return delegate.messaging(context);
+    }
 }
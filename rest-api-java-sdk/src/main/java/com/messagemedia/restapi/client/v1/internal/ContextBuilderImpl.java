@@ -58,4 +58,12 @@ class ContextBuilderImpl implements ContextBuilder {
         contextAwareRestApiClientImpl.setContext(context);
         return context;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Context buildDetached() {
+        return new ContextImpl(username, account, null);
+    }
 }
@@ -53,6 +53,9 @@ class ContextImpl implements Context {
      */
     @Override
     public void close() {
-        contextAwareRestApiClient.removeCurrentContext();
+        // a detached context was never set on a thread
+        if (contextAwareRestApiClient != null) {
+            contextAwareRestApiClient.removeCurrentContext();
+        }
     }
 }
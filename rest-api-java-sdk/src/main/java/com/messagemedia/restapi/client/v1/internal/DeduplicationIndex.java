@@ -0,0 +1,255 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the IDs of the replies or delivery reports which have been handled, for a window of time, so that the pollers do not hand them
+ * to the handler again when the API returns them once more.
+ * <p/>
+ * The IDs are UUIDs, packed into two longs each in open-addressed tables with linear probing, which take 16 bytes per slot instead of the
+ * hundreds of bytes of a set of strings. IDs which are not UUIDs are hashed to 128 bits instead. There are two generations of tables: IDs are
+ * added to the current one and looked up in both. Once the current generation is half a window old, or full, it becomes the previous one
+ * and the previous one is cleared to become the current one. An ID is thus remembered for at least half the window, unless more IDs than
+ * the capacity of a generation are added in that time, and at most for the whole window. The memory used is fixed.
+ * <p/>
+ * Each generation can be fronted by a Bloom filter, a sixteenth of the size of the table, which answers most lookups of new IDs without
+ * touching the tables.
+ * <p/>
+ * Instances of this class are thread-safe, an index is shared by all the pollers of a kind of items.
+ */
+final class DeduplicationIndex {
+
+    static final int CAPACITY_DEFAULT = 50000;
+
+    private static final int UUID_LENGTH = 36;
+    private static final int[] UUID_DASHES = {8, 13, 18, 23};
+    private static final int BLOOM_HASHES = 3;
+
+    private final long halfWindow;
+    private final int capacity;
+    private Generation current;
+    private Generation previous;
+
+    /**
+     * Creates an index.
+     *
+     * @param window      the time in milliseconds an ID is remembered for at most
+     * @param capacity    the number of IDs a generation holds
+     * @param bloomFilter whether the generations are fronted by a Bloom filter
+     */
+    DeduplicationIndex(long window, int capacity, boolean bloomFilter) {
+        if (window < 2 || capacity < 1) {
+            throw new IllegalArgumentException("Invalid deduplication window " + window + " or capacity " + capacity);
+        }
+        this.halfWindow = window / 2;
+        this.capacity = capacity;
+        // at most three quarters of the slots are used, so that the probe sequences stay short
+        int slots = Integer.highestOneBit(Math.max(capacity + capacity / 3, 1) * 2 - 1);
+        this.current = new Generation(slots, bloomFilter);
+        this.previous = new Generation(slots, bloomFilter);
+    }
+
+    /**
+     * @param id  the ID
+     * @param now the current time in milliseconds
+     * @return <code>true</code> if the ID has been added within the window
+     */
+    synchronized boolean contains(String id, long now) {
+        rotate(now);
+        long high = high(id);
+        long low = low(id, high);
+        return current.contains(high, low) || previous.contains(high, low);
+    }
+
+    /**
+     * Adds an ID, which is then remembered for at least half the window.
+     *
+     * @param id  the ID
+     * @param now the current time in milliseconds
+     */
+    synchronized void add(String id, long now) {
+        rotate(now);
+        if (current.size >= capacity) {
+            rotate();
+            current.start = now;
+        }
+        long high = high(id);
+        current.add(high, low(id, high));
+    }
+
+    private void rotate(long now) {
+        if (now - current.start < halfWindow) {
+            return;
+        }
+        if (now - current.start >= 2 * halfWindow) {
+            // nothing was added for a whole window, the current generation has expired as well
+            current.clear();
+        }
+        rotate();
+        current.start = now;
+    }
+
+    private void rotate() {
+        Generation expired = previous;
+        previous = current;
+        expired.clear();
+        current = expired;
+    }
+
+    private static long high(String id) {
+        if (isUuid(id)) {
+            return hex(id, 0, 8) << 32 | hex(id, 9, 13) << 16 | hex(id, 14, 18);
+        }
+        return hash(id, 0x9E3779B97F4A7C15L);
+    }
+
+    private static long low(String id, long high) {
+        long low = isUuid(id) ? hex(id, 19, 23) << 48 | hex(id, 24, 36) : hash(id, high);
+        // the nil UUID would be taken for an empty slot, it is stored as another value which is not a random UUID either
+        return high == 0 && low == 0 ? 1 : low;
+    }
+
+    private static boolean isUuid(String id) {
+        if (id.length() != UUID_LENGTH) {
+            return false;
+        }
+        for (int dash : UUID_DASHES) {
+            if (id.charAt(dash) != '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hex(String id, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(id.charAt(i), 16);
+            if (digit < 0) {
+                // not a UUID after all, still stable for a given ID
+                digit = id.charAt(i) & 0xF;
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    private static long hash(String id, long seed) {
+        long hash = seed;
+        for (int i = 0; i < id.length(); i++) {
+            hash = (hash ^ id.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long value) {
+        long mixed = (value ^ value >>> 33) * 0xFF51AFD7ED558CCDL;
+        mixed = (mixed ^ mixed >>> 33) * 0xC4CEB9FE1A85EC53L;
+        return mixed ^ mixed >>> 33;
+    }
+
+    /**
+     * A table of IDs, with its Bloom filter.
+     */
+    private static final class Generation {
+
+        // two longs per slot, the empty slots hold two zeros
+        private final long[] keys;
+        private final int mask;
+        private final long[] bloom;
+        private int size;
+        private long start;
+
+        Generation(int slots, boolean bloomFilter) {
+            this.keys = new long[slots * 2];
+            this.mask = slots - 1;
+            // eight bits per slot, with three hashes that is under two false positives in a hundred when the generation is full
+            this.bloom = bloomFilter ? new long[Math.max(slots / 8, 1)] : null;
+        }
+
+        boolean contains(long high, long low) {
+            if (size == 0) {
+                return false;
+            }
+            long hash = mix(high ^ mix(low));
+            if (bloom != null && !mayContain(hash)) {
+                return false;
+            }
+            return !isEmpty(find(high, low, hash));
+        }
+
+        void add(long high, long low) {
+            long hash = mix(high ^ mix(low));
+            int slot = find(high, low, hash);
+            if (!isEmpty(slot)) {
+                return;
+            }
+            keys[slot * 2] = high;
+            keys[slot * 2 + 1] = low;
+            size++;
+            if (bloom != null) {
+                for (int i = 0; i < BLOOM_HASHES; i++) {
+                    int bit = bloomBit(hash, i);
+                    bloom[bit >>> 6] |= 1L << bit;
+                }
+            }
+        }
+
+        /**
+         * @return the slot holding the ID, or the empty slot where it belongs
+         */
+        private int find(long high, long low, long hash) {
+            int slot = (int) hash & mask;
+            while (!isEmpty(slot) && (keys[slot * 2] != high || keys[slot * 2 + 1] != low)) {
+                slot = slot + 1 & mask;
+            }
+            return slot;
+        }
+
+        private boolean isEmpty(int slot) {
+            return keys[slot * 2] == 0 && keys[slot * 2 + 1] == 0;
+        }
+
+        private boolean mayContain(long hash) {
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = bloomBit(hash, i);
+                if ((bloom[bit >>> 6] & 1L << bit) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int bloomBit(long hash, int i) {
+            // double hashing: the high and the low half of the hash make the sequence of bits
+            long combined = (hash >>> 32) + i * (hash & 0xFFFFFFFFL);
+            return (int) ((combined & Long.MAX_VALUE) % (bloom.length * 64L));
+        }
+
+        void clear() {
+            if (size > 0) {
+                Arrays.fill(keys, 0);
+                if (bloom != null) {
+                    Arrays.fill(bloom, 0);
+                }
+                size = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.RestApiCallback;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.RestApiFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link RestApiFuture} which is completed explicitly by its producer.
+ * <p/>
+ * Only the first call to {@link #complete(Object)}, {@link #fail(RestApiException)} or {@link #cancel(boolean)} has an effect.
+ *
+ * @param <T> the type of the result
+ */
+public class DefaultRestApiFuture<T> implements RestApiFuture<T> {
+
+    private static final Logger LOGGER = Logger.getLogger(DefaultRestApiFuture.class.getName());
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final List<RestApiCallback<? super T>> callbacks = new ArrayList<RestApiCallback<? super T>>();
+    private volatile Runnable cancellationHandler;
+    private boolean finished;
+    private boolean cancelled;
+    private T result;
+    private RestApiException failure;
+
+    /**
+     * Completes this future successfully.
+     *
+     * @param value the result
+     * @return <code>true</code> if this call completed the future, <code>false</code> if it had already completed
+     */
+    public boolean complete(T value) {
+        synchronized (this) {
+            if (finished) {
+                return false;
+            }
+            finished = true;
+            result = value;
+        }
+        done.countDown();
+        notifyCallbacks();
+        return true;
+    }
+
+    /**
+     * Completes this future with a failure.
+     *
+     * @param exception the reason of the failure
+     * @return <code>true</code> if this call completed the future, <code>false</code> if it had already completed
+     */
+    public boolean fail(RestApiException exception) {
+        synchronized (this) {
+            if (finished) {
+                return false;
+            }
+            finished = true;
+            failure = exception;
+        }
+        done.countDown();
+        notifyCallbacks();
+        return true;
+    }
+
+    /**
+     * Sets the action which aborts the underlying work when this future gets cancelled.
+     *
+     * @param handler the action to run on cancellation
+     */
+    public void setCancellationHandler(Runnable handler) {
+        this.cancellationHandler = handler;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addCallback(RestApiCallback<? super T> callback) {
+        synchronized (this) {
+            if (!finished) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        notifyCallback(callback);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        synchronized (this) {
+            if (finished) {
+                return false;
+            }
+            finished = true;
+            cancelled = true;
+            failure = new RestApiException("Request cancelled", new CancellationException());
+        }
+        done.countDown();
+        Runnable handler = cancellationHandler;
+        if (handler != null) {
+            handler.run();
+        }
+        notifyCallbacks();
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized boolean isDone() {
+        return finished;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        done.await();
+        return report();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException("No response within " + unit.toMillis(timeout) + " ms");
+        }
+        return report();
+    }
+
+    private synchronized T report() throws ExecutionException {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+        if (failure != null) {
+            throw new ExecutionException(failure.getMessage(), failure);
+        }
+        return result;
+    }
+
+    private void notifyCallbacks() {
+        List<RestApiCallback<? super T>> toNotify;
+        synchronized (this) {
+            toNotify = new ArrayList<RestApiCallback<? super T>>(callbacks);
+            callbacks.clear();
+        }
+        for (RestApiCallback<? super T> callback : toNotify) {
+            notifyCallback(callback);
+        }
+    }
+
+    private void notifyCallback(RestApiCallback<? super T> callback) {
+        T value;
+        RestApiException exception;
+        synchronized (this) {
+            value = result;
+            exception = failure;
+        }
+        try {
+            if (exception == null) {
+                callback.completed(value);
+            } else {
+                callback.failed(exception);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Callback threw an exception", e);
+        }
+    }
+}
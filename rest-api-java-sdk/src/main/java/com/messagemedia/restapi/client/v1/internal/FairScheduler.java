@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shares a number of requests in flight fairly between tenants. As long as permits are free, requests go ahead at once. Once they are all
+ * taken, requests queue per tenant, and every permit which is released goes to the next tenant in turn, whatever the number of requests it
+ * has waiting. A tenant sending thousands of requests thus delays the requests of a tenant sending a few by one request per tenant at most.
+ * <p/>
+ * A request is in flight from the time it takes its permit until its response has been consumed or closed, since its connection is only
+ * released then, see {@link PermitReleasingEntity}.
+ * <p/>
+ * Waiting threads park on a lock condition, never on a monitor, so that virtual threads do not pin their carrier. Instances of this class
+ * are thread-safe.
+ */
+final class FairScheduler {
+
+    private final int permits;
+    private final ReentrantLock lock = new ReentrantLock();
+    // the tenants with waiting requests, in the order of their turns
+    private final Map<String, Queue<Waiter>> waiting = new LinkedHashMap<String, Queue<Waiter>>();
+    private int inFlight;
+
+    /**
+     * @param permits the number of requests in flight at most
+     */
+    FairScheduler(int permits) {
+        this.permits = permits;
+    }
+
+    /**
+     * Takes a permit, waiting for the turn of the tenant if there is none free.
+     *
+     * @param tenant the tenant of the request
+     * @throws InterruptedException if the thread is interrupted while waiting, no permit is taken then
+     */
+    void acquire(String tenant) throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight < permits && waiting.isEmpty()) {
+                inFlight++;
+                return;
+            }
+            Waiter waiter = new Waiter(lock.newCondition());
+            Queue<Waiter> queue = waiting.get(tenant);
+            if (queue == null) {
+                queue = new ArrayDeque<Waiter>();
+                waiting.put(tenant, queue);
+            }
+            queue.add(waiter);
+            try {
+                while (!waiter.granted) {
+                    waiter.turn.await();
+                }
+            } catch (InterruptedException e) {
+                abandon(tenant, waiter);
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a permit, handing it to the next tenant in turn if requests are waiting.
+     */
+    void release() {
+        lock.lock();
+        try {
+            Iterator<Map.Entry<String, Queue<Waiter>>> tenants = waiting.entrySet().iterator();
+            if (!tenants.hasNext()) {
+                inFlight--;
+                return;
+            }
+            Map.Entry<String, Queue<Waiter>> next = tenants.next();
+            tenants.remove();
+            Waiter waiter = next.getValue().poll();
+            if (!next.getValue().isEmpty()) {
+                // back to the end of the line
+                waiting.put(next.getKey(), next.getValue());
+            }
+            waiter.granted = true;
+            waiter.turn.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of requests waiting for a permit
+     */
+    int getWaiting() {
+        lock.lock();
+        try {
+            int count = 0;
+            for (Queue<Waiter> queue : waiting.values()) {
+                count += queue.size();
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void abandon(String tenant, Waiter waiter) {
+        if (waiter.granted) {
+            // the permit was handed over while the thread got interrupted, it goes to the next one
+            release();
+            return;
+        }
+        Queue<Waiter> queue = waiting.get(tenant);
+        queue.remove(waiter);
+        if (queue.isEmpty()) {
+            waiting.remove(tenant);
+        }
+    }
+
+    private static final class Waiter {
+
+        private final Condition turn;
+        private boolean granted;
+
+        private Waiter(Condition turn) {
+            this.turn = turn;
+        }
+    }
+}
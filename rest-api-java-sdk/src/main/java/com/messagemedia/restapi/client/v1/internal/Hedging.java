@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.OperationClass;
+
+import java.util.Arrays;
+
+/**
+ * Decides when a status lookup is hedged: if it has not been answered within a percentile of the latency of the recent lookups, the same
+ * request is sent a second time, and whichever answers first is used.
+ * <p/>
+ * The percentile is taken from a window of the {@link #WINDOW} most recent lookups, and recomputed every {@link #REFRESH} lookups. Hedging
+ * only starts once {@link #MIN_SAMPLES} lookups have been seen.
+ * <p/>
+ * Every lookup deposits a fraction of a hedge into a budget, and every hedge withdraws a whole one. Unlike the {@link RetryBudget}, the
+ * budget does not refill over time: out of N lookups, at most budget * N + {@link #INITIAL_BALANCE} are hedged, however slowly they are
+ * made. Hedging thus can not double the load on a server which is slow for everyone, even for a client which makes few lookups.
+ * <p/>
+ * Instances of this class are thread-safe.
+ */
+final class Hedging {
+
+    static final double BUDGET_DEFAULT = 0.05;
+    static final int WINDOW = 256;
+    static final int REFRESH = 32;
+    static final int MIN_SAMPLES = 32;
+    static final double INITIAL_BALANCE = 1;
+    // a quiet period saves up few hedges for the next slow one
+    static final double MAX_BALANCE = 2;
+
+    private static final double PERCENT = 100;
+
+    private final double percentile;
+    private final double budget;
+    private double balance = INITIAL_BALANCE;
+    private final long[] samples = new long[WINDOW];
+    private int count;
+    private int next;
+    private int sinceRefresh;
+    private long delay = -1;
+
+    /**
+     * @param percentile the percentile of the recent latency after which a lookup is hedged, for example 95
+     * @param budget     the number of hedges allowed per lookup, below 1
+     */
+    Hedging(double percentile, double budget) {
+        if (!(percentile > 0 && percentile < PERCENT)) {
+            throw new IllegalArgumentException("The percentile must be between 0 and 100, got " + percentile);
+        }
+        if (!(budget >= 0 && budget < 1)) {
+            throw new IllegalArgumentException("The hedge budget must be at least 0 and below 1, got " + budget);
+        }
+        this.percentile = percentile;
+        this.budget = budget;
+    }
+
+    static boolean appliesTo(RestRequest req) {
+        return req.getMethod() == HttpMethod.GET && RateLimits.classify(req.getMethod(), req.getEndpoint()) == OperationClass.STATUS;
+    }
+
+    /**
+     * Records a lookup which is about to be sent.
+     *
+     * @return the time in nanoseconds after which the lookup is hedged, or -1 if there are not enough samples yet
+     */
+    synchronized long requested() {
+        balance = Math.min(MAX_BALANCE, balance + budget);
+        return delay;
+    }
+
+    /**
+     * Takes a hedge from the budget if there is one left.
+     *
+     * @return <code>true</code> if the hedge may be sent
+     */
+    synchronized boolean tryHedge() {
+        if (balance < 1) {
+            return false;
+        }
+        balance -= 1;
+        return true;
+    }
+
+    /**
+     * Records the time a lookup took until its first response.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % WINDOW;
+        count = Math.min(WINDOW, count + 1);
+        if (++sinceRefresh >= REFRESH && count >= MIN_SAMPLES) {
+            sinceRefresh = 0;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            delay = sorted[Math.max(0, (int) Math.ceil(percentile / PERCENT * count) - 1)];
+        }
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.RestApiCallback;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.RestApiFuture;
+import com.messagemedia.restapi.client.v1.messaging.InboundHandler;
+import com.messagemedia.restapi.client.v1.messaging.InboundPoller;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Checks for replies or delivery reports, hands them to a handler and confirms them, for as long as it runs.
+ * <p/>
+ * A check only ever returns the oldest unconfirmed items, so a full check means there is a backlog: the confirmation of the handled items is
+ * sent in the background and the next check is sent at the same time. If that check is answered before the confirmation has been applied it
+ * returns items which are being confirmed already; they are skipped and the poller checks again once the confirmation is through. Checks which
+ * do not return anything new double the wait before the next check, up to the maximum interval.
+ * <p/>
+ * With a {@link DeduplicationIndex}, the items handled within its window, by this poller or another one sharing the index, are not handed
+ * to the handler again but only confirmed. An item is added to the index once it has been handled, so two pollers checking at the same time
+ * may still both handle it, but an item is never dropped.
+ * <p/>
+ * All the state of a poller is confined to its own thread, which is also the thread the handler is called on.
+ *
+ * @param <T> the type of the items
+ */
+final class InboundPollerImpl<T> implements InboundPoller {
+
+    private static final Logger LOGGER = Logger.getLogger(InboundPollerImpl.class.getName());
+
+    /**
+     * The maximum number of items returned by a check.
+     */
+    static final int PAGE_SIZE = 100;
+    static final long MIN_INTERVAL_DEFAULT = 1000;
+    static final long MAX_INTERVAL_DEFAULT = 30000;
+
+    // enough to recognise the items of the few checks which can race with their confirmation
+    private static final int RECENTLY_CONFIRMED_CAPACITY = PAGE_SIZE * 10;
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    /**
+     * Checks and confirms one kind of items.
+     *
+     * @param <T> the type of the items
+     */
+    interface Source<T> {
+
+        /**
+         * @return a future of the oldest unconfirmed items
+         */
+        RestApiFuture<List<T>> check();
+
+        /**
+         * @param item an item returned by {@link #check()}
+         * @return the ID used to confirm the item
+         */
+        String idOf(T item);
+
+        /**
+         * @param ids the IDs of the items to confirm
+         * @return a future which completes once the confirmation has been accepted
+         */
+        RestApiFuture<?> confirm(Collection<String> ids);
+    }
+
+    private final String name;
+    private final Source<T> source;
+    private final InboundHandler<T> handler;
+    private final DeduplicationIndex handledIds;
+    private final long minInterval;
+    private final long maxInterval;
+    private final ScheduledThreadPoolExecutor executor;
+    private volatile boolean running = true;
+
+    // confined to the executor thread
+    private final Set<String> confirming = new HashSet<String>();
+    private final LinkedHashSet<String> recentlyConfirmed = new LinkedHashSet<String>();
+    private long interval;
+    private boolean checkWhenConfirmed;
+
+    /**
+     * Creates and starts a poller.
+     *
+     * @param name        the kind of items, used to name the thread
+     * @param source      checks and confirms the items
+     * @param handler     handles the items
+     * @param minInterval the wait in milliseconds before checking again after a check which returned all there was
+     * @param maxInterval the maximum wait in milliseconds between two checks which return nothing
+     */
+    InboundPollerImpl(String name, Source<T> source, InboundHandler<T> handler, long minInterval, long maxInterval) {
+        this(name, source, handler, null, minInterval, maxInterval);
+    }
+
+    /**
+     * Creates and starts a poller which does not hand the items it finds in the given index to the handler.
+     *
+     * @param name        the kind of items, used to name the thread
+     * @param source      checks and confirms the items
+     * @param handler     handles the items
+     * @param handledIds  the IDs of the items handled recently, or <code>null</code> to hand every item which is not being confirmed
+     * @param minInterval the wait in milliseconds before checking again after a check which returned all there was
+     * @param maxInterval the maximum wait in milliseconds between two checks which return nothing
+     */
+    InboundPollerImpl(String name, Source<T> source, InboundHandler<T> handler, DeduplicationIndex handledIds, long minInterval,
+                      long maxInterval) {
+        if (minInterval < 1 || maxInterval < minInterval) {
+            throw new IllegalArgumentException("Invalid poll intervals " + minInterval + " and " + maxInterval);
+        }
+        this.name = name;
+        this.source = source;
+        this.handler = handler;
+        this.handledIds = handledIds;
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.interval = minInterval;
+        final String threadName = "rest-api-" + name + "-poller-" + THREAD_COUNTER.incrementAndGet();
+        this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        post(new Runnable() {
+            @Override
+            public void run() {
+                check();
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void stop() {
+        running = false;
+        executor.shutdown();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void check() {
+        if (!running) {
+            return;
+        }
+        source.check().addCallback(new RestApiCallback<List<T>>() {
+            @Override
+            public void completed(final List<T> items) {
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onChecked(items);
+                    }
+                });
+            }
+
+            @Override
+            public void failed(RestApiException exception) {
+                LOGGER.log(Level.WARNING, "Failed to check for " + name, exception);
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        backOff();
+                    }
+                });
+            }
+        });
+    }
+
+    private void onChecked(List<T> items) {
+        List<String> handled = new ArrayList<String>(items.size());
+        boolean stale = deliver(items, handled);
+        if (!handled.isEmpty()) {
+            confirm(handled);
+        }
+        if (running) {
+            next(items.size() >= PAGE_SIZE, stale, !handled.isEmpty());
+        }
+    }
+
+    /**
+     * Hands the items which are not being confirmed already to the handler.
+     *
+     * @return <code>true</code> if some of the items are being confirmed already
+     */
+    private boolean deliver(List<T> items, List<String> handled) {
+        boolean stale = false;
+        for (T item : items) {
+            String id = source.idOf(item);
+            if (confirming.contains(id) || recentlyConfirmed.contains(id)) {
+                stale = true;
+            } else if (dispatch(item, id)) {
+                handled.add(id);
+            }
+        }
+        return stale;
+    }
+
+    /**
+     * Hands an item to the handler, unless it has been handled recently.
+     *
+     * @return <code>true</code> if the item has to be confirmed
+     */
+    private boolean dispatch(T item, String id) {
+        if (handledIds == null) {
+            return running && handle(item);
+        }
+        long now = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+        if (handledIds.contains(id, now)) {
+            // a repeat, only its confirmation is missing
+            return true;
+        }
+        if (running && handle(item)) {
+            handledIds.add(id, now);
+            return true;
+        }
+        return false;
+    }
+
+    private void next(boolean full, boolean stale, boolean handled) {
+        if (handled && full) {
+            // there is a backlog, the next check overlaps with the confirmation
+            interval = minInterval;
+            check();
+        } else if (stale && !confirming.isEmpty()) {
+            // the check overtook a confirmation and only returned some of what was there
+            checkWhenConfirmed = true;
+        } else if (handled) {
+            interval = minInterval;
+            schedule(interval);
+        } else {
+            backOff();
+        }
+    }
+
+    private boolean handle(T item) {
+        try {
+            handler.handle(item);
+            return true;
+        //Checkstyle: START IGNORING
+        } catch (Exception e) {
+        //Checkstyle: RESUME
+            LOGGER.log(Level.WARNING, "Failed to handle one of the " + name + ", it will be handled again", e);
+            return false;
+        }
+    }
+
+    private void confirm(final List<String> ids) {
+        confirming.addAll(ids);
+        source.confirm(ids).addCallback(new RestApiCallback<Object>() {
+            @Override
+            public void completed(Object result) {
+                onConfirmed(ids, true);
+            }
+
+            @Override
+            public void failed(RestApiException exception) {
+                LOGGER.log(Level.WARNING, "Failed to confirm " + ids.size() + " " + name + ", they will be handled again", exception);
+                onConfirmed(ids, false);
+            }
+        });
+    }
+
+    private void onConfirmed(final List<String> ids, final boolean confirmed) {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                confirming.removeAll(ids);
+                if (confirmed) {
+                    rememberConfirmed(ids);
+                }
+                if (checkWhenConfirmed && confirming.isEmpty()) {
+                    checkWhenConfirmed = false;
+                    check();
+                }
+            }
+        });
+    }
+
+    private void rememberConfirmed(List<String> ids) {
+        recentlyConfirmed.addAll(ids);
+        Iterator<String> oldest = recentlyConfirmed.iterator();
+        for (int excess = recentlyConfirmed.size() - RECENTLY_CONFIRMED_CAPACITY; excess > 0; excess--) {
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    private void backOff() {
+        schedule(interval);
+        interval = Math.min(interval * 2, maxInterval);
+    }
+
+    private void schedule(long delay) {
+        try {
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    check();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.FINE, "The " + name + " poller has been stopped, not checking again");
+        }
+    }
+
+    private void post(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.FINE, "The " + name + " poller has been stopped, dropping a late response");
+        }
+    }
+}
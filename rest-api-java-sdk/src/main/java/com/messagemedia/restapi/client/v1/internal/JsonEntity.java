@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.internal.util.JsonUtilities;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.Args;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A request body which serializes an object as JSON while it is being sent.
+ * <p/>
+ * The document is written straight to the connection, so no copy of the body is held in memory. As the length is not known upfront, the body
+ * is sent with chunked transfer encoding. The entity is repeatable, every write serializes the object again.
+ * <p/>
+ * The entity remembers how long its last serialization took and how many bytes it produced, see {@link RequestRecorder}.
+ */
+class JsonEntity extends AbstractHttpEntity {
+
+    private final Object value;
+    private volatile long serializationNanos;
+    private volatile long writtenBytes = -1;
+
+    JsonEntity(Object value) {
+        this.value = Args.notNull(value, "value");
+        setContentType(ContentType.APPLICATION_JSON.toString());
+        setChunked(true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    /**
+     * Serializes the object into memory. Only used by transports which pull the body instead of letting the entity write it.
+     *
+     * @return the JSON document
+     * @throws IOException if the object can not be converted
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        long start = System.nanoTime();
+        BufferOutputStream out = new BufferOutputStream();
+        JsonUtilities.objectToStream(value, out);
+        written(start, out.size());
+        return out.toInputStream();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        Args.notNull(out, "Output stream");
+        long start = System.nanoTime();
+        CountingOutputStream counting = new CountingOutputStream(out);
+        JsonUtilities.objectToStream(value, counting);
+        written(start, counting.count);
+    }
+
+    private void written(long start, long bytes) {
+        serializationNanos = System.nanoTime() - start;
+        writtenBytes = bytes;
+    }
+
+    /**
+     * @return the time the last serialization took in nanoseconds, including the time spent writing to the connection while serializing
+     */
+    long getSerializationNanos() {
+        return serializationNanos;
+    }
+
+    /**
+     * @return the size of the last serialized document in bytes, or -1 if the object has not been serialized yet
+     */
+    long getWrittenBytes() {
+        return writtenBytes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+
+    /**
+     * Counts the bytes written through it.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * Hands out its buffer without copying it.
+     */
+    private static final class BufferOutputStream extends ByteArrayOutputStream {
+
+        InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+}
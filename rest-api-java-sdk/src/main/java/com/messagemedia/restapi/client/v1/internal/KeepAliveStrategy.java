@@ -0,0 +1,47 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Keeps connections for reuse as long as the server announces in its Keep-Alive header, but never longer than a maximum. Without it, a
+ * connection the server did not announce a timeout for would be kept forever, and reused long after the server or a proxy dropped it.
+ */
+final class KeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+    private final long maxMillis;
+
+    /**
+     * @param maxMillis the longest an idle connection is kept, in milliseconds
+     */
+    KeepAliveStrategy(long maxMillis) {
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+        long announced = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+        return announced > 0 && announced < maxMillis ? announced : maxMillis;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.metrics.ConnectionPoolStats;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpConnectionFactory;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The connection pool of the blocking client. It records how long every request waited for its connection, see {@link RequestRecorder}.
+ * <p/>
+ * A connection which has been idle for longer than the validation delay is checked before it is handed out, and replaced by a new one if
+ * the server closed it meanwhile, instead of failing the request with a NoHttpResponseException. This replaces the stale check which
+ * HttpClient runs on every lease, so that a connection reused right away does not pay for a blocking read if the delay allows it.
+ */
+class LeaseTimingConnectionManager extends PoolingHttpClientConnectionManager implements ConnectionPool {
+
+    private static final Logger LOGGER = Logger.getLogger(LeaseTimingConnectionManager.class.getName());
+
+    private final long validateAfterInactivityNanos;
+    private final long keepAliveNanos;
+    private final TrackingConnectionFactory connections;
+
+    /**
+     * @param maxConnections          the maximum number of connections
+     * @param validateAfterInactivity the time in milliseconds after which an idle connection is checked before it is reused, 0 to check
+     *                                every reused connection, or a negative value to never check them
+     * @param keepAlive               the longest time in milliseconds an idle connection is kept, or 0 if it is not limited
+     */
+    LeaseTimingConnectionManager(int maxConnections, int validateAfterInactivity, int keepAlive) {
+        this(new TrackingConnectionFactory(), maxConnections, validateAfterInactivity, keepAlive);
+    }
+
+    private LeaseTimingConnectionManager(TrackingConnectionFactory connections, int maxConnections, int validateAfterInactivity,
+                                         int keepAlive) {
+        super(connections);
+        this.connections = connections;
+        setMaxTotal(maxConnections);
+        setDefaultMaxPerRoute(maxConnections);
+        this.validateAfterInactivityNanos = TimeUnit.MILLISECONDS.toNanos(validateAfterInactivity);
+        this.keepAliveNanos = TimeUnit.MILLISECONDS.toNanos(keepAlive);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+        final ConnectionRequest request = super.requestConnection(route, state);
+        final RequestRecorder recorder = RequestRecorder.current();
+        if (recorder == null && validateAfterInactivityNanos < 0) {
+            return request;
+        }
+        return new ConnectionRequest() {
+            @Override
+            public HttpClientConnection get(long timeout, TimeUnit tunit)
+                    throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                long start = System.nanoTime();
+                try {
+                    return validated(request.get(timeout, tunit));
+                } finally {
+                    if (recorder != null) {
+                        recorder.leased(System.nanoTime() - start);
+                    }
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return request.cancel();
+            }
+        };
+    }
+
+    private HttpClientConnection validated(HttpClientConnection connection) {
+        long idle = idleNanos(connection);
+        // connections which are new, or released while validation is disabled, have no idle time
+        if (idle >= 0 && idle >= validateAfterInactivityNanos && connection.isOpen() && connection.isStale()) {
+            // the server closed it while it was idle, the request opens a new connection instead
+            try {
+                connection.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to close a stale connection", e);
+            }
+        }
+        return connection;
+    }
+
+    private long idleNanos(HttpClientConnection connection) {
+        if (!(connection instanceof ManagedHttpClientConnection)) {
+            return -1;
+        }
+        Released released = connections.released.remove(((ManagedHttpClientConnection) connection).getId());
+        return released != null ? System.nanoTime() - released.nanos : -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void releaseConnection(HttpClientConnection managedConn, Object state, long keepalive, TimeUnit tunit) {
+        if (validateAfterInactivityNanos >= 0 && managedConn instanceof ManagedHttpClientConnection && managedConn.isOpen()) {
+            ManagedHttpClientConnection connection = (ManagedHttpClientConnection) managedConn;
+            connections.released.put(connection.getId(), new Released(connection, System.nanoTime()));
+        }
+        super.releaseConnection(managedConn, state, keepalive, tunit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void evict() {
+        closeExpiredConnections();
+        if (keepAliveNanos > 0) {
+            closeIdleConnections(TimeUnit.NANOSECONDS.toMillis(keepAliveNanos), TimeUnit.MILLISECONDS);
+        }
+        connections.forgetClosed();
+    }
+
+    /**
+     * @return the number of idle connections whose release time is kept
+     */
+    int getReleasedCount() {
+        return connections.released.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConnectionPoolStats getStats() {
+        PoolStats stats = getTotalStats();
+        return new ConnectionPoolStats(stats.getLeased(), stats.getAvailable(), stats.getPending(), stats.getMax());
+    }
+
+    /**
+     * Creates the connections of the pool as HttpClient does, and keeps the release time of the idle ones until they are leased or closed,
+     * since the pool does not tell which ones it discards.
+     * <p/>
+     * The closed connections are forgotten whenever a new one is created, so that the release times stay within the size of the pool
+     * whether or not the evictor runs: the pool only opens a connection beyond its open ones after it discarded one.
+     */
+    private static final class TrackingConnectionFactory implements HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> {
+
+        // the idle connections and when they were released, by connection id
+        private final ConcurrentMap<String, Released> released = new ConcurrentHashMap<String, Released>();
+
+        @Override
+        public ManagedHttpClientConnection create(HttpRoute route, ConnectionConfig config) {
+            forgetClosed();
+            return ManagedHttpClientConnectionFactory.INSTANCE.create(route, config);
+        }
+
+        /**
+         * The pool closes the connections it discards, whichever way it does, so only the open ones can still be leased.
+         */
+        void forgetClosed() {
+            for (Iterator<Released> it = released.values().iterator(); it.hasNext();) {
+                if (!it.next().connection.isOpen()) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private static final class Released {
+
+        private final ManagedHttpClientConnection connection;
+        private final long nanos;
+
+        private Released(ManagedHttpClientConnection connection, long nanos) {
+            this.connection = connection;
+            this.nanos = nanos;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.Context;
+import com.messagemedia.restapi.client.v1.RestApiCallback;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.RestApiFuture;
+import com.messagemedia.restapi.client.v1.RestApiResponse;
+import com.messagemedia.restapi.client.v1.messaging.messages.Message;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageListProperties;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageSendingMode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces single messages into one request.
+ * <p/>
+ * A message is held back for at most the linger time, so that messages sent at about the same time with the same properties and context can
+ * share one request. A batch is sent as soon as it reaches the maximum batch size. Every caller gets its own message back from the response.
+ * <p/>
+ * Instances of this class are thread-safe.
+ */
+final class MessageBatcher {
+
+    private static final MessageListProperties DEFAULT_PROPERTIES = MessageListProperties.withSendingMode(MessageSendingMode.PRODUCTION);
+
+    /**
+     * Sends a batch of messages as a single request.
+     */
+    interface BatchSender {
+
+        /**
+         * Sends the messages with a single request.
+         *
+         * @param messages   the messages, never empty
+         * @param properties the message list properties
+         * @param context    the context of the callers, may be null
+         * @return the future response
+         */
+        RestApiFuture<RestApiResponse<MessageList>> send(List<Message> messages, MessageListProperties properties, Context context);
+    }
+
+    private final BatchSender sender;
+    private final long lingerMillis;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService timer;
+    private final Map<BatchKey, Batch> openBatches = new HashMap<BatchKey, Batch>();
+    private boolean closed;
+
+    MessageBatcher(BatchSender sender, long lingerMillis, int maxBatchSize) {
+        if (lingerMillis < 1) {
+            throw new IllegalArgumentException("The linger time must be at least 1 ms");
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be at least 1");
+        }
+        this.sender = sender;
+        this.lingerMillis = lingerMillis;
+        this.maxBatchSize = maxBatchSize;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "rest-api-send-batcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.timer = executor;
+    }
+
+    /**
+     * Adds a message to the batch of its properties and context.
+     *
+     * @param message    the message
+     * @param properties the message list properties, may be null
+     * @param context    the context the message must be sent in, may be null
+     * @return the future response holding the representation of this message
+     */
+    RestApiFuture<RestApiResponse<Message>> send(Message message, MessageListProperties properties, Context context) {
+        MessageListProperties batchProperties = properties != null ? properties : DEFAULT_PROPERTIES;
+        BatchKey key = new BatchKey(batchProperties, context);
+        DefaultRestApiFuture<RestApiResponse<Message>> response = new DefaultRestApiFuture<RestApiResponse<Message>>();
+        Batch full = null;
+        synchronized (this) {
+            if (closed) {
+                response.fail(new RestApiException("The client has been closed"));
+                return response;
+            }
+            Batch batch = openBatches.get(key);
+            if (batch == null) {
+                batch = new Batch(key, batchProperties, context);
+                openBatches.put(key, batch);
+                scheduleFlush(batch);
+            }
+            batch.add(message, response);
+            if (batch.size() >= maxBatchSize) {
+                openBatches.remove(key);
+                full = batch;
+            }
+        }
+        if (full != null) {
+            full.send();
+        }
+        return response;
+    }
+
+    /**
+     * Stops accepting messages and fails the messages which have not been sent yet.
+     */
+    void close() {
+        List<Batch> pending;
+        synchronized (this) {
+            closed = true;
+            pending = new ArrayList<Batch>(openBatches.values());
+            openBatches.clear();
+        }
+        timer.shutdownNow();
+        for (Batch batch : pending) {
+            batch.fail(new RestApiException("The client has been closed"));
+        }
+    }
+
+    private void scheduleFlush(final Batch batch) {
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (MessageBatcher.this) {
+                    if (openBatches.get(batch.key) != batch) {
+                        // already sent because it was full
+                        return;
+                    }
+                    openBatches.remove(batch.key);
+                }
+                batch.send();
+            }
+        }, lingerMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Messages are only merged if they share the same properties and would be sent in the same context.
+     */
+    private static final class BatchKey {
+
+        private final MessageListProperties properties;
+        private final String account;
+        private final String username;
+
+        BatchKey(MessageListProperties properties, Context context) {
+            this.properties = properties;
+            this.account = context != null ? context.getAccount() : null;
+            this.username = context != null ? context.getUsername() : null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            BatchKey that = (BatchKey) o;
+            return properties.equals(that.properties) && Objects.equals(account, that.account) && Objects.equals(username, that.username);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(properties, account, username);
+        }
+    }
+
+    /**
+     * The messages waiting for the same request.
+     */
+    private final class Batch {
+
+        private final BatchKey key;
+        private final MessageListProperties properties;
+        private final Context context;
+        private final List<Message> messages = new ArrayList<Message>();
+        private final List<DefaultRestApiFuture<RestApiResponse<Message>>> responses =
+                new ArrayList<DefaultRestApiFuture<RestApiResponse<Message>>>();
+
+        Batch(BatchKey key, MessageListProperties properties, Context context) {
+            this.key = key;
+            this.properties = properties;
+            this.context = context;
+        }
+
+        void add(Message message, DefaultRestApiFuture<RestApiResponse<Message>> response) {
+            messages.add(message);
+            responses.add(response);
+        }
+
+        int size() {
+            return messages.size();
+        }
+
+        void send() {
+            // callers who cancelled while the batch was lingering drop out of it
+            final List<Message> toSend = new ArrayList<Message>();
+            final List<DefaultRestApiFuture<RestApiResponse<Message>>> waiting = new ArrayList<DefaultRestApiFuture<RestApiResponse<Message>>>();
+            for (int i = 0; i < messages.size(); i++) {
+                if (!responses.get(i).isDone()) {
+                    toSend.add(messages.get(i));
+                    waiting.add(responses.get(i));
+                }
+            }
+            if (toSend.isEmpty()) {
+                return;
+            }
+            RestApiFuture<RestApiResponse<MessageList>> response;
+            try {
+                response = sender.send(toSend, properties, context);
+            } catch (RuntimeException e) {
+                response = RestApiFutures.failed(new RestApiException("Failed to send the messages", e));
+            }
+            response.addCallback(new RestApiCallback<RestApiResponse<MessageList>>() {
+                @Override
+                public void completed(RestApiResponse<MessageList> result) {
+                    List<Message> accepted = result.getPayload() != null ? result.getPayload().getMessages() : new ArrayList<Message>();
+                    if (accepted.size() != waiting.size()) {
+                        failed(new RestApiException("Received " + accepted.size() + " messages in the body response, expected " + waiting.size()));
+                        return;
+                    }
+                    for (int i = 0; i < waiting.size(); i++) {
+                        waiting.get(i).complete(RestApiResponseFactory.success(result.getResponseCode(), accepted.get(i)));
+                    }
+                }
+
+                @Override
+                public void failed(RestApiException exception) {
+                    for (DefaultRestApiFuture<RestApiResponse<Message>> future : waiting) {
+                        future.fail(exception);
+                    }
+                }
+            });
+        }
+
+        void fail(RestApiException exception) {
+            for (DefaultRestApiFuture<RestApiResponse<Message>> future : responses) {
+                future.fail(exception);
+            }
+        }
+    }
+}
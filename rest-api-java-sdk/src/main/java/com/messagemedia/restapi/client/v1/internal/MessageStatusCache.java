@@ -0,0 +1,160 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.messaging.deliveryreports.DeliveryReport;
+import com.messagemedia.restapi.client.v1.messaging.messages.Message;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageStatus;
+
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latest known state of the messages sent recently, so that looking up their status does not have to call the API.
+ * <p/>
+ * Messages are added when they have been sent, and whenever the API returns them. Delivery reports update the status of the messages
+ * which are cached. A message is served until its time to live has passed since it was last updated, unless its status is final: a
+ * delivered, failed, expired, cancelled or rejected message does not change anymore. The least recently used messages are evicted once the
+ * cache is full.
+ * <p/>
+ * Instances of this class are thread-safe.
+ */
+final class MessageStatusCache {
+
+    static final int TTL_DEFAULT = 10000;
+
+    private static final Set<MessageStatus> FINAL = EnumSet.of(MessageStatus.DELIVERED, MessageStatus.FAILED, MessageStatus.EXPIRED,
+                                                               MessageStatus.CANCELLED, MessageStatus.REJECTED);
+
+    private final long ttl;
+    private final Map<String, Entry> entries;
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxSize the number of messages
+     * @param ttl     the time in milliseconds a message whose status is not final is served after it was last updated
+     */
+    MessageStatusCache(int maxSize, long ttl) {
+        if (maxSize < 1 || ttl < 0) {
+            throw new IllegalArgumentException("Invalid status cache size " + maxSize + " or time to live " + ttl);
+        }
+        this.ttl = TimeUnit.MILLISECONDS.toNanos(ttl);
+        this.entries = new LeastRecentlyUsedMap(maxSize);
+    }
+
+    /**
+     * @param messageId the ID of the message
+     * @param now       the current time in nanoseconds
+     * @return the message, or null if it is not cached or not fresh anymore
+     */
+    synchronized Message get(String messageId, long now) {
+        Entry entry = entries.get(messageId);
+        if (entry == null) {
+            return null;
+        }
+        if (!FINAL.contains(entry.message.getStatus()) && now - entry.updated >= ttl) {
+            entries.remove(messageId);
+            return null;
+        }
+        return entry.message;
+    }
+
+    /**
+     * Caches a message returned by the API, replacing what was known about it.
+     *
+     * @param message the message
+     * @param now     the current time in nanoseconds
+     */
+    synchronized void put(Message message, long now) {
+        if (message != null && message.getMessageId() != null) {
+            entries.put(message.getMessageId(), new Entry(message, now));
+        }
+    }
+
+    /**
+     * Caches the messages which have just been sent. A message which is cached already is not replaced, a delivery report may have
+     * overtaken the response.
+     *
+     * @param messages the messages returned by the API
+     * @param now      the current time in nanoseconds
+     */
+    synchronized void sent(List<Message> messages, long now) {
+        for (Message message : messages) {
+            if (message.getMessageId() != null && !entries.containsKey(message.getMessageId())) {
+                entries.put(message.getMessageId(), new Entry(message, now));
+            }
+        }
+    }
+
+    /**
+     * Updates the status of the cached messages which the delivery reports are about.
+     *
+     * @param deliveryReports the delivery reports
+     * @param now             the current time in nanoseconds
+     */
+    synchronized void reported(List<DeliveryReport> deliveryReports, long now) {
+        for (DeliveryReport deliveryReport : deliveryReports) {
+            Entry entry = entries.get(deliveryReport.getMessageId());
+            if (entry != null && deliveryReport.getStatus() != null) {
+                Message message = entry.message;
+                if (message.getStatus() != deliveryReport.getStatus()) {
+                    message = message.withStatus(deliveryReport.getStatus());
+                }
+                entries.put(message.getMessageId(), new Entry(message, now));
+            }
+        }
+    }
+
+    /**
+     * The cached messages in access order, which drops the least recently used one when it is full.
+     */
+    private static final class LeastRecentlyUsedMap extends LinkedHashMap<String, Entry> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        LeastRecentlyUsedMap(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    /**
+     * A cached message, with the time it was last updated.
+     */
+    private static final class Entry {
+
+        private final Message message;
+        private final long updated;
+
+        Entry(Message message, long updated) {
+            this.message = message;
+            this.updated = updated;
+        }
+    }
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * A journal of the message lists being sent, kept in a directory so that it survives the process.
+ * <p/>
+ * Every message list is appended to the journal, and forced to disk, before it is sent. Once the API has accepted or refused it, an
+ * acknowledgement is appended after it, {@link OutboxReplayer} sends the other ones again. The entries which have not been acknowledged
+ * when the journal is opened again are handed out by {@link #getRecovered()}, to be sent once more.
+ * <p/>
+ * The journal is a sequence of memory-mapped segment files of a fixed size. A new segment is started when the current one is full, and a
+ * segment is deleted once all of its entries and those of the older segments have been acknowledged, so that an acknowledgement never
+ * outlives a segment which it refers to. The writes of a process which dies are kept by the operating system, forcing the segment only
+ * guards against losing the machine. Concurrent appends share the forces: the first thread to wait forces everything appended so far, the
+ * others wait for it (group commit).
+ * <p/>
+ * A record is made of its length, a checksum, its type, the id of the entry and the payload. Reading a segment stops at the first record
+ * whose checksum does not match, which is where a process died while writing it.
+ * <p/>
+ * Instances of this class are thread-safe. The directory is locked while it is open, two clients can not share it.
+ */
+final class Outbox {
+
+    private static final Logger LOGGER = Logger.getLogger(Outbox.class.getName());
+
+    static final int SEGMENT_SIZE_DEFAULT = 64 * 1024 * 1024;
+
+    private static final String PREFIX = "outbox-";
+    private static final String SUFFIX = ".log";
+    private static final Pattern SEGMENT_NAME = Pattern.compile(Pattern.quote(PREFIX) + "\\d{20}" + Pattern.quote(SUFFIX));
+    private static final String LOCK = "outbox.lock";
+    private static final byte ENTRY = 1;
+    private static final byte ACK = 2;
+    // length, checksum, type and id
+    private static final int HEADER = 4 + 4 + 1 + 8;
+    private static final int CHECKED = 4 + 4;
+
+    private final File directory;
+    private final int segmentSize;
+    private final RandomAccessFile lockFile;
+    private final FileLock lock;
+    // oldest first, the last one is the one being written
+    private final LinkedList<Segment> segments = new LinkedList<Segment>();
+    private final Map<Long, Segment> pending = new HashMap<Long, Segment>();
+    private final List<Entry> recovered;
+    private Segment current;
+    private long nextId = 1;
+    private boolean closed;
+
+    // a lock rather than a monitor, as waiting on a monitor pins a virtual thread to its carrier
+    private final Lock syncLock = new ReentrantLock();
+    private final Condition syncDone = syncLock.newCondition();
+    private long synced;
+    private boolean syncing;
+
+    /**
+     * Opens the journal in the given directory, which is created if it does not exist, and recovers the entries not acknowledged yet.
+     *
+     * @param directory   the directory
+     * @param segmentSize the size of a segment file, in bytes
+     * @throws IOException if the directory can not be read or written, or is used by another client
+     */
+    Outbox(File directory, int segmentSize) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create the outbox directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.lockFile = new RandomAccessFile(new File(directory, LOCK), "rw");
+        this.lock = tryLock(lockFile);
+        if (lock == null) {
+            lockFile.close();
+            throw new IOException("The outbox " + directory + " is used by another client");
+        }
+        try {
+            this.recovered = recover();
+            release();
+            synchronized (this) {
+                current = open(segments.isEmpty() ? 1 : segments.getLast().getNumber() + 1, segmentSize);
+            }
+        } catch (IOException e) {
+            lock.release();
+            lockFile.close();
+            throw e;
+        }
+    }
+
+    private static FileLock tryLock(RandomAccessFile file) throws IOException {
+        try {
+            return file.getChannel().tryLock();
+        } catch (OverlappingFileLockException e) {
+            // locked by another client of this process
+            return null;
+        }
+    }
+
+    private List<Entry> recover() throws IOException {
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && SEGMENT_NAME.matcher(file.getName()).matches();
+            }
+        });
+        if (files == null) {
+            throw new IOException("Failed to list the outbox directory " + directory);
+        }
+        // the numbers are padded with zeros, so the names sort in the order the segments were written
+        Arrays.sort(files);
+        Map<Long, Entry> unacknowledged = new LinkedHashMap<Long, Entry>();
+        for (File file : files) {
+            Segment segment = new Segment(file, map(file, file.length()));
+            segments.add(segment);
+            read(segment, unacknowledged);
+        }
+        return new ArrayList<Entry>(unacknowledged.values());
+    }
+
+    private void read(Segment segment, Map<Long, Entry> unacknowledged) {
+        CRC32 crc = new CRC32();
+        byte[] record;
+        while ((record = next(segment.getBuffer(), crc)) != null) {
+            long id = ByteBuffer.wrap(record, 1, 8).getLong();
+            nextId = Math.max(nextId, id + 1);
+            if (record[0] == ENTRY) {
+                unacknowledged.put(id, new Entry(id, Arrays.copyOfRange(record, HEADER - CHECKED, record.length)));
+                pending.put(id, segment);
+                segment.added();
+            } else if (unacknowledged.remove(id) != null) {
+                pending.remove(id).acknowledged();
+            }
+        }
+    }
+
+    /**
+     * Reads the next record, without its length and checksum.
+     *
+     * @return the record, or null at the end of the segment or at a record which was not written completely
+     */
+    private static byte[] next(ByteBuffer buffer, CRC32 crc) {
+        if (buffer.remaining() < HEADER) {
+            return null;
+        }
+        int start = buffer.position();
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length < 0 || length > buffer.remaining() - (HEADER - CHECKED)) {
+            buffer.position(start);
+            return null;
+        }
+        byte[] record = new byte[HEADER - CHECKED + length];
+        buffer.get(record);
+        crc.reset();
+        crc.update(record, 0, record.length);
+        if ((int) crc.getValue() != checksum || record[0] != ENTRY && record[0] != ACK) {
+            buffer.position(start);
+            return null;
+        }
+        return record;
+    }
+
+    /**
+     * Returns the entries which had not been acknowledged when the journal was opened, in the order they were appended.
+     *
+     * @return the entries
+     */
+    List<Entry> getRecovered() {
+        return recovered;
+    }
+
+    /**
+     * Appends an entry and forces it to disk.
+     *
+     * @param payload the payload of the entry
+     * @return the entry
+     * @throws IOException if the entry can not be written, or the journal has been closed
+     */
+    Entry append(byte[] payload) throws IOException {
+        long id;
+        synchronized (this) {
+            id = nextId++;
+            write(ENTRY, id, payload);
+            pending.put(id, current);
+            current.added();
+        }
+        sync(id);
+        return new Entry(id, payload);
+    }
+
+    /**
+     * Acknowledges an entry, which is not recovered anymore once the journal is opened again. Failures are logged, the entry is recovered
+     * then, as are the entries acknowledged once the journal has been closed.
+     *
+     * @param entry the entry
+     */
+    synchronized void acknowledge(Entry entry) {
+        Segment segment = pending.remove(entry.getId());
+        if (segment == null || closed) {
+            return;
+        }
+        try {
+            write(ACK, entry.getId(), new byte[0]);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to acknowledge entry " + entry.getId() + " of the outbox " + directory, e);
+            return;
+        }
+        segment.acknowledged();
+        release();
+    }
+
+    private void write(byte type, long id, byte[] payload) throws IOException {
+        if (closed) {
+            throw new IOException("The outbox has been closed");
+        }
+        byte[] record = new byte[HEADER + payload.length];
+        ByteBuffer.wrap(record).putInt(payload.length).putInt(0).put(type).putLong(id).put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(record, CHECKED, record.length - CHECKED);
+        ByteBuffer.wrap(record, 4, 4).putInt((int) crc.getValue());
+        if (current.getBuffer().remaining() < record.length) {
+            // the records of the full segment are forced first, so that forcing the new one makes all the records durable
+            current.getBuffer().force();
+            current = open(current.getNumber() + 1, Math.max(segmentSize, record.length));
+        }
+        current.getBuffer().put(record);
+    }
+
+    /**
+     * Waits until the given entry has been forced to disk, forcing the current segment unless another thread is doing it already.
+     */
+    private void sync(long id) throws IOException {
+        while (true) {
+            syncLock.lock();
+            try {
+                while (syncing && synced < id) {
+                    syncDone.await();
+                }
+                if (synced >= id) {
+                    return;
+                }
+                syncing = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing the outbox");
+            } finally {
+                syncLock.unlock();
+            }
+            long target = 0;
+            try {
+                Segment segment;
+                synchronized (this) {
+                    target = nextId - 1;
+                    segment = current;
+                }
+                segment.getBuffer().force();
+            } finally {
+                syncLock.lock();
+                try {
+                    synced = Math.max(synced, target);
+                    syncing = false;
+                    syncDone.signalAll();
+                } finally {
+                    syncLock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the oldest segments, as long as all of their entries have been acknowledged.
+     */
+    private void release() {
+        while (!segments.isEmpty() && segments.getFirst() != current && segments.getFirst().isAcknowledged()) {
+            Segment segment = segments.removeFirst();
+            if (!segment.getFile().delete()) {
+                LOGGER.warning("Failed to delete the segment " + segment.getFile() + " of the outbox");
+            }
+        }
+    }
+
+    private Segment open(long number, int size) throws IOException {
+        File file = new File(directory, String.format("%s%020d%s", PREFIX, number, SUFFIX));
+        Segment segment = new Segment(file, map(file, size));
+        segments.add(segment);
+        return segment;
+    }
+
+    private static MappedByteBuffer map(File file, long size) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            // the mapping stays valid once the file is closed
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Forces the current segment to disk and unlocks the directory. The entries not acknowledged yet are recovered once it is opened again.
+     */
+    void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            current.getBuffer().force();
+        }
+        try {
+            lock.release();
+            lockFile.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to unlock the outbox " + directory, e);
+        }
+    }
+
+    /**
+     * An entry of the journal.
+     */
+    static final class Entry {
+
+        private final long id;
+        private final byte[] payload;
+
+        Entry(long id, byte[] payload) {
+            this.id = id;
+            this.payload = payload;
+        }
+
+        long getId() {
+            return id;
+        }
+
+        byte[] getPayload() {
+            return payload;
+        }
+    }
+
+    /**
+     * A segment file, with the number of its entries not acknowledged yet.
+     */
+    private static final class Segment {
+
+        private final File file;
+        private final long number;
+        private final MappedByteBuffer buffer;
+        private int unacknowledged;
+
+        Segment(File file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.number = Long.parseLong(file.getName().substring(PREFIX.length(), file.getName().length() - SUFFIX.length()));
+            this.buffer = buffer;
+        }
+
+        File getFile() {
+            return file;
+        }
+
+        long getNumber() {
+            return number;
+        }
+
+        MappedByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        void added() {
+            unacknowledged++;
+        }
+
+        void acknowledged() {
+            unacknowledged--;
+        }
+
+        boolean isAcknowledged() {
+            return unacknowledged == 0;
+        }
+    }
+}
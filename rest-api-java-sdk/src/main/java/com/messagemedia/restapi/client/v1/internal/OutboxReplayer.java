@@ -0,0 +1,213 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.RestApiCallback;
+import com.messagemedia.restapi.client.v1.RestApiCircuitOpenException;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.RestApiFuture;
+import com.messagemedia.restapi.client.v1.RestApiThrottledException;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends the message lists of the outbox again, until the API has either accepted or refused them: the ones recovered when the outbox is
+ * opened, and the ones whose first send failed.
+ * <p/>
+ * An entry is acknowledged once the API answered with a success, or with a client error other than 429 Too Many Requests, since sending
+ * the same messages again would get the same answer. After a 429, a server error or a failure without any answer, the entry is sent again
+ * after a backoff which doubles with every attempt, for as long as the client is open. The entries still pending when it is closed are
+ * recovered once the outbox is opened again.
+ * <p/>
+ * Instances of this class are thread-safe.
+ */
+final class OutboxReplayer {
+
+    private static final Logger LOGGER = Logger.getLogger(OutboxReplayer.class.getName());
+
+    private static final int MAX_SHIFT = 30;
+    private static final int SERVER_ERROR = 500;
+
+    /**
+     * Sends the payload of an entry as it is, without acknowledging it, in the context the entry was first sent in if any.
+     */
+    interface EntrySender {
+
+        /**
+         * @param entry the entry
+         * @return the future raw response, whatever its status
+         */
+        RestApiFuture<RestResponse> send(Outbox.Entry entry);
+    }
+
+    private final Outbox outbox;
+    private final long backoff;
+    private final long maxBackoff;
+    private final ScheduledThreadPoolExecutor timer;
+    private final Random random = new Random();
+
+    /**
+     * @param outbox     the outbox
+     * @param backoff    the backoff in milliseconds before the first retry of an entry
+     * @param maxBackoff the longest backoff in milliseconds
+     */
+    OutboxReplayer(Outbox outbox, long backoff, long maxBackoff) {
+        this.outbox = outbox;
+        this.backoff = Math.max(1, backoff);
+        this.maxBackoff = Math.max(this.backoff, maxBackoff);
+        this.timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "rest-api-outbox-replay");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // the thread only lives while retries are waiting
+        timer.setKeepAliveTime(1, TimeUnit.SECONDS);
+        timer.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Sends every recovered entry.
+     *
+     * @param sender sends the entries
+     */
+    void start(EntrySender sender) {
+        List<Outbox.Entry> recovered = outbox.getRecovered();
+        for (Outbox.Entry entry : recovered) {
+            send(entry, sender, 0);
+        }
+    }
+
+    /**
+     * Sends an entry again after a backoff, once its first send got a 429, a server error or no answer at all.
+     *
+     * @param entry      the entry
+     * @param sender     sends the entry
+     * @param retryAfter the time in milliseconds the API or the client asked to wait at least, or -1
+     */
+    void resend(Outbox.Entry entry, EntrySender sender, long retryAfter) {
+        schedule(entry, sender, 1, wait(0, retryAfter));
+    }
+
+    /**
+     * Stops sending the entries again. The ones being sent are still acknowledged if the API accepts them.
+     */
+    void close() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * @param statusCode the HTTP status code of an answer to a message list
+     * @return <code>true</code> if sending the message list again may get another answer
+     */
+    static boolean isRetryable(int statusCode) {
+        return statusCode == RestApiThrottledException.TOO_MANY_REQUESTS || statusCode >= SERVER_ERROR;
+    }
+
+    private void send(final Outbox.Entry entry, final EntrySender sender, final int attempt) {
+        final RestApiFuture<RestResponse> response;
+        try {
+            response = sender.send(entry);
+        } catch (RuntimeException e) {
+            retry(entry, sender, attempt, -1, new RestApiException("Failed to send the messages", e));
+            return;
+        }
+        response.addCallback(new RestApiCallback<RestResponse>() {
+            @Override
+            public void completed(RestResponse result) {
+                if (isRetryable(result.getResultCode())) {
+                    result.close();
+                    retry(entry, sender, attempt, retryAfter(result), new RestApiException("HTTP status code " + result.getResultCode()));
+                } else {
+                    outbox.acknowledge(entry);
+                    log(entry, result);
+                }
+            }
+
+            @Override
+            public void failed(RestApiException exception) {
+                retry(entry, sender, attempt, retryAfter(exception), exception);
+            }
+        });
+    }
+
+    /**
+     * @param response an answer to a message list
+     * @return the time in milliseconds the API asked to wait at least, or -1
+     */
+    static long retryAfter(RestResponse response) {
+        return RateLimits.retryAfter(response.getHeader(RateLimits.RETRY_AFTER), System.currentTimeMillis());
+    }
+
+    /**
+     * @param exception the reason a message list got no answer
+     * @return the time in milliseconds the client asked to wait at least, or -1
+     */
+    static long retryAfter(RestApiException exception) {
+        if (exception instanceof RestApiCircuitOpenException) {
+            return ((RestApiCircuitOpenException) exception).getRetryAfter();
+        }
+        if (exception instanceof RestApiThrottledException) {
+            return ((RestApiThrottledException) exception).getRetryAfter();
+        }
+        return -1;
+    }
+
+    private void retry(Outbox.Entry entry, EntrySender sender, int attempt, long retryAfter, RestApiException cause) {
+        long wait = wait(attempt, retryAfter);
+        LOGGER.log(Level.WARNING, "Failed to send the messages of entry " + entry.getId() + " of the outbox, sending them again in " + wait
+                                  + " ms", cause);
+        schedule(entry, sender, attempt + 1, wait);
+    }
+
+    private long wait(int attempt, long retryAfter) {
+        long ceiling = Math.min(maxBackoff, backoff << Math.min(attempt, MAX_SHIFT));
+        return Math.max((long) (random.nextDouble() * ceiling), retryAfter);
+    }
+
+    private void schedule(final Outbox.Entry entry, final EntrySender sender, final int attempt, long wait) {
+        try {
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    send(entry, sender, attempt);
+                }
+            }, wait, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOGGER.log(Level.FINE, "The client has been closed, entry " + entry.getId() + " is sent again once the outbox is opened again");
+        }
+    }
+
+    private static void log(Outbox.Entry entry, RestResponse response) {
+        try {
+            MessageList sent = RestApiResponseFactory.parse(response, MessageList.class).getPayload();
+            LOGGER.info("Sent the " + sent.getMessages().size() + " messages of entry " + entry.getId() + " of the outbox");
+        } catch (RestApiException e) {
+            LOGGER.log(Level.WARNING, "The API refused the messages of entry " + entry.getId() + " of the outbox, not sending them again", e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.conn.EofSensorInputStream;
+import org.apache.http.conn.EofSensorWatcher;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The body of a response sent with a permit of the {@link FairScheduler}. The connection of the response stays leased until its body is
+ * read to the end or closed, so the permit is only released then, once, for the next request of the scheduler to find a free connection.
+ * A response without a body, or whose body is already in memory, holds no connection and releases its permit right away.
+ */
+final class PermitReleasingEntity extends HttpEntityWrapper implements EofSensorWatcher {
+
+    private final FairScheduler scheduler;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private PermitReleasingEntity(HttpEntity entity, FairScheduler scheduler) {
+        super(entity);
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Releases the permit of a response once its body has been consumed.
+     *
+     * @param response  the response, whose body is replaced if it is streamed from the connection
+     * @param scheduler the scheduler which handed out the permit
+     */
+    static void releaseOnConsumption(HttpResponse response, FairScheduler scheduler) {
+        HttpEntity entity = response.getEntity();
+        if (entity == null || !entity.isStreaming()) {
+            scheduler.release();
+        } else {
+            response.setEntity(new PermitReleasingEntity(entity, scheduler));
+        }
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        try {
+            return new EofSensorInputStream(super.getContent(), this);
+        } catch (IOException e) {
+            release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void writeTo(OutputStream outstream) throws IOException {
+        try {
+            super.writeTo(outstream);
+        } finally {
+            release();
+        }
+    }
+
+    @Override
+    public boolean eofDetected(InputStream wrapped) {
+        release();
+        return true;
+    }
+
+    @Override
+    public boolean streamClosed(InputStream wrapped) {
+        release();
+        return true;
+    }
+
+    @Override
+    public boolean streamAbort(InputStream wrapped) {
+        release();
+        return true;
+    }
+
+    private void release() {
+        if (released.compareAndSet(false, true)) {
+            scheduler.release();
+        }
+    }
+}
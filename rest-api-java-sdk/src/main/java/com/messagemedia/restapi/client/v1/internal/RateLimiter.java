@@ -0,0 +1,139 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket which adapts its rate to the feedback of the server.
+ * <p/>
+ * The bucket holds at most one second worth of permits, so a quiet client may send a short burst. When the server rejects a request because
+ * of too many requests, the rate is halved and no permits are handed out until the time the server asked for has passed. Afterwards, the
+ * rate grows back linearly, from nothing to the configured rate within {@link #RECOVERY_NANOS}.
+ * <p/>
+ * Instances of this class are thread-safe. The methods taking a time expect it from {@link System#nanoTime()}.
+ */
+final class RateLimiter {
+
+    static final long RECOVERY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final double DECREASE = 0.5;
+    private static final double MIN_RATE_FRACTION = 1.0 / 64;
+
+    private final double maxRate;
+    private final double minRate;
+    private final double maxPermits;
+    private double rate;
+    private double permits;
+    private long nextFree;
+    private long lastUpdate;
+
+    /**
+     * @param permitsPerSecond the rate the limiter starts with and never exceeds
+     * @param now              the current time
+     */
+    RateLimiter(double permitsPerSecond, long now) {
+        if (!(permitsPerSecond > 0)) {
+            throw new IllegalArgumentException("The rate must be positive, got " + permitsPerSecond);
+        }
+        this.maxRate = permitsPerSecond;
+        this.minRate = permitsPerSecond * MIN_RATE_FRACTION;
+        this.maxPermits = Math.max(1, permitsPerSecond);
+        this.rate = permitsPerSecond;
+        this.permits = maxPermits;
+        this.nextFree = now;
+        this.lastUpdate = now;
+    }
+
+    /**
+     * Takes a permit, even if none is available yet. Permits taken in advance are handed out one after the other at the current rate.
+     *
+     * @param now the current time
+     * @return the time in nanoseconds the caller has to wait before using the permit, 0 if it may be used at once
+     */
+    synchronized long reserve(long now) {
+        update(now);
+        double stored = Math.min(1, permits);
+        permits -= stored;
+        nextFree += (long) ((1 - stored) / rate * NANOS_PER_SECOND);
+        return Math.max(0, nextFree - now);
+    }
+
+    /**
+     * Takes a permit if one is available at once.
+     *
+     * @param now the current time
+     * @return 0 if a permit was taken, otherwise the time in nanoseconds until one will be available
+     */
+    synchronized long tryReserve(long now) {
+        update(now);
+        if (nextFree > now || permits < 1) {
+            return Math.max(0, nextFree - now) + (long) Math.ceil((1 - permits) / rate * NANOS_PER_SECOND);
+        }
+        permits -= 1;
+        return 0;
+    }
+
+    /**
+     * Reacts to a request rejected because of too many requests: halves the rate and hands out no permits for the given time.
+     *
+     * @param pause the time in nanoseconds the server asked to wait, 0 if it did not say
+     * @param now   the current time
+     */
+    synchronized void throttled(long pause, long now) {
+        update(now);
+        rate = Math.max(minRate, rate * DECREASE);
+        pause(pause, now);
+        // the rate only starts to recover once the pause is over
+        lastUpdate = Math.max(now, nextFree);
+    }
+
+    /**
+     * Hands out no permits for the given time, without changing the rate.
+     *
+     * @param pause the time in nanoseconds
+     * @param now   the current time
+     */
+    synchronized void pause(long pause, long now) {
+        if (pause > 0) {
+            permits = 0;
+            nextFree = Math.max(nextFree, now + pause);
+        }
+    }
+
+    /**
+     * @param now the current time
+     * @return the rate in permits per second
+     */
+    synchronized double getRate(long now) {
+        update(now);
+        return rate;
+    }
+
+    private void update(long now) {
+        long elapsed = now - lastUpdate;
+        if (elapsed > 0) {
+            rate = Math.min(maxRate, rate + maxRate * elapsed / RECOVERY_NANOS);
+            lastUpdate = now;
+        }
+        if (now > nextFree) {
+            permits = Math.min(maxPermits, permits + (now - nextFree) * rate / NANOS_PER_SECOND);
+            nextFree = now;
+        }
+    }
+}
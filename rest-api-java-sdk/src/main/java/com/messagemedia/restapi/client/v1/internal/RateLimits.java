@@ -0,0 +1,188 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.OperationClass;
+import com.messagemedia.restapi.client.v1.RateLimitMode;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.RestApiThrottledException;
+import org.apache.http.client.utils.DateUtils;
+
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.messagemedia.restapi.client.v1.internal.RestApiMessagingClientImpl.URL_CHECK_MESSAGE;
+import static com.messagemedia.restapi.client.v1.internal.RestApiMessagingClientImpl.URL_MESSAGES;
+
+/**
+ * The client-side rate limits of a client, one {@link RateLimiter} per {@link OperationClass} which has been given a rate.
+ * <p/>
+ * Every response is fed back to the limiter of its request: a 429 halves the rate, and a <code>Retry-After</code> header, or rate limit
+ * headers saying that nothing is left, stop the requests of that class until the given time.
+ */
+final class RateLimits {
+
+    static final String RETRY_AFTER = "Retry-After";
+    private static final String[] REMAINING = {"X-RateLimit-Remaining", "RateLimit-Remaining"};
+    private static final String[] RESET = {"X-RateLimit-Reset", "RateLimit-Reset"};
+    // reset values this large are a point in time in seconds since the epoch, smaller ones the number of seconds to wait
+    private static final long EPOCH_SECONDS = 1000000000L;
+    // guards against headers asking for an absurd wait
+    private static final long MAX_PAUSE = TimeUnit.MINUTES.toMillis(10);
+
+    private final Map<OperationClass, RateLimiter> limiters = new EnumMap<OperationClass, RateLimiter>(OperationClass.class);
+    private final RateLimitMode mode;
+
+    /**
+     * @param rates the requests per second of the operation classes which are limited
+     * @param mode  what happens to requests which exceed their limit
+     */
+    RateLimits(Map<OperationClass, Double> rates, RateLimitMode mode) {
+        long now = System.nanoTime();
+        for (Map.Entry<OperationClass, Double> rate : rates.entrySet()) {
+            limiters.put(rate.getKey(), new RateLimiter(rate.getValue(), now));
+        }
+        this.mode = mode;
+    }
+
+    boolean isEnabled() {
+        return !limiters.isEmpty();
+    }
+
+    /**
+     * @param request the request
+     * @return the limiter of the operation class of the request, or null if that class is not limited
+     */
+    RateLimiter limiterFor(RestRequest request) {
+        return limiters.isEmpty() ? null : limiters.get(classify(request.getMethod(), request.getEndpoint()));
+    }
+
+    static OperationClass classify(HttpMethod method, String endpoint) {
+        if (URL_MESSAGES.equals(endpoint) || URL_CHECK_MESSAGE.equals(endpoint)) {
+            // a PUT of a single message cancels it
+            return method == HttpMethod.GET ? OperationClass.STATUS : OperationClass.SEND;
+        }
+        if (RestApiClientImpl.URL_STATUS.equals(endpoint)) {
+            return OperationClass.STATUS;
+        }
+        return OperationClass.POLL;
+    }
+
+    /**
+     * Takes a permit for a request of the blocking client, waiting for it if the mode is {@link RateLimitMode#WAIT}.
+     *
+     * @param limiter the limiter of the request
+     * @throws RestApiThrottledException if the mode is {@link RateLimitMode#FAIL_FAST} and there is no permit available
+     * @throws RestApiException          if the thread is interrupted while waiting
+     */
+    void acquire(RateLimiter limiter) throws RestApiException {
+        long wait = reserve(limiter);
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RestApiException("Interrupted while waiting for the rate limit", e);
+            }
+        }
+    }
+
+    /**
+     * Takes a permit for a request, without waiting for it.
+     *
+     * @param limiter the limiter of the request
+     * @return the time in nanoseconds the request has to wait before it is sent
+     * @throws RestApiThrottledException if the mode is {@link RateLimitMode#FAIL_FAST} and there is no permit available
+     */
+    long reserve(RateLimiter limiter) throws RestApiThrottledException {
+        long now = System.nanoTime();
+        if (mode == RateLimitMode.WAIT) {
+            return limiter.reserve(now);
+        }
+        long wait = limiter.tryReserve(now);
+        if (wait > 0) {
+            // round up, a client retrying after 0 ms would be rejected again
+            throw new RestApiThrottledException("The rate limit of the client has been reached", TimeUnit.NANOSECONDS.toMillis(wait) + 1);
+        }
+        return 0;
+    }
+
+    /**
+     * Adapts the limiter of a request to its response.
+     *
+     * @param limiter  the limiter of the request
+     * @param response the response
+     */
+    static void update(RateLimiter limiter, RestResponse response) {
+        long now = System.nanoTime();
+        long nowMillis = System.currentTimeMillis();
+        long pause = Math.max(retryAfter(response.getHeader(RETRY_AFTER), nowMillis), exhausted(response, nowMillis));
+        if (response.getResultCode() == RestApiThrottledException.TOO_MANY_REQUESTS) {
+            limiter.throttled(TimeUnit.MILLISECONDS.toNanos(Math.max(pause, 0)), now);
+        } else if (pause > 0) {
+            limiter.pause(TimeUnit.MILLISECONDS.toNanos(pause), now);
+        }
+    }
+
+    /**
+     * Parses a <code>Retry-After</code> header, which holds either a number of seconds or an HTTP date.
+     *
+     * @param value     the value of the header, may be null
+     * @param nowMillis the current time in milliseconds since the epoch
+     * @return the time in milliseconds to wait, or -1 if the header is missing or invalid
+     */
+    static long retryAfter(String value, long nowMillis) {
+        if (value == null) {
+            return -1;
+        }
+        String trimmed = value.trim();
+        try {
+            return Math.min(MAX_PAUSE, TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(trimmed))));
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(trimmed);
+            return date != null ? Math.min(MAX_PAUSE, Math.max(0, date.getTime() - nowMillis)) : -1;
+        }
+    }
+
+    private static long exhausted(RestResponse response, long nowMillis) {
+        for (int i = 0; i < REMAINING.length; i++) {
+            if ("0".equals(trim(response.getHeader(REMAINING[i])))) {
+                return reset(trim(response.getHeader(RESET[i])), nowMillis);
+            }
+        }
+        return -1;
+    }
+
+    private static long reset(String value, long nowMillis) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            long seconds = Long.parseLong(value);
+            long millis = seconds > EPOCH_SECONDS ? TimeUnit.SECONDS.toMillis(seconds) - nowMillis : TimeUnit.SECONDS.toMillis(seconds);
+            return Math.min(MAX_PAUSE, Math.max(0, millis));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String trim(String value) {
+        return value != null ? value.trim() : null;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.metrics.RequestMetrics;
+import com.messagemedia.restapi.client.v1.metrics.RestApiMetricsListener;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.protocol.HttpContext;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects the measurements of one request while it is being sent, and hands them to the {@link RestApiMetricsListener} once it completed.
+ * <p/>
+ * The recorder travels with the request in its {@link HttpContext}, where the signing interceptor finds it. The connection pool finds it in
+ * {@link #current()}, as connections are requested from the thread which sends the request, both by the blocking and by the asynchronous
+ * client.
+ */
+public final class RequestRecorder implements RequestMetrics {
+
+    private static final Logger LOGGER = Logger.getLogger(RequestRecorder.class.getName());
+
+    /**
+     * The attribute of the {@link HttpContext} holding the recorder of the request.
+     */
+    public static final String CONTEXT_ATTRIBUTE = RequestRecorder.class.getName();
+
+    private static final ThreadLocal<RequestRecorder> CURRENT = new ThreadLocal<RequestRecorder>();
+
+    private final RestRequest request;
+    private final long start = System.nanoTime();
+    private volatile long latencyNanos;
+    private volatile int statusCode;
+    private volatile long responseBytes = -1;
+    private volatile long signingNanos;
+    private volatile long leaseWaitNanos;
+
+    RequestRecorder(RestRequest request) {
+        this.request = request;
+    }
+
+    /**
+     * @param context the context of a request
+     * @return the recorder of the request, or null if no metrics are collected
+     */
+    public static RequestRecorder of(HttpContext context) {
+        Object recorder = context != null ? context.getAttribute(CONTEXT_ATTRIBUTE) : null;
+        return recorder instanceof RequestRecorder ? (RequestRecorder) recorder : null;
+    }
+
+    /**
+     * @return the recorder of the request the current thread is sending, or null if no metrics are collected
+     */
+    static RequestRecorder current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes this recorder the one of the current thread, until {@link #detach()} is called.
+     */
+    void attach() {
+        CURRENT.set(this);
+    }
+
+    static void detach() {
+        CURRENT.remove();
+    }
+
+    public void signed(long nanos) {
+        signingNanos += nanos;
+    }
+
+    void leased(long nanos) {
+        leaseWaitNanos += nanos;
+    }
+
+    void responded(HttpResponse response) {
+        latencyNanos = System.nanoTime() - start;
+        statusCode = response.getStatusLine().getStatusCode();
+        HttpEntity entity = response.getEntity();
+        responseBytes = entity != null ? entity.getContentLength() : 0;
+    }
+
+    /**
+     * Hands the measurements to the listener. Requests without a response end here. Exceptions of the listener are logged, they never affect
+     * the request.
+     */
+    void report(RestApiMetricsListener listener) {
+        if (statusCode == 0) {
+            latencyNanos = System.nanoTime() - start;
+        }
+        //Checkstyle: START IGNORING
+        try {
+            listener.requestCompleted(this);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "The metrics listener failed", e);
+        }
+        //Checkstyle: RESUME
+    }
+
+    @Override
+    public String getEndpoint() {
+        return request.getEndpoint();
+    }
+
+    @Override
+    public String getMethod() {
+        return request.getMethod().name();
+    }
+
+    @Override
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    @Override
+    public int getStatusFamily() {
+        return statusCode / 100;
+    }
+
+    @Override
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    @Override
+    public long getRequestBytes() {
+        HttpEntity body = request.getBody();
+        if (body instanceof JsonEntity) {
+            return ((JsonEntity) body).getWrittenBytes();
+        }
+        return body != null ? body.getContentLength() : 0;
+    }
+
+    @Override
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    @Override
+    public long getSerializationNanos() {
+        HttpEntity body = request.getBody();
+        return body instanceof JsonEntity ? ((JsonEntity) body).getSerializationNanos() : 0;
+    }
+
+    @Override
+    public long getSigningNanos() {
+        return signingNanos;
+    }
+
+    @Override
+    public long getLeaseWaitNanos() {
+        return leaseWaitNanos;
+    }
+}
@@ -16,9 +16,11 @@
 package com.messagemedia.restapi.client.v1.internal;
 
 import com.messagemedia.restapi.client.v1.AuthorizationScheme;
+import com.messagemedia.restapi.client.v1.Context;
 import com.messagemedia.restapi.client.v1.RestApiClient;
 import com.messagemedia.restapi.client.v1.RestApiException;
 import com.messagemedia.restapi.client.v1.messaging.RestApiMessagingClient;
+import com.messagemedia.restapi.client.v1.metrics.ConnectionPoolStats;
 
 /**
  * Default implementation for {@link RestApiClient}
@@ -26,9 +28,7 @@ import com.messagemedia.restapi.client.v1.messaging.RestApiMessagingClient;
 public class RestApiClientImpl implements RestApiClient {
 
     private static final String VERSION = "/v1";
-    private static final String URL_STATUS = VERSION + "/status";
-
-
+    static final String URL_STATUS = VERSION + "/status";
 
     private final RestClient client;
     private final RestApiMessagingClient messagingClient;
@@ -40,6 +40,11 @@ public class RestApiClientImpl implements RestApiClient {
         messagingClient = new RestApiMessagingClientImpl(client);
     }
 
+    public RestApiClientImpl(ClientSettings settings) {
+        client = new RestClient(settings);
+        messagingClient = new RestApiMessagingClientImpl(client, settings);
+    }
+
     protected RestApiClientImpl(RestClient client, RestApiMessagingClient messagingClient) {
         this.client = client;
         this.messagingClient = messagingClient;
@@ -52,6 +57,7 @@ public class RestApiClientImpl implements RestApiClient {
     public boolean isAlive() {
         try {
             RestResponse response = client.get(URL_STATUS).execute();
+            response.close();
             return response.isSuccessful();
         } catch (RestApiException e) {
             return false;
@@ -66,6 +72,24 @@ public class RestApiClientImpl implements RestApiClient {
         return messagingClient;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ConnectionPoolStats getConnectionPoolStats() {
+        return client.getConnectionPoolStats();
+    }
+
+    /**
+     * @param context the context
+     * @return a messaging client which makes all its calls in the given context
+     */
+    RestApiMessagingClient messaging(Context context) {
+        if (!(messagingClient instanceof RestApiMessagingClientImpl)) {
+            throw new UnsupportedOperationException("The messaging client does not support contexts");
+        }
+        return ((RestApiMessagingClientImpl) messagingClient).withContext(context);
+    }
 
     RestClient getRestClient() {
         return client;
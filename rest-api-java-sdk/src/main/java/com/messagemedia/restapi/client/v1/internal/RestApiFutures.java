@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.RestApiCallback;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.RestApiFuture;
+
+/**
+ * Helper methods for composing {@link RestApiFuture}s.
+ */
+public final class RestApiFutures {
+
+    /**
+     * Converts the result of a future into another value.
+     *
+     * @param <S> the source type
+     * @param <T> the target type
+     */
+    public interface Transformer<S, T> {
+
+        /**
+         * Converts a value.
+         *
+         * @param source the value to convert
+         * @return the converted value
+         * @throws RestApiException if the value can not be converted
+         */
+        T apply(S source) throws RestApiException;
+    }
+
+    private RestApiFutures() {
+    }
+
+    /**
+     * Creates a future that already completed successfully.
+     *
+     * @param value the result
+     * @param <T>   the type of the result
+     * @return the completed future
+     */
+    public static <T> RestApiFuture<T> completed(T value) {
+        DefaultRestApiFuture<T> future = new DefaultRestApiFuture<T>();
+        future.complete(value);
+        return future;
+    }
+
+    /**
+     * Creates a future that already failed.
+     *
+     * @param exception the reason of the failure
+     * @param <T>       the type of the result
+     * @return the failed future
+     */
+    public static <T> RestApiFuture<T> failed(RestApiException exception) {
+        DefaultRestApiFuture<T> future = new DefaultRestApiFuture<T>();
+        future.fail(exception);
+        return future;
+    }
+
+    /**
+     * Creates a future which completes with the converted result of the source future. Cancelling the returned future cancels the source.
+     *
+     * @param source      the source future
+     * @param transformer the conversion
+     * @param <S>         the source type
+     * @param <T>         the target type
+     * @return the converted future
+     */
+    public static <S, T> RestApiFuture<T> transform(final RestApiFuture<S> source, final Transformer<? super S, ? extends T> transformer) {
+        final DefaultRestApiFuture<T> target = new DefaultRestApiFuture<T>();
+        target.setCancellationHandler(new Runnable() {
+            @Override
+            public void run() {
+                source.cancel(true);
+            }
+        });
+        source.addCallback(new RestApiCallback<S>() {
+            @Override
+            public void completed(S result) {
+                try {
+                    target.complete(transformer.apply(result));
+                } catch (RestApiException e) {
+                    target.fail(e);
+                } catch (RuntimeException e) {
+                    target.fail(new RestApiException("Failed to process the response", e));
+                }
+            }
+
+            @Override
+            public void failed(RestApiException exception) {
+                target.fail(exception);
+            }
+        });
+        return target;
+    }
+}
@@ -16,38 +16,143 @@
 
 package com.messagemedia.restapi.client.v1.internal;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.messagemedia.restapi.client.v1.*;
+import com.messagemedia.restapi.client.v1.messaging.InboundHandler;
+import com.messagemedia.restapi.client.v1.messaging.InboundPoller;
 import com.messagemedia.restapi.client.v1.messaging.RestApiMessagingClient;
+import com.messagemedia.restapi.client.v1.messaging.deliveryreports.DeliveryReport;
 import com.messagemedia.restapi.client.v1.messaging.deliveryreports.DeliveryReportList;
 import com.messagemedia.restapi.client.v1.messaging.messages.Message;
 import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
 import com.messagemedia.restapi.client.v1.messaging.messages.MessageListProperties;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageSendResult;
+import com.messagemedia.restapi.client.v1.messaging.replies.Reply;
 import com.messagemedia.restapi.client.v1.messaging.replies.ReplyList;
+import com.messagemedia.restapi.client.v1.internal.util.JsonUtilities;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ContentType;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
 
 public class RestApiMessagingClientImpl implements RestApiMessagingClient {
 
+    private static final Logger LOGGER = Logger.getLogger(RestApiMessagingClientImpl.class.getName());
     private static final String VERSION = "/v1";
 
-    private static final String URL_REPLIES = VERSION + "/replies";
-    private static final String URL_CONFIRM_REPLIES = VERSION + "/replies/confirmed";
-    private static final String URL_DELIVERY_REPORTS = VERSION + "/delivery_reports";
-    private static final String URL_CONFIRM_DELIVERY_REPORT = VERSION + "/delivery_reports/confirmed";
-    private static final String URL_CHECK_MESSAGE = VERSION + "/messages/{messageId}";
-    private static final String URL_MESSAGES = VERSION + "/messages";
-    private static final String CANCEL_MESSAGE_PAYLOAD = "{\"status\":\"CANCELLED\"}";
-    private static final int RESULT_CODE_CONVERSION = 100;
-    private static final int CLIENT_ERROR = 4;
-    private static final int SERVER_ERROR = 5;
+    static final String URL_REPLIES = VERSION + "/replies";
+    static final String URL_CONFIRM_REPLIES = VERSION + "/replies/confirmed";
+    static final String URL_DELIVERY_REPORTS = VERSION + "/delivery_reports";
+    static final String URL_CONFIRM_DELIVERY_REPORT = VERSION + "/delivery_reports/confirmed";
+    static final String URL_CHECK_MESSAGE = VERSION + "/messages/{messageId}";
+    static final String URL_MESSAGES = VERSION + "/messages";
+    static final String CANCEL_MESSAGE_PAYLOAD = "{\"status\":\"CANCELLED\"}";
+
+    private static final long BULK_THREAD_KEEP_ALIVE_SECONDS = 60;
+    private static final AtomicInteger BULK_THREAD_COUNTER = new AtomicInteger();
 
     private final RestClient client;
+    private final BulkMessageSender bulkSender;
+    private final ThreadPoolExecutor bulkExecutor;
+    private final MessageBatcher batcher;
+    private final Outbox outbox;
+    private final OutboxReplayer replayer;
+    private final DeduplicationIndex replyIds;
+    private final DeduplicationIndex deliveryReportIds;
+    private final MessageStatusCache statusCache;
+    private final long pollInterval;
+    private final long maxPollInterval;
 
     public RestApiMessagingClientImpl(RestClient client) {
+        this(client, new ClientSettings(null, null, null));
+    }
+
+    /**
+     * Creates the messaging client.
+     *
+     * @param client   the rest client
+     * @param settings the settings of the bulk sends, the coalescing of single messages, the outbox, the status cache and the pollers
+     * @throws RestApiException if the outbox can not be opened
+     */
+    RestApiMessagingClientImpl(RestClient client, ClientSettings settings) throws RestApiException {
         this.client = client;
+        this.bulkSender = new BulkMessageSender(settings.getBulkChunkSize(), settings.getBulkMaxInFlight());
+        this.pollInterval = settings.getPollInterval();
+        this.maxPollInterval = settings.getMaxPollInterval();
+        // the threads only live while bulk sends are running, so a client which never sends in bulk never starts one
+        this.bulkExecutor = new ThreadPoolExecutor(bulkSender.getMaxInFlight(), bulkSender.getMaxInFlight(), BULK_THREAD_KEEP_ALIVE_SECONDS,
+                                                   TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                                                   bulkThreads(settings.isVirtualThreads()));
+        this.bulkExecutor.allowCoreThreadTimeOut(true);
+        // coalesced batches are sent by the bulk send threads as well
+        this.batcher = settings.getSendLinger() > 0 ? new MessageBatcher(new MessageBatcher.BatchSender() {
+            @Override
+            public RestApiFuture<RestApiResponse<MessageList>> send(List<Message> messages, MessageListProperties properties, Context context) {
+                return submitChunk(context, messages, properties);
+            }
+        }, settings.getSendLinger(), settings.getMaxSendBatchSize()) : null;
+        this.replyIds = settings.createDeduplicationIndex();
+        this.deliveryReportIds = settings.createDeduplicationIndex();
+        this.statusCache = settings.createStatusCache();
+        this.outbox = settings.createOutbox();
+        this.replayer = outbox != null ? new OutboxReplayer(outbox, settings.getRetryBackoff(), settings.getMaxRetryBackoff()) : null;
+        if (replayer != null) {
+            // the recovered message lists are sent again from the bulk send threads, the results are logged
+            replayer.start(entrySender(null));
+        }
+    }
+
+    private RestApiMessagingClientImpl(RestApiMessagingClientImpl shared, RestClient client) {
+        this.client = client;
+        this.bulkSender = shared.bulkSender;
+        this.bulkExecutor = shared.bulkExecutor;
+        this.batcher = shared.batcher;
+        this.outbox = shared.outbox;
+        this.replayer = shared.replayer;
+        this.replyIds = shared.replyIds;
+        this.deliveryReportIds = shared.deliveryReportIds;
+        this.statusCache = shared.statusCache;
+        this.pollInterval = shared.pollInterval;
+        this.maxPollInterval = shared.maxPollInterval;
+    }
+
+    /**
+     * Creates a messaging client which makes all its calls in the given context. It shares everything else with this client, down to the
+     * connections, so it is cheap to create.
+     *
+     * @param context the context
+     * @return the messaging client
+     */
+    RestApiMessagingClientImpl withContext(Context context) {
+        return new RestApiMessagingClientImpl(this, client.withContext(context));
+    }
+
+    private static ThreadFactory bulkThreads(boolean virtual) {
+        ThreadFactory factory = virtual ? VirtualThreads.factory("rest-api-bulk-sender-") : null;
+        if (factory != null) {
+            return factory;
+        }
+        if (virtual) {
+            LOGGER.warning("Virtual threads need Java 21 or later, bulk sends run on platform threads");
+        }
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "rest-api-bulk-sender-" + BULK_THREAD_COUNTER.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
     }
 
     /**
@@ -63,6 +168,9 @@ public class RestApiMessagingClientImpl implements RestApiMessagingClient {
      */
     @Override
     public RestApiResponse<Message> sendMessage(Message message, MessageListProperties messageListProperties) throws RestApiException {
+        if (batcher != null) {
+            return await(batcher.send(message, messageListProperties, client.getCurrentContext()));
+        }
 
         RestApiResponse<MessageList> response = sendMessages(Collections.singletonList(message), messageListProperties);
         List<Message> messages = response.getPayload().getMessages();
@@ -86,11 +194,69 @@ public class RestApiMessagingClientImpl implements RestApiMessagingClient {
      */
     @Override
     public RestApiResponse<MessageList> sendMessages(List<Message> messages, MessageListProperties messageListProperties) throws RestApiException {
+        MessageList messageList = new MessageList(messages, messageListProperties);
+        RestResponse response = outbox != null ? send(journal(outbox, messageList)) : client.post(URL_MESSAGES).body(messageList).execute();
+        RestApiResponse<MessageList> sent = parseResponse(response, MessageList.class);
+        if (statusCache != null && sent.getPayload() != null) {
+            statusCache.sent(sent.getPayload().getMessages(), System.nanoTime());
+        }
+        return sent;
+    }
+
+    /**
+     * Sends an entry of the outbox. It is acknowledged once the API accepted or refused it. After a 429, a server error or no answer at
+     * all, the caller is told, and the outbox owns the entry: it is sent again in the background until the API accepts or refuses it.
+     */
+    private RestResponse send(Outbox.Entry entry) throws RestApiException {
+        RestResponse response;
         try {
-            RestResponse response = client.post(URL_MESSAGES).body(new MessageList(messages, messageListProperties)).execute();
-            return parseResponse(response, MessageList.class);
-        } catch (JsonProcessingException e) {
-            throw new RestApiException("Exception trying to serialize the body of the message", e);
+            response = post(entry);
+        } catch (RestApiException e) {
+            replayer.resend(entry, entrySender(client.getCurrentContext()), OutboxReplayer.retryAfter(e));
+            throw e;
+        }
+        if (OutboxReplayer.isRetryable(response.getResultCode())) {
+            replayer.resend(entry, entrySender(client.getCurrentContext()), OutboxReplayer.retryAfter(response));
+        } else {
+            outbox.acknowledge(entry);
+        }
+        return response;
+    }
+
+    private RestResponse post(Outbox.Entry entry) throws RestApiException {
+        return client.post(URL_MESSAGES).contentType(ContentType.APPLICATION_JSON).body(entry.getPayload()).execute();
+    }
+
+    /**
+     * Sends the entries of the outbox again from the bulk send threads, in the given context.
+     */
+    private OutboxReplayer.EntrySender entrySender(final Context context) {
+        return new OutboxReplayer.EntrySender() {
+            @Override
+            public RestApiFuture<RestResponse> send(final Outbox.Entry entry) {
+                return submit(context, new Call<RestResponse>() {
+                    @Override
+                    public RestResponse call(RestApiMessagingClientImpl messaging) throws RestApiException {
+                        return messaging.post(entry);
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Appends a message list to the outbox. The entry is on disk once this method returns, and must be sent as is.
+     *
+     * @param outbox      the outbox
+     * @param messageList the message list
+     * @return the entry
+     * @throws RestApiException if the message list can not be serialized or written
+     */
+    static Outbox.Entry journal(Outbox outbox, MessageList messageList) throws RestApiException {
+        try {
+            return outbox.append(JsonUtilities.objectToBytes(messageList));
+        } catch (IOException e) {
+            throw new RestApiException("Failed to write the messages to the outbox", e);
         }
     }
 
@@ -98,22 +264,175 @@ public class RestApiMessagingClientImpl implements RestApiMessagingClient {
      * {@inheritDoc}
      */
     @Override
-    public RestApiResponse<Void> confirmDeliveryReports(Collection<String> deliveryReportIds) throws RestApiException {
-        try {
-            DeliveryReportConfirmation deliveryReportConfirmation = new DeliveryReportConfirmation(deliveryReportIds);
+    public List<MessageSendResult> sendMessagesInBulk(List<Message> messages) throws RestApiException {
+        return sendMessagesInBulk(messages, null);
+    }
 
-            return parseResponse(client.post(URL_CONFIRM_DELIVERY_REPORT).body(deliveryReportConfirmation).execute(), Void.class);
-        } catch (JsonProcessingException e) {
-            throw new RestApiException("Failed to convert the deliveryReportIdList to JSON", e);
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<MessageSendResult> sendMessagesInBulk(List<Message> messages, MessageListProperties messageListProperties)
+            throws RestApiException {
+        // the chunks are sent by worker threads, which have to act in the context of the caller
+        final Context context = client.getCurrentContext();
+        RestApiFuture<List<MessageSendResult>> results = bulkSender.send(new BulkMessageSender.ChunkSender() {
+            @Override
+            public RestApiFuture<RestApiResponse<MessageList>> send(List<Message> chunk, MessageListProperties properties) {
+                return submitChunk(context, chunk, properties);
+            }
+        }, messages, messageListProperties);
+        return await(results);
+    }
+
+    private static <T> T await(RestApiFuture<T> future) throws RestApiException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RestApiException("Interrupted while sending the messages", e);
+        } catch (ExecutionException e) {
+            // always a RestApiException, rethrown as is so that callers see the same exceptions as without a future in between
+            throw (RestApiException) e.getCause();
         }
     }
 
+    private RestApiFuture<RestApiResponse<MessageList>> submitChunk(Context context, final List<Message> messages,
+                                                                    final MessageListProperties messageListProperties) {
+        return submit(context, new Call<RestApiResponse<MessageList>>() {
+            @Override
+            public RestApiResponse<MessageList> call(RestApiMessagingClientImpl messaging) throws RestApiException {
+                return messaging.sendMessages(messages, messageListProperties);
+            }
+        });
+    }
+
+    /**
+     * Makes a call from one of the worker threads, in the given context. The call is made on a view of this client bound to the context,
+     * the worker thread itself is never set a context, so that this works in virtual thread mode as well, where threads have none.
+     */
+    private <T> RestApiFuture<T> submit(final Context context, final Call<T> call) {
+        final DefaultRestApiFuture<T> result = new DefaultRestApiFuture<T>();
+        final Future<?> task = bulkExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result.complete(call.call(inContext(context)));
+                } catch (RestApiException e) {
+                    result.fail(e);
+                } catch (RuntimeException e) {
+                    result.fail(new RestApiException("Failed to call the REST API", e));
+                }
+            }
+        });
+        result.setCancellationHandler(new Runnable() {
+            @Override
+            public void run() {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InboundPoller pollReplies(InboundHandler<Reply> handler) {
+        final Context context = client.getCurrentContext();
+        return new InboundPollerImpl<Reply>("replies", new InboundPollerImpl.Source<Reply>() {
+            @Override
+            public RestApiFuture<List<Reply>> check() {
+                return submit(context, new Call<List<Reply>>() {
+                    @Override
+                    public List<Reply> call(RestApiMessagingClientImpl messaging) throws RestApiException {
+                        return replies(messaging.checkReplies());
+                    }
+                });
+            }
+
+            @Override
+            public String idOf(Reply reply) {
+                return reply.getReplyId();
+            }
+
+            @Override
+            public RestApiFuture<?> confirm(final Collection<String> ids) {
+                return submit(context, new Call<RestApiResponse<Void>>() {
+                    @Override
+                    public RestApiResponse<Void> call(RestApiMessagingClientImpl messaging) throws RestApiException {
+                        return messaging.confirmReplies(ids);
+                    }
+                });
+            }
+        }, handler, replyIds, pollInterval, maxPollInterval);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InboundPoller pollDeliveryReports(InboundHandler<DeliveryReport> handler) {
+        final Context context = client.getCurrentContext();
+        return new InboundPollerImpl<DeliveryReport>("delivery-reports", new InboundPollerImpl.Source<DeliveryReport>() {
+            @Override
+            public RestApiFuture<List<DeliveryReport>> check() {
+                return submit(context, new Call<List<DeliveryReport>>() {
+                    @Override
+                    public List<DeliveryReport> call(RestApiMessagingClientImpl messaging) throws RestApiException {
+                        return deliveryReports(messaging.checkDeliveryReports());
+                    }
+                });
+            }
+
+            @Override
+            public String idOf(DeliveryReport deliveryReport) {
+                return deliveryReport.getDeliveryReportId();
+            }
+
+            @Override
+            public RestApiFuture<?> confirm(final Collection<String> ids) {
+                return submit(context, new Call<RestApiResponse<Void>>() {
+                    @Override
+                    public RestApiResponse<Void> call(RestApiMessagingClientImpl messaging) throws RestApiException {
+                        return messaging.confirmDeliveryReports(ids);
+                    }
+                });
+            }
+        }, handler, deliveryReportIds, pollInterval, maxPollInterval);
+    }
+
+    static List<Reply> replies(RestApiResponse<ReplyList> response) {
+        ReplyList replies = response.getPayload();
+        return replies != null ? replies.getReplies() : Collections.<Reply>emptyList();
+    }
+
+    static List<DeliveryReport> deliveryReports(RestApiResponse<DeliveryReportList> response) {
+        DeliveryReportList deliveryReports = response.getPayload();
+        return deliveryReports != null ? deliveryReports.getDeliveryReports() : Collections.<DeliveryReport>emptyList();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RestApiResponse<Void> confirmDeliveryReports(Collection<String> deliveryReportIds) throws RestApiException {
+        DeliveryReportConfirmation deliveryReportConfirmation = new DeliveryReportConfirmation(deliveryReportIds);
+
+        return parseResponse(client.post(URL_CONFIRM_DELIVERY_REPORT).body(deliveryReportConfirmation).execute(), Void.class);
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public RestApiResponse<DeliveryReportList> checkDeliveryReports() throws RestApiException {
-        return parseResponse(client.get(URL_DELIVERY_REPORTS).execute(), DeliveryReportList.class);
+        RestApiResponse<DeliveryReportList> response = parseResponse(client.get(URL_DELIVERY_REPORTS).execute(), DeliveryReportList.class);
+        if (statusCache != null) {
+            statusCache.reported(deliveryReports(response), System.nanoTime());
+        }
+        return response;
     }
 
     /**
@@ -121,13 +440,9 @@ public class RestApiMessagingClientImpl implements RestApiMessagingClient {
      */
     @Override
     public RestApiResponse<Void> confirmReplies(Collection<String> replyIds) throws RestApiException {
-        try {
-            ReplyConfirmation replyConfirmation = new ReplyConfirmation(replyIds);
+        ReplyConfirmation replyConfirmation = new ReplyConfirmation(replyIds);
 
-            return parseResponse(client.post(URL_CONFIRM_REPLIES).body(replyConfirmation).execute(), Void.class);
-        } catch (JsonProcessingException e) {
-            throw new RestApiException("Failed to convert the replyIdList to JSON", e);
-        }
+        return parseResponse(client.post(URL_CONFIRM_REPLIES).body(replyConfirmation).execute(), Void.class);
     }
 
     /**
@@ -139,29 +454,7 @@ public class RestApiMessagingClientImpl implements RestApiMessagingClient {
     }
 
     private <T> RestApiResponse<T> parseResponse(RestResponse response, Class<T> clazz) throws RestApiException {
-        int resultCode = response.getResultCode();
-        if (response.isSuccessful()) {
-            final T result = response.getResponseAs(clazz);
-            return RestApiResponseFactory.success(resultCode, result);
-        } else {
-            // This will convert 400, 404, 403 to 4, 500, 501, 503 etc to 5.
-            int codeFamily = resultCode / RESULT_CODE_CONVERSION;
-            switch (codeFamily) {
-                case CLIENT_ERROR:
-                    // Client Error
-                    ErrorResponse error = response.getResponseAs(DefaultErrorResponse.class);
-                    if (error != null) {
-                        throw new RestApiClientException(error.getReason(), resultCode, error.getDetails());
-                    } else {
-                        throw new RestApiClientException("HTTP status code " + resultCode, resultCode);
-                    }
-                case SERVER_ERROR:
-                    // Server Error
-                    throw new RestApiServerException("HTTP status code " + resultCode, resultCode);
-                default:
-                    throw new RestApiHttpStatusCodeException("HTTP status code " + resultCode, resultCode);
-            }
-        }
+        return RestApiResponseFactory.parse(response, clazz);
     }
 
     /**
@@ -169,7 +462,21 @@ public class RestApiMessagingClientImpl implements RestApiMessagingClient {
      */
     @Override
     public RestApiResponse<Message> getMessage(String messageId) throws RestApiException {
-        return parseResponse(client.get(URL_CHECK_MESSAGE).pathVariable("messageId", messageId).execute(), Message.class);
+        if (statusCache == null) {
+            return parseResponse(client.get(URL_CHECK_MESSAGE).pathVariable("messageId", messageId).execute(), Message.class);
+        }
+        Message cached = statusCache.get(messageId, System.nanoTime());
+        if (cached != null) {
+            return RestApiResponseFactory.success(HttpStatus.SC_OK, cached);
+        }
+        return cache(parseResponse(client.get(URL_CHECK_MESSAGE).pathVariable("messageId", messageId).execute(), Message.class));
+    }
+
+    private RestApiResponse<Message> cache(RestApiResponse<Message> response) {
+        if (statusCache != null) {
+            statusCache.put(response.getPayload(), System.nanoTime());
+        }
+        return response;
     }
 
     /**
@@ -177,7 +484,24 @@ public class RestApiMessagingClientImpl implements RestApiMessagingClient {
      */
     @Override
     public RestApiResponse cancelMessage(String messageId) throws RestApiException {
-        return parseResponse(
-                client.put(URL_CHECK_MESSAGE).pathVariable("messageId", messageId).body(CANCEL_MESSAGE_PAYLOAD).execute(), Message.class);
+        return cache(parseResponse(
+                client.put(URL_CHECK_MESSAGE).pathVariable("messageId", messageId).body(CANCEL_MESSAGE_PAYLOAD).execute(), Message.class));
+    }
+
+    private RestApiMessagingClientImpl inContext(Context context) {
+        return context == null || context == client.getCurrentContext() ? this : withContext(context);
+    }
+
+    /**
+     * A blocking call to the REST API.
+     */
+    private interface Call<T> {
+
+        /**
+         * @param messaging the messaging client to make the call with, bound to the context of the call
+         * @return the result of the call
+         * @throws RestApiException if the call failed
+         */
+        T call(RestApiMessagingClientImpl messaging) throws RestApiException;
     }
 }
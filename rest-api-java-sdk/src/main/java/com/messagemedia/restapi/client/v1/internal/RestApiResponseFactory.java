@@ -15,13 +15,80 @@
  */
 package com.messagemedia.restapi.client.v1.internal;
 
+import com.messagemedia.restapi.client.v1.RestApiClientException;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.RestApiHttpStatusCodeException;
 import com.messagemedia.restapi.client.v1.RestApiResponse;
+import com.messagemedia.restapi.client.v1.RestApiServerException;
+import com.messagemedia.restapi.client.v1.RestApiThrottledException;
+import com.messagemedia.restapi.client.v1.internal.util.JsonUtilities;
+
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Factory for creating {@link RestApiResponse}
  */
 final class RestApiResponseFactory {
 
+    private static final int RESULT_CODE_CONVERSION = 100;
+    private static final int CLIENT_ERROR = 4;
+    private static final int SERVER_ERROR = 5;
+
+    static {
+        // the payload types only known to this package, the public ones are precompiled by JsonUtilities itself
+        JsonUtilities.precompile(ReplyConfirmation.class, DeliveryReportConfirmation.class, DefaultErrorResponse.class);
+    }
+
+    /**
+     * Maps a raw response to a {@link RestApiResponse}, or throws the exception matching its HTTP status code. The raw response is closed.
+     *
+     * @param response the raw response
+     * @param clazz    the type of the payload
+     * @param <T>      the type of the payload
+     * @return the response
+     * @throws RestApiException if the HTTP status code signals an error
+     */
+    public static <T> RestApiResponse<T> parse(RestResponse response, Class<T> clazz) throws RestApiException {
+        try {
+            return parseBody(response, clazz);
+        } finally {
+            response.close();
+        }
+    }
+
+    private static <T> RestApiResponse<T> parseBody(RestResponse response, Class<T> clazz) throws RestApiException {
+        int resultCode = response.getResultCode();
+        if (response.isSuccessful()) {
+            final T result = response.getResponseAs(clazz);
+            return success(resultCode, result);
+        } else {
+            // This will convert 400, 404, 403 to 4, 500, 501, 503 etc to 5.
+            int codeFamily = resultCode / RESULT_CODE_CONVERSION;
+            switch (codeFamily) {
+                case CLIENT_ERROR:
+                    // Client Error
+                    throw clientError(response, resultCode);
+                case SERVER_ERROR:
+                    // Server Error
+                    throw new RestApiServerException("HTTP status code " + resultCode, resultCode);
+                default:
+                    throw new RestApiHttpStatusCodeException("HTTP status code " + resultCode, resultCode);
+            }
+        }
+    }
+
+    private static RestApiClientException clientError(RestResponse response, int resultCode) throws RestApiException {
+        ErrorResponse error = response.getResponseAs(DefaultErrorResponse.class);
+        String reason = error != null ? error.getReason() : "HTTP status code " + resultCode;
+        List<String> details = error != null ? error.getDetails() : Collections.singletonList("HTTP status code " + resultCode);
+        if (resultCode == RestApiThrottledException.TOO_MANY_REQUESTS) {
+            return new RestApiThrottledException(reason, details,
+                                                 RateLimits.retryAfter(response.getHeader(RateLimits.RETRY_AFTER), System.currentTimeMillis()));
+        }
+        return new RestApiClientException(reason, resultCode, details);
+    }
+
     public static <T> RestApiResponse<T> success(int httpCode, T object) {
         return new DefaultRestApiResponse<T>(httpCode, object);
     }
@@ -15,68 +15,161 @@
  */
 package com.messagemedia.restapi.client.v1.internal;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.messagemedia.restapi.client.v1.AuthorizationScheme;
 import com.messagemedia.restapi.client.v1.Context;
 import com.messagemedia.restapi.client.v1.RestApiException;
-import com.messagemedia.restapi.client.v1.internal.http.interceptors.ContentTypeInterceptor;
 import com.messagemedia.restapi.client.v1.internal.http.interceptors.HmacMmv2Interceptor;
-import com.messagemedia.restapi.client.v1.internal.http.interceptors.RequestDateInterceptor;
+import com.messagemedia.restapi.client.v1.metrics.ConnectionPoolStats;
+import com.messagemedia.restapi.client.v1.metrics.RestApiMetricsListener;
+import com.messagemedia.restapi.client.v1.transport.ApacheTransport;
+import com.messagemedia.restapi.client.v1.transport.Transport;
+import org.apache.http.HttpException;
 import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpRequestWrapper;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URIUtils;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Performs REST operations against the MessageMedia REST API
+ * Performs REST operations against the MessageMedia REST API. Requests are signed here and sent by a {@link Transport}, which is an Apache
+ * client unless another one is set.
+ * <p/>
+ * Requests are made in the context bound to the client by {@link #withContext(Context)}, or else in the context set on the current thread.
+ * In virtual thread mode, contexts are only bound with {@link #withContext(Context)}, the client keeps nothing per thread.
+ * If fair scheduling is enabled, the requests in flight are shared fairly between the contexts, see {@link FairScheduler}.
  */
 class RestClient {
 
     private static final int CLIENT_VERSION = 1;
 
-    private static final String USER_AGENT = "rest-api-java-client-v"
+    static final String USER_AGENT = "rest-api-java-client-v"
             + CLIENT_VERSION;
 
-    private static final int MAX_CONNECTIONS_DEFAULT = 200;
-    private static final int SOCKET_TIMEOUT_DEFAULT = 5 * 60 * 1000;
-    private static final int CONNECT_TIMEOUT_DEFAULT = 60 * 1000;
+    static final int MAX_CONNECTIONS_DEFAULT = 200;
+    static final int SOCKET_TIMEOUT_DEFAULT = 5 * 60 * 1000;
+    static final int CONNECT_TIMEOUT_DEFAULT = 60 * 1000;
+    static final int KEEP_ALIVE_DEFAULT = 30 * 1000;
+    static final int VALIDATE_AFTER_INACTIVITY_DEFAULT = 0;
+    static final int EVICTION_INTERVAL_DEFAULT = 5 * 1000;
 
-    private final HttpClient httpClient;
+    private final HttpRequestInterceptor signer;
+    private final Transport transport;
+    private final ConnectionPool pool;
     private final String endpoint;
-    private ThreadLocal<Context> contextThreadLocal = new ThreadLocal<Context>();
+    private final RestApiMetricsListener metricsListener;
+    private final RateLimits rateLimits;
+    private final Retries retries;
+    private final CircuitBreakers breakers;
+    private final FairScheduler scheduler;
+    private final Compression compression;
+    private final ThreadLocal<Context> contextThreadLocal;
+    private final Context context;
 
     public RestClient(String endpoint, String key, String secret, Integer maxConnections, Integer connectTimeout, Integer socketTimeout,
                       AuthorizationScheme authorizationScheme) {
-        this.endpoint = endpoint;
-        int maxConnectionsValue = maxConnections != null ? maxConnections : MAX_CONNECTIONS_DEFAULT;
-        int connectTimeoutValue = connectTimeout != null ? connectTimeout : CONNECT_TIMEOUT_DEFAULT;
-        int socketTimeoutValue = socketTimeout != null ? socketTimeout : SOCKET_TIMEOUT_DEFAULT;
+        this(new ClientSettings(endpoint, key, secret).maxConnections(maxConnections)
+                                                      .connectTimeout(connectTimeout)
+                                                      .socketTimeout(socketTimeout)
+                                                      .authorizationScheme(authorizationScheme));
+    }
+
+    public RestClient(ClientSettings settings) {
+        this.endpoint = settings.getEndpoint();
+        this.metricsListener = settings.getMetricsListener();
+        this.rateLimits = settings.createRateLimits();
+        this.retries = settings.createRetries();
 
         RequestConfig config = RequestConfig.custom()
-                                            .setConnectTimeout(connectTimeoutValue)
-                                            .setSocketTimeout(socketTimeoutValue)
+                                            .setConnectTimeout(settings.getConnectTimeout())
+                                            .setSocketTimeout(settings.getSocketTimeout())
+                                            // idle connections are validated by the pool instead, see LeaseTimingConnectionManager
+                                            .setStaleConnectionCheckEnabled(false)
                                             .build();
 
-        httpClient = HttpClientBuilder.create()
-                                      .addInterceptorFirst(new ContentTypeInterceptor())
-                                      .addInterceptorFirst(new RequestDateInterceptor())
-                                      .addInterceptorFirst(toRequestInterceptor(authorizationScheme, key, secret))
-                                      .setMaxConnPerRoute(maxConnectionsValue)
-                                      .setMaxConnTotal(maxConnectionsValue)
-                                      .disableCookieManagement()
-                                      .setUserAgent(USER_AGENT)
-                                      .setDefaultRequestConfig(config)
-                                      .build();
+        breakers = settings.createCircuitBreakers(config);
+        // short-lived threads, virtual ones in particular, would each create a signer of their own
+        signer = toRequestInterceptor(settings.getAuthorizationScheme(), settings.getKey(), settings.getSecret(), settings.isVirtualThreads());
+        if (settings.getTransport() != null) {
+            pool = null;
+            transport = settings.getTransport();
+        } else {
+            LeaseTimingConnectionManager connectionManager = new LeaseTimingConnectionManager(settings.getMaxConnections(),
+                                                                                              settings.getValidateAfterInactivity(),
+                                                                                              settings.getKeepAlive());
+            pool = connectionManager;
+            transport = createTransport(connectionManager, settings.getKeepAlive(), config);
+            if (settings.getEvictionInterval() > 0) {
+                ConnectionEvictor.schedule(connectionManager, settings.getEvictionInterval());
+            }
+        }
+        scheduler = settings.createScheduler();
+        compression = settings.createCompression();
+        contextThreadLocal = settings.isVirtualThreads() ? null : new ThreadLocal<Context>();
+        context = null;
+    }
+
+    private RestClient(RestClient shared, Context context) {
+        this.endpoint = shared.endpoint;
+        this.metricsListener = shared.metricsListener;
+        this.rateLimits = shared.rateLimits;
+        this.retries = shared.retries;
+        this.breakers = shared.breakers;
+        this.signer = shared.signer;
+        this.transport = shared.transport;
+        this.pool = shared.pool;
+        this.scheduler = shared.scheduler;
+        this.compression = shared.compression;
+        this.contextThreadLocal = shared.contextThreadLocal;
+        this.context = context;
+    }
+
+    /**
+     * Creates a client which makes all its requests in the given context, whatever the context of the thread. It shares the transport, the
+     * limits, the retry budget and the circuit breakers of this client.
+     *
+     * @param context the context
+     * @return the client
+     */
+    RestClient withContext(Context context) {
+        return new RestClient(this, context);
+    }
+
+    private static Transport createTransport(LeaseTimingConnectionManager connectionManager, int keepAlive, RequestConfig config) {
+        return new ApacheTransport(HttpClientBuilder.create()
+                                                    .setConnectionManager(connectionManager)
+                                                    .setKeepAliveStrategy(new KeepAliveStrategy(keepAlive))
+                                                    .disableCookieManagement()
+                                                    // retries are made by this class, within its budget
+                                                    .disableAutomaticRetries()
+                                                    // compression is handled by this class, the same way for all transports
+                                                    .disableContentCompression()
+                                                    .setUserAgent(USER_AGENT)
+                                                    .setDefaultRequestConfig(config)
+                                                    .build());
+    }
+
+    /**
+     * @return a snapshot of the connection pool, or null if the requests are sent by a transport given in the settings
+     */
+    ConnectionPoolStats getConnectionPoolStats() {
+        return pool != null ? pool.getStats() : null;
     }
 
-    private HttpRequestInterceptor toRequestInterceptor(AuthorizationScheme authorizationScheme, String key, String secret) {
+    static HttpRequestInterceptor toRequestInterceptor(AuthorizationScheme authorizationScheme, String key, String secret, boolean shared) {
         switch (authorizationScheme) {
             case HMAC_MM_V2:
-                return new HmacMmv2Interceptor(key, secret);
+                return new HmacMmv2Interceptor(key, secret, shared);
             default:
                 throw new IllegalArgumentException(authorizationScheme + " is not supported");
         }
@@ -137,16 +230,138 @@ class RestClient {
     }
 
     /**
-     * Executes the rest request.
+     * Executes the rest request, and retries it if it failed transiently, see {@link Retries}. If the operation class of the request is rate
+     * limited, every attempt waits for a permit first, or fails if it must not wait. If circuit breakers are enabled, attempts to an endpoint
+     * whose circuit is open fail at once, see {@link CircuitBreaker}. If a metrics listener is set, it receives the measurements of every
+     * attempt once its response arrived.
      *
      * @param req the request
      * @return the rest response
      * @throws RestApiException if something goes wrong
      */
     RestResponse execute(RestRequest req) throws RestApiException {
+        if (!retries.isEnabled()) {
+            return attempt(req);
+        }
+        retries.requested();
+        for (int attempt = 0; ; attempt++) {
+            RestResponse response;
+            try {
+                response = attempt(req);
+            } catch (RestApiException e) {
+                long backoff = retries.backoff(req, e.getCause(), attempt);
+                if (backoff < 0) {
+                    throw e;
+                }
+                sleep(backoff);
+                continue;
+            }
+            long backoff = retries.backoff(req, response, attempt);
+            if (backoff < 0) {
+                return response;
+            }
+            response.close();
+            sleep(backoff);
+        }
+    }
+
+    private static void sleep(long nanos) throws RestApiException {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RestApiException("Interrupted while waiting to retry", e);
+        }
+    }
+
+    private RestResponse attempt(RestRequest req) throws RestApiException {
+        RateLimiter limiter = rateLimits.limiterFor(req);
+        if (limiter != null) {
+            rateLimits.acquire(limiter);
+        }
+        CircuitBreaker breaker = breakers != null ? breakers.breakerFor(req) : null;
+        RestResponse response = breaker != null ? guarded(req, breaker) : measure(req);
+        if (limiter != null) {
+            RateLimits.update(limiter, response);
+        }
+        return response;
+    }
+
+    private RestResponse guarded(RestRequest req, CircuitBreaker breaker) throws RestApiException {
+        admit(req, breaker);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            RestResponse response = measure(req);
+            failed = CircuitBreakers.isFailure(response.getResultCode());
+            return response;
+        } catch (RestApiException e) {
+            failed = Retries.isTransient(e.getCause());
+            throw e;
+        } finally {
+            long now = System.nanoTime();
+            breaker.record(failed, now - start, now);
+        }
+    }
+
+    private void admit(RestRequest req, CircuitBreaker breaker) throws RestApiException {
+        switch (breaker.admit(System.nanoTime())) {
+            case ALLOW:
+                return;
+            case PROBE:
+                boolean alive = false;
+                try {
+                    alive = probe();
+                } finally {
+                    // whatever the probe throws, the circuit must not stay in the probing state
+                    breaker.probed(alive, System.nanoTime());
+                }
+                if (alive) {
+                    return;
+                }
+                throw CircuitBreakers.rejected(req, breaker);
+            default:
+                throw CircuitBreakers.rejected(req, breaker);
+        }
+    }
+
+    private boolean probe() {
+        try {
+            RestResponse response = new RestResponse(transport.execute(sign(breakers.probe(get(RestApiClientImpl.URL_STATUS).build()), null)));
+            response.close();
+            return response.isSuccessful();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private RestResponse measure(RestRequest req) throws RestApiException {
+        if (metricsListener == null) {
+            return execute(req, null);
+        }
+        RequestRecorder recorder = new RequestRecorder(req);
+        recorder.attach();
+        try {
+            return execute(req, recorder);
+        } finally {
+            RequestRecorder.detach();
+            recorder.report(metricsListener);
+        }
+    }
+
+    private RestResponse execute(RestRequest req, RequestRecorder recorder) throws RestApiException {
         try {
-            HttpResponse response = httpClient.execute(addHeaders(req.getHttpRequest()));
+            // make sure the context does not change during the execution
+            Context current = getCurrentContext();
+            HttpUriRequest request = addHeaders(req.getHttpRequest(), current);
+            compression.prepare(request);
+            HttpResponse response = scheduler != null ? scheduled(request, current, recorder) : transport.execute(sign(request, recorder));
+            if (recorder != null) {
+                recorder.responded(response);
+            }
             return new RestResponse(response);
+        } catch (JsonProcessingException e) {
+            throw new RestApiException("Exception trying to serialize the body of the request", e);
         } catch (ClientProtocolException e) {
             throw new RestApiException("Protocol exception", e);
         } catch (IOException e) {
@@ -154,8 +369,54 @@ class RestClient {
         }
     }
 
-    private HttpUriRequest addHeaders(HttpUriRequest httpRequest) {
-        Context context = contextThreadLocal.get(); // make sure it does not change during the execution
+    /**
+     * Signs a request the way it is sent: the request line holds the path and the query of its URI only, as no proxy is involved.
+     */
+    private HttpUriRequest sign(HttpUriRequest request, RequestRecorder recorder) throws IOException {
+        HttpRequestWrapper sent = HttpRequestWrapper.wrap(request);
+        HttpContext context = null;
+        if (recorder != null) {
+            context = new BasicHttpContext();
+            context.setAttribute(RequestRecorder.CONTEXT_ATTRIBUTE, recorder);
+        }
+        try {
+            sent.setURI(URIUtils.rewriteURI(request.getURI(), null, true));
+            signer.process(sent, context);
+        } catch (URISyntaxException e) {
+            throw new ClientProtocolException("Invalid URI " + request.getURI(), e);
+        } catch (HttpException e) {
+            throw new ClientProtocolException(e);
+        }
+        request.setHeaders(sent.getAllHeaders());
+        return request;
+    }
+
+    /**
+     * Sends a request once it is the turn of its context. It is only signed then, so that its date does not age while it waits. The turn
+     * lasts until the body of the response is consumed or closed, as long as the response holds its connection.
+     */
+    private HttpResponse scheduled(HttpUriRequest request, Context context, RequestRecorder recorder) throws IOException {
+        try {
+            scheduler.acquire(context != null ? context.getAccount() + '/' + context.getUsername() : "");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the turn of the context");
+        }
+        HttpResponse response;
+        try {
+            response = transport.execute(sign(request, recorder));
+        } catch (IOException e) {
+            scheduler.release();
+            throw e;
+        } catch (RuntimeException e) {
+            scheduler.release();
+            throw e;
+        }
+        PermitReleasingEntity.releaseOnConsumption(response, scheduler);
+        return response;
+    }
+
+    private static HttpUriRequest addHeaders(HttpUriRequest httpRequest, Context context) {
         if (context == null) {
             return httpRequest;
         } else {
@@ -174,7 +435,17 @@ class RestClient {
         }
     }
 
+    Context getCurrentContext() {
+        if (context != null || contextThreadLocal == null) {
+            return context;
+        }
+        return contextThreadLocal.get();
+    }
+
     void setContext(Context context) {
+        if (contextThreadLocal == null) {
+            throw new IllegalStateException("Contexts are not set on threads in virtual thread mode, pass them per call with messaging(Context)");
+        }
         if (contextThreadLocal.get() != null) {
             throw new IllegalStateException("There is already a context set! You have to close a context before you set another one!");
         }
@@ -182,6 +453,8 @@ class RestClient {
     }
 
     void removeCurrentContext() {
-        contextThreadLocal.remove();
+        if (contextThreadLocal != null) {
+            contextThreadLocal.remove();
+        }
     }
 }
@@ -15,8 +15,8 @@
  */
 package com.messagemedia.restapi.client.v1.internal;
 
+import org.apache.http.HttpEntity;
 import org.apache.http.client.methods.*;
-import org.apache.http.entity.ByteArrayEntity;
 
 import java.util.Map;
 import java.util.Map.Entry;
@@ -29,17 +29,34 @@ import java.util.Map.Entry;
 class RestRequest {
 
     private final HttpMethod method;
+    private final String endpoint;
     private final String url;
-    private final byte[] body;
+    private final HttpEntity body;
     private final Map<String, String> headers;
 
-    public RestRequest(HttpMethod method, String url, Map<String, String> headers, byte[] body) {
+    public RestRequest(HttpMethod method, String endpoint, String url, Map<String, String> headers, HttpEntity body) {
         this.method = method;
+        this.endpoint = endpoint;
         this.url = url;
-        this.body = body == null ? null : body.clone();
+        this.body = body;
         this.headers = headers;
     }
 
+    HttpMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the path template the request was built from, before the path variables were resolved
+     */
+    String getEndpoint() {
+        return endpoint;
+    }
+
+    HttpEntity getBody() {
+        return body;
+    }
+
     /**
      * Builds an apache http request
      *
@@ -59,17 +76,17 @@ class RestRequest {
                 break;
             case POST:
                 HttpPost post = new HttpPost(url);
-                post.setEntity(new ByteArrayEntity(body));
+                post.setEntity(body);
                 request = post;
                 break;
             case PUT:
                 HttpPut put = new HttpPut(url);
-                put.setEntity(new ByteArrayEntity(body));
+                put.setEntity(body);
                 request = put;
                 break;
             case PATCH:
                 HttpPatch patch = new HttpPatch(url);
-                patch.setEntity(new ByteArrayEntity(body));
+                patch.setEntity(body);
                 request = patch;
                 break;
             default:
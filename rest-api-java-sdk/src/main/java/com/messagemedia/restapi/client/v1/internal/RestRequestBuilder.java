@@ -15,10 +15,11 @@
  */
 package com.messagemedia.restapi.client.v1.internal;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.messagemedia.restapi.client.v1.RestApiException;
-import com.messagemedia.restapi.client.v1.internal.util.JsonUtilities;
+import com.messagemedia.restapi.client.v1.RestApiFuture;
+import org.apache.http.HttpEntity;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.protocol.HTTP;
 import org.apache.http.util.Args;
@@ -34,18 +35,20 @@ import java.util.Map;
 final class RestRequestBuilder {
 
     private final RestClient client;
+    private final AsyncRestClient asyncClient;
 
+    private final String template;
     private String path;
-    private byte[] body;
+    private HttpEntity body;
     private final HttpMethod method;
     private final Map<String, String> headers;
     private final URIBuilder uriBuilder;
 
-    private RestRequestBuilder(String endpoint, String path, HttpMethod method, RestClient client) {
+    private RestRequestBuilder(String endpoint, String path, HttpMethod method, RestClient client, AsyncRestClient asyncClient) {
 
         Args.notBlank(path, "path");
         Args.notNull(method, "method");
-        Args.notNull(client, "client");
+        Args.check(client != null || asyncClient != null, "client may not be null");
         Args.notBlank(endpoint, "endpoint");
 
         try {
@@ -54,24 +57,30 @@ final class RestRequestBuilder {
             throw new IllegalArgumentException(e);
         }
 
+        this.template = path;
         this.path = path;
         this.client = client;
+        this.asyncClient = asyncClient;
         this.method = method;
         this.headers = new HashMap<String, String>();
     }
 
     public static RestRequestBuilder create(String endpoint, String path, HttpMethod method, RestClient client) {
-        return new RestRequestBuilder(endpoint, path, method, client);
+        return new RestRequestBuilder(endpoint, path, method, client, null);
+    }
+
+    public static RestRequestBuilder create(String endpoint, String path, HttpMethod method, AsyncRestClient client) {
+        return new RestRequestBuilder(endpoint, path, method, null, client);
     }
 
     /**
-     * Sets the body
+     * Sets the body. The array is not copied, so it must not be modified until the request has been sent.
      *
      * @param body the body
      * @return the rest request builder
      */
     public RestRequestBuilder body(byte[] body) {
-        this.body = body.clone();
+        this.body = new ByteArrayEntity(body);
         return this;
     }
 
@@ -83,7 +92,7 @@ final class RestRequestBuilder {
      */
     public RestRequestBuilder body(String body) throws RestApiException {
         try {
-            this.body = body.getBytes("UTF-8");
+            this.body = new ByteArrayEntity(body.getBytes("UTF-8"));
         } catch (UnsupportedEncodingException ex) {
             throw new RestApiException("Failed to copy body of REST request.", ex);
         }
@@ -92,15 +101,14 @@ final class RestRequestBuilder {
     }
 
     /**
-     * Sets an object as request body
+     * Sets an object as request body. The object is serialized as JSON while the request is being sent, see {@link JsonEntity}.
      *
      * @param <T>    the generic type
      * @param object the object
      * @return the rest request builder
-     * @throws JsonProcessingException the json processing exception
      */
-    public <T> RestRequestBuilder body(T object) throws JsonProcessingException {
-        this.body = JsonUtilities.objectToBytes(object);
+    public <T> RestRequestBuilder body(T object) {
+        this.body = new JsonEntity(object);
         return this;
     }
 
@@ -108,7 +116,7 @@ final class RestRequestBuilder {
         uriBuilder.setPath(path);
 
         try {
-            return new RestRequest(method, uriBuilder.build().toString(), headers, body);
+            return new RestRequest(method, template, uriBuilder.build().toString(), headers, body);
         } catch (URISyntaxException e) {
             throw new IllegalArgumentException(e);
         }
@@ -144,12 +152,37 @@ final class RestRequestBuilder {
      * @throws RestApiException the rest client exception
      */
     public RestResponse execute() throws RestApiException {
+        checkPathVariablesResolved();
+        if (client == null) {
+            throw new IllegalStateException("This request belongs to an asynchronous client. Use #executeAsync instead.");
+        }
+
+        return client.execute(build());
+    }
+
+    /**
+     * Sends the request without blocking. If something goes wrong, the returned future fails.
+     *
+     * @return a future of the rest response
+     */
+    public RestApiFuture<RestResponse> executeAsync() {
+        try {
+            checkPathVariablesResolved();
+        } catch (RestApiException e) {
+            return RestApiFutures.failed(e);
+        }
+        if (asyncClient == null) {
+            throw new IllegalStateException("This request belongs to a blocking client. Use #execute instead.");
+        }
+
+        return asyncClient.execute(build());
+    }
+
+    private void checkPathVariablesResolved() throws RestApiException {
         if (path.contains("{") || path.contains("}")) {
             String message = "Path variables unresolved. Please call #pathVariable method for every path variable. Current path is " + path;
             throw new RestApiException(message);
         }
-
-        return client.execute(build());
     }
 
     public RestRequestBuilder pathVariable(String name, String value) {
@@ -20,38 +20,42 @@ import com.fasterxml.jackson.databind.JsonMappingException;
 import com.messagemedia.restapi.client.v1.RestApiException;
 import com.messagemedia.restapi.client.v1.internal.util.JsonUtilities;
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.ParseException;
 import org.apache.http.protocol.HTTP;
 import org.apache.http.util.EntityUtils;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
- * Rest response
+ * A response of the REST API.
+ * <p/>
+ * The body is read lazily: {@link #getResponseAs(Class)} parses it straight from the connection, and only {@link #getResponseAsString()} keeps
+ * a copy of it in memory. The body can only be parsed once, unless it has been buffered by {@link #getResponseAsString()} before. A response
+ * whose body is not read must be closed to release its connection.
+ * <p/>
+ * Instances of this class are NOT thread-safe.
  */
-class RestResponse {
+class RestResponse implements Closeable {
 
+    private final HttpResponse response;
     private final int resultCode;
-    private final Map<String, String> headers = new HashMap<String, String>();
+    private Map<String, String> headers;
     private byte[] resultBytes;
+    private boolean consumed;
 
-    public RestResponse(HttpResponse response) throws RestApiException {
+    /**
+     * @param response the response, whose body is decompressed while it is read if the server compressed it
+     */
+    public RestResponse(HttpResponse response) {
+        Compression.decompress(response);
+        this.response = response;
         this.resultCode = response.getStatusLine().getStatusCode();
-        for (Header header : response.getAllHeaders()) {
-            headers.put(header.getName(), header.getValue());
-        }
-        if (response.getEntity() != null) {
-            try {
-                this.resultBytes = EntityUtils.toByteArray(response.getEntity());
-            } catch (IOException e) {
-                throw new RestApiException("Error reading response", e);
-            } finally {
-                EntityUtils.consumeQuietly(response.getEntity());
-            }
-        }
     }
 
     /**
@@ -71,30 +75,56 @@ class RestResponse {
     }
 
     /**
-     * Gets the http response headers.
+     * Gets the http response headers. The map is only built on the first call.
      *
      * @return the headers
      */
     public Map<String, String> getHeaders() {
+        if (headers == null) {
+            headers = new HashMap<String, String>();
+            for (Header header : response.getAllHeaders()) {
+                headers.put(header.getName(), header.getValue());
+            }
+        }
         return headers;
     }
 
+    /**
+     * Gets the value of a http response header.
+     *
+     * @param name the name of the header, case-insensitive
+     * @return the first value of the header, or null if it is missing
+     */
+    public String getHeader(String name) {
+        Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
     /**
      * Try to map response as the required class.
      *
      * @param <T> the generic type
      * @param clazz the clazz
-     * @return the response mapped as the required object
+     * @return the response mapped as the required object, or null if there is no body
      * @throws RestApiException the rest client exception
      */
     public <T> T getResponseAs(Class<T> clazz) throws RestApiException {
-        // no data -> null
-        if (resultBytes.length == 0) {
-            return null;
-        }
-        T result;
         try {
-            result = JsonUtilities.bytesToObject(resultBytes, clazz);
+            if (resultBytes != null) {
+                // no data -> null
+                return resultBytes.length == 0 ? null : JsonUtilities.bytesToObject(resultBytes, clazz);
+            }
+            HttpEntity entity = takeEntity();
+            if (entity == null) {
+                return null;
+            }
+            InputStream content = entity.getContent();
+            try {
+                return JsonUtilities.streamToObject(content, clazz);
+            } finally {
+                // drains what is left of the body, so that the connection can be reused
+                content.close();
+            }
         } catch (JsonParseException e) {
             throw new RestApiException("Could not parse response as object", e);
         } catch (JsonMappingException e) {
@@ -102,20 +132,53 @@ class RestResponse {
         } catch (IOException e) {
             throw new RestApiException("Error reading response", e);
         }
-        return result;
     }
 
     /**
-     * Gets the response as string.
+     * Gets the response as string. The body is kept in memory from then on.
      *
      * @return the response as string
      * @throws RestApiException the rest client exception
      */
     public String getResponseAsString() throws RestApiException {
         try {
-            return new String(resultBytes, HTTP.DEF_CONTENT_CHARSET);
+            return new String(buffer(), HTTP.DEF_CONTENT_CHARSET);
         } catch (ParseException e) {
             throw new RestApiException("Could not parse response as string", e);
         }
     }
+
+    /**
+     * Releases the connection of this response. What is left of the body is read to the end and discarded, so that the connection can be
+     * reused; responses of the API are small enough that this is cheaper than opening a new connection.
+     */
+    @Override
+    public void close() {
+        if (!consumed) {
+            consumed = true;
+            EntityUtils.consumeQuietly(response.getEntity());
+        }
+    }
+
+    private byte[] buffer() throws RestApiException {
+        if (resultBytes == null) {
+            HttpEntity entity = takeEntity();
+            try {
+                resultBytes = entity != null ? EntityUtils.toByteArray(entity) : new byte[0];
+            } catch (IOException e) {
+                throw new RestApiException("Error reading response", e);
+            } finally {
+                EntityUtils.consumeQuietly(entity);
+            }
+        }
+        return resultBytes;
+    }
+
+    private HttpEntity takeEntity() {
+        if (consumed) {
+            throw new IllegalStateException("The body of the response has already been read");
+        }
+        consumed = true;
+        return response.getEntity();
+    }
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.conn.ConnectTimeoutException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decides whether a failed request is tried again, and how long to wait before.
+ * <p/>
+ * Requests fail transiently if the connection broke, for example when a pooled keep-alive connection was reset by the server, or if the
+ * server answered with HTTP status code 429, 502, 503 or 504. Such requests are retried if they are idempotent, which all requests but sends
+ * are, or if sends are allowed to be retried. The wait before a retry grows exponentially with the number of attempts, and is spread
+ * randomly over the whole range ("full jitter"), so that clients which failed together do not retry together. A <code>Retry-After</code>
+ * header sets the minimum wait. All retries of a client share one {@link RetryBudget}.
+ * <p/>
+ * Instances of this class are thread-safe.
+ */
+final class Retries {
+
+    static final int MAX_RETRIES_DEFAULT = 2;
+    static final int BACKOFF_DEFAULT = 100;
+    static final int MAX_BACKOFF_DEFAULT = 10 * 1000;
+    static final double BUDGET_DEFAULT = 0.1;
+
+    private static final Logger LOGGER = Logger.getLogger(Retries.class.getName());
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int BAD_GATEWAY = 502;
+    private static final int GATEWAY_TIMEOUT = 504;
+    // 2^30 times the initial backoff exceeds any sensible maximum
+    private static final int MAX_SHIFT = 30;
+
+    private final int maxRetries;
+    private final boolean retrySends;
+    private final long backoff;
+    private final long maxBackoff;
+    private final RetryBudget budget;
+    private final Random random = new Random();
+
+    /**
+     * @param maxRetries the maximum number of retries of a request, 0 disables retries
+     * @param retrySends whether sends are retried as well, at the risk of sending a message twice
+     * @param backoff    the wait in milliseconds before the first retry, which doubles with every further retry
+     * @param maxBackoff the maximum wait in milliseconds before a retry, unless the server asks for longer
+     * @param budget     the number of retries allowed per request
+     */
+    Retries(int maxRetries, boolean retrySends, long backoff, long maxBackoff, double budget) {
+        this.maxRetries = maxRetries;
+        this.retrySends = retrySends;
+        this.backoff = TimeUnit.MILLISECONDS.toNanos(backoff);
+        this.maxBackoff = TimeUnit.MILLISECONDS.toNanos(Math.max(backoff, maxBackoff));
+        this.budget = new RetryBudget(budget, System.nanoTime());
+    }
+
+    boolean isEnabled() {
+        return maxRetries > 0;
+    }
+
+    /**
+     * Records a request which is about to be made for the first time.
+     */
+    void requested() {
+        budget.deposit();
+    }
+
+    /**
+     * Decides whether to retry a request the server answered.
+     *
+     * @param req      the request
+     * @param response the response
+     * @param attempt  the number of retries made so far
+     * @return the time in nanoseconds to wait before the retry, or -1 if the response must be returned as it is
+     */
+    long backoff(RestRequest req, RestResponse response, int attempt) {
+        if (!isTransient(response.getResultCode())) {
+            return -1;
+        }
+        return backoff(req, attempt, RateLimits.retryAfter(response.getHeader(RateLimits.RETRY_AFTER), System.currentTimeMillis()));
+    }
+
+    /**
+     * Decides whether to retry a request which failed without a response.
+     *
+     * @param req     the request
+     * @param failure the reason of the failure
+     * @param attempt the number of retries made so far
+     * @return the time in nanoseconds to wait before the retry, or -1 if the failure must be passed on
+     */
+    long backoff(RestRequest req, Throwable failure, int attempt) {
+        if (!isTransient(failure)) {
+            return -1;
+        }
+        return backoff(req, attempt, -1);
+    }
+
+    private long backoff(RestRequest req, int attempt, long retryAfter) {
+        if (attempt >= maxRetries || !isRetryable(req) || !budget.tryWithdraw(System.nanoTime())) {
+            return -1;
+        }
+        long ceiling = Math.min(maxBackoff, backoff << Math.min(attempt, MAX_SHIFT));
+        long wait = Math.max((long) (random.nextDouble() * ceiling), TimeUnit.MILLISECONDS.toNanos(retryAfter));
+        LOGGER.log(Level.FINE, "Retrying {0} {1} in {2} ms", new Object[]{req.getMethod(), req.getEndpoint(), TimeUnit.NANOSECONDS.toMillis(wait)});
+        return wait;
+    }
+
+    private boolean isRetryable(RestRequest req) {
+        return retrySends || !(req.getMethod() == HttpMethod.POST && RestApiMessagingClientImpl.URL_MESSAGES.equals(req.getEndpoint()));
+    }
+
+    static boolean isTransient(int statusCode) {
+        return statusCode == TOO_MANY_REQUESTS || statusCode >= BAD_GATEWAY && statusCode <= GATEWAY_TIMEOUT;
+    }
+
+    /**
+     * @param failure the reason a request failed without a response
+     * @return <code>true</code> if the connection failed, <code>false</code> if the request itself is faulty or the caller gave up
+     */
+    static boolean isTransient(Throwable failure) {
+        if (failure instanceof JsonProcessingException || failure instanceof ClientProtocolException) {
+            return false;
+        }
+        if (failure instanceof InterruptedIOException) {
+            // timeouts are transient, an interrupted caller is not
+            return failure instanceof SocketTimeoutException || failure instanceof ConnectTimeoutException;
+        }
+        return failure instanceof IOException;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of retries of a client relative to its number of requests, so that retries can not multiply the load on a server which is
+ * already failing. {@link Hedging} caps its hedged requests with a budget of its own.
+ * <p/>
+ * Every request deposits a fraction of a retry, every retry withdraws a whole one. A small reserve, which refills over time, lets a client
+ * which sends only a few requests retry as well. The balance never exceeds {@link #MAX_BALANCE}, so a long healthy period does not save up
+ * retries for the next incident.
+ * <p/>
+ * Instances of this class are thread-safe. The methods taking a time expect it from {@link System#nanoTime()}.
+ */
+final class RetryBudget {
+
+    static final double MAX_BALANCE = 10;
+
+    private static final double RESERVE_PER_SECOND = 1;
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double ratio;
+    private double balance = MAX_BALANCE;
+    private long lastRefill;
+
+    /**
+     * @param ratio the number of retries allowed per request, for example 0.1 to allow one retry per 10 requests
+     * @param now   the current time
+     */
+    RetryBudget(double ratio, long now) {
+        if (ratio < 0) {
+            throw new IllegalArgumentException("The retry budget must not be negative, got " + ratio);
+        }
+        this.ratio = ratio;
+        this.lastRefill = now;
+    }
+
+    /**
+     * Records a request, which is not a retry.
+     */
+    synchronized void deposit() {
+        balance = Math.min(MAX_BALANCE, balance + ratio);
+    }
+
+    /**
+     * Takes a retry from the budget if there is one left.
+     *
+     * @param now the current time
+     * @return <code>true</code> if the retry may be made
+     */
+    synchronized boolean tryWithdraw(long now) {
+        long elapsed = now - lastRefill;
+        if (elapsed > 0) {
+            balance = Math.min(MAX_BALANCE, balance + elapsed * RESERVE_PER_SECOND / NANOS_PER_SECOND);
+            lastRefill = now;
+        }
+        if (balance < 1) {
+            return false;
+        }
+        balance -= 1;
+        return true;
+    }
+}
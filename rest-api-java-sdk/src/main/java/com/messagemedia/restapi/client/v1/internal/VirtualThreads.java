@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates virtual threads on Java 21 or later. The SDK is compiled for older versions, so the builder of virtual threads is looked up by
+ * reflection.
+ */
+final class VirtualThreads {
+
+    private static final Logger LOGGER = Logger.getLogger(VirtualThreads.class.getName());
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @param prefix the prefix of the names of the threads, which are numbered from 0
+     * @return a factory of virtual threads, or null if the JVM does not support them
+     */
+    static ThreadFactory factory(String prefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ClassNotFoundException e) {
+            return unsupported(e);
+        } catch (NoSuchMethodException e) {
+            return unsupported(e);
+        } catch (IllegalAccessException e) {
+            return unsupported(e);
+        } catch (InvocationTargetException e) {
+            // thrown by Java 19 and 20 unless preview features are enabled
+            return unsupported(e);
+        }
+    }
+
+    private static ThreadFactory unsupported(Exception e) {
+        LOGGER.log(Level.FINE, "Virtual threads are not supported", e);
+        return null;
+    }
+}
@@ -13,66 +13,178 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
+
 package com.messagemedia.restapi.client.v1.internal.http.interceptors;
 
+import com.messagemedia.restapi.client.v1.internal.RequestRecorder;
+import org.apache.http.Header;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpException;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.RequestLine;
+import org.apache.http.entity.ContentType;
 import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.Args;
 
+import javax.crypto.spec.SecretKeySpec;
 import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * This class is in charge of generating the HMAC for every request.
+ * This class is in charge of preparing and signing every request: it sets the Date and the Content-Type headers when they are missing and
+ * generates the HMAC over them.
+ * <p/>
+ * Every thread signs with its own pre-keyed {@link javax.crypto.Mac} and its own buffers, so signing a request allocates little more than the
+ * Authorization header itself. Threads which only live for a few requests, such as virtual threads, would create a signer each though: for
+ * them the signers can be shared instead, every request borrowing an idle one from a pool.
  */
 public class HmacMmv2Interceptor implements HttpRequestInterceptor {
 
     private static final Logger LOGGER = Logger.getLogger(HmacMmv2Interceptor.class.getName());
 
-    private final String userKey;
-    private final String userSecret;
-
-    private static final String AUTH_HEADER_TEMPLATE = "hmac username=\"%s\", algorithm=\"hmac-sha1\", headers=\"%s\", signature=\"%s\"";
-
     private static final String HEADERS_WITHOUT_CONTENT = HttpHeaders.DATE + " request-line";
     private static final String HEADERS_WITH_CONTENT = HEADERS_WITHOUT_CONTENT + " content-md5";
+    private static final String CONTENT_TYPE = ContentType.APPLICATION_JSON.toString();
+    private static final int BUFFER_CAPACITY = 256;
+
+    private final String authHeaderPrefix;
+    private final SecretKeySpec key;
+    private final ThreadLocal<Signature> signatures;
+    private final Queue<Signature> idle;
 
     public HmacMmv2Interceptor(String userKey, String userSecret) {
+        this(userKey, userSecret, false);
+    }
+
+    /**
+     * @param userKey    the API key
+     * @param userSecret the secret of the API key
+     * @param shared     whether the signers are shared by all threads instead of kept per thread
+     */
+    public HmacMmv2Interceptor(String userKey, String userSecret, boolean shared) {
         super();
-        this.userKey = userKey;
-        this.userSecret = userSecret;
+        this.authHeaderPrefix = "hmac username=\"" + userKey + "\", algorithm=\"hmac-sha1\", headers=\"";
+        this.key = HmacSha1Signer.key(userSecret);
+        if (shared) {
+            this.signatures = null;
+            this.idle = new ConcurrentLinkedQueue<Signature>();
+        } else {
+            this.idle = null;
+            this.signatures = new ThreadLocal<Signature>() {
+                @Override
+                protected Signature initialValue() {
+                    return new Signature(new HmacSha1Signer(key));
+                }
+            };
+        }
     }
 
     @Override
     public void process(HttpRequest request, HttpContext context) throws HttpException, IOException {
-
-        StringBuilder toSign = new StringBuilder();
-        toSign.append(HttpHeaders.DATE);
-        toSign.append(": ");
-        toSign.append(request.getFirstHeader(HttpHeaders.DATE).getValue());
-        toSign.append("\n");
-        toSign.append(request.getRequestLine().toString());
-
-        boolean hasContent = request.containsHeader(HttpHeaders.CONTENT_MD5);
-        final String headers;
-        if (hasContent) {
-            toSign.append("\n");
-            toSign.append(HttpHeaders.CONTENT_MD5);
-            toSign.append(": ");
-            toSign.append(request.getFirstHeader(HttpHeaders.CONTENT_MD5));
-            headers = HEADERS_WITH_CONTENT;
+        Args.notNull(request, "HTTP request");
+        RequestRecorder recorder = RequestRecorder.of(context);
+        if (recorder == null) {
+            sign(request);
         } else {
-            headers = HEADERS_WITHOUT_CONTENT;
+            long start = System.nanoTime();
+            sign(request);
+            recorder.signed(System.nanoTime() - start);
         }
+    }
+
+    private void sign(HttpRequest request) {
+        if (request instanceof HttpEntityEnclosingRequest && !request.containsHeader(HttpHeaders.CONTENT_TYPE)) {
+            request.setHeader(HttpHeaders.CONTENT_TYPE, CONTENT_TYPE);
+        }
+        String date = dateOf(request);
+
+        Signature signature = borrow();
+        try {
+            sign(request, date, signature);
+        } finally {
+            if (idle != null) {
+                idle.offer(signature);
+            }
+        }
+    }
+
+    private Signature borrow() {
+        if (signatures != null) {
+            return signatures.get();
+        }
+        Signature signature = idle.poll();
+        // the pool grows to the number of requests signed at the same time, which the number of processors bounds
+        return signature != null ? signature : new Signature(new HmacSha1Signer(key));
+    }
+
+    private void sign(HttpRequest request, String date, Signature signature) {
+        StringBuilder toSign = signature.reset();
+        toSign.append(HttpHeaders.DATE).append(": ").append(date).append('\n');
+        appendRequestLine(request.getRequestLine(), toSign);
 
-        String stringToSign = toSign.toString();
-        LOGGER.log(Level.FINEST, "String to sign: " + stringToSign);
-        String hmac = HMACUtils.sha1(userSecret, stringToSign);
-        String headerValue = String.format(AUTH_HEADER_TEMPLATE, userKey, headers, hmac);
+        Header contentMd5 = request.getFirstHeader(HttpHeaders.CONTENT_MD5);
+        if (contentMd5 != null) {
+            toSign.append('\n').append(HttpHeaders.CONTENT_MD5).append(": ").append(contentMd5.getValue());
+        }
+
+        if (LOGGER.isLoggable(Level.FINEST)) {
+            LOGGER.log(Level.FINEST, "String to sign: " + toSign);
+        }
+
+        StringBuilder header = signature.header;
+        header.append(authHeaderPrefix).append(contentMd5 != null ? HEADERS_WITH_CONTENT : HEADERS_WITHOUT_CONTENT).append("\", signature=\"");
+        signature.signer.sign(toSign, header);
+        header.append('"');
+
+        String headerValue = header.toString();
         request.setHeader(HttpHeaders.AUTHORIZATION, headerValue);
-        LOGGER.log(Level.FINE, "Header value: " + headerValue);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Header value: " + headerValue);
+        }
+    }
+
+    private static String dateOf(HttpRequest request) {
+        Header dateHeader = request.getFirstHeader(HttpHeaders.DATE);
+        if (dateHeader != null) {
+            return dateHeader.getValue();
+        }
+        String date = HttpDates.now();
+        request.setHeader(HttpHeaders.DATE, date);
+        return date;
+    }
+
+    /**
+     * Appends the request line the same way {@link RequestLine#toString()} formats it, without the intermediate strings.
+     */
+    private static void appendRequestLine(RequestLine requestLine, StringBuilder out) {
+        ProtocolVersion version = requestLine.getProtocolVersion();
+        out.append(requestLine.getMethod()).append(' ').append(requestLine.getUri()).append(' ')
+           .append(version.getProtocol()).append('/').append(version.getMajor()).append('.').append(version.getMinor());
+    }
+
+    /**
+     * The signer and the buffers of one thread.
+     */
+    private static final class Signature {
+
+        private final HmacSha1Signer signer;
+        private final StringBuilder toSign = new StringBuilder(BUFFER_CAPACITY);
+        private final StringBuilder header = new StringBuilder(BUFFER_CAPACITY);
+
+        private Signature(HmacSha1Signer signer) {
+            this.signer = signer;
+        }
+
+        private StringBuilder reset() {
+            toSign.setLength(0);
+            header.setLength(0);
+            return toSign;
+        }
     }
 }
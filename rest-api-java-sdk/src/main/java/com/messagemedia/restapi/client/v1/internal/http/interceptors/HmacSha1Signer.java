@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal.http.interceptors;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+
+/**
+ * Computes HmacSHA1 signatures with a key set once. The {@link Mac} and the buffers are reused from one signature to the next, so an
+ * instance must only be used by one thread at a time.
+ */
+final class HmacSha1Signer {
+
+    private static final String HMAC_SHA1 = "HmacSHA1";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final int ASCII_LIMIT = 0x80;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final Mac mac;
+    private final byte[] digest;
+    private byte[] data = new byte[INITIAL_CAPACITY];
+
+    /**
+     * @param key the secret key, as it is sent by UTF-8 encoding the secret
+     */
+    HmacSha1Signer(SecretKeySpec key) {
+        try {
+            mac = Mac.getInstance(HMAC_SHA1);
+            mac.init(key);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to initialize " + HMAC_SHA1, e);
+        }
+        digest = new byte[mac.getMacLength()];
+    }
+
+    static SecretKeySpec key(String secret) {
+        return new SecretKeySpec(secret.getBytes(UTF8), HMAC_SHA1);
+    }
+
+    /**
+     * Signs the UTF-8 encoded data and appends the base64 encoded signature.
+     *
+     * @param toSign the data to sign
+     * @param out    where the signature is appended
+     */
+    void sign(CharSequence toSign, StringBuilder out) {
+        int length = toSign.length();
+        if (data.length < length) {
+            data = new byte[Math.max(length, data.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            char c = toSign.charAt(i);
+            if (c >= ASCII_LIMIT) {
+                // only happens with non-ASCII characters in the request line, not worth an encoder of our own
+                mac.update(toSign.toString().getBytes(UTF8));
+                finish(out);
+                return;
+            }
+            data[i] = (byte) c;
+        }
+        mac.update(data, 0, length);
+        finish(out);
+    }
+
+    private void finish(StringBuilder out) {
+        try {
+            mac.doFinal(digest, 0);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to encrypt data", e);
+        }
+        appendBase64(digest, out);
+    }
+
+    private static void appendBase64(byte[] bytes, StringBuilder out) {
+        for (int i = 0; i < bytes.length; i += 3) {
+            int remaining = Math.min(3, bytes.length - i);
+            int bits = 0;
+            for (int j = 0; j < 3; j++) {
+                bits = bits << 8 | (j < remaining ? bytes[i + j] & 0xff : 0);
+            }
+            // 3 bytes make 4 characters, fewer bytes make 1 character more than bytes and padding
+            for (int j = 0; j < 4; j++) {
+                out.append(j <= remaining ? BASE64[bits >>> (18 - 6 * j) & 0x3f] : '=');
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal.http.interceptors;
+
+import org.apache.http.client.utils.DateUtils;
+
+import java.util.Date;
+
+/**
+ * Hands out the value of the Date header. The value only changes once per second, so it is formatted once per second and shared by all
+ * threads without locking: a thread which sees a stale second formats the current one and publishes it, racing threads just do the same
+ * work twice.
+ */
+final class HttpDates {
+
+    private static final long MILLIS_PER_SECOND = 1000;
+
+    private static volatile CachedDate current = new CachedDate(-1, null);
+
+    private HttpDates() {
+    }
+
+    /**
+     * @return the current time formatted as an RFC 1123 date
+     */
+    static String now() {
+        long second = System.currentTimeMillis() / MILLIS_PER_SECOND;
+        CachedDate cached = current;
+        if (cached.second != second) {
+            cached = new CachedDate(second, DateUtils.formatDate(new Date(second * MILLIS_PER_SECOND)));
+            current = cached;
+        }
+        return cached.value;
+    }
+
+    private static final class CachedDate {
+
+        private final long second;
+        private final String value;
+
+        private CachedDate(long second, String value) {
+            this.second = second;
+            this.value = value;
+        }
+    }
+}
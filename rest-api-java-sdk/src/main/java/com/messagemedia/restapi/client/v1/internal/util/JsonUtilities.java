@@ -25,11 +25,19 @@ import com.fasterxml.jackson.databind.introspect.VisibilityChecker;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.datatype.joda.deser.DateTimeZoneDeserializer;
 import com.fasterxml.jackson.datatype.joda.ser.DateTimeZoneSerializer;
+import com.messagemedia.restapi.client.v1.messaging.deliveryreports.DeliveryReportList;
+import com.messagemedia.restapi.client.v1.messaging.messages.Message;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
+import com.messagemedia.restapi.client.v1.messaging.replies.ReplyList;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.format.ISODateTimeFormat;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -65,6 +73,10 @@ public class JsonUtilities {
     }
 
     private static final ObjectMapper MAPPER;
+    private static final ObjectWriter PRETTY_WRITER;
+    // readers and writers bound to one type resolve their (de)serializers once, instead of looking them up on every call
+    private static final ConcurrentMap<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<Class<?>, ObjectReader>();
+    private static final ConcurrentMap<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<Class<?>, ObjectWriter>();
 
     static {
         MAPPER = new ObjectMapper();
@@ -85,20 +97,141 @@ public class JsonUtilities {
         MAPPER.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
         MAPPER.setPropertyNamingStrategy(PropertyNamingStrategy.CAMEL_CASE_TO_LOWER_CASE_WITH_UNDERSCORES);
         MAPPER.setVisibilityChecker(VisibilityChecker.Std.defaultInstance().withFieldVisibility(Visibility.ANY).withSetterVisibility(Visibility.ANY));
-        MAPPER.configure(SerializationFeature.INDENT_OUTPUT, true);
+        PRETTY_WRITER = MAPPER.writerWithDefaultPrettyPrinter();
+
+        precompile(MessageList.class, Message.class, DeliveryReportList.class, ReplyList.class);
+    }
+
+    /**
+     * Builds the reader and writer of the given types up front, so that the first request does not pay for it.
+     *
+     * @param types the payload types
+     */
+    public static void precompile(Class<?>... types) {
+        for (Class<?> type : types) {
+            reader(type);
+            writer(type);
+        }
+    }
+
+    private static ObjectReader reader(Class<?> type) {
+        ObjectReader reader = READERS.get(type);
+        if (reader == null) {
+            reader = MAPPER.reader(type);
+            ObjectReader existing = READERS.putIfAbsent(type, reader);
+            if (existing != null) {
+                reader = existing;
+            }
+        }
+        return reader;
+    }
+
+    private static ObjectWriter writer(Class<?> type) {
+        ObjectWriter writer = WRITERS.get(type);
+        if (writer == null) {
+            writer = MAPPER.writerWithType(type);
+            ObjectWriter existing = WRITERS.putIfAbsent(type, writer);
+            if (existing != null) {
+                writer = existing;
+            }
+        }
+        return writer;
+    }
+
+    private static ObjectWriter writerFor(Object object) {
+        return object != null ? writer(object.getClass()) : MAPPER.writer();
     }
 
     public static <T> T bytesToObject(byte[] data, Class<T> clazz) throws IOException {
-        return MAPPER.readValue(data, clazz);
+        return reader(clazz).readValue(data);
+    }
+
+    /**
+     * Parses a JSON document whose type is only known once its fields have been looked at.
+     *
+     * @param data the JSON document
+     * @return the root node, or null if the document is empty
+     * @throws IOException if the document is not valid JSON
+     */
+    public static JsonNode bytesToTree(byte[] data) throws IOException {
+        return MAPPER.readTree(data);
+    }
+
+    /**
+     * Binds a node returned by {@link #bytesToTree(byte[])} to a type, with the same configuration as documents parsed directly.
+     *
+     * @param node  the node
+     * @param clazz the type
+     * @param <T>   the type
+     * @return the object
+     * @throws IOException if the node can not be bound to the type
+     */
+    public static <T> T treeToObject(JsonNode node, Class<T> clazz) throws IOException {
+        return reader(clazz).readValue(node);
+    }
+
+    /**
+     * Parses an object from a stream, without buffering the whole document. The stream is not closed.
+     *
+     * @param in    the stream holding the JSON document
+     * @param clazz the type of the object
+     * @param <T>   the type of the object
+     * @return the object, or null if the stream is empty
+     * @throws IOException if the stream can not be read, or its content can not be converted
+     */
+    public static <T> T streamToObject(InputStream in, Class<T> clazz) throws IOException {
+        JsonParser parser = MAPPER.getFactory().createParser(in);
+        parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        try {
+            if (parser.nextToken() == null) {
+                return null;
+            }
+            return reader(clazz).readValue(parser);
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Writes an object as JSON straight to a stream, without buffering the whole document. The stream is flushed but not closed.
+     *
+     * @param object the object
+     * @param out    the stream to write to
+     * @param <T>    the type of the object
+     * @throws IOException if the object can not be converted, or the stream can not be written
+     */
+    public static <T> void objectToStream(T object, OutputStream out) throws IOException {
+        JsonGenerator generator = MAPPER.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        try {
+            writerFor(object).writeValue(generator, object);
+        } catch (JsonProcessingException e) {
+            LOGGER.log(Level.SEVERE, "Error converting object to stream", e);
+            throw e;
+        } finally {
+            generator.close();
+        }
     }
 
     public static <T> byte[] objectToBytes(T object) throws JsonProcessingException {
         try {
-            return MAPPER.writeValueAsBytes(object);
+            return writerFor(object).writeValueAsBytes(object);
         } catch (JsonProcessingException e) {
             LOGGER.log(Level.SEVERE, "Error converting object to bytes", e);
             throw e;
         }
     }
 
+    /**
+     * Converts an object to indented JSON. Meant for logging and display only, requests are always sent compact.
+     *
+     * @param object the object
+     * @param <T>    the type of the object
+     * @return the indented JSON document
+     * @throws JsonProcessingException if the object can not be converted
+     */
+    public static <T> String objectToPrettyString(T object) throws JsonProcessingException {
+        return PRETTY_WRITER.writeValueAsString(object);
+    }
+
 }
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.messaging;
+
+import com.messagemedia.restapi.client.v1.RestApiFuture;
+import com.messagemedia.restapi.client.v1.RestApiResponse;
+import com.messagemedia.restapi.client.v1.messaging.deliveryreports.DeliveryReport;
+import com.messagemedia.restapi.client.v1.messaging.deliveryreports.DeliveryReportList;
+import com.messagemedia.restapi.client.v1.messaging.messages.Message;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageListProperties;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageSendResult;
+import com.messagemedia.restapi.client.v1.messaging.replies.Reply;
+import com.messagemedia.restapi.client.v1.messaging.replies.ReplyList;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * MessageMedia REST API Messaging Client with a non-blocking transport.
+ * <p/>
+ * This client offers the same operations as {@link RestApiMessagingClient}, but every call returns immediately with a {@link RestApiFuture}.
+ * If a call fails, the future fails with the {@link com.messagemedia.restapi.client.v1.RestApiException} that the blocking client would have
+ * thrown.
+ * <p/>
+ * Instances of this client can be accessed from the {@link com.messagemedia.restapi.client.v1.AsyncRestApiClient}
+ */
+public interface AsyncRestApiMessagingClient {
+
+    /**
+     * Submits a single message to be sent.
+     *
+     * @param message The message you want to send.
+     * @return A future of the response. If successful, it will contain a representation of the submitted message showing its current status.
+     * @see RestApiMessagingClient#sendMessage(Message)
+     */
+    RestApiFuture<RestApiResponse<Message>> sendMessage(Message message);
+
+    /**
+     * Send a single message, with additional properties.
+     *
+     * @param message               The message to send
+     * @param messageListProperties Additional properties to be applied
+     * @return A future of the response. If successful, it will contain a representation of the submitted message showing its current status.
+     * @see RestApiMessagingClient#sendMessage(Message, MessageListProperties)
+     */
+    RestApiFuture<RestApiResponse<Message>> sendMessage(Message message, MessageListProperties messageListProperties);
+
+    /**
+     * Send a batch of messages.
+     *
+     * @param messages The list of the messages to send
+     * @return A future of the response. If successful, it will contain a representation of the submitted messages showing their current statuses.
+     * @see RestApiMessagingClient#sendMessages(List)
+     */
+    RestApiFuture<RestApiResponse<MessageList>> sendMessages(List<Message> messages);
+
+    /**
+     * Send a batch of messages.
+     *
+     * @param messages              The list of the messages to send
+     * @param messageListProperties Additional properties to be applied
+     * @return A future of the response. If successful, it will contain a representation of the submitted messages showing their current statuses.
+     * @see RestApiMessagingClient#sendMessages(List, MessageListProperties)
+     */
+    RestApiFuture<RestApiResponse<MessageList>> sendMessages(List<Message> messages, MessageListProperties messageListProperties);
+
+    /**
+     * Sends any number of messages.
+     * <p/>
+     * The messages are split into lists the REST API accepts with a single request, and a bounded number of those requests is kept in flight.
+     *
+     * @param messages The messages to send
+     * @return A future of one result per message, in the same order as the messages. The future itself does not fail, failed requests are reported
+     * on the results of the messages they carried.
+     * @see RestApiMessagingClient#sendMessagesInBulk(List)
+     */
+    RestApiFuture<List<MessageSendResult>> sendMessagesInBulk(List<Message> messages);
+
+    /**
+     * Sends any number of messages, with additional properties.
+     *
+     * @param messages              The messages to send
+     * @param messageListProperties Additional properties to be applied to every request
+     * @return A future of one result per message, in the same order as the messages. Cancelling it cancels the requests still in flight.
+     * @see RestApiMessagingClient#sendMessagesInBulk(List, MessageListProperties)
+     */
+    RestApiFuture<List<MessageSendResult>> sendMessagesInBulk(List<Message> messages, MessageListProperties messageListProperties);
+
+    /**
+     * Gets a message by Message ID.
+     *
+     * @param messageId The Message ID of the message you want to find
+     * @return A future of the message.
+     * @see RestApiMessagingClient#getMessage(String)
+     */
+    RestApiFuture<RestApiResponse<Message>> getMessage(String messageId);
+
+    /**
+     * Cancels a message by Message ID.
+     *
+     * @param messageId The Message ID of the message you want to cancel
+     * @return A future of the cancelled message.
+     * @see RestApiMessagingClient#cancelMessage(String)
+     */
+    RestApiFuture<RestApiResponse<Message>> cancelMessage(String messageId);
+
+    /**
+     * Checks for unconfirmed replies. The response is limited to the 100 oldest replies currently held on the server.
+     *
+     * @return A future of the list of unconfirmed replies
+     * @see RestApiMessagingClient#checkReplies()
+     */
+    RestApiFuture<RestApiResponse<ReplyList>> checkReplies();
+
+    /**
+     * Confirms a list of replies.
+     *
+     * @param replyIds The list of IDs corresponding to the replies you want to confirm
+     * @return A future which completes once the REST API accepted the confirmation request
+     * @see RestApiMessagingClient#confirmReplies(Collection)
+     */
+    RestApiFuture<RestApiResponse<Void>> confirmReplies(Collection<String> replyIds);
+
+    /**
+     * Checks for unconfirmed delivery reports. The response is limited to the 100 oldest delivery reports currently held on the server.
+     *
+     * @return A future of the list of unconfirmed delivery reports
+     * @see RestApiMessagingClient#checkDeliveryReports()
+     */
+    RestApiFuture<RestApiResponse<DeliveryReportList>> checkDeliveryReports();
+
+    /**
+     * Confirms a list of delivery reports.
+     *
+     * @param deliveryReportIds The list of IDs corresponding to the delivery reports that you want to confirm
+     * @return A future which completes once the REST API accepted the confirmation request
+     * @see RestApiMessagingClient#confirmDeliveryReports(Collection)
+     */
+    RestApiFuture<RestApiResponse<Void>> confirmDeliveryReports(Collection<String> deliveryReportIds);
+
+    /**
+     * Starts polling for replies. Every reply is passed to the handler and confirmed once the handler returned, so that replies are received
+     * without calling {@link #checkReplies()} and {@link #confirmReplies(Collection)} in a loop.
+     *
+     * @param handler handles the replies, from the thread of the poller
+     * @return the running poller, which must be stopped once replies are not needed anymore
+     * @see RestApiMessagingClient#pollReplies(InboundHandler)
+     */
+    InboundPoller pollReplies(InboundHandler<Reply> handler);
+
+    /**
+     * Starts polling for delivery reports. Every delivery report is passed to the handler and confirmed once the handler returned, so that
+     * delivery reports are received without calling {@link #checkDeliveryReports()} and {@link #confirmDeliveryReports(Collection)} in a loop.
+     *
+     * @param handler handles the delivery reports, from the thread of the poller
+     * @return the running poller, which must be stopped once delivery reports are not needed anymore
+     * @see RestApiMessagingClient#pollDeliveryReports(InboundHandler)
+     */
+    InboundPoller pollDeliveryReports(InboundHandler<DeliveryReport> handler);
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.messaging;
+
+import java.io.Closeable;
+
+/**
+ * Receives the replies and delivery reports the REST API pushes to the callback URL of messages, see
+ * {@link com.messagemedia.restapi.client.v1.messaging.messages.MessageBuilder#callbackUrl(String)}.
+ * <p/>
+ * Callbacks are read by a few non-blocking I/O threads and handled by a bounded pool of handler threads. A callback is only acknowledged once
+ * its handler returned, so that the REST API pushes it again if the handler failed. When the handlers fall behind and the queue of pending
+ * callbacks is full, new callbacks are turned away with 503 Service Unavailable until the handlers caught up.
+ * <p/>
+ * Instances of this receiver are created and started with {@link CallbackReceiverBuilder}.
+ */
+public interface CallbackReceiver extends Closeable {
+
+    /**
+     * @return the port the receiver listens on, which is only known once it started if it was created for port 0
+     */
+    int getPort();
+
+    /**
+     * Stops accepting callbacks, waits a short while for the callbacks being handled and stops the threads of the receiver.
+     */
+    @Override
+    void close();
+}
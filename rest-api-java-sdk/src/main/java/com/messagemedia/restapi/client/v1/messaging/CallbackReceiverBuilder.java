@@ -0,0 +1,159 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.messaging;
+
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.internal.CallbackReceiverImpl;
+import com.messagemedia.restapi.client.v1.messaging.deliveryreports.DeliveryReport;
+import com.messagemedia.restapi.client.v1.messaging.replies.Reply;
+
+/**
+ * Builder class to create and start a {@link CallbackReceiver}
+ */
+public final class CallbackReceiverBuilder {
+
+    private static final int IO_THREADS_DEFAULT = 2;
+    private static final int QUEUE_CAPACITY_DEFAULT = 10000;
+    private static final int MAX_BODY_SIZE_DEFAULT = 64 * 1024;
+
+    private final int port;
+    private String host;
+    private String path = "/";
+    private InboundHandler<Reply> replyHandler;
+    private InboundHandler<DeliveryReport> deliveryReportHandler;
+    private int ioThreads = IO_THREADS_DEFAULT;
+    private int handlerThreads = Runtime.getRuntime().availableProcessors();
+    private int queueCapacity = QUEUE_CAPACITY_DEFAULT;
+    private int maxBodySize = MAX_BODY_SIZE_DEFAULT;
+
+    /**
+     * Creates a new builder of {@link CallbackReceiver} listening on the given port.
+     *
+     * @param port the port to listen on, or 0 to pick a free one
+     * @return A CallbackReceiverBuilder object which can be used for method chaining.
+     */
+    public static CallbackReceiverBuilder newBuilder(int port) {
+        return new CallbackReceiverBuilder(port);
+    }
+
+    private CallbackReceiverBuilder(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Sets the address to listen on. Defaults to all addresses.
+     *
+     * @param host the host name or IP address
+     * @return A CallbackReceiverBuilder object which can be used for method chaining.
+     */
+    public CallbackReceiverBuilder host(String host) {
+        this.host = host;
+        return this;
+    }
+
+    /**
+     * Sets the path the callbacks are posted to, which is the path of the callback URL of the messages. Requests to other paths are answered
+     * with 404 Not Found. Defaults to "/", which accepts any path.
+     *
+     * @param path the path, starting with a slash
+     * @return A CallbackReceiverBuilder object which can be used for method chaining.
+     */
+    public CallbackReceiverBuilder path(String path) {
+        this.path = path;
+        return this;
+    }
+
+    /**
+     * Sets the handler of the pushed replies. Replies are turned away if no handler is set.
+     *
+     * @param replyHandler the handler of the replies
+     * @return A CallbackReceiverBuilder object which can be used for method chaining.
+     */
+    public CallbackReceiverBuilder onReply(InboundHandler<Reply> replyHandler) {
+        this.replyHandler = replyHandler;
+        return this;
+    }
+
+    /**
+     * Sets the handler of the pushed delivery reports. Delivery reports are turned away if no handler is set.
+     *
+     * @param deliveryReportHandler the handler of the delivery reports
+     * @return A CallbackReceiverBuilder object which can be used for method chaining.
+     */
+    public CallbackReceiverBuilder onDeliveryReport(InboundHandler<DeliveryReport> deliveryReportHandler) {
+        this.deliveryReportHandler = deliveryReportHandler;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads reading and writing the connections. Defaults to 2.
+     *
+     * @param ioThreads the number of I/O threads
+     * @return A CallbackReceiverBuilder object which can be used for method chaining.
+     */
+    public CallbackReceiverBuilder ioThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+        return this;
+    }
+
+    /**
+     * Sets the number of threads calling the handlers. Defaults to the number of available processors.
+     *
+     * @param handlerThreads the number of handler threads
+     * @return A CallbackReceiverBuilder object which can be used for method chaining.
+     */
+    public CallbackReceiverBuilder handlerThreads(int handlerThreads) {
+        this.handlerThreads = handlerThreads;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of callbacks waiting for a handler thread. Callbacks beyond that are turned away. Defaults to 10000.
+     *
+     * @param queueCapacity the maximum number of pending callbacks
+     * @return A CallbackReceiverBuilder object which can be used for method chaining.
+     */
+    public CallbackReceiverBuilder queueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * Sets the maximum size of a callback. Larger requests are turned away. Defaults to 64 KB.
+     *
+     * @param maxBodySize the maximum size in bytes
+     * @return A CallbackReceiverBuilder object which can be used for method chaining.
+     */
+    public CallbackReceiverBuilder maxBodySize(int maxBodySize) {
+        this.maxBodySize = maxBodySize;
+        return this;
+    }
+
+    /**
+     * Creates the receiver and starts listening.
+     *
+     * @return the running {@link CallbackReceiver}, which must be closed once it is not needed anymore
+     * @throws RestApiException if the receiver can not listen on the port
+     */
+    public CallbackReceiver start() throws RestApiException {
+        if (replyHandler == null && deliveryReportHandler == null) {
+            throw new IllegalStateException("At least one handler must be set");
+        }
+        return new CallbackReceiverImpl(new CallbackReceiverImpl.Settings(host, port, path, ioThreads, handlerThreads, queueCapacity,
+                                                                          maxBodySize), replyHandler, deliveryReportHandler);
+    }
+}
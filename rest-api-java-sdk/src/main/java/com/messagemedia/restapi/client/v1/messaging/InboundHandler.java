@@ -0,0 +1,38 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.messaging;
+
+/**
+ * Handles the replies or delivery reports received by an {@link InboundPoller}.
+ *
+ * @param <T> the type of the items, {@link com.messagemedia.restapi.client.v1.messaging.replies.Reply} or
+ *            {@link com.messagemedia.restapi.client.v1.messaging.deliveryreports.DeliveryReport}
+ */
+public interface InboundHandler<T> {
+
+    /**
+     * Handles one item. The item is confirmed once this method returns. If it throws, the item is not confirmed and it is handled again
+     * with one of the next checks.
+     * <p/>
+     * Items are handled one after the other by the thread of the poller. The same item may be handled more than once, for example if its
+     * confirmation failed, so handling should be idempotent.
+     *
+     * @param item the reply or delivery report
+     * @throws Exception if the item could not be handled and must not be confirmed
+     */
+    void handle(T item) throws Exception;
+}
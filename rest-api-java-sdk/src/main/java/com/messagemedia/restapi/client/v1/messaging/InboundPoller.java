@@ -0,0 +1,39 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.messaging;
+
+/**
+ * Polls the REST API for replies or delivery reports, passes them to an {@link InboundHandler} and confirms them.
+ * <p/>
+ * Confirmations are sent in the background while the next check is already in flight. As long as checks come back full the poller checks again
+ * straight away, so that a backlog drains as fast as the items can be handled. Once there is nothing left it waits longer and longer between
+ * checks, up to the maximum poll interval of the client.
+ * <p/>
+ * Pollers are created with <code>pollReplies</code> and <code>pollDeliveryReports</code> of the messaging clients and start right away.
+ */
+public interface InboundPoller {
+
+    /**
+     * Stops polling. The item being handled is still confirmed, but no new check is started. Calling this method more than once has no effect.
+     */
+    void stop();
+
+    /**
+     * @return <code>true</code> until {@link #stop()} has been called
+     */
+    boolean isRunning();
+}
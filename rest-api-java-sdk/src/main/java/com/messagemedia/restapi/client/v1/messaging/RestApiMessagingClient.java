@@ -18,10 +18,13 @@ package com.messagemedia.restapi.client.v1.messaging;
 
 import com.messagemedia.restapi.client.v1.RestApiException;
 import com.messagemedia.restapi.client.v1.RestApiResponse;
+import com.messagemedia.restapi.client.v1.messaging.deliveryreports.DeliveryReport;
 import com.messagemedia.restapi.client.v1.messaging.deliveryreports.DeliveryReportList;
 import com.messagemedia.restapi.client.v1.messaging.messages.Message;
 import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
 import com.messagemedia.restapi.client.v1.messaging.messages.MessageListProperties;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageSendResult;
+import com.messagemedia.restapi.client.v1.messaging.replies.Reply;
 import com.messagemedia.restapi.client.v1.messaging.replies.ReplyList;
 
 import java.util.Collection;
@@ -79,6 +82,30 @@ public interface RestApiMessagingClient {
      */
     RestApiResponse<MessageList> sendMessages(List<Message> messages, MessageListProperties messageListProperties) throws RestApiException;
 
+    /**
+     * Sends any number of messages.
+     * <p/>
+     * The messages are split into lists the REST API accepts with a single request, and several of those requests are sent concurrently. This
+     * method sends messages using the default message list properties.
+     *
+     * @param messages The messages to send
+     * @return One result per message, in the same order as the messages. A failed request fails all the messages it carried, but not the others.
+     * @throws RestApiException If the calling thread gets interrupted while waiting for the results.
+     */
+    List<MessageSendResult> sendMessagesInBulk(List<Message> messages) throws RestApiException;
+
+    /**
+     * Sends any number of messages, with additional properties.
+     * <p/>
+     * The messages are split into lists the REST API accepts with a single request, and several of those requests are sent concurrently.
+     *
+     * @param messages              The messages to send
+     * @param messageListProperties Additional properties to be applied to every request
+     * @return One result per message, in the same order as the messages. A failed request fails all the messages it carried, but not the others.
+     * @throws RestApiException If the calling thread gets interrupted while waiting for the results.
+     */
+    List<MessageSendResult> sendMessagesInBulk(List<Message> messages, MessageListProperties messageListProperties) throws RestApiException;
+
     /**
      * Gets a message by Message ID. If no such message exists, this will return a response object containing the status code 404 NOT FOUND.
      *
@@ -153,4 +180,22 @@ public interface RestApiMessagingClient {
      * @throws RestApiException If an error in the client/server communication occurs.
      */
     RestApiResponse<Void> confirmDeliveryReports(Collection<String> deliveryReportIds) throws RestApiException;
+
+    /**
+     * Starts polling for replies. Every reply is passed to the handler and confirmed once the handler returned, so that replies are received
+     * without calling {@link #checkReplies()} and {@link #confirmReplies(Collection)} in a loop.
+     *
+     * @param handler handles the replies, from the thread of the poller
+     * @return the running poller, which must be stopped once replies are not needed anymore
+     */
+    InboundPoller pollReplies(InboundHandler<Reply> handler);
+
+    /**
+     * Starts polling for delivery reports. Every delivery report is passed to the handler and confirmed once the handler returned, so that
+     * delivery reports are received without calling {@link #checkDeliveryReports()} and {@link #confirmDeliveryReports(Collection)} in a loop.
+     *
+     * @param handler handles the delivery reports, from the thread of the poller
+     * @return the running poller, which must be stopped once delivery reports are not needed anymore
+     */
+    InboundPoller pollDeliveryReports(InboundHandler<DeliveryReport> handler);
 }
@@ -264,6 +264,18 @@ public final class Message {
         return metadata;
     }
 
+    /**
+     * Returns a copy of this message with another status, as reported by a delivery report. The status reason is dropped, it only applies
+     * to the previous status.
+     *
+     * @param newStatus the status
+     * @return the copy
+     */
+    public Message withStatus(MessageStatus newStatus) {
+        return new Message(callbackUrl, content, deliveryReport, destinationNumber, format, messageId, scheduled, sourceNumber, sourceNumberType,
+                           newStatus, null, messageExpiryTimestamp, metadata);
+    }
+
     //Checkstyle: START IGNORING
     @Override
     public boolean equals(Object o) {
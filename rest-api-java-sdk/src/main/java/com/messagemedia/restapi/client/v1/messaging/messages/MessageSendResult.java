@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.messaging.messages;
+
+import com.messagemedia.restapi.client.v1.RestApiException;
+
+/**
+ * The outcome of sending one message as part of a bulk send.
+ * <p/>
+ * Exactly one of {@link #getResponse()} and {@link #getException()} is set.
+ * <p/>
+ * Instances of this class are immutable, and can be considered thread-safe.
+ */
+public final class MessageSendResult {
+
+    private final Message message;
+    private final Message response;
+    private final int responseCode;
+    private final RestApiException exception;
+
+    private MessageSendResult(Message message, Message response, int responseCode, RestApiException exception) {
+        this.message = message;
+        this.response = response;
+        this.responseCode = responseCode;
+        this.exception = exception;
+    }
+
+    /**
+     * Creates the result of a message which was accepted by the REST API.
+     *
+     * @param message      the message that was submitted
+     * @param response     the representation of the message returned by the REST API
+     * @param responseCode the HTTP status code of the request which carried the message
+     * @return the result
+     */
+    public static MessageSendResult success(Message message, Message response, int responseCode) {
+        return new MessageSendResult(message, response, responseCode, null);
+    }
+
+    /**
+     * Creates the result of a message which could not be sent.
+     *
+     * @param message   the message that was submitted
+     * @param exception the reason of the failure
+     * @return the result
+     */
+    public static MessageSendResult failure(Message message, RestApiException exception) {
+        return new MessageSendResult(message, null, 0, exception);
+    }
+
+    /**
+     * Gets the message as it was passed to the client.
+     *
+     * @return the submitted message
+     */
+    public Message getMessage() {
+        return message;
+    }
+
+    /**
+     * Gets the representation of the message returned by the REST API, showing its message ID and current status.
+     *
+     * @return the accepted message, or null if sending failed
+     */
+    public Message getResponse() {
+        return response;
+    }
+
+    /**
+     * Gets the HTTP status code of the request which carried this message.
+     *
+     * @return the HTTP status code, or 0 if sending failed
+     */
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    /**
+     * Gets the reason why this message could not be sent. All messages of the same request share the same exception.
+     *
+     * @return the exception, or null if sending succeeded
+     */
+    public RestApiException getException() {
+        return exception;
+    }
+
+    /**
+     * Whether the message was accepted by the REST API.
+     *
+     * @return true if the message was accepted
+     */
+    public boolean isSuccessful() {
+        return exception == null;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageSendResult [message=" + message + ", response=" + response + ", responseCode=" + responseCode + ", exception="
+                + exception + "]";
+    }
+}
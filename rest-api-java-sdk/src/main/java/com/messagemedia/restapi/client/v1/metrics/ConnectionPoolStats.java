@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.metrics;
+
+/**
+ * A snapshot of the connection pool of a client, see {@link com.messagemedia.restapi.client.v1.RestApiClient#getConnectionPoolStats()}.
+ * <p/>
+ * Requests waiting for a connection while all connections are leased show the pool is too small for the load. Connections which are always
+ * available show it is larger than needed.
+ */
+public final class ConnectionPoolStats {
+
+    private final int leased;
+    private final int available;
+    private final int pending;
+    private final int max;
+
+    /**
+     * @param leased    the number of connections in use by a request
+     * @param available the number of idle connections kept for reuse
+     * @param pending   the number of requests waiting for a connection
+     * @param max       the maximum number of connections
+     */
+    public ConnectionPoolStats(int leased, int available, int pending, int max) {
+        this.leased = leased;
+        this.available = available;
+        this.pending = pending;
+        this.max = max;
+    }
+
+    /**
+     * @return the number of connections in use by a request
+     */
+    public int getLeased() {
+        return leased;
+    }
+
+    /**
+     * @return the number of idle connections kept for reuse
+     */
+    public int getAvailable() {
+        return available;
+    }
+
+    /**
+     * @return the number of requests waiting for a connection
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    /**
+     * @return the maximum number of connections
+     */
+    public int getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolStats{leased=" + leased + ", available=" + available + ", pending=" + pending + ", max=" + max + '}';
+    }
+}
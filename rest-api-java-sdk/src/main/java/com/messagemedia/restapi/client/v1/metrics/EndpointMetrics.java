@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.metrics;
+
+/**
+ * The measurements of all requests to one endpoint, aggregated by {@link HistogramMetricsListener}.
+ * <p/>
+ * The values are read live, so values read one after another may include different requests.
+ */
+public final class EndpointMetrics {
+
+    private static final int FAMILIES = 6;
+
+    private final String endpoint;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram leaseWait = new LatencyHistogram();
+    private final StripedCounter[] statusFamilies = new StripedCounter[FAMILIES];
+    private final StripedCounter requestBytes = new StripedCounter();
+    private final StripedCounter responseBytes = new StripedCounter();
+    private final StripedCounter serializationNanos = new StripedCounter();
+    private final StripedCounter signingNanos = new StripedCounter();
+
+    EndpointMetrics(String endpoint) {
+        this.endpoint = endpoint;
+        for (int i = 0; i < FAMILIES; i++) {
+            statusFamilies[i] = new StripedCounter();
+        }
+    }
+
+    void record(RequestMetrics metrics) {
+        latency.record(metrics.getLatencyNanos());
+        leaseWait.record(metrics.getLeaseWaitNanos());
+        int family = metrics.getStatusFamily();
+        statusFamilies[family >= 0 && family < FAMILIES ? family : 0].increment();
+        requestBytes.add(Math.max(0, metrics.getRequestBytes()));
+        responseBytes.add(Math.max(0, metrics.getResponseBytes()));
+        serializationNanos.add(metrics.getSerializationNanos());
+        signingNanos.add(metrics.getSigningNanos());
+    }
+
+    /**
+     * @return the endpoint, as a path template
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return the latencies of the requests
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return the times the requests waited for a connection from the pool
+     */
+    public LatencyHistogram getLeaseWait() {
+        return leaseWait;
+    }
+
+    /**
+     * @return the number of requests
+     */
+    public long getRequests() {
+        return latency.getCount();
+    }
+
+    /**
+     * @param family the status code family, 2 for 2xx and so on, or 0 for requests which did not receive a response
+     * @return the number of requests whose response was in the family
+     */
+    public long getStatusFamilyCount(int family) {
+        if (family < 0 || family >= FAMILIES) {
+            throw new IllegalArgumentException("family must be between 0 and " + (FAMILIES - 1) + ": " + family);
+        }
+        return statusFamilies[family].sum();
+    }
+
+    /**
+     * @return the total size of the request bodies in bytes
+     */
+    public long getRequestBytes() {
+        return requestBytes.sum();
+    }
+
+    /**
+     * @return the total size of the response bodies in bytes, as far as the responses announced it
+     */
+    public long getResponseBytes() {
+        return responseBytes.sum();
+    }
+
+    /**
+     * @return the total time spent serializing request bodies in nanoseconds
+     */
+    public long getSerializationNanos() {
+        return serializationNanos.sum();
+    }
+
+    /**
+     * @return the total time spent signing requests in nanoseconds
+     */
+    public long getSigningNanos() {
+        return signingNanos.sum();
+    }
+}
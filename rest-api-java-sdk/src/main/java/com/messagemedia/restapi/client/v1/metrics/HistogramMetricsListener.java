@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.metrics;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link RestApiMetricsListener} which aggregates the measurements per endpoint: latency and lease wait histograms, counts per status code
+ * family, and totals of the bytes sent and received and of the time spent serializing and signing.
+ * <p/>
+ * Recording never locks, every value is kept in striped counters. Read the values with {@link #getEndpoint(String)}, for example from a
+ * reporter which publishes them periodically.
+ */
+public final class HistogramMetricsListener implements RestApiMetricsListener {
+
+    private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<String, EndpointMetrics>();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void requestCompleted(RequestMetrics metrics) {
+        String endpoint = metrics.getEndpoint();
+        EndpointMetrics endpointMetrics = endpoints.get(endpoint);
+        if (endpointMetrics == null) {
+            EndpointMetrics created = new EndpointMetrics(endpoint);
+            endpointMetrics = endpoints.putIfAbsent(endpoint, created);
+            if (endpointMetrics == null) {
+                endpointMetrics = created;
+            }
+        }
+        endpointMetrics.record(metrics);
+    }
+
+    /**
+     * @param endpoint the path template of the endpoint, for example <code>/v1/messages</code>
+     * @return the measurements of the endpoint, or null if no request has been sent to it yet
+     */
+    public EndpointMetrics getEndpoint(String endpoint) {
+        return endpoints.get(endpoint);
+    }
+
+    /**
+     * @return the measurements of every endpoint requests have been sent to
+     */
+    public Collection<EndpointMetrics> getEndpoints() {
+        return Collections.unmodifiableCollection(endpoints.values());
+    }
+}
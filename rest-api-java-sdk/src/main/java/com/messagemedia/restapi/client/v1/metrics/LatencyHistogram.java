@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations which many threads can record into without locking.
+ * <p/>
+ * Durations are kept in microseconds, in buckets which are exact up to 8 microseconds and then split every power of two into 8 buckets, so
+ * percentiles are off by at most 12.5%. Durations above 2^40 microseconds, about 12 days, are counted as 2^40 microseconds. Every thread
+ * records into one of several stripes, which are only summed up when the histogram is read.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final long MAX_VALUE = 1L << 40;
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+    private static final int SUM = BUCKETS;
+    private static final int MAX = BUCKETS + 1;
+    private static final int MAX_STRIPES = 16;
+
+    private final int mask;
+    private final AtomicLongArray[] stripes;
+
+    public LatencyHistogram() {
+        int count = Math.min(StripedCounter.stripes(), MAX_STRIPES);
+        this.mask = count - 1;
+        this.stripes = new AtomicLongArray[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS + 2);
+        }
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration in nanoseconds. Negative durations are recorded as 0.
+     */
+    public void record(long nanos) {
+        long micros = Math.min(Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)), MAX_VALUE);
+        AtomicLongArray stripe = stripes[StripedCounter.stripe(mask)];
+        stripe.incrementAndGet(index(micros));
+        stripe.addAndGet(SUM, micros);
+        long max = stripe.get(MAX);
+        while (micros > max && !stripe.compareAndSet(MAX, max, micros)) {
+            max = stripe.get(MAX);
+        }
+    }
+
+    /**
+     * @return the number of recorded durations
+     */
+    public long getCount() {
+        long count = 0;
+        for (long bucket : buckets()) {
+            count += bucket;
+        }
+        return count;
+    }
+
+    /**
+     * @return the mean of the recorded durations in microseconds, or 0 if nothing has been recorded
+     */
+    public double getMeanMicros() {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (AtomicLongArray stripe : stripes) {
+            sum += stripe.get(SUM);
+        }
+        return (double) sum / count;
+    }
+
+    /**
+     * @return the longest recorded duration in microseconds, or 0 if nothing has been recorded
+     */
+    public long getMaxMicros() {
+        long max = 0;
+        for (AtomicLongArray stripe : stripes) {
+            max = Math.max(max, stripe.get(MAX));
+        }
+        return max;
+    }
+
+    /**
+     * Estimates a percentile of the recorded durations.
+     *
+     * @param percentile the percentile, between 0 and 100, for example 99 for the duration 99% of the recorded durations did not exceed
+     * @return the upper bound of the bucket the percentile falls into in microseconds, or 0 if nothing has been recorded
+     */
+    public long getPercentileMicros(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+        }
+        long[] buckets = buckets();
+        long count = 0;
+        for (long bucket : buckets) {
+            count += bucket;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(lowerBound(i + 1) - 1, getMaxMicros());
+            }
+        }
+        return 0;
+    }
+
+    private long[] buckets() {
+        long[] buckets = new long[BUCKETS];
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] += stripe.get(i);
+            }
+        }
+        return buckets;
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.metrics;
+
+/**
+ * The measurements of one request.
+ * <p/>
+ * Times are in nanoseconds. Values which could not be measured, for example the size of a response sent without a content length, are -1.
+ */
+public interface RequestMetrics {
+
+    /**
+     * @return the endpoint, as a path template such as <code>/v1/messages/{messageId}</code>, so that requests for different messages are
+     * reported together
+     */
+    String getEndpoint();
+
+    /**
+     * @return the HTTP method
+     */
+    String getMethod();
+
+    /**
+     * @return the HTTP status code, or 0 if no response was received
+     */
+    int getStatusCode();
+
+    /**
+     * @return the status code family: 2 for 2xx, 4 for 4xx and so on, or 0 if no response was received
+     */
+    int getStatusFamily();
+
+    /**
+     * @return the time from sending the request until its response arrived, or until it failed. For the blocking client the response has
+     * arrived once its headers have; the body is read while it is parsed.
+     */
+    long getLatencyNanos();
+
+    /**
+     * @return the size of the request body in bytes, 0 for requests without a body
+     */
+    long getRequestBytes();
+
+    /**
+     * @return the size of the response body in bytes as announced by the response
+     */
+    long getResponseBytes();
+
+    /**
+     * @return the time spent serializing the request body. Bodies larger than the send buffer of the connection are partly written to the
+     * network while they are serialized, which is included.
+     */
+    long getSerializationNanos();
+
+    /**
+     * @return the time spent signing the request
+     */
+    long getSigningNanos();
+
+    /**
+     * @return the time spent waiting for a connection from the connection pool
+     */
+    long getLeaseWaitNanos();
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.metrics;
+
+/**
+ * Receives the measurements of every request sent by a client, see
+ * {@link com.messagemedia.restapi.client.v1.RestApiClientBuilder#metricsListener(RestApiMetricsListener)}.
+ * <p/>
+ * The listener is called from the threads which send the requests, including the I/O threads of the asynchronous client, so it must be
+ * thread-safe and must return quickly without blocking. {@link HistogramMetricsListener} aggregates the measurements without locking.
+ */
+public interface RestApiMetricsListener {
+
+    /**
+     * Called once per request, after its response arrived or after it failed.
+     *
+     * @param metrics the measurements of the request. The object must not be held on to, only its values.
+     */
+    void requestCompleted(RequestMetrics metrics);
+}
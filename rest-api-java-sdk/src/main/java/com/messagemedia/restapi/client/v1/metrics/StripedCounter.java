@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter which many threads can add to without contending: every thread adds to one of several cells, which are only summed up when the
+ * counter is read.
+ * <p/>
+ * The cells are spread over separate cache lines, so threads adding to different cells do not slow each other down either.
+ */
+final class StripedCounter {
+
+    /**
+     * The number of longs in a cache line, so that two cells never share one.
+     */
+    private static final int PADDING = 8;
+
+    private final int mask;
+    private final AtomicLongArray cells;
+
+    StripedCounter() {
+        this.mask = stripes() - 1;
+        this.cells = new AtomicLongArray((mask + 1) * PADDING);
+    }
+
+    /**
+     * @return the number of stripes to spread concurrent updates over, a power of two
+     */
+    static int stripes() {
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        return Math.min(stripes, 64);
+    }
+
+    /**
+     * @return the stripe of the current thread, between 0 and <code>mask</code>
+     */
+    static int stripe(int mask) {
+        return (int) Thread.currentThread().getId() & mask;
+    }
+
+    void add(long value) {
+        cells.addAndGet(stripe(mask) * PADDING, value);
+    }
+
+    void increment() {
+        add(1);
+    }
+
+    /**
+     * @return the sum of all cells. Additions made while summing up may or may not be included.
+     */
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.transport;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.io.IOException;
+
+/**
+ * Sends requests with an Apache {@link HttpClient}. This is the transport clients use unless another one is set, with a pooling client
+ * configured from the builder.
+ * <p/>
+ * A client passed in must not sign requests itself, nor retry them: retries are made by the SDK, within its budget.
+ */
+public final class ApacheTransport implements Transport {
+
+    private final HttpClient client;
+
+    public ApacheTransport(HttpClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public HttpResponse execute(HttpUriRequest request) throws IOException {
+        return client.execute(request);
+    }
+}
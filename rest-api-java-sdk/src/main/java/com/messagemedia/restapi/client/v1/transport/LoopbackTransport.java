@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.transport;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Answers requests in memory, without any I/O. Meant for tests, and for measuring what a client costs on top of the network.
+ * <p/>
+ * The body of every request is written out in full before the handler is called, so that it is serialized just like when it is sent.
+ */
+public final class LoopbackTransport implements Transport {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Answers the requests of a {@link LoopbackTransport}. Called concurrently by all threads using the client.
+     */
+    public interface Handler {
+
+        /**
+         * @param request the signed request
+         * @param body    the body of the request, empty if it has none
+         * @return the response
+         * @throws IOException to fail the request as if the connection failed
+         */
+        HttpResponse handle(HttpUriRequest request, byte[] body) throws IOException;
+    }
+
+    private final Handler handler;
+
+    public LoopbackTransport(Handler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * @param status the HTTP status code of every response
+     * @param body   the JSON body of every response, or null for none
+     * @return a transport answering every request the same way
+     */
+    public static LoopbackTransport responding(final int status, final String body) {
+        return new LoopbackTransport(new Handler() {
+            @Override
+            public HttpResponse handle(HttpUriRequest request, byte[] requestBody) {
+                return response(status, body);
+            }
+        });
+    }
+
+    /**
+     * @param status the HTTP status code
+     * @param body   the JSON body, or null for none
+     * @return a response as a transport returns it
+     */
+    public static HttpResponse response(int status, String body) {
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, null);
+        if (body != null) {
+            response.setEntity(new ByteArrayEntity(body.getBytes(UTF_8), ContentType.APPLICATION_JSON));
+        }
+        return response;
+    }
+
+    @Override
+    public HttpResponse execute(HttpUriRequest request) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null) {
+                entity.writeTo(body);
+            }
+        }
+        return handler.handle(request, body.toByteArray());
+    }
+}
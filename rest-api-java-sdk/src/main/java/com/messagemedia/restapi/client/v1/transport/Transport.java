@@ -0,0 +1,47 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.transport;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.io.IOException;
+
+/**
+ * Sends the requests of a blocking client over HTTP, see
+ * {@link com.messagemedia.restapi.client.v1.RestApiClientBuilder#transport(Transport)}. The client prepares every request completely
+ * before handing it over: retries, rate limits, circuit breakers and metrics are applied around the transport, and the request carries
+ * its Date, Content-Type and Authorization headers already.
+ * <p/>
+ * The Authorization header signs the Date header and the request line as HTTP/1.1 with the path and the query of the URI, so a transport
+ * must send the request with exactly these, and must not change the signed headers. Other headers, such as Host, Content-Length or
+ * User-Agent, may be added.
+ * <p/>
+ * Implementations must be thread-safe. The client does not close its transport.
+ */
+public interface Transport {
+
+    /**
+     * Sends a request and waits for its response. The body of the response may be read lazily, it is either read to its end or released
+     * with {@link org.apache.http.util.EntityUtils#consume(org.apache.http.HttpEntity)} once the client is done with it.
+     *
+     * @param request the signed request, with an absolute URI
+     * @return the response, whatever its status code
+     * @throws IOException if no response was received
+     */
+    HttpResponse execute(HttpUriRequest request) throws IOException;
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.transport;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+
+/**
+ * Sends requests with the HTTP client built into the JDK, {@link HttpURLConnection}. It needs no connection pool of its own: the JDK keeps
+ * the connections of responses which were read to their end alive, up to the number set by the {@code http.maxConnections} system property
+ * per host. Proxies are taken from the system properties as well.
+ * <p/>
+ * {@link HttpURLConnection} does not support the PATCH method, which no operation of the SDK uses. Requests with it fail with a
+ * {@link java.net.ProtocolException}.
+ */
+public final class UrlConnectionTransport implements Transport {
+
+    private final int connectTimeout;
+    private final int socketTimeout;
+
+    /**
+     * @param connectTimeout the time in milliseconds to wait for a connection to be established, 0 waits forever
+     * @param socketTimeout  the time in milliseconds to wait for data, 0 waits forever
+     */
+    public UrlConnectionTransport(int connectTimeout, int socketTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.socketTimeout = socketTimeout;
+    }
+
+    @Override
+    public HttpResponse execute(HttpUriRequest request) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) request.getURI().toURL().openConnection();
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(socketTimeout);
+        connection.setUseCaches(false);
+        connection.setRequestMethod(request.getMethod());
+        for (Header header : request.getAllHeaders()) {
+            connection.addRequestProperty(header.getName(), header.getValue());
+        }
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity body = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (body != null) {
+                write(connection, body);
+            }
+        }
+        return read(connection);
+    }
+
+    private static void write(HttpURLConnection connection, HttpEntity body) throws IOException {
+        connection.setDoOutput(true);
+        long length = body.getContentLength();
+        if (length >= 0 && length <= Integer.MAX_VALUE) {
+            connection.setFixedLengthStreamingMode((int) length);
+        } else {
+            connection.setChunkedStreamingMode(0);
+        }
+        OutputStream out = connection.getOutputStream();
+        try {
+            body.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static HttpResponse read(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        if (status < 0) {
+            throw new ClientProtocolException("Invalid response from " + connection.getURL());
+        }
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, connection.getResponseMessage());
+        // the first field is the status line, which has no name
+        for (int i = 0; connection.getHeaderField(i) != null; i++) {
+            String name = connection.getHeaderFieldKey(i);
+            if (name != null) {
+                response.addHeader(name, connection.getHeaderField(i));
+            }
+        }
+        // the JDK hands out the body of error responses separately, and has none if it is empty
+        InputStream content = status >= HttpURLConnection.HTTP_BAD_REQUEST ? connection.getErrorStream() : connection.getInputStream();
+        if (content != null) {
+            InputStreamEntity entity = new InputStreamEntity(content, connection.getContentLength());
+            entity.setContentType(connection.getContentType());
+            entity.setContentEncoding(connection.getContentEncoding());
+            response.setEntity(entity);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1;
+
+import com.messagemedia.restapi.client.v1.messaging.AsyncRestApiMessagingClient;
+import com.messagemedia.restapi.client.v1.messaging.messages.Message;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageBuilder;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageSendResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.messagemedia.restapi.client.v1.TestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncRestApiClientTest {
+
+    private static final int TIMEOUT = (int) TimeUnit.SECONDS.toMillis(1);
+    private static final String SEND_RESPONSE = "{\"messages\": [ { " +
+                                                "\"content\": \"Hello, World!\", " +
+                                                "\"destination_number\": \"" + TEST_NUMBER_1 + "\", " +
+                                                "\"message_id\": \"test\", " +
+                                                "\"status\": \"queued\"" +
+                                                " } ] }";
+
+    private StubHttpServer server;
+    private AsyncRestApiClient client;
+    private AsyncRestApiMessagingClient messagingClient;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubHttpServer();
+        client = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                     .endpoint(server.getEndpoint())
+                                     .maxConnections(2)
+                                     .socketTimeout(TIMEOUT)
+                                     .ioThreads(1)
+                                     .buildAsync();
+        messagingClient = client.messaging();
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        server.stop();
+    }
+
+    @Test
+    public void testSendMessage() throws Exception {
+        server.respond(202, SEND_RESPONSE);
+
+        RestApiResponse<Message> response = messagingClient.sendMessage(newMessage()).get(5, TimeUnit.SECONDS);
+
+        assertEquals(202, response.getResponseCode());
+        assertEquals("test", response.getPayload().getMessageId());
+        assertEquals(1, server.getRequests().size());
+        assertEquals("POST", server.getRequests().get(0).getMethod());
+        assertEquals("/v1/messages", server.getRequests().get(0).getPath());
+        assertTrue(server.getRequests().get(0).getHeader("Authorization").startsWith("hmac username=\"" + API_KEY + "\""));
+    }
+
+    @Test
+    public void testManyConcurrentRequestsOnFewThreads() throws Exception {
+        server.respond(202, SEND_RESPONSE);
+        server.setDelay(20);
+
+        int numberOfRequests = 50;
+        final CountDownLatch done = new CountDownLatch(numberOfRequests);
+        final AtomicInteger failureCounter = new AtomicInteger();
+        List<RestApiFuture<RestApiResponse<Message>>> futures = new ArrayList<RestApiFuture<RestApiResponse<Message>>>();
+        for (int i = 0; i < numberOfRequests; i++) {
+            RestApiFuture<RestApiResponse<Message>> future = messagingClient.sendMessage(newMessage());
+            future.addCallback(new RestApiCallback<RestApiResponse<Message>>() {
+                @Override
+                public void completed(RestApiResponse<Message> result) {
+                    done.countDown();
+                }
+
+                @Override
+                public void failed(RestApiException exception) {
+                    failureCounter.incrementAndGet();
+                    done.countDown();
+                }
+            });
+            futures.add(future);
+        }
+
+        assertTrue(done.await(1, TimeUnit.MINUTES));
+        assertEquals(0, failureCounter.get());
+        for (RestApiFuture<RestApiResponse<Message>> future : futures) {
+            assertEquals("test", future.get().getPayload().getMessageId());
+        }
+    }
+
+    @Test
+    public void testProbeOfAClosedClientFails() throws Exception {
+        AsyncRestApiClient guardedClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                                               .endpoint(server.getEndpoint())
+                                                               .maxRetries(0)
+                                                               .circuitBreaker(true)
+                                                               .circuitBreakerOpenTime(100)
+                                                               .buildAsync();
+        server.respond(503, "");
+        for (int i = 0; i < 20; i++) {
+            try {
+                guardedClient.messaging().getMessage("test").get(5, TimeUnit.SECONDS);
+                fail("Expected a failure");
+            } catch (ExecutionException e) {
+                // the server fails, until the circuit opens
+                assertTrue(e.getCause() instanceof RestApiException);
+            }
+        }
+        Thread.sleep(200);
+        guardedClient.close();
+
+        // the probe can not be sent, the call fails instead of throwing or waiting forever
+        try {
+            guardedClient.messaging().getMessage("test").get(5, TimeUnit.SECONDS);
+            fail("Expected a failure");
+        } catch (ExecutionException e) {
+            assertEquals("Failed to probe the API", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testErrorResponse() throws Exception {
+        server.respond(400, "{\"message\": \"Invalid\"}");
+        try {
+            messagingClient.sendMessage(newMessage()).get(5, TimeUnit.SECONDS);
+            fail("Expected a failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RestApiClientException);
+        }
+    }
+
+    @Test
+    public void testTooManyRequests() throws Exception {
+        server.respond(429, "{\"message\": \"Slow down\"}");
+        server.setHeader("Retry-After", "2");
+        try {
+            messagingClient.sendMessage(newMessage()).get(5, TimeUnit.SECONDS);
+            fail("Expected a failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RestApiThrottledException);
+            assertEquals(429, ((RestApiThrottledException) e.getCause()).getStatusCode());
+            assertEquals(2000, ((RestApiThrottledException) e.getCause()).getRetryAfter());
+        }
+    }
+
+    @Test
+    public void testRateLimitFailsFast() throws Exception {
+        server.respond(202, SEND_RESPONSE);
+        AsyncRestApiClient limitedClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                                               .endpoint(server.getEndpoint())
+                                                               .rateLimit(OperationClass.SEND, 1)
+                                                               .rateLimitMode(RateLimitMode.FAIL_FAST)
+                                                               .buildAsync();
+        try {
+            limitedClient.messaging().sendMessage(newMessage()).get(5, TimeUnit.SECONDS);
+            limitedClient.messaging().sendMessage(newMessage()).get(5, TimeUnit.SECONDS);
+            fail("Expected a failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RestApiThrottledException);
+            assertTrue(((RestApiThrottledException) e.getCause()).getRetryAfter() > 0);
+        } finally {
+            limitedClient.close();
+        }
+        assertEquals(1, server.getRequests().size());
+    }
+
+    @Test
+    public void testRateLimitHoldsRequestsBack() throws Exception {
+        server.respond(202, SEND_RESPONSE);
+        AsyncRestApiClient limitedClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                                               .endpoint(server.getEndpoint())
+                                                               .rateLimit(OperationClass.SEND, 20)
+                                                               .buildAsync();
+        try {
+            long start = System.nanoTime();
+            List<RestApiFuture<RestApiResponse<Message>>> futures = new ArrayList<RestApiFuture<RestApiResponse<Message>>>();
+            // a burst of one second worth of requests passes, the next 10 are spread over half a second
+            for (int i = 0; i < 30; i++) {
+                futures.add(limitedClient.messaging().sendMessage(newMessage()));
+            }
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 400);
+            for (RestApiFuture<RestApiResponse<Message>> future : futures) {
+                assertEquals("test", future.get(5, TimeUnit.SECONDS).getPayload().getMessageId());
+            }
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 400);
+        } finally {
+            limitedClient.close();
+        }
+        assertEquals(30, server.getRequests().size());
+    }
+
+    @Test
+    public void testRetriesWithoutBlockingTheCaller() throws Exception {
+        server.respond(503, "");
+        server.setHeader("Retry-After", "1");
+
+        long start = System.nanoTime();
+        RestApiFuture<RestApiResponse<Message>> response = messagingClient.getMessage("test");
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+        try {
+            response.get(10, TimeUnit.SECONDS);
+            fail("Expected a failure");
+        } catch (ExecutionException e) {
+            assertEquals(503, ((RestApiServerException) e.getCause()).getStatusCode());
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 2000);
+        assertEquals(3, server.getRequests().size());
+    }
+
+    @Test
+    public void testHedgesSlowStatusLookups() throws Exception {
+        String message = "{\"message_id\": \"test\", \"content\": \"Hello, World!\", \"destination_number\": \"" + TEST_NUMBER_1 + "\", "
+                         + "\"status\": \"delivered\"}";
+        server.respond(200, message);
+        AsyncRestApiClient hedgingClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                                               .endpoint(server.getEndpoint())
+                                                               .hedgeStatusLookups(90)
+                                                               // hedges of slow learning lookups must not use up the budget
+                                                               .hedgeBudget(0.5)
+                                                               .buildAsync();
+        try {
+            // learn the usual latency
+            for (int i = 0; i < 64; i++) {
+                hedgingClient.messaging().getMessage("test").get(5, TimeUnit.SECONDS);
+            }
+            server.delayNext(TimeUnit.SECONDS.toMillis(5));
+            // a learning lookup slower than usual may have been hedged as well
+            int learning = server.getRequests().size();
+
+            long start = System.nanoTime();
+            assertEquals("test", hedgingClient.messaging().getMessage("test").get(5, TimeUnit.SECONDS).getPayload().getMessageId());
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+            assertTrue(server.getRequests().size() >= learning + 2);
+        } finally {
+            hedgingClient.close();
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        server.respond(202, SEND_RESPONSE);
+        server.setDelay(TIMEOUT * 3);
+        try {
+            messagingClient.sendMessage(newMessage()).get(1, TimeUnit.MINUTES);
+            fail("Expected a failure");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RestApiException);
+        }
+    }
+
+    @Test
+    public void testSendMessagesInBulk() throws Exception {
+        server.respond(202, SEND_RESPONSE);
+        AsyncRestApiClient bulkClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                                            .endpoint(server.getEndpoint())
+                                                            .bulkChunkSize(1)
+                                                            .bulkMaxInFlight(3)
+                                                            .buildAsync();
+        try {
+            List<Message> messages = new ArrayList<Message>();
+            for (int i = 0; i < 10; i++) {
+                messages.add(newMessage());
+            }
+
+            List<MessageSendResult> results = bulkClient.messaging().sendMessagesInBulk(messages).get(1, TimeUnit.MINUTES);
+
+            assertEquals(10, results.size());
+            for (int i = 0; i < messages.size(); i++) {
+                assertTrue(results.get(i).isSuccessful());
+                assertEquals(messages.get(i), results.get(i).getMessage());
+                assertEquals("test", results.get(i).getResponse().getMessageId());
+            }
+            assertEquals(10, server.getRequests().size());
+        } finally {
+            bulkClient.close();
+        }
+    }
+
+    @Test
+    public void testIsAlive() throws Exception {
+        server.respond(200, "");
+        assertTrue(client.isAlive().get(5, TimeUnit.SECONDS));
+        server.respond(500, "");
+        assertEquals(false, client.isAlive().get(5, TimeUnit.SECONDS));
+    }
+
+    private static Message newMessage() {
+        return new MessageBuilder().content("Hello, World!").destinationNumber(TEST_NUMBER_1).build();
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1;
+
+import com.messagemedia.restapi.client.v1.messaging.InboundHandler;
+import com.messagemedia.restapi.client.v1.messaging.InboundPoller;
+import com.messagemedia.restapi.client.v1.messaging.messages.Message;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageBuilder;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageSendResult;
+import com.messagemedia.restapi.client.v1.messaging.replies.Reply;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.messagemedia.restapi.client.v1.TestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ContextAwareRestApiClientTest {
+
+    private static final String SEND_RESPONSE = "{\"messages\": [ { " +
+                                                "\"content\": \"Hello, World!\", " +
+                                                "\"destination_number\": \"" + TEST_NUMBER_1 + "\", " +
+                                                "\"message_id\": \"test\", " +
+                                                "\"status\": \"queued\"" +
+                                                " } ] }";
+
+    private StubHttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubHttpServer();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testContextsArePassedPerCall() throws Exception {
+        server.respond(200, "{\"message_id\": \"test\", \"content\": \"Hello, World!\", \"destination_number\": \"" + TEST_NUMBER_1 + "\", "
+                            + "\"status\": \"queued\"}");
+        ContextAwareRestApiClient contextAwareClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                                                          .endpoint(server.getEndpoint())
+                                                                          .fairScheduling(true)
+                                                                          .buildContextAware();
+        Context first = contextAwareClient.createContextBuilder().account("first").buildDetached();
+        Context second = contextAwareClient.createContextBuilder().account("second").username("user").buildDetached();
+
+        contextAwareClient.messaging(first).getMessage("test");
+        contextAwareClient.messaging(second).getMessage("test");
+        contextAwareClient.messaging().getMessage("test");
+
+        assertEquals("first", server.getRequests().get(0).getHeader("Account"));
+        assertEquals(null, server.getRequests().get(0).getHeader("Username"));
+        assertEquals("second", server.getRequests().get(1).getHeader("Account"));
+        assertEquals("user", server.getRequests().get(1).getHeader("Username"));
+        assertEquals(null, server.getRequests().get(2).getHeader("Account"));
+    }
+
+    @Test
+    public void testVirtualThreadModePassesContextsPerCallOnly() throws Exception {
+        server.respond(200, "{\"message_id\": \"test\", \"content\": \"Hello, World!\", \"destination_number\": \"" + TEST_NUMBER_1 + "\", "
+                            + "\"status\": \"queued\"}");
+        ContextAwareRestApiClient contextAwareClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                                                          .endpoint(server.getEndpoint())
+                                                                          .virtualThreads(true)
+                                                                          .buildContextAware();
+        Context context = contextAwareClient.createContextBuilder().account("first").buildDetached();
+
+        contextAwareClient.messaging(context).getMessage("test");
+
+        assertEquals("first", server.getRequests().get(0).getHeader("Account"));
+        try {
+            contextAwareClient.createContextBuilder().account("second").build();
+            fail("Contexts must not be set on threads in virtual thread mode");
+        } catch (IllegalStateException e) {
+            // passed per call only
+        }
+    }
+
+    @Test
+    public void testVirtualThreadModeSendsInBulkInTheContextOfTheView() throws Exception {
+        server.respond(202, SEND_RESPONSE);
+        ContextAwareRestApiClient contextAwareClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                                                          .endpoint(server.getEndpoint())
+                                                                          .bulkChunkSize(1)
+                                                                          .virtualThreads(true)
+                                                                          .buildContextAware();
+        Context context = contextAwareClient.createContextBuilder().account("first").buildDetached();
+        List<Message> messages = new ArrayList<Message>();
+        for (int i = 0; i < 5; i++) {
+            messages.add(new MessageBuilder().content("Message " + i).destinationNumber(TEST_NUMBER_1).build());
+        }
+
+        List<MessageSendResult> results = contextAwareClient.messaging(context).sendMessagesInBulk(messages);
+
+        assertEquals(5, results.size());
+        for (MessageSendResult result : results) {
+            assertTrue(result.isSuccessful());
+        }
+        assertEquals(5, server.getRequests().size());
+        for (StubHttpServer.Request request : server.getRequests()) {
+            assertEquals("first", request.getHeader("Account"));
+        }
+    }
+
+    @Test
+    public void testVirtualThreadModeCoalescesMessagesInTheContextOfTheView() throws Exception {
+        server.respond(202, SEND_RESPONSE);
+        ContextAwareRestApiClient contextAwareClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                                                          .endpoint(server.getEndpoint())
+                                                                          .sendLinger(10)
+                                                                          .virtualThreads(true)
+                                                                          .buildContextAware();
+        Context context = contextAwareClient.createContextBuilder().account("first").buildDetached();
+
+        RestApiResponse<Message> response = contextAwareClient.messaging(context)
+                                                              .sendMessage(new MessageBuilder().content("Hello, World!")
+                                                                                               .destinationNumber(TEST_NUMBER_1)
+                                                                                               .build());
+
+        assertEquals("test", response.getPayload().getMessageId());
+        assertEquals(1, server.getRequests().size());
+        assertEquals("first", server.getRequests().get(0).getHeader("Account"));
+    }
+
+    @Test
+    public void testVirtualThreadModePollsInTheContextOfTheView() throws Exception {
+        server.respond(200, "{\"replies\": []}");
+        ContextAwareRestApiClient contextAwareClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                                                          .endpoint(server.getEndpoint())
+                                                                          .virtualThreads(true)
+                                                                          .buildContextAware();
+        Context context = contextAwareClient.createContextBuilder().account("first").buildDetached();
+
+        InboundPoller poller = contextAwareClient.messaging(context).pollReplies(new InboundHandler<Reply>() {
+            @Override
+            public void handle(Reply item) {
+                // no replies
+            }
+        });
+        try {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (server.getRequests().isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            poller.stop();
+        }
+
+        assertTrue(!server.getRequests().isEmpty());
+        assertEquals("/v1/replies", server.getRequests().get(0).getPath());
+        assertEquals("first", server.getRequests().get(0).getHeader("Account"));
+    }
+}
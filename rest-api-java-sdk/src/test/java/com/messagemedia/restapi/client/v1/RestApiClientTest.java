@@ -0,0 +1,450 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1;
+
+import com.messagemedia.restapi.client.v1.internal.util.JsonUtilities;
+import com.messagemedia.restapi.client.v1.messaging.RestApiMessagingClient;
+import com.messagemedia.restapi.client.v1.messaging.messages.Message;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageBuilder;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageSendResult;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageStatus;
+import com.messagemedia.restapi.client.v1.metrics.ConnectionPoolStats;
+import com.messagemedia.restapi.client.v1.transport.LoopbackTransport;
+import com.messagemedia.restapi.client.v1.transport.UrlConnectionTransport;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.messagemedia.restapi.client.v1.TestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RestApiClientTest {
+
+    private static final String SEND_RESPONSE = "{\"messages\": [ { " +
+                                                "\"content\": \"Hello, World!\", " +
+                                                "\"destination_number\": \"" + TEST_NUMBER_1 + "\", " +
+                                                "\"message_id\": \"test\", " +
+                                                "\"status\": \"queued\"" +
+                                                " } ] }";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StubHttpServer server;
+    private RestApiMessagingClient messagingClient;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubHttpServer();
+        messagingClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY).endpoint(server.getEndpoint()).build().messaging();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testSendMessagesStreamsTheBody() throws Exception {
+        server.respond(202, SEND_RESPONSE);
+        List<Message> messages = new ArrayList<Message>();
+        for (int i = 0; i < 1000; i++) {
+            messages.add(new MessageBuilder().content("Message " + i).destinationNumber(TEST_NUMBER_1).build());
+        }
+
+        messagingClient.sendMessages(messages);
+
+        StubHttpServer.Request request = server.getRequests().get(0);
+        assertEquals("chunked", request.getHeader("Transfer-Encoding"));
+        assertEquals("application/json; charset=UTF-8", request.getHeader("Content-Type"));
+        assertEquals(new String(JsonUtilities.objectToBytes(new MessageList(messages)), "UTF-8"), new String(request.getBody(), "UTF-8"));
+    }
+
+    @Test
+    public void testCancelMessageSendsStringBody() throws Exception {
+        server.respond(200, "{\"message_id\": \"test\", \"content\": \"Hello, World!\", \"destination_number\": \"" + TEST_NUMBER_1 + "\", "
+                            + "\"status\": \"cancelled\"}");
+
+        messagingClient.cancelMessage("test");
+
+        StubHttpServer.Request request = server.getRequests().get(0);
+        assertEquals("PUT", request.getMethod());
+        assertEquals("{\"status\":\"CANCELLED\"}", new String(request.getBody(), "UTF-8"));
+    }
+
+    @Test
+    public void testIdempotentRequestsAreRetried() throws Exception {
+        server.respond(503, "");
+
+        try {
+            messagingClient.getMessage("test");
+            fail("Expected a failure");
+        } catch (RestApiServerException e) {
+            assertEquals(503, e.getStatusCode());
+        }
+        assertEquals(3, server.getRequests().size());
+    }
+
+    @Test
+    public void testSendsAreNotRetried() throws Exception {
+        server.respond(503, "");
+
+        try {
+            messagingClient.sendMessages(Collections.singletonList(new MessageBuilder().content("Hello").destinationNumber(TEST_NUMBER_1).build()));
+            fail("Expected a failure");
+        } catch (RestApiServerException e) {
+            assertEquals(503, e.getStatusCode());
+        }
+        assertEquals(1, server.getRequests().size());
+    }
+
+    @Test
+    public void testCircuitBreakerRejectsRequestsUntilTheApiIsAlive() throws Exception {
+        RestApiMessagingClient guardedClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                                                   .endpoint(server.getEndpoint())
+                                                                   .maxRetries(0)
+                                                                   .circuitBreaker(true)
+                                                                   .circuitBreakerOpenTime(100)
+                                                                   .build()
+                                                                   .messaging();
+        server.respond(503, "");
+        for (int i = 0; i < 20; i++) {
+            try {
+                guardedClient.getMessage("test");
+                fail("Expected a failure");
+            } catch (RestApiServerException e) {
+                assertEquals(503, e.getStatusCode());
+            }
+        }
+        try {
+            guardedClient.getMessage("test");
+            fail("Expected a failure");
+        } catch (RestApiCircuitOpenException e) {
+            assertEquals("/v1/messages/{messageId}", e.getEndpoint());
+        }
+        assertEquals(20, server.getRequests().size());
+
+        server.respond(200, "{\"message_id\": \"test\", \"content\": \"Hello, World!\", \"destination_number\": \"" + TEST_NUMBER_1
+                            + "\", \"status\": \"delivered\"}");
+        Thread.sleep(200);
+        assertEquals("test", guardedClient.getMessage("test").getPayload().getMessageId());
+        assertEquals("/v1/status", server.getRequests().get(20).getPath());
+        assertEquals("/v1/messages/test", server.getRequests().get(21).getPath());
+    }
+
+    @Test
+    public void testCircuitIsProbedAgainAfterAProbeThrows() throws Exception {
+        final AtomicInteger probes = new AtomicInteger();
+        RestApiMessagingClient guardedClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                                                   .maxRetries(0)
+                                                                   .circuitBreaker(true)
+                                                                   .circuitBreakerOpenTime(100)
+                                                                   .transport(new LoopbackTransport(new LoopbackTransport.Handler() {
+                                                                       @Override
+                                                                       public HttpResponse handle(HttpUriRequest request, byte[] body) {
+                                                                           if (!request.getURI().getPath().equals("/v1/status")) {
+                                                                               return LoopbackTransport.response(503, "");
+                                                                           }
+                                                                           if (probes.incrementAndGet() == 1) {
+                                                                               throw new IllegalStateException("Transport failure");
+                                                                           }
+                                                                           return LoopbackTransport.response(200, "");
+                                                                       }
+                                                                   }))
+                                                                   .build()
+                                                                   .messaging();
+        for (int i = 0; i < 20; i++) {
+            try {
+                guardedClient.getMessage("test");
+                fail("Expected a failure");
+            } catch (RestApiServerException e) {
+                assertEquals(503, e.getStatusCode());
+            }
+        }
+        Thread.sleep(200);
+        try {
+            guardedClient.getMessage("test");
+            fail("Expected a failure");
+        } catch (IllegalStateException e) {
+            assertEquals(1, probes.get());
+        }
+
+        // the circuit opened again, instead of rejecting every request as if a probe was still under way
+        Thread.sleep(200);
+        try {
+            guardedClient.getMessage("test");
+            fail("Expected a failure");
+        } catch (RestApiServerException e) {
+            assertEquals(2, probes.get());
+        }
+    }
+
+    @Test
+    public void testOutboxSendsUnansweredMessagesAgain() throws Exception {
+        Message message = new MessageBuilder().content("Hello, World!").destinationNumber(TEST_NUMBER_1).build();
+        // nothing listens on the port, the messages can not be sent
+        AsyncRestApiClient asyncClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                                             .endpoint("http://localhost:1")
+                                                             .maxRetries(0)
+                                                             .outbox(folder.getRoot())
+                                                             .buildAsync();
+        try {
+            asyncClient.messaging().sendMessage(message).get();
+            fail("Expected a failure");
+        } catch (ExecutionException e) {
+            assertEquals(RestApiException.class, e.getCause().getClass());
+        }
+        asyncClient.close();
+
+        // the next client sends the messages again, as they were written the first time
+        server.respond(202, SEND_RESPONSE);
+        RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY).endpoint(server.getEndpoint()).outbox(folder.getRoot()).build();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getRequests().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, server.getRequests().size());
+        assertEquals(new String(JsonUtilities.objectToBytes(new MessageList(Collections.singletonList(message))), "UTF-8"),
+                     new String(server.getRequests().get(0).getBody(), "UTF-8"));
+    }
+
+    @Test
+    public void testOutboxOwnsTheMessagesOfFailedSends() throws Exception {
+        final List<String> bodies = new CopyOnWriteArrayList<String>();
+        RestApiMessagingClient outboxClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                                                  .transport(new LoopbackTransport(new LoopbackTransport.Handler() {
+                                                                      @Override
+                                                                      public HttpResponse handle(HttpUriRequest request, byte[] body)
+                                                                              throws IOException {
+                                                                          bodies.add(new String(body, "UTF-8"));
+                                                                          return LoopbackTransport.response(bodies.size() == 1 ? 503 : 202,
+                                                                                                            SEND_RESPONSE);
+                                                                      }
+                                                                  }))
+                                                                  .maxRetries(0)
+                                                                  .retryBackoff(1, 10)
+                                                                  .outbox(folder.getRoot())
+                                                                  .build()
+                                                                  .messaging();
+        try {
+            outboxClient.sendMessages(Collections.singletonList(new MessageBuilder().content("Hello").destinationNumber(TEST_NUMBER_1).build()));
+            fail("Expected a failure");
+        } catch (RestApiServerException e) {
+            // the caller is told, but must not send the messages again
+        }
+
+        // the outbox sends them again until the API accepts them, and then no more
+        long deadline = System.currentTimeMillis() + 5000;
+        while (bodies.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+        assertEquals(2, bodies.size());
+        assertEquals(bodies.get(0), bodies.get(1));
+    }
+
+    @Test
+    public void testStatusCacheServesLookupsOfSentMessages() throws Exception {
+        RestApiMessagingClient cachingClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                                                   .endpoint(server.getEndpoint())
+                                                                   .statusCacheSize(100)
+                                                                   .build()
+                                                                   .messaging();
+        server.respond(202, SEND_RESPONSE);
+        cachingClient.sendMessage(new MessageBuilder().content("Hello, World!").destinationNumber(TEST_NUMBER_1).build());
+        assertEquals(MessageStatus.QUEUED, cachingClient.getMessage("test").getPayload().getStatus());
+        assertEquals(1, server.getRequests().size());
+
+        server.respond(200, "{\"delivery_reports\": [ { \"delivery_report_id\": \"report\", \"message_id\": \"test\", "
+                            + "\"source_number\": \"" + TEST_NUMBER_1 + "\", \"date_received\": \"2016-01-01T00:00:00Z\", "
+                            + "\"status\": \"delivered\" } ] }");
+        cachingClient.checkDeliveryReports();
+        assertEquals(MessageStatus.DELIVERED, cachingClient.getMessage("test").getPayload().getStatus());
+        assertEquals(2, server.getRequests().size());
+    }
+
+    @Test
+    public void testTransportsSignThePathOfTheRequest() throws Exception {
+        server.respond(202, SEND_RESPONSE);
+        List<Message> messages = Collections.singletonList(new MessageBuilder().content("Hello").destinationNumber(TEST_NUMBER_1).build());
+        messagingClient.sendMessages(messages);
+        RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                            .endpoint(server.getEndpoint())
+                            .transport(new UrlConnectionTransport(1000, 1000))
+                            .build()
+                            .messaging()
+                            .sendMessages(messages);
+
+        assertEquals(2, server.getRequests().size());
+        for (StubHttpServer.Request request : server.getRequests()) {
+            assertEquals("/v1/messages", request.getPath());
+            assertEquals("hmac username=\"" + API_KEY + "\", algorithm=\"hmac-sha1\", headers=\"Date request-line\", signature=\""
+                         + sign("Date: " + request.getHeader("Date") + "\nPOST /v1/messages HTTP/1.1") + "\"", request.getHeader("Authorization"));
+        }
+    }
+
+    @Test
+    public void testUrlConnectionTransportReadsErrorResponses() throws Exception {
+        server.respond(404, "{\"message\": \"Not found\"}");
+        RestApiMessagingClient urlConnectionClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                                                         .endpoint(server.getEndpoint())
+                                                                         .transport(new UrlConnectionTransport(1000, 1000))
+                                                                         .build()
+                                                                         .messaging();
+        try {
+            urlConnectionClient.getMessage("test");
+            fail("Expected a failure");
+        } catch (RestApiHttpStatusCodeException e) {
+            assertEquals(404, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void testLoopbackTransportAnswersInMemory() throws Exception {
+        final List<String> bodies = new CopyOnWriteArrayList<String>();
+        RestApiMessagingClient loopbackClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                                                    .transport(new LoopbackTransport(new LoopbackTransport.Handler() {
+                                                                        @Override
+                                                                        public HttpResponse handle(HttpUriRequest request, byte[] body)
+                                                                                throws IOException {
+                                                                            bodies.add(new String(body, "UTF-8"));
+                                                                            return LoopbackTransport.response(202, SEND_RESPONSE);
+                                                                        }
+                                                                    }))
+                                                                    .build()
+                                                                    .messaging();
+        List<Message> messages = Collections.singletonList(new MessageBuilder().content("Hello").destinationNumber(TEST_NUMBER_1).build());
+
+        assertEquals("test", loopbackClient.sendMessages(messages).getPayload().getMessages().get(0).getMessageId());
+        assertEquals(Collections.singletonList(new String(JsonUtilities.objectToBytes(new MessageList(messages)), "UTF-8")), bodies);
+    }
+
+    @Test
+    public void testCompressedBodiesAreSentAndReadTransparently() throws Exception {
+        final List<String> bodies = new CopyOnWriteArrayList<String>();
+        RestApiMessagingClient compressingClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                                                       .compressionThreshold(0)
+                                                                       .transport(new LoopbackTransport(new LoopbackTransport.Handler() {
+                                                                           @Override
+                                                                           public HttpResponse handle(HttpUriRequest request, byte[] body)
+                                                                                   throws IOException {
+                                                                               assertEquals("gzip", request.getFirstHeader("Content-Encoding").getValue());
+                                                                               bodies.add(new String(gunzip(body), "UTF-8"));
+                                                                               HttpResponse response = LoopbackTransport.response(202, "");
+                                                                               response.setEntity(new ByteArrayEntity(gzip(SEND_RESPONSE)));
+                                                                               response.setHeader("Content-Encoding", "gzip");
+                                                                               return response;
+                                                                           }
+                                                                       }))
+                                                                       .build()
+                                                                       .messaging();
+        List<Message> messages = Collections.singletonList(new MessageBuilder().content("Hello").destinationNumber(TEST_NUMBER_1).build());
+
+        assertEquals("test", compressingClient.sendMessages(messages).getPayload().getMessages().get(0).getMessageId());
+        assertEquals(Collections.singletonList(new String(JsonUtilities.objectToBytes(new MessageList(messages)), "UTF-8")), bodies);
+    }
+
+    private static byte[] gzip(String plain) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(plain.getBytes("UTF-8"));
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testVirtualThreadsSendInBulk() throws Exception {
+        server.respond(202, SEND_RESPONSE);
+        RestApiMessagingClient virtualClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                                                   .endpoint(server.getEndpoint())
+                                                                   .bulkChunkSize(1)
+                                                                   .virtualThreads(true)
+                                                                   .build()
+                                                                   .messaging();
+        List<Message> messages = new ArrayList<Message>();
+        for (int i = 0; i < 10; i++) {
+            messages.add(new MessageBuilder().content("Message " + i).destinationNumber(TEST_NUMBER_1).build());
+        }
+
+        // the bulk sends run on platform threads if the JVM has no virtual threads
+        List<MessageSendResult> results = virtualClient.sendMessagesInBulk(messages);
+
+        assertEquals(10, results.size());
+        for (MessageSendResult result : results) {
+            assertTrue(result.isSuccessful());
+        }
+        assertEquals(10, server.getRequests().size());
+    }
+
+    @Test
+    public void testConnectionPoolStatsAreLive() throws Exception {
+        RestApiClient pooledClient = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY).endpoint(server.getEndpoint()).maxConnections(5).build();
+        server.respond(200, "");
+        assertTrue(pooledClient.isAlive());
+
+        ConnectionPoolStats stats = pooledClient.getConnectionPoolStats();
+        assertEquals(0, stats.getLeased());
+        assertEquals(1, stats.getAvailable());
+        assertEquals(5, stats.getMax());
+        assertNull(RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY)
+                                       .transport(LoopbackTransport.responding(200, ""))
+                                       .build()
+                                       .getConnectionPoolStats());
+    }
+
+    private static String sign(String data) throws GeneralSecurityException, IOException {
+        Mac mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec(SECRET_KEY.getBytes("UTF-8"), "HmacSHA1"));
+        return Base64.encodeBase64String(mac.doFinal(data.getBytes("UTF-8")));
+    }
+}
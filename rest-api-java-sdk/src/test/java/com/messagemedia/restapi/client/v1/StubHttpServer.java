@@ -0,0 +1,164 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A minimal local HTTP server which answers every request with a canned response, and records what it received.
+ */
+public class StubHttpServer {
+
+    /**
+     * A request received by the stub.
+     */
+    public static final class Request {
+        private final String method;
+        private final String path;
+        private final com.sun.net.httpserver.Headers headers;
+        private final byte[] body;
+
+        Request(String method, String path, com.sun.net.httpserver.Headers headers, byte[] body) {
+            this.method = method;
+            this.path = path;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getHeader(String name) {
+            return headers.getFirst(name);
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<Request> requests = new CopyOnWriteArrayList<Request>();
+    private volatile int status = 200;
+    private volatile String response = "";
+    private volatile long delay;
+    private final AtomicLong nextDelay = new AtomicLong();
+    private final Map<String, String> headers = new ConcurrentHashMap<String, String>();
+
+    public StubHttpServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.add(new Request(exchange.getRequestMethod(), exchange.getRequestURI().getPath(), exchange.getRequestHeaders(),
+                                         read(exchange.getRequestBody())));
+                pause();
+                byte[] bytes = response.getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                for (Map.Entry<String, String> header : headers.entrySet()) {
+                    exchange.getResponseHeaders().set(header.getKey(), header.getValue());
+                }
+                exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+                OutputStream out = exchange.getResponseBody();
+                if (bytes.length > 0) {
+                    // writing to a response sent without a body, even nothing, makes the server close the connection
+                    out.write(bytes);
+                }
+                out.close();
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String getEndpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    public void respond(int status, String response) {
+        this.status = status;
+        this.response = response;
+    }
+
+    public void setHeader(String name, String value) {
+        headers.put(name, value);
+    }
+
+    public void setDelay(long delay) {
+        this.delay = delay;
+    }
+
+    /**
+     * Delays the response to the next request only.
+     *
+     * @param delay the delay in milliseconds
+     */
+    public void delayNext(long delay) {
+        nextDelay.set(delay);
+    }
+
+    public List<Request> getRequests() {
+        return requests;
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void pause() {
+        long pause = Math.max(delay, nextDelay.getAndSet(0));
+        if (pause > 0) {
+            try {
+                Thread.sleep(pause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.RestApiFuture;
+import com.messagemedia.restapi.client.v1.RestApiResponse;
+import com.messagemedia.restapi.client.v1.messaging.messages.Message;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageBuilder;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageListProperties;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageSendResult;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.messagemedia.restapi.client.v1.TestConstants.TEST_NUMBER_1;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BulkMessageSenderTest {
+
+    private static final class RecordingChunkSender implements BulkMessageSender.ChunkSender {
+
+        private final List<List<Message>> chunks = new ArrayList<List<Message>>();
+        private final List<DefaultRestApiFuture<RestApiResponse<MessageList>>> responses =
+                new ArrayList<DefaultRestApiFuture<RestApiResponse<MessageList>>>();
+
+        @Override
+        public RestApiFuture<RestApiResponse<MessageList>> send(List<Message> messages, MessageListProperties properties) {
+            DefaultRestApiFuture<RestApiResponse<MessageList>> response = new DefaultRestApiFuture<RestApiResponse<MessageList>>();
+            chunks.add(new ArrayList<Message>(messages));
+            responses.add(response);
+            return response;
+        }
+
+        void accept(int chunk) {
+            List<Message> accepted = new ArrayList<Message>();
+            for (Message message : chunks.get(chunk)) {
+                accepted.add(new MessageBuilder().content(message.getContent()).destinationNumber(TEST_NUMBER_1).build());
+            }
+            responses.get(chunk).complete(RestApiResponseFactory.success(202, new MessageList(accepted)));
+        }
+    }
+
+    @Test
+    public void shouldSplitIntoChunksAndLimitRequestsInFlight() throws Exception {
+        RecordingChunkSender sender = new RecordingChunkSender();
+        List<Message> messages = messages(25);
+
+        RestApiFuture<List<MessageSendResult>> future = new BulkMessageSender(10, 2).send(sender, messages, null);
+
+        assertEquals(2, sender.chunks.size());
+        assertEquals(10, sender.chunks.get(0).size());
+        sender.accept(1);
+        assertEquals(3, sender.chunks.size());
+        assertEquals(5, sender.chunks.get(2).size());
+        sender.accept(2);
+        assertFalse(future.isDone());
+        sender.accept(0);
+
+        List<MessageSendResult> results = future.get();
+        assertEquals(25, results.size());
+        for (int i = 0; i < messages.size(); i++) {
+            assertSame(messages.get(i), results.get(i).getMessage());
+            assertEquals(messages.get(i).getContent(), results.get(i).getResponse().getContent());
+            assertEquals(202, results.get(i).getResponseCode());
+        }
+    }
+
+    @Test
+    public void shouldOnlyFailTheMessagesOfAFailedChunk() throws Exception {
+        RecordingChunkSender sender = new RecordingChunkSender();
+        RestApiException exception = new RestApiException("failed");
+
+        RestApiFuture<List<MessageSendResult>> future = new BulkMessageSender(2, 4).send(sender, messages(3), null);
+        sender.responses.get(0).fail(exception);
+        sender.accept(1);
+
+        List<MessageSendResult> results = future.get();
+        assertFalse(results.get(0).isSuccessful());
+        assertSame(exception, results.get(1).getException());
+        assertNull(results.get(1).getResponse());
+        assertTrue(results.get(2).isSuccessful());
+    }
+
+    @Test
+    public void shouldNotRecurseWhenChunksCompleteImmediately() throws Exception {
+        BulkMessageSender.ChunkSender failing = new BulkMessageSender.ChunkSender() {
+            @Override
+            public RestApiFuture<RestApiResponse<MessageList>> send(List<Message> messages, MessageListProperties properties) {
+                return RestApiFutures.failed(new RestApiException("failed"));
+            }
+        };
+
+        List<MessageSendResult> results = new BulkMessageSender(1, 1).send(failing, messages(20000), null).get();
+
+        assertEquals(20000, results.size());
+    }
+
+    @Test
+    public void shouldCancelChunksInFlight() {
+        RecordingChunkSender sender = new RecordingChunkSender();
+
+        RestApiFuture<List<MessageSendResult>> future = new BulkMessageSender(1, 2).send(sender, messages(5), null);
+        future.cancel(true);
+
+        assertTrue(sender.responses.get(0).isCancelled());
+        assertTrue(sender.responses.get(1).isCancelled());
+        assertEquals(2, sender.chunks.size());
+    }
+
+    @Test
+    public void shouldCompleteEmptyListImmediately() throws Exception {
+        assertTrue(new BulkMessageSender(1, 1).send(new RecordingChunkSender(), new ArrayList<Message>(), null).get().isEmpty());
+    }
+
+    private static List<Message> messages(int count) {
+        List<Message> messages = new ArrayList<Message>();
+        for (int i = 0; i < count; i++) {
+            messages.add(new MessageBuilder().content("Message " + i).destinationNumber(TEST_NUMBER_1).build());
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.messagemedia.restapi.client.v1.internal.CircuitBreaker.Admission.ALLOW;
+import static com.messagemedia.restapi.client.v1.internal.CircuitBreaker.Admission.PROBE;
+import static com.messagemedia.restapi.client.v1.internal.CircuitBreaker.Admission.REJECT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long SLOW = 5 * SECOND;
+    private static final long OPEN_TIME = 10 * SECOND;
+
+    private final CircuitBreaker breaker = new CircuitBreaker(50, SLOW, OPEN_TIME, 10 * SECOND);
+
+    private void record(int requests, boolean failed, long latency, long now) {
+        for (int i = 0; i < requests; i++) {
+            breaker.record(failed, latency, now);
+        }
+    }
+
+    @Test
+    public void testOpensOnFailures() {
+        record(10, false, MILLI, 0);
+        record(9, true, MILLI, 0);
+        assertTrue(breaker.isClosed());
+
+        record(1, true, MILLI, 0);
+        assertFalse(breaker.isClosed());
+        assertEquals(REJECT, breaker.admit(SECOND));
+        assertEquals(TimeUnit.NANOSECONDS.toMillis(OPEN_TIME - SECOND), breaker.getRetryAfter(SECOND));
+    }
+
+    @Test
+    public void testOpensOnSlowRequests() {
+        record(10, false, MILLI, 0);
+        record(10, false, SLOW, 0);
+
+        assertFalse(breaker.isClosed());
+    }
+
+    @Test
+    public void testNeedsEnoughRequests() {
+        record(CircuitBreaker.MIN_REQUESTS - 1, true, MILLI, 0);
+
+        assertTrue(breaker.isClosed());
+    }
+
+    @Test
+    public void testForgetsOldRequests() {
+        record(15, true, MILLI, 0);
+        record(15, false, MILLI, 11 * SECOND);
+
+        assertTrue(breaker.isClosed());
+    }
+
+    @Test
+    public void testProbeAndTrialCloseTheCircuit() {
+        record(20, true, MILLI, 0);
+
+        assertEquals(PROBE, breaker.admit(OPEN_TIME));
+        assertEquals(REJECT, breaker.admit(OPEN_TIME));
+        breaker.probed(true, OPEN_TIME);
+        assertEquals(REJECT, breaker.admit(OPEN_TIME));
+
+        breaker.record(false, MILLI, OPEN_TIME);
+        assertTrue(breaker.isClosed());
+        assertEquals(ALLOW, breaker.admit(OPEN_TIME));
+        // the failures from before the circuit opened are gone
+        record(10, true, MILLI, OPEN_TIME);
+        assertTrue(breaker.isClosed());
+    }
+
+    @Test
+    public void testFailedProbeOrTrialOpenTheCircuitAgain() {
+        record(20, true, MILLI, 0);
+
+        assertEquals(PROBE, breaker.admit(OPEN_TIME));
+        breaker.probed(false, OPEN_TIME);
+        assertEquals(REJECT, breaker.admit(OPEN_TIME + SECOND));
+
+        assertEquals(PROBE, breaker.admit(2 * OPEN_TIME));
+        breaker.probed(true, 2 * OPEN_TIME);
+        breaker.record(true, MILLI, 2 * OPEN_TIME);
+        assertEquals(REJECT, breaker.admit(2 * OPEN_TIME + SECOND));
+        assertEquals(PROBE, breaker.admit(3 * OPEN_TIME));
+    }
+
+    @Test
+    public void testAbandonedTrialProbesAgain() {
+        record(20, true, MILLI, 0);
+        assertEquals(PROBE, breaker.admit(OPEN_TIME));
+        breaker.probed(true, OPEN_TIME);
+
+        breaker.abandoned(OPEN_TIME);
+
+        assertEquals(PROBE, breaker.admit(OPEN_TIME));
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.internal.util.JsonUtilities;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompressionTest {
+
+    private static final String SMALL = "{\"messages\": []}";
+
+    private static String large() {
+        StringBuilder body = new StringBuilder("{\"messages\": [");
+        for (int i = 0; i < 200; i++) {
+            body.append(i > 0 ? ", " : "").append("{\"content\": \"Hello, World!\", \"destination_number\": \"+61491570156\"}");
+        }
+        return body.append("]}").toString();
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(String plain) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(plain.getBytes("UTF-8"));
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testSmallBodiesAreSentAsIs() throws IOException {
+        HttpPost request = new HttpPost("http://localhost/v1/messages");
+        StringEntity body = new StringEntity(SMALL);
+        request.setEntity(body);
+        new Compression(1024).prepare(request);
+        assertEquals(body, request.getEntity());
+        assertNull(request.getFirstHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("gzip", request.getFirstHeader(HttpHeaders.ACCEPT_ENCODING).getValue());
+    }
+
+    @Test
+    public void testLargeBodiesAreCompressed() throws IOException {
+        HttpPost request = new HttpPost("http://localhost/v1/messages");
+        request.setEntity(new StringEntity(large()));
+        new Compression(1024).prepare(request);
+        HttpEntity sent = request.getEntity();
+        assertEquals("gzip", request.getFirstHeader(HttpHeaders.CONTENT_ENCODING).getValue());
+        assertEquals("gzip", sent.getContentEncoding().getValue());
+        byte[] compressed = EntityUtils.toByteArray(sent);
+        assertEquals(compressed.length, sent.getContentLength());
+        assertEquals(large(), new String(gunzip(compressed), "UTF-8"));
+    }
+
+    @Test
+    public void testBodiesOfUnknownLengthAreCompressedOnceTheyExceedTheThreshold() throws IOException {
+        HttpPost small = new HttpPost("http://localhost/v1/messages");
+        small.setEntity(new InputStreamEntity(new ByteArrayInputStream(SMALL.getBytes("UTF-8")), -1));
+        new Compression(1024).prepare(small);
+        assertNull(small.getFirstHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(SMALL, EntityUtils.toString(small.getEntity()));
+
+        HttpPost large = new HttpPost("http://localhost/v1/messages");
+        large.setEntity(new InputStreamEntity(new ByteArrayInputStream(large().getBytes("UTF-8")), -1));
+        new Compression(1024).prepare(large);
+        assertEquals("gzip", large.getFirstHeader(HttpHeaders.CONTENT_ENCODING).getValue());
+        assertEquals(large(), new String(gunzip(EntityUtils.toByteArray(large.getEntity())), "UTF-8"));
+    }
+
+    @Test
+    public void testSmallJsonBodiesAreStreamedAsIs() throws IOException {
+        HttpPost request = new HttpPost("http://localhost/v1/messages");
+        JsonEntity body = new JsonEntity(Collections.singletonMap("messages", Collections.emptyList()));
+        request.setEntity(body);
+        new Compression(1024).prepare(request);
+        assertSame(body, request.getEntity());
+        assertNull(request.getFirstHeader(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    public void testLargeJsonBodiesAreCompressedWhileTheyAreSent() throws IOException {
+        HttpPost request = new HttpPost("http://localhost/v1/messages");
+        List<String> contents = Collections.nCopies(200, "Hello, World!");
+        request.setEntity(new JsonEntity(Collections.singletonMap("messages", contents)));
+        new Compression(1024).prepare(request);
+        HttpEntity sent = request.getEntity();
+        assertEquals("gzip", request.getFirstHeader(HttpHeaders.CONTENT_ENCODING).getValue());
+        assertTrue(sent.isChunked());
+        assertEquals(-1, sent.getContentLength());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sent.writeTo(out);
+        assertArrayEquals(JsonUtilities.objectToBytes(Collections.singletonMap("messages", contents)), gunzip(out.toByteArray()));
+    }
+
+    @Test
+    public void testContentMd5CoversTheCompressedBody() throws IOException {
+        HttpPost request = new HttpPost("http://localhost/v1/messages");
+        request.setEntity(new StringEntity(large()));
+        request.setHeader(HttpHeaders.CONTENT_MD5, "stale");
+        new Compression(0).prepare(request);
+        byte[] compressed = EntityUtils.toByteArray(request.getEntity());
+        assertEquals(Base64.encodeBase64String(DigestUtils.md5(compressed)), request.getFirstHeader(HttpHeaders.CONTENT_MD5).getValue());
+    }
+
+    @Test
+    public void testNegativeThresholdNeverCompresses() throws IOException {
+        HttpPost request = new HttpPost("http://localhost/v1/messages");
+        StringEntity body = new StringEntity(large());
+        request.setEntity(body);
+        new Compression(-1).prepare(request);
+        assertEquals(body, request.getEntity());
+    }
+
+    @Test
+    public void testCompressedResponsesAreDecompressed() throws IOException {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        byte[] compressed = gzip(large());
+        response.setEntity(new ByteArrayEntity(compressed));
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        response.setHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(compressed.length));
+        Compression.decompress(response);
+        assertFalse(response.containsHeader(HttpHeaders.CONTENT_ENCODING));
+        assertFalse(response.containsHeader(HttpHeaders.CONTENT_LENGTH));
+        assertArrayEquals(large().getBytes("UTF-8"), EntityUtils.toByteArray(response.getEntity()));
+    }
+}
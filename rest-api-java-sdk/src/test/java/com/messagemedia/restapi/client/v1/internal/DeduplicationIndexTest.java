@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DeduplicationIndexTest {
+
+    private static final long WINDOW = 1000;
+
+    @Test
+    public void testRemembersIds() {
+        DeduplicationIndex index = new DeduplicationIndex(WINDOW, 1000, false);
+        String id = UUID.randomUUID().toString();
+        assertFalse(index.contains(id, 0));
+        index.add(id, 0);
+        assertTrue(index.contains(id, 0));
+        assertTrue(index.contains(id.toUpperCase(), 0));
+        assertFalse(index.contains(UUID.randomUUID().toString(), 0));
+        assertFalse(index.contains("not-a-uuid", 0));
+        index.add("not-a-uuid", 0);
+        assertTrue(index.contains("not-a-uuid", 0));
+        assertFalse(index.contains("not-a-uuid-either", 0));
+    }
+
+    @Test
+    public void testRemembersTheNilUuid() {
+        DeduplicationIndex index = new DeduplicationIndex(WINDOW, 10, false);
+        String nil = new UUID(0, 0).toString();
+        assertFalse(index.contains(nil, 0));
+        index.add(nil, 0);
+        assertTrue(index.contains(nil, 0));
+    }
+
+    @Test
+    public void testForgetsIdsAfterTheWindow() {
+        DeduplicationIndex index = new DeduplicationIndex(WINDOW, 1000, false);
+        index.add("first", 0);
+        // still remembered by the previous generation
+        index.add("second", WINDOW / 2);
+        assertTrue(index.contains("first", WINDOW / 2 + 1));
+        assertTrue(index.contains("second", WINDOW - 1));
+        assertFalse(index.contains("first", WINDOW));
+        assertTrue(index.contains("second", WINDOW));
+        assertFalse(index.contains("second", 3 * WINDOW));
+    }
+
+    @Test
+    public void testForgetsTheOldestIdsBeyondTheCapacity() {
+        DeduplicationIndex index = new DeduplicationIndex(WINDOW, 100, true);
+        String[] ids = new String[250];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = UUID.randomUUID().toString();
+            index.add(ids[i], 0);
+        }
+        // the first generation was full and has been cleared to hold the last IDs
+        for (int i = 0; i < 100; i++) {
+            assertFalse(index.contains(ids[i], 0));
+        }
+        for (int i = 100; i < ids.length; i++) {
+            assertTrue(index.contains(ids[i], 0));
+        }
+    }
+
+    @Test
+    public void testBloomFilterDoesNotHideIds() {
+        DeduplicationIndex index = new DeduplicationIndex(WINDOW, 10000, true);
+        String[] ids = new String[10000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = UUID.randomUUID().toString();
+            index.add(ids[i], 0);
+        }
+        for (String id : ids) {
+            assertTrue(index.contains(id, 0));
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertFalse(index.contains(UUID.randomUUID().toString(), 0));
+        }
+    }
+}
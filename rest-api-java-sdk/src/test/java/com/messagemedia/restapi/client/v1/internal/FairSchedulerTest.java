@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FairSchedulerTest {
+
+    @Test
+    public void testPermitsAreTakenAtOnceWhileFree() throws Exception {
+        FairScheduler scheduler = new FairScheduler(2);
+        scheduler.acquire("a");
+        scheduler.acquire("a");
+        assertEquals(0, scheduler.getWaiting());
+        scheduler.release();
+        scheduler.acquire("b");
+        assertEquals(0, scheduler.getWaiting());
+    }
+
+    @Test
+    public void testTenantsTakeTurns() throws Exception {
+        FairScheduler scheduler = new FairScheduler(1);
+        scheduler.acquire("busy");
+        BlockingQueue<String> granted = new LinkedBlockingQueue<String>();
+        // the busy tenant queues three requests before the quiet one queues its only one
+        for (String tenant : Arrays.asList("busy", "busy", "busy", "quiet")) {
+            start(scheduler, tenant, granted);
+        }
+
+        StringBuilder order = new StringBuilder();
+        for (int i = 0; i < 4; i++) {
+            scheduler.release();
+            order.append(granted.poll(5, TimeUnit.SECONDS)).append(' ');
+        }
+        assertEquals("busy quiet busy busy ", order.toString());
+    }
+
+    @Test
+    public void testInterruptedWaiterLeavesTheQueue() throws Exception {
+        FairScheduler scheduler = new FairScheduler(1);
+        scheduler.acquire("a");
+        BlockingQueue<String> granted = new LinkedBlockingQueue<String>();
+        Thread waiter = start(scheduler, "b", granted);
+        waiter.interrupt();
+        waiter.join(5000);
+
+        assertEquals(0, scheduler.getWaiting());
+        scheduler.release();
+        scheduler.acquire("c");
+        assertTrue(granted.isEmpty());
+    }
+
+    /**
+     * Starts a thread taking a permit for the tenant, and returns once it waits for it.
+     */
+    private static Thread start(final FairScheduler scheduler, final String tenant, final BlockingQueue<String> granted) throws Exception {
+        int waiting = scheduler.getWaiting();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    scheduler.acquire(tenant);
+                    granted.add(tenant);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        thread.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.getWaiting() == waiting && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        return thread;
+    }
+}
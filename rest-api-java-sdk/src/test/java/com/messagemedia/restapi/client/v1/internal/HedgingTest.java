@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HedgingTest {
+
+    private static RestRequest request(HttpMethod method, String endpoint) {
+        return new RestRequest(method, endpoint, "http://localhost" + endpoint, Collections.<String, String>emptyMap(), null);
+    }
+
+    @Test
+    public void testOnlyStatusLookupsAreHedged() {
+        assertTrue(Hedging.appliesTo(request(HttpMethod.GET, RestApiMessagingClientImpl.URL_CHECK_MESSAGE)));
+        assertTrue(Hedging.appliesTo(request(HttpMethod.GET, RestApiClientImpl.URL_STATUS)));
+        assertFalse(Hedging.appliesTo(request(HttpMethod.PUT, RestApiMessagingClientImpl.URL_CHECK_MESSAGE)));
+        assertFalse(Hedging.appliesTo(request(HttpMethod.GET, RestApiMessagingClientImpl.URL_REPLIES)));
+        assertFalse(Hedging.appliesTo(request(HttpMethod.POST, RestApiMessagingClientImpl.URL_MESSAGES)));
+    }
+
+    @Test
+    public void testDelayIsAPercentileOfTheRecentLatency() {
+        Hedging hedging = new Hedging(90, 0.05);
+        for (int i = 1; i < Hedging.MIN_SAMPLES; i++) {
+            hedging.record(i);
+        }
+        assertEquals(-1, hedging.requested());
+
+        hedging.record(Hedging.MIN_SAMPLES);
+        // 1 to 32, the 90th percentile is the 29th value
+        assertEquals(29, hedging.requested());
+
+        // the window forgets the oldest samples
+        for (int i = 0; i < Hedging.WINDOW; i++) {
+            hedging.record(1000 + i);
+        }
+        assertEquals(1230, hedging.requested());
+    }
+
+    @Test
+    public void testHedgesAreCapped() {
+        Hedging hedging = new Hedging(50, 0.5);
+        int hedges = 0;
+        for (int i = 0; i < 100; i++) {
+            hedging.requested();
+            if (hedging.tryHedge()) {
+                hedges++;
+            }
+        }
+        // half of the lookups, plus the initial balance of the budget
+        assertTrue(hedges <= 50 + Hedging.INITIAL_BALANCE);
+        assertTrue(hedges >= 50);
+    }
+
+    @Test
+    public void testSlowLookupsAtALowRateAreNotAllHedged() throws Exception {
+        Hedging hedging = new Hedging(50, 0.05);
+        int lookups = 20;
+        int hedges = 0;
+        for (int i = 0; i < lookups; i++) {
+            // every lookup is slow, and the next one is made well after the previous one
+            hedging.requested();
+            if (hedging.tryHedge()) {
+                hedges++;
+            }
+            Thread.sleep(50);
+        }
+        assertTrue("Hedged " + hedges + " of " + lookups + " lookups", hedges <= 0.05 * lookups + Hedging.INITIAL_BALANCE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHedgingCanNotDoubleTheLoad() {
+        new Hedging(95, 1);
+    }
+}
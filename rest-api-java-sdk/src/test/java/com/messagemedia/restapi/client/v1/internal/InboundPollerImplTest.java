@@ -0,0 +1,220 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.RestApiCallback;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.RestApiFuture;
+import com.messagemedia.restapi.client.v1.messaging.InboundHandler;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InboundPollerImplTest {
+
+    // long enough to fail the tests which must not wait between checks
+    private static final long INTERVAL = 60000;
+
+    /**
+     * Behaves like the REST API: a check returns the oldest unconfirmed items, at most a page of them.
+     */
+    private static final class Backlog implements InboundPollerImpl.Source<String> {
+
+        private final List<String> unconfirmed = new ArrayList<String>();
+        private final AtomicInteger checks = new AtomicInteger();
+        private volatile DefaultRestApiFuture<Object> heldConfirmation;
+        private volatile boolean holdConfirmations;
+        private volatile boolean failConfirmation;
+
+        private Backlog(int size) {
+            for (int i = 0; i < size; i++) {
+                unconfirmed.add("id-" + i);
+            }
+        }
+
+        @Override
+        public synchronized RestApiFuture<List<String>> check() {
+            checks.incrementAndGet();
+            return RestApiFutures.<List<String>>completed(new ArrayList<String>(unconfirmed.subList(0, Math.min(InboundPollerImpl.PAGE_SIZE,
+                                                                                                    unconfirmed.size()))));
+        }
+
+        @Override
+        public String idOf(String item) {
+            return item;
+        }
+
+        @Override
+        public RestApiFuture<?> confirm(final Collection<String> ids) {
+            if (failConfirmation) {
+                failConfirmation = false;
+                return RestApiFutures.failed(new RestApiException("Failed to confirm"));
+            }
+            if (holdConfirmations) {
+                heldConfirmation = new DefaultRestApiFuture<Object>();
+                heldConfirmation.addCallback(new RestApiCallback<Object>() {
+                    @Override
+                    public void completed(Object result) {
+                        remove(ids);
+                    }
+
+                    @Override
+                    public void failed(RestApiException exception) {
+                    }
+                });
+                return heldConfirmation;
+            }
+            remove(ids);
+            return RestApiFutures.completed(null);
+        }
+
+        private synchronized void remove(Collection<String> ids) {
+            unconfirmed.removeAll(ids);
+        }
+
+        private boolean awaitConfirmed() throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (size() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            return size() == 0;
+        }
+
+        private synchronized int size() {
+            return unconfirmed.size();
+        }
+    }
+
+    private static final class RecordingHandler implements InboundHandler<String> {
+
+        private final List<String> handled = new CopyOnWriteArrayList<String>();
+        private final CountDownLatch latch;
+        private volatile String failing;
+
+        private RecordingHandler(int expected) {
+            this.latch = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void handle(String item) throws Exception {
+            if (item.equals(failing)) {
+                failing = null;
+                throw new Exception("Failed to handle " + item);
+            }
+            handled.add(item);
+            latch.countDown();
+        }
+    }
+
+    private InboundPollerImpl<String> poller;
+
+    @After
+    public void tearDown() {
+        poller.stop();
+    }
+
+    @Test
+    public void shouldDrainTheBacklogWithoutWaiting() throws Exception {
+        Backlog backlog = new Backlog(250);
+        RecordingHandler handler = new RecordingHandler(250);
+        poller = new InboundPollerImpl<String>("test", backlog, handler, INTERVAL, INTERVAL);
+
+        assertTrue(handler.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(250, handler.handled.size());
+        assertEquals("id-0", handler.handled.get(0));
+        assertEquals("id-249", handler.handled.get(249));
+        assertTrue(backlog.awaitConfirmed());
+    }
+
+    @Test
+    public void shouldHandleFailedItemsAgain() throws Exception {
+        Backlog backlog = new Backlog(250);
+        RecordingHandler handler = new RecordingHandler(250);
+        handler.failing = "id-7";
+        poller = new InboundPollerImpl<String>("test", backlog, handler, 10, 10);
+
+        assertTrue(handler.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(250, handler.handled.size());
+        assertTrue(handler.handled.contains("id-7"));
+        assertTrue(backlog.awaitConfirmed());
+    }
+
+    @Test
+    public void shouldNotHandleItemsTwiceWhileTheirConfirmationIsInFlight() throws Exception {
+        Backlog backlog = new Backlog(150);
+        backlog.holdConfirmations = true;
+        RecordingHandler handler = new RecordingHandler(150);
+        poller = new InboundPollerImpl<String>("test", backlog, handler, INTERVAL, INTERVAL);
+
+        // the first page is handled, and the next check still returns it because its confirmation has not been applied yet
+        while (backlog.checks.get() < 2) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        assertEquals(100, handler.handled.size());
+        assertEquals(2, backlog.checks.get());
+
+        backlog.holdConfirmations = false;
+        backlog.heldConfirmation.complete(null);
+
+        assertTrue(handler.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(150, handler.handled.size());
+        assertEquals(150, new HashSet<String>(handler.handled).size());
+    }
+
+    @Test
+    public void shouldOnlyConfirmItemsHandledRecently() throws Exception {
+        Backlog backlog = new Backlog(50);
+        backlog.failConfirmation = true;
+        RecordingHandler handler = new RecordingHandler(50);
+        poller = new InboundPollerImpl<String>("test", backlog, handler, new DeduplicationIndex(INTERVAL, 1000, true), 10, 10);
+
+        // the confirmation failed, the items are returned again but not handed to the handler
+        assertTrue(backlog.awaitConfirmed());
+        assertTrue(backlog.checks.get() >= 2);
+        assertEquals(50, handler.handled.size());
+        assertEquals(50, new HashSet<String>(handler.handled).size());
+    }
+
+    @Test
+    public void shouldStopPolling() throws Exception {
+        Backlog backlog = new Backlog(0);
+        poller = new InboundPollerImpl<String>("test", backlog, new RecordingHandler(0), 10, 10);
+        while (backlog.checks.get() < 2) {
+            Thread.sleep(10);
+        }
+        poller.stop();
+        assertFalse(poller.isRunning());
+
+        Thread.sleep(50);
+        int checks = backlog.checks.get();
+        Thread.sleep(100);
+        assertEquals(checks, backlog.checks.get());
+    }
+}
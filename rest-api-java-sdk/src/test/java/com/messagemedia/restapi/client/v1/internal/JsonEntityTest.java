@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.internal.util.JsonUtilities;
+import com.messagemedia.restapi.client.v1.messaging.messages.Message;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageBuilder;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+
+import static com.messagemedia.restapi.client.v1.TestConstants.TEST_NUMBER_1;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JsonEntityTest {
+
+    private final MessageList messageList =
+            new MessageList(Collections.singletonList(new MessageBuilder().content("Hello, World!").destinationNumber(TEST_NUMBER_1).build()));
+
+    @Test
+    public void shouldWriteTheSameDocumentAsTheMapper() throws Exception {
+        JsonEntity entity = new JsonEntity(messageList);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        entity.writeTo(out);
+
+        assertArrayEquals(JsonUtilities.objectToBytes(messageList), out.toByteArray());
+    }
+
+    @Test
+    public void shouldBeRepeatable() throws Exception {
+        JsonEntity entity = new JsonEntity(messageList);
+
+        assertTrue(entity.isRepeatable());
+        assertTrue(entity.isChunked());
+        assertEquals(-1, entity.getContentLength());
+        assertArrayEquals(EntityUtils.toByteArray(entity), EntityUtils.toByteArray(entity));
+    }
+
+    @Test
+    public void shouldNotCloseTheStream() throws Exception {
+        final boolean[] closed = new boolean[1];
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+
+        new JsonEntity(Collections.<Message>emptyList()).writeTo(out);
+
+        assertEquals("[]", out.toString("UTF-8"));
+        assertTrue(!closed[0]);
+    }
+}
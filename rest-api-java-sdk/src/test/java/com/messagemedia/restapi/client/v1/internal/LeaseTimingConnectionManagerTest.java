@@ -0,0 +1,163 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.metrics.ConnectionPoolStats;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LeaseTimingConnectionManagerTest {
+
+    private ServerSocket serverSocket;
+    private final AtomicInteger accepted = new AtomicInteger();
+
+    /**
+     * Answers one request per connection, then closes it without telling the client, the way a server drops an idle connection.
+     */
+    @Before
+    public void setUp() throws IOException {
+        serverSocket = new ServerSocket(0);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        Socket socket = serverSocket.accept();
+                        accepted.incrementAndGet();
+                        answerOnce(socket);
+                    }
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void answerOnce(Socket socket) throws IOException {
+        InputStream in = socket.getInputStream();
+        int matched = 0;
+        while (matched < 4) {
+            int b = in.read();
+            if (b < 0) {
+                break;
+            }
+            matched = b == "\r\n\r\n".charAt(matched) ? matched + 1 : (b == '\r' ? 1 : 0);
+        }
+        OutputStream out = socket.getOutputStream();
+        out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok".getBytes("US-ASCII"));
+        out.flush();
+        socket.close();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        serverSocket.close();
+    }
+
+    private HttpClient client(LeaseTimingConnectionManager connectionManager) {
+        return HttpClientBuilder.create()
+                                .setConnectionManager(connectionManager)
+                                .disableAutomaticRetries()
+                                .setDefaultRequestConfig(RequestConfig.custom().setStaleConnectionCheckEnabled(false).build())
+                                .build();
+    }
+
+    private String get(HttpClient client) throws IOException {
+        return get(client, "localhost");
+    }
+
+    private String get(HttpClient client, String host) throws IOException {
+        HttpResponse response = client.execute(new HttpGet("http://" + host + ":" + serverSocket.getLocalPort() + "/v1/status"));
+        return EntityUtils.toString(response.getEntity());
+    }
+
+    @Test
+    public void testConnectionsClosedWhileIdleAreReplaced() throws Exception {
+        HttpClient client = client(new LeaseTimingConnectionManager(10, 1, 30000));
+        assertEquals("ok", get(client));
+        Thread.sleep(50);
+        assertEquals("ok", get(client));
+        assertEquals(2, accepted.get());
+    }
+
+    @Test
+    public void testStatsCountIdleConnections() throws Exception {
+        LeaseTimingConnectionManager connectionManager = new LeaseTimingConnectionManager(10, -1, 30000);
+        assertEquals("ok", get(client(connectionManager)));
+
+        ConnectionPoolStats stats = connectionManager.getStats();
+        assertEquals(0, stats.getLeased());
+        assertEquals(1, stats.getAvailable());
+        assertEquals(0, stats.getPending());
+        assertEquals(10, stats.getMax());
+    }
+
+    @Test
+    public void testEvictionClosesExpiredConnections() throws Exception {
+        LeaseTimingConnectionManager connectionManager = new LeaseTimingConnectionManager(10, -1, 1);
+        assertEquals("ok", get(client(connectionManager)));
+        Thread.sleep(50);
+
+        connectionManager.evict();
+
+        assertEquals(0, connectionManager.getStats().getAvailable());
+    }
+
+    @Test
+    public void testEvictionForgetsDiscardedConnectionsWithoutKeepAlive() throws Exception {
+        LeaseTimingConnectionManager connectionManager = new LeaseTimingConnectionManager(10, 0, 0);
+        assertEquals("ok", get(client(connectionManager)));
+        assertEquals(1, connectionManager.getReleasedCount());
+
+        connectionManager.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+        connectionManager.evict();
+
+        assertEquals(0, connectionManager.getReleasedCount());
+    }
+
+    @Test
+    public void testDiscardedConnectionsAreForgottenWithoutEviction() throws Exception {
+        // a single connection for two routes, so the pool discards the idle connection of one route for every request to the other
+        LeaseTimingConnectionManager connectionManager = new LeaseTimingConnectionManager(1, 0, 0);
+        HttpClient client = client(connectionManager);
+        for (int i = 0; i < 20; i++) {
+            assertEquals("ok", get(client, i % 2 == 0 ? "localhost" : "127.0.0.1"));
+            assertTrue(connectionManager.getReleasedCount() <= 1);
+        }
+        assertEquals(20, accepted.get());
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.Context;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.RestApiFuture;
+import com.messagemedia.restapi.client.v1.RestApiResponse;
+import com.messagemedia.restapi.client.v1.messaging.messages.Message;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageBuilder;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageListProperties;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageSendingMode;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.messagemedia.restapi.client.v1.TestConstants.TEST_NUMBER_1;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MessageBatcherTest {
+
+    private static final long LINGER = 50;
+
+    private static final class RecordingBatchSender implements MessageBatcher.BatchSender {
+
+        private final List<List<Message>> batches = new CopyOnWriteArrayList<List<Message>>();
+        private final List<MessageListProperties> properties = new CopyOnWriteArrayList<MessageListProperties>();
+        private volatile RestApiException failure;
+
+        @Override
+        public RestApiFuture<RestApiResponse<MessageList>> send(List<Message> messages, MessageListProperties properties, Context context) {
+            batches.add(new ArrayList<Message>(messages));
+            this.properties.add(properties);
+            if (failure != null) {
+                return RestApiFutures.failed(failure);
+            }
+            List<Message> accepted = new ArrayList<Message>();
+            for (Message message : messages) {
+                accepted.add(new MessageBuilder().content(message.getContent() + " accepted").destinationNumber(TEST_NUMBER_1).build());
+            }
+            return RestApiFutures.completed(RestApiResponseFactory.success(202, new MessageList(accepted)));
+        }
+    }
+
+    private final RecordingBatchSender sender = new RecordingBatchSender();
+    private MessageBatcher batcher;
+
+    @After
+    public void tearDown() {
+        batcher.close();
+    }
+
+    @Test
+    public void shouldCoalesceMessagesWithinTheLingerTime() throws Exception {
+        batcher = new MessageBatcher(sender, LINGER, 100);
+
+        RestApiFuture<RestApiResponse<Message>> first = batcher.send(message("first"), null, null);
+        RestApiFuture<RestApiResponse<Message>> second = batcher.send(message("second"), null, null);
+
+        assertEquals("first accepted", first.get(5, TimeUnit.SECONDS).getPayload().getContent());
+        assertEquals("second accepted", second.get(5, TimeUnit.SECONDS).getPayload().getContent());
+        assertEquals(202, first.get().getResponseCode());
+        assertEquals(1, sender.batches.size());
+        assertEquals(2, sender.batches.get(0).size());
+    }
+
+    @Test
+    public void shouldSendFullBatchesImmediately() throws Exception {
+        batcher = new MessageBatcher(sender, TimeUnit.MINUTES.toMillis(1), 2);
+
+        batcher.send(message("first"), null, null);
+        RestApiFuture<RestApiResponse<Message>> second = batcher.send(message("second"), null, null);
+
+        assertTrue(second.isDone());
+        assertEquals(1, sender.batches.size());
+    }
+
+    @Test
+    public void shouldNotMergeDifferentProperties() throws Exception {
+        batcher = new MessageBatcher(sender, LINGER, 100);
+        MessageListProperties test = MessageListProperties.withSendingMode(MessageSendingMode.FUNCTIONAL_TEST_DELIVERED);
+
+        RestApiFuture<RestApiResponse<Message>> first = batcher.send(message("first"), null, null);
+        RestApiFuture<RestApiResponse<Message>> second = batcher.send(message("second"), test, null);
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, sender.batches.size());
+        assertTrue(sender.properties.contains(test));
+        assertTrue(sender.properties.contains(MessageListProperties.withSendingMode(MessageSendingMode.PRODUCTION)));
+    }
+
+    @Test
+    public void shouldFailEveryCallerOfAFailedBatch() throws Exception {
+        batcher = new MessageBatcher(sender, TimeUnit.MINUTES.toMillis(1), 2);
+        sender.failure = new RestApiException("failed");
+
+        RestApiFuture<RestApiResponse<Message>> first = batcher.send(message("first"), null, null);
+        RestApiFuture<RestApiResponse<Message>> second = batcher.send(message("second"), null, null);
+
+        assertSame(sender.failure, failure(first));
+        assertSame(sender.failure, failure(second));
+    }
+
+    @Test
+    public void shouldFailPendingMessagesOnClose() throws Exception {
+        batcher = new MessageBatcher(sender, TimeUnit.MINUTES.toMillis(1), 100);
+
+        RestApiFuture<RestApiResponse<Message>> pending = batcher.send(message("first"), null, null);
+        batcher.close();
+
+        assertTrue(pending.isDone());
+        assertFalse(failure(pending) == null);
+        assertTrue(sender.batches.isEmpty());
+    }
+
+    private static RestApiException failure(RestApiFuture<?> future) throws InterruptedException {
+        try {
+            future.get();
+            fail("Expected a failure");
+            return null;
+        } catch (ExecutionException e) {
+            return (RestApiException) e.getCause();
+        }
+    }
+
+    private static Message message(String content) {
+        return new MessageBuilder().content(content).destinationNumber(TEST_NUMBER_1).build();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.internal.util.JsonUtilities;
+import com.messagemedia.restapi.client.v1.messaging.deliveryreports.DeliveryReport;
+import com.messagemedia.restapi.client.v1.messaging.messages.Message;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageStatus;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MessageStatusCacheTest {
+
+    private static final long TTL = 1000;
+    private static final long TTL_NANOS = TimeUnit.MILLISECONDS.toNanos(TTL);
+
+    private static Message message(String id, String status) throws IOException {
+        return JsonUtilities.bytesToObject(("{\"message_id\":\"" + id + "\",\"content\":\"Hello, World!\",\"destination_number\":\"+61491570156\","
+                                            + "\"status\":\"" + status + "\",\"status_reason\":\"reason\"}").getBytes("UTF-8"), Message.class);
+    }
+
+    private static DeliveryReport report(String messageId, String status) throws IOException {
+        return JsonUtilities.bytesToObject(("{\"delivery_report_id\":\"report\",\"message_id\":\"" + messageId + "\",\"source_number\":\"+61491570157\","
+                                            + "\"date_received\":\"2016-01-01T00:00:00Z\",\"status\":\"" + status + "\"}").getBytes("UTF-8"),
+                                           DeliveryReport.class);
+    }
+
+    @Test
+    public void testServesMessagesUntilTheyExpire() throws IOException {
+        MessageStatusCache cache = new MessageStatusCache(10, TTL);
+        cache.sent(Collections.singletonList(message("1", "queued")), 0);
+        assertEquals(MessageStatus.QUEUED, cache.get("1", TTL_NANOS - 1).getStatus());
+        assertNull(cache.get("1", TTL_NANOS));
+        assertNull(cache.get("2", 0));
+    }
+
+    @Test
+    public void testServesFinalStatusesUntilEvicted() throws IOException {
+        MessageStatusCache cache = new MessageStatusCache(2, TTL);
+        cache.put(message("1", "delivered"), 0);
+        assertEquals(MessageStatus.DELIVERED, cache.get("1", 10 * TTL_NANOS).getStatus());
+
+        cache.put(message("2", "queued"), 0);
+        // the first message was used more recently than the second one
+        cache.get("1", 0);
+        cache.put(message("3", "queued"), 0);
+        assertNull(cache.get("2", 0));
+        assertEquals("1", cache.get("1", 0).getMessageId());
+        assertEquals("3", cache.get("3", 0).getMessageId());
+    }
+
+    @Test
+    public void testUpdatesTheStatusFromDeliveryReports() throws IOException {
+        MessageStatusCache cache = new MessageStatusCache(10, TTL);
+        cache.sent(Collections.singletonList(message("1", "enroute")), 0);
+        cache.reported(Collections.singletonList(report("1", "delivered")), TTL_NANOS);
+        Message message = cache.get("1", 2 * TTL_NANOS);
+        assertEquals(MessageStatus.DELIVERED, message.getStatus());
+        assertNull(message.getStatusReason());
+        assertEquals("Hello, World!", message.getContent());
+
+        // a report about a message which is not cached does not add it
+        cache.reported(Collections.singletonList(report("2", "delivered")), 0);
+        assertNull(cache.get("2", 0));
+    }
+
+    @Test
+    public void testSendResponseDoesNotReplaceNewerStatus() throws IOException {
+        MessageStatusCache cache = new MessageStatusCache(10, TTL);
+        cache.put(message("1", "delivered"), 0);
+        cache.sent(Collections.singletonList(message("1", "queued")), 0);
+        assertEquals(MessageStatus.DELIVERED, cache.get("1", 0).getStatus());
+    }
+}
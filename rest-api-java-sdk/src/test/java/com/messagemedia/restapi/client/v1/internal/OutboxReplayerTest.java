@@ -0,0 +1,131 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.RestApiFuture;
+import com.messagemedia.restapi.client.v1.transport.LoopbackTransport;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OutboxReplayerTest {
+
+    private static final String SEND_RESPONSE = "{\"messages\": []}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Answers with the given statuses one after the other, a status of 0 fails without an answer.
+     */
+    private static final class ScriptedSender implements OutboxReplayer.EntrySender {
+
+        private final Iterator<Integer> statuses;
+        private final AtomicInteger sent = new AtomicInteger();
+        private final CountDownLatch done;
+
+        ScriptedSender(Integer... statuses) {
+            this.statuses = Arrays.asList(statuses).iterator();
+            this.done = new CountDownLatch(statuses.length);
+        }
+
+        @Override
+        public synchronized RestApiFuture<RestResponse> send(Outbox.Entry entry) {
+            sent.incrementAndGet();
+            int status = statuses.hasNext() ? statuses.next() : 0;
+            done.countDown();
+            if (status == 0) {
+                return RestApiFutures.failed(new RestApiException("IO Exception", new IOException("Connection refused")));
+            }
+            return RestApiFutures.completed(new RestResponse(LoopbackTransport.response(status, SEND_RESPONSE)));
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private int replay(ScriptedSender sender) throws Exception {
+        Outbox outbox = new Outbox(folder.getRoot(), Outbox.SEGMENT_SIZE_DEFAULT);
+        OutboxReplayer replayer = new OutboxReplayer(outbox, 1, 10);
+        replayer.start(sender);
+        sender.await();
+        // the last answer settles the entry, no other attempt follows
+        Thread.sleep(50);
+        replayer.close();
+        outbox.close();
+        return recovered();
+    }
+
+    private int recovered() throws IOException {
+        Outbox outbox = new Outbox(folder.getRoot(), Outbox.SEGMENT_SIZE_DEFAULT);
+        try {
+            return outbox.getRecovered().size();
+        } finally {
+            outbox.close();
+        }
+    }
+
+    private void pending() throws IOException {
+        Outbox outbox = new Outbox(folder.getRoot(), Outbox.SEGMENT_SIZE_DEFAULT);
+        outbox.append(SEND_RESPONSE.getBytes("UTF-8"));
+        outbox.close();
+    }
+
+    @Test
+    public void testRecoveredEntriesAreSentAgainUntilAccepted() throws Exception {
+        pending();
+        ScriptedSender sender = new ScriptedSender(503, 429, 0, 202);
+
+        assertEquals(0, replay(sender));
+        assertEquals(4, sender.sent.get());
+    }
+
+    @Test
+    public void testRefusedEntriesAreNotSentAgain() throws Exception {
+        pending();
+        ScriptedSender sender = new ScriptedSender(400);
+
+        assertEquals(0, replay(sender));
+        assertEquals(1, sender.sent.get());
+    }
+
+    @Test
+    public void testEntriesPendingWhenClosedAreRecovered() throws Exception {
+        pending();
+        Outbox outbox = new Outbox(folder.getRoot(), Outbox.SEGMENT_SIZE_DEFAULT);
+        OutboxReplayer replayer = new OutboxReplayer(outbox, 60000, 60000);
+        ScriptedSender sender = new ScriptedSender(500);
+        replayer.start(sender);
+        sender.await();
+        replayer.close();
+        outbox.close();
+
+        assertEquals(1, recovered());
+    }
+}
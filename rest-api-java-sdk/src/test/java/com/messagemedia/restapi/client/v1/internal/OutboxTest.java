@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OutboxTest {
+
+    private static final int SEGMENT_SIZE = 256;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] payload(int value) {
+        return ("{\"messages\":[" + value + "]}").getBytes();
+    }
+
+    private File[] segments() {
+        return folder.getRoot().listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".log");
+            }
+        });
+    }
+
+    @Test
+    public void testRecoversUnacknowledgedEntries() throws IOException {
+        Outbox outbox = new Outbox(folder.getRoot(), SEGMENT_SIZE);
+        assertTrue(outbox.getRecovered().isEmpty());
+        Outbox.Entry first = outbox.append(payload(1));
+        outbox.append(payload(2));
+        Outbox.Entry third = outbox.append(payload(3));
+        outbox.acknowledge(first);
+        outbox.close();
+
+        outbox = new Outbox(folder.getRoot(), SEGMENT_SIZE);
+        List<Outbox.Entry> recovered = outbox.getRecovered();
+        assertEquals(2, recovered.size());
+        assertArrayEquals(payload(2), recovered.get(0).getPayload());
+        assertArrayEquals(payload(3), recovered.get(1).getPayload());
+        assertEquals(third.getId(), recovered.get(1).getId());
+        // the ids keep growing, so that the acknowledgements of the new entries can not be mistaken for those of the old ones
+        assertTrue(outbox.append(payload(4)).getId() > third.getId());
+        for (Outbox.Entry entry : recovered) {
+            outbox.acknowledge(entry);
+        }
+        outbox.close();
+
+        outbox = new Outbox(folder.getRoot(), SEGMENT_SIZE);
+        assertEquals(1, outbox.getRecovered().size());
+        assertArrayEquals(payload(4), outbox.getRecovered().get(0).getPayload());
+        outbox.close();
+    }
+
+    @Test
+    public void testDeletesAcknowledgedSegments() throws IOException {
+        Outbox outbox = new Outbox(folder.getRoot(), SEGMENT_SIZE);
+        Outbox.Entry first = outbox.append(payload(0));
+        Outbox.Entry last = null;
+        for (int i = 1; i < 50; i++) {
+            last = outbox.append(payload(i));
+            outbox.acknowledge(last);
+        }
+        // the first entry holds back the segments after it, even though all of their entries have been acknowledged
+        int written = segments().length;
+        assertTrue(written > 2);
+
+        outbox.acknowledge(first);
+        assertEquals(1, segments().length);
+        outbox.close();
+
+        outbox = new Outbox(folder.getRoot(), SEGMENT_SIZE);
+        assertTrue(outbox.getRecovered().isEmpty());
+        outbox.close();
+    }
+
+    @Test
+    public void testAppendsEntriesLargerThanASegment() throws IOException {
+        byte[] large = new byte[SEGMENT_SIZE * 2];
+        Outbox outbox = new Outbox(folder.getRoot(), SEGMENT_SIZE);
+        outbox.append(large);
+        outbox.append(payload(1));
+        outbox.close();
+
+        outbox = new Outbox(folder.getRoot(), SEGMENT_SIZE);
+        assertEquals(2, outbox.getRecovered().size());
+        assertArrayEquals(large, outbox.getRecovered().get(0).getPayload());
+        outbox.close();
+    }
+
+    @Test
+    public void testStopsAtTornRecord() throws IOException {
+        Outbox outbox = new Outbox(folder.getRoot(), SEGMENT_SIZE);
+        outbox.append(payload(1));
+        outbox.append(payload(2));
+        outbox.close();
+
+        // the process died while writing the second entry
+        RandomAccessFile file = new RandomAccessFile(segments()[0], "rw");
+        try {
+            file.seek(17 + payload(1).length + 20);
+            file.write(0xFF);
+        } finally {
+            file.close();
+        }
+
+        outbox = new Outbox(folder.getRoot(), SEGMENT_SIZE);
+        assertEquals(1, outbox.getRecovered().size());
+        assertArrayEquals(payload(1), outbox.getRecovered().get(0).getPayload());
+        outbox.close();
+    }
+
+    @Test
+    public void testLocksDirectory() throws IOException {
+        Outbox outbox = new Outbox(folder.getRoot(), SEGMENT_SIZE);
+        try {
+            new Outbox(folder.getRoot(), SEGMENT_SIZE);
+            fail("The directory should be locked");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("used by another client"));
+        }
+        outbox.close();
+        new Outbox(folder.getRoot(), SEGMENT_SIZE).close();
+    }
+
+    @Test
+    public void testFailsOnceClosed() throws IOException {
+        Outbox outbox = new Outbox(folder.getRoot(), SEGMENT_SIZE);
+        outbox.close();
+        try {
+            outbox.append(payload(1));
+            fail("The outbox should be closed");
+        } catch (IOException e) {
+            assertEquals("The outbox has been closed", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PermitReleasingEntityTest {
+
+    private static HttpResponse streamed(String body) throws Exception {
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(new ByteArrayInputStream(body.getBytes("UTF-8")));
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.setEntity(entity);
+        return response;
+    }
+
+    @Test
+    public void testPermitIsHeldUntilTheBodyIsRead() throws Exception {
+        FairScheduler scheduler = new FairScheduler(1);
+        scheduler.acquire("a");
+        HttpResponse response = streamed("ok");
+        PermitReleasingEntity.releaseOnConsumption(response, scheduler);
+        Thread waiter = waitFor(scheduler);
+        assertTrue(waiter.isAlive());
+
+        assertEquals("ok", EntityUtils.toString(response.getEntity()));
+
+        waiter.join(5000);
+        assertFalse(waiter.isAlive());
+    }
+
+    @Test
+    public void testPermitIsReleasedOnceWhenTheBodyIsClosed() throws Exception {
+        FairScheduler scheduler = new FairScheduler(2);
+        scheduler.acquire("a");
+        scheduler.acquire("a");
+        HttpResponse response = streamed("ok");
+        PermitReleasingEntity.releaseOnConsumption(response, scheduler);
+
+        InputStream content = response.getEntity().getContent();
+        content.close();
+        content.close();
+        EntityUtils.consume(response.getEntity());
+
+        scheduler.acquire("b");
+        Thread waiter = waitFor(scheduler);
+        assertTrue(waiter.isAlive());
+        waiter.interrupt();
+    }
+
+    @Test
+    public void testResponsesWithoutAStreamedBodyReleaseTheirPermitAtOnce() throws Exception {
+        FairScheduler scheduler = new FairScheduler(1);
+        scheduler.acquire("a");
+        PermitReleasingEntity.releaseOnConsumption(new BasicHttpResponse(HttpVersion.HTTP_1_1, 204, "No Content"), scheduler);
+        scheduler.acquire("a");
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.setEntity(new StringEntity("ok"));
+        PermitReleasingEntity.releaseOnConsumption(response, scheduler);
+        scheduler.acquire("a");
+    }
+
+    /**
+     * Starts a thread taking a permit, and returns once it waits for it.
+     */
+    private static Thread waitFor(final FairScheduler scheduler) throws Exception {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    scheduler.acquire("b");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        thread.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.getWaiting() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        return thread;
+    }
+}
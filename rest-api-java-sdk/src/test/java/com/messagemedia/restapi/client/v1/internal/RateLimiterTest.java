@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final double DELTA = 0.001;
+
+    @Test
+    public void testBurstThenSteadyRate() {
+        RateLimiter limiter = new RateLimiter(10, 0);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.reserve(0));
+        }
+        assertEquals(SECOND / 10, limiter.reserve(0));
+        assertEquals(2 * SECOND / 10, limiter.reserve(0));
+    }
+
+    @Test
+    public void testTryReserveDoesNotTakeAPermitItCanNotHave() {
+        RateLimiter limiter = new RateLimiter(1, 0);
+        assertEquals(0, limiter.tryReserve(0));
+        assertEquals(SECOND, limiter.tryReserve(0));
+        assertEquals(SECOND / 2, limiter.tryReserve(SECOND / 2));
+        assertEquals(0, limiter.tryReserve(SECOND));
+    }
+
+    @Test
+    public void testThrottledHalvesTheRateAndPauses() {
+        RateLimiter limiter = new RateLimiter(10, 0);
+        limiter.throttled(2 * SECOND, 0);
+
+        assertEquals(5, limiter.getRate(0), DELTA);
+        // the stored permits are gone, the permits after the pause come at the halved rate
+        assertEquals(2 * SECOND + SECOND / 5, limiter.reserve(0));
+        assertEquals(2 * SECOND + 2 * SECOND / 5, limiter.reserve(0));
+    }
+
+    @Test
+    public void testRateRecoversGraduallyAfterThePause() {
+        RateLimiter limiter = new RateLimiter(10, 0);
+        limiter.throttled(SECOND, 0);
+        limiter.throttled(0, 0);
+        assertEquals(2.5, limiter.getRate(0), DELTA);
+        assertEquals(2.5, limiter.getRate(SECOND), DELTA);
+
+        long halfRecovery = RateLimiter.RECOVERY_NANOS / 2;
+        assertEquals(5, limiter.getRate(SECOND + halfRecovery / 2), DELTA);
+        assertEquals(7.5, limiter.getRate(SECOND + halfRecovery), DELTA);
+        assertEquals(10, limiter.getRate(SECOND + 2 * halfRecovery), DELTA);
+    }
+
+    @Test
+    public void testPauseKeepsTheRate() {
+        RateLimiter limiter = new RateLimiter(10, 0);
+        limiter.pause(3 * SECOND, 0);
+
+        assertEquals(10, limiter.getRate(0), DELTA);
+        assertEquals(3 * SECOND + SECOND / 10, limiter.tryReserve(0));
+        assertEquals(0, limiter.tryReserve(3 * SECOND + SECOND / 10));
+    }
+}
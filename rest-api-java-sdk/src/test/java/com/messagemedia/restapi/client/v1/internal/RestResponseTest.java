@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static com.messagemedia.restapi.client.v1.TestConstants.TEST_NUMBER_1;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RestResponseTest {
+
+    private static final String MESSAGES = "{\"messages\": [ { " +
+                                           "\"content\": \"Hello, World!\", " +
+                                           "\"destination_number\": \"" + TEST_NUMBER_1 + "\", " +
+                                           "\"message_id\": \"test\", " +
+                                           "\"status\": \"queued\"" +
+                                           " } ] }";
+
+    private static final class TrackingInputStream extends ByteArrayInputStream {
+
+        private boolean closed;
+
+        TrackingInputStream(String content) {
+            super(content.getBytes());
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+
+    @Test
+    public void shouldParseTheBodyFromTheStream() {
+        TrackingInputStream content = new TrackingInputStream(MESSAGES);
+        RestResponse response = new RestResponse(response(200, content));
+
+        MessageList messages = response.getResponseAs(MessageList.class);
+
+        assertEquals("test", messages.getMessages().get(0).getMessageId());
+        assertTrue(content.closed);
+    }
+
+    @Test
+    public void shouldReturnNullWithoutBody() throws Exception {
+        assertNull(new RestResponse(response(202, new TrackingInputStream(""))).getResponseAs(MessageList.class));
+        assertNull(new RestResponse(new BasicHttpResponse(HttpVersion.HTTP_1_1, 204, "No Content")).getResponseAs(MessageList.class));
+        assertEquals("", new RestResponse(new BasicHttpResponse(HttpVersion.HTTP_1_1, 204, "No Content")).getResponseAsString());
+    }
+
+    @Test
+    public void shouldKeepTheBodyOnceReadAsString() throws Exception {
+        HttpResponse httpResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        httpResponse.setEntity(new StringEntity(MESSAGES));
+        RestResponse response = new RestResponse(httpResponse);
+
+        assertEquals(MESSAGES, response.getResponseAsString());
+        assertEquals("test", response.getResponseAs(MessageList.class).getMessages().get(0).getMessageId());
+        assertEquals(MESSAGES, response.getResponseAsString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldOnlyParseTheStreamOnce() {
+        RestResponse response = new RestResponse(response(200, new TrackingInputStream(MESSAGES)));
+
+        response.getResponseAs(MessageList.class);
+        response.getResponseAs(MessageList.class);
+    }
+
+    @Test(expected = RestApiException.class)
+    public void shouldFailOnInvalidBody() {
+        new RestResponse(response(200, new TrackingInputStream("{\"messages\": ["))).getResponseAs(MessageList.class);
+    }
+
+    @Test
+    public void shouldReadHeadersLazily() {
+        HttpResponse httpResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, 429, "Too Many Requests");
+        httpResponse.addHeader("Retry-After", "5");
+        RestResponse response = new RestResponse(httpResponse);
+
+        assertEquals("5", response.getHeader("retry-after"));
+        assertNull(response.getHeader("Missing"));
+        assertEquals("5", response.getHeaders().get("Retry-After"));
+    }
+
+    @Test
+    public void shouldReleaseTheBodyOnClose() {
+        TrackingInputStream content = new TrackingInputStream(MESSAGES);
+        RestResponse response = new RestResponse(response(500, content));
+
+        response.close();
+
+        assertTrue(content.closed);
+    }
+
+    private static HttpResponse response(int status, InputStream content) {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, "Status");
+        response.setEntity(new InputStreamEntity(content));
+        return response;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.internal;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import org.apache.http.HttpVersion;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetriesTest {
+
+    private static final RestRequest GET_MESSAGE = request(HttpMethod.GET, RestApiMessagingClientImpl.URL_CHECK_MESSAGE);
+    private static final RestRequest CONFIRM_REPLIES = request(HttpMethod.POST, RestApiMessagingClientImpl.URL_CONFIRM_REPLIES);
+    private static final RestRequest SEND = request(HttpMethod.POST, RestApiMessagingClientImpl.URL_MESSAGES);
+
+    private static RestRequest request(HttpMethod method, String endpoint) {
+        return new RestRequest(method, endpoint, "http://localhost" + endpoint, Collections.<String, String>emptyMap(), null);
+    }
+
+    private static RestResponse response(int status, String retryAfter) {
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, "");
+        if (retryAfter != null) {
+            response.setHeader("Retry-After", retryAfter);
+        }
+        return new RestResponse(response);
+    }
+
+    @Test
+    public void testTransientFailures() {
+        assertTrue(Retries.isTransient(new SocketException("Connection reset")));
+        assertTrue(Retries.isTransient(new NoHttpResponseException("The target server failed to respond")));
+        assertTrue(Retries.isTransient(new SocketTimeoutException()));
+        assertFalse(Retries.isTransient(new InterruptedIOException()));
+        assertFalse(Retries.isTransient(new ClientProtocolException()));
+        assertFalse(Retries.isTransient(new JsonParseException("Unexpected character", null)));
+        assertFalse(Retries.isTransient(new IllegalStateException()));
+        assertFalse(Retries.isTransient((Throwable) null));
+
+        assertTrue(Retries.isTransient(429));
+        assertTrue(Retries.isTransient(503));
+        assertFalse(Retries.isTransient(500));
+        assertFalse(Retries.isTransient(404));
+    }
+
+    @Test
+    public void testIdempotentRequestsAreRetried() {
+        Retries retries = new Retries(2, false, 100, 1000, 1);
+
+        assertTrue(retries.backoff(GET_MESSAGE, new SocketException(), 0) >= 0);
+        assertTrue(retries.backoff(CONFIRM_REPLIES, response(503, null), 1) >= 0);
+        assertEquals(-1, retries.backoff(GET_MESSAGE, new SocketException(), 2));
+        assertEquals(-1, retries.backoff(GET_MESSAGE, response(200, null), 0));
+        assertEquals(-1, retries.backoff(SEND, new SocketException(), 0));
+    }
+
+    @Test
+    public void testSendsAreRetriedOnRequest() {
+        Retries retries = new Retries(2, true, 100, 1000, 1);
+
+        assertTrue(retries.backoff(SEND, new SocketException(), 0) >= 0);
+    }
+
+    @Test
+    public void testBackoffGrowsUpToTheMaximum() {
+        Retries retries = new Retries(20, false, 100, 1000, 1);
+
+        for (int attempt = 0; attempt < 10; attempt++) {
+            long ceiling = TimeUnit.MILLISECONDS.toNanos(Math.min(1000, 100 << attempt));
+            long backoff = retries.backoff(GET_MESSAGE, new SocketException(), attempt);
+            assertTrue(backoff >= 0 && backoff <= ceiling);
+            retries.requested();
+        }
+    }
+
+    @Test
+    public void testRetryAfterSetsTheMinimumBackoff() {
+        Retries retries = new Retries(2, false, 100, 1000, 1);
+
+        assertTrue(retries.backoff(GET_MESSAGE, response(429, "3"), 0) >= TimeUnit.SECONDS.toNanos(3));
+    }
+
+    @Test
+    public void testBudgetCapsRetries() {
+        RetryBudget budget = new RetryBudget(0.5, 0);
+        for (int i = 0; i < RetryBudget.MAX_BALANCE; i++) {
+            assertTrue(budget.tryWithdraw(0));
+        }
+        assertFalse(budget.tryWithdraw(0));
+
+        budget.deposit();
+        assertFalse(budget.tryWithdraw(0));
+        budget.deposit();
+        assertTrue(budget.tryWithdraw(0));
+
+        // the reserve refills over time
+        assertFalse(budget.tryWithdraw(0));
+        assertTrue(budget.tryWithdraw(TimeUnit.SECONDS.toNanos(1)));
+    }
+}
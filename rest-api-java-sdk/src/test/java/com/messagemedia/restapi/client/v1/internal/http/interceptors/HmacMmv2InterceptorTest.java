@@ -19,6 +19,10 @@ import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpException;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.entity.ContentType;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicRequestLine;
 import org.apache.http.protocol.HTTP;
@@ -28,6 +32,11 @@ import org.junit.Test;
 import org.mockito.Mockito;
 
 import java.io.IOException;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class HmacMmv2InterceptorTest {
 
@@ -55,4 +64,53 @@ public class HmacMmv2InterceptorTest {
         this.interceptor.process(request, Mockito.mock(HttpContext.class));
         Mockito.verify(request).setHeader(HttpHeaders.AUTHORIZATION, EXPECTED_AUTH_HEADER_CONTENT);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSignaturesDoNotLeakIntoEachOther() throws HttpException, IOException {
+        this.interceptor.process(request, Mockito.mock(HttpContext.class));
+        this.interceptor.process(request, Mockito.mock(HttpContext.class));
+        Mockito.verify(request, Mockito.times(2)).setHeader(HttpHeaders.AUTHORIZATION, EXPECTED_AUTH_HEADER_CONTENT);
+    }
+
+    @Test
+    public void testSharedSignersSignTheSame() throws HttpException, IOException {
+        HmacMmv2Interceptor shared = new HmacMmv2Interceptor(API_KEY, SECRET_KEY, true);
+        shared.process(request, Mockito.mock(HttpContext.class));
+        shared.process(request, Mockito.mock(HttpContext.class));
+        Mockito.verify(request, Mockito.times(2)).setHeader(HttpHeaders.AUTHORIZATION, EXPECTED_AUTH_HEADER_CONTENT);
+    }
+
+    @Test
+    public void testContentMd5IsSignedByValue() throws HttpException, IOException {
+        HttpPost post = new HttpPost("/v1/messages");
+        post.setHeader(HttpHeaders.DATE, DATE_HEADER);
+        post.setHeader(HttpHeaders.CONTENT_MD5, "CY9rzUYh03PK3k6DJie09g==");
+        this.interceptor.process(post, Mockito.mock(HttpContext.class));
+
+        assertEquals("hmac username=\"123\", algorithm=\"hmac-sha1\", headers=\"Date request-line content-md5\", "
+                     + "signature=\"" + sign("Date: " + DATE_HEADER + "\nPOST /v1/messages HTTP/1.1\nContent-MD5: CY9rzUYh03PK3k6DJie09g==")
+                     + "\"", post.getFirstHeader(HttpHeaders.AUTHORIZATION).getValue());
+    }
+
+    @Test
+    public void testMissingHeadersAreAdded() throws HttpException, IOException {
+        HttpPost post = new HttpPost("/v1/messages");
+        this.interceptor.process(post, Mockito.mock(HttpContext.class));
+
+        assertEquals(ContentType.APPLICATION_JSON.toString(), post.getFirstHeader(HttpHeaders.CONTENT_TYPE).getValue());
+        Date date = DateUtils.parseDate(post.getFirstHeader(HttpHeaders.DATE).getValue());
+        assertNotNull(date);
+        assertTrue(Math.abs(System.currentTimeMillis() - date.getTime()) < 5000);
+
+        HttpGet get = new HttpGet("/v1/replies");
+        this.interceptor.process(get, Mockito.mock(HttpContext.class));
+        assertEquals(null, get.getFirstHeader(HttpHeaders.CONTENT_TYPE));
+        assertNotNull(get.getFirstHeader(HttpHeaders.AUTHORIZATION));
+    }
+
+    private static String sign(String data) {
+        StringBuilder out = new StringBuilder();
+        new HmacSha1Signer(HmacSha1Signer.key(SECRET_KEY)).sign(data, out);
+        return out.toString();
+    }
+}
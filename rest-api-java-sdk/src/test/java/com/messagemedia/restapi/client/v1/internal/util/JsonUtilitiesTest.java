@@ -18,6 +18,8 @@ package com.messagemedia.restapi.client.v1.internal.util;
 import com.tngtech.java.junit.dataprovider.DataProvider;
 import com.tngtech.java.junit.dataprovider.DataProviderRunner;
 import com.tngtech.java.junit.dataprovider.UseDataProvider;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageBuilder;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageList;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeComparator;
 import org.joda.time.DateTimeZone;
@@ -26,9 +28,12 @@ import org.junit.runner.RunWith;
 
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.Collections;
 
 import static com.messagemedia.restapi.client.v1.internal.util.JsonUtilities.bytesToObject;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests for the {@link JsonUtilities} class.
@@ -76,4 +81,26 @@ public class JsonUtilitiesTest {
     public void testDeserializationOfInvalidDates(String dateString) throws ParseException, IOException {
         bytesToObject(("\"" + dateString + "\"").getBytes("UTF-8"), DateTime.class);
     }
+
+    @Test
+    public void testWireOutputIsCompact() throws IOException {
+        MessageList messageList = new MessageList(Collections.singletonList(new MessageBuilder().content("Hello, World!")
+                                                                                                .destinationNumber("+61491570156")
+                                                                                                .build()));
+
+        String json = new String(JsonUtilities.objectToBytes(messageList), "UTF-8");
+
+        assertTrue(json.startsWith("{\"messages\":[{\"content\":\"Hello, World!\","));
+        assertTrue(json.endsWith("}],\"properties\":{\"sending_mode\":\"production\"}}"));
+        assertFalse(json.contains("\n"));
+        assertFalse(json.contains("\" : "));
+    }
+
+    @Test
+    public void testPrettyOutputIsIndented() throws IOException {
+        String json = JsonUtilities.objectToPrettyString(Collections.singletonMap("content", "Hello, World!"));
+
+        assertTrue(json.contains("\n"));
+        assertEquals(Collections.singletonMap("content", "Hello, World!"), bytesToObject(json.getBytes("UTF-8"), java.util.Map.class));
+    }
 }
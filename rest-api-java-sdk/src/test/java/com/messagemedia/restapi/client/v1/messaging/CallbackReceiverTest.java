@@ -0,0 +1,174 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.messaging;
+
+import com.messagemedia.restapi.client.v1.messaging.deliveryreports.DeliveryReport;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageStatus;
+import com.messagemedia.restapi.client.v1.messaging.replies.Reply;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CallbackReceiverTest {
+
+    private static final String REPLY = "{ \"message_id\" : \"4377de9f-bbc5-4f57-94b8-9fbeb0af66cd\", "
+                                        + "\"reply_id\" : \"ff532fee-6fb6-46bd-ab94-a9e123031b3f\", "
+                                        + "\"content\": \"Hi there\", "
+                                        + "\"source_number\" : \"+61491570156\", "
+                                        + "\"destination_number\" : \"+61491570157\", "
+                                        + "\"date_received\": \"2011-10-10T12:00:00+11:00\" }";
+
+    private static final String DELIVERY_REPORT = "{ \"message_id\" : \"4377de9f-bbc5-4f57-94b8-9fbeb0af66cd\", "
+                                                  + "\"delivery_report_id\" : \"ff532fee-6fb6-46bd-ab94-a9e123031b3f\", "
+                                                  + "\"source_number\" : \"+61491570156\", "
+                                                  + "\"date_received\": \"2011-10-10T12:00:00+11:00\", "
+                                                  + "\"status\": \"delivered\" }";
+
+    private final List<Reply> replies = new CopyOnWriteArrayList<Reply>();
+    private final List<DeliveryReport> deliveryReports = new CopyOnWriteArrayList<DeliveryReport>();
+    private CallbackReceiver receiver;
+
+    @After
+    public void tearDown() {
+        receiver.close();
+    }
+
+    @Test
+    public void testRepliesAndDeliveryReportsAreHandled() throws Exception {
+        receiver = CallbackReceiverBuilder.newBuilder(0).path("/callbacks").onReply(new InboundHandler<Reply>() {
+            @Override
+            public void handle(Reply reply) {
+                replies.add(reply);
+            }
+        }).onDeliveryReport(new InboundHandler<DeliveryReport>() {
+            @Override
+            public void handle(DeliveryReport deliveryReport) {
+                deliveryReports.add(deliveryReport);
+            }
+        }).start();
+
+        assertEquals(200, post("/callbacks", REPLY));
+        assertEquals(200, post("/callbacks?source=test", DELIVERY_REPORT));
+        assertEquals(200, post("/callbacks", "{ \"replies\": [" + REPLY + ", " + REPLY + "] }"));
+
+        assertEquals(3, replies.size());
+        assertEquals("Hi there", replies.get(0).getContent());
+        assertEquals("ff532fee-6fb6-46bd-ab94-a9e123031b3f", replies.get(0).getReplyId());
+        assertEquals(1, deliveryReports.size());
+        assertEquals(MessageStatus.DELIVERED, deliveryReports.get(0).getStatus());
+    }
+
+    @Test
+    public void testInvalidCallbacksAreRejected() throws Exception {
+        receiver = CallbackReceiverBuilder.newBuilder(0).path("/callbacks").maxBodySize(1024).onReply(new InboundHandler<Reply>() {
+            @Override
+            public void handle(Reply reply) {
+                replies.add(reply);
+            }
+        }).start();
+
+        assertEquals(400, post("/callbacks", "{ not json"));
+        assertEquals(400, post("/callbacks", "{ \"reply_id\": \"no content\" }"));
+        assertEquals(400, post("/callbacks", "{ \"something\": \"else\" }"));
+        assertEquals(404, post("/callbacks", DELIVERY_REPORT));
+        assertEquals(404, post("/elsewhere", REPLY));
+        assertEquals(413, post("/callbacks", "{ \"content\": \"" + new String(new char[2048]).replace('\0', 'x') + "\" }"));
+
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + receiver.getPort() + "/callbacks").openConnection();
+        assertEquals(405, connection.getResponseCode());
+        assertEquals(0, replies.size());
+    }
+
+    @Test
+    public void testFailedCallbacksAreNotAcknowledged() throws Exception {
+        receiver = CallbackReceiverBuilder.newBuilder(0).onReply(new InboundHandler<Reply>() {
+            @Override
+            public void handle(Reply reply) throws Exception {
+                throw new Exception("Failed to store the reply");
+            }
+        }).start();
+
+        assertEquals(500, post("/", REPLY));
+    }
+
+    @Test
+    public void testCallbacksAreTurnedAwayWhenTheHandlersFallBehind() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        receiver = CallbackReceiverBuilder.newBuilder(0).handlerThreads(1).queueCapacity(1).onReply(new InboundHandler<Reply>() {
+            @Override
+            public void handle(Reply reply) throws Exception {
+                release.await(5, TimeUnit.SECONDS);
+                replies.add(reply);
+            }
+        }).start();
+
+        ExecutorService senders = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<Integer>> statuses = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 3; i++) {
+                statuses.add(senders.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws IOException {
+                        return post("/", REPLY);
+                    }
+                }));
+                // one callback is being handled, one is waiting, the third one does not fit
+                Thread.sleep(100);
+            }
+            assertEquals(503, statuses.get(2).get(5, TimeUnit.SECONDS).intValue());
+            release.countDown();
+            assertEquals(200, statuses.get(0).get(5, TimeUnit.SECONDS).intValue());
+            assertEquals(200, statuses.get(1).get(5, TimeUnit.SECONDS).intValue());
+            assertEquals(2, replies.size());
+        } finally {
+            senders.shutdownNow();
+        }
+    }
+
+    private int post(String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + receiver.getPort() + path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        OutputStream out = connection.getOutputStream();
+        try {
+            out.write(body.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        int status = connection.getResponseCode();
+        connection.disconnect();
+        assertTrue(status > 0);
+        return status;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2014-2016 Message4U Pty Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.messagemedia.restapi.client.v1.metrics;
+
+import com.messagemedia.restapi.client.v1.AsyncRestApiClient;
+import com.messagemedia.restapi.client.v1.RestApiClientBuilder;
+import com.messagemedia.restapi.client.v1.RestApiClientException;
+import com.messagemedia.restapi.client.v1.RestApiException;
+import com.messagemedia.restapi.client.v1.StubHttpServer;
+import com.messagemedia.restapi.client.v1.messaging.RestApiMessagingClient;
+import com.messagemedia.restapi.client.v1.messaging.messages.MessageBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static com.messagemedia.restapi.client.v1.TestConstants.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramMetricsListenerTest {
+
+    private static final String MESSAGE = "{ \"content\": \"Hello, World!\", \"destination_number\": \"" + TEST_NUMBER_1
+                                          + "\", \"message_id\": \"test\", \"status\": \"queued\" }";
+    private static final String SEND_RESPONSE = "{\"messages\": [ " + MESSAGE + " ] }";
+
+    private StubHttpServer server;
+    private HistogramMetricsListener listener;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubHttpServer();
+        listener = new HistogramMetricsListener();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        for (long value = 0; value < 100000; value++) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(LatencyHistogram.lowerBound(index) <= value);
+            assertTrue(LatencyHistogram.lowerBound(index + 1) > value);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileMicros(99));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500.5, histogram.getMeanMicros(), 0.001);
+        assertEquals(1000, histogram.getMaxMicros());
+        assertWithin(500, histogram.getPercentileMicros(50));
+        assertWithin(990, histogram.getPercentileMicros(99));
+        assertEquals(1000, histogram.getPercentileMicros(100));
+    }
+
+    @Test
+    public void testRecordsRequestsPerEndpoint() throws Exception {
+        RestApiMessagingClient client = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY).endpoint(server.getEndpoint())
+                                                            .metricsListener(listener).build().messaging();
+        server.respond(202, SEND_RESPONSE);
+        client.sendMessage(new MessageBuilder().content("Hello, World!").destinationNumber(TEST_NUMBER_1).build());
+        server.respond(200, MESSAGE);
+        client.getMessage("first");
+        client.getMessage("second");
+        server.respond(404, "");
+        try {
+            client.getMessage("third");
+        } catch (RestApiClientException e) {
+            // expected, the message does not exist
+        }
+
+        EndpointMetrics messages = listener.getEndpoint("/v1/messages");
+        assertEquals(1, messages.getRequests());
+        assertEquals(1, messages.getStatusFamilyCount(2));
+        assertEquals(server.getRequests().get(0).getBody().length, messages.getRequestBytes());
+        assertEquals(SEND_RESPONSE.length(), messages.getResponseBytes());
+        assertTrue(messages.getSerializationNanos() > 0);
+        assertTrue(messages.getSigningNanos() > 0);
+        assertEquals(1, messages.getLeaseWait().getCount());
+
+        EndpointMetrics message = listener.getEndpoint("/v1/messages/{messageId}");
+        assertEquals(3, message.getRequests());
+        assertEquals(2, message.getStatusFamilyCount(2));
+        assertEquals(1, message.getStatusFamilyCount(4));
+        assertEquals(0, message.getRequestBytes());
+        assertNull(listener.getEndpoint("/v1/replies"));
+    }
+
+    @Test
+    public void testRecordsFailedRequests() throws Exception {
+        server.stop();
+        RestApiMessagingClient client = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY).endpoint(server.getEndpoint())
+                                                            .metricsListener(listener).maxRetries(0).build().messaging();
+        try {
+            client.checkReplies();
+        } catch (RestApiException e) {
+            // expected, nobody is listening
+        }
+
+        EndpointMetrics replies = listener.getEndpoint("/v1/replies");
+        assertEquals(1, replies.getRequests());
+        assertEquals(1, replies.getStatusFamilyCount(0));
+    }
+
+    @Test
+    public void testRecordsAsyncRequests() throws Exception {
+        AsyncRestApiClient client = RestApiClientBuilder.newBuilder(API_KEY, SECRET_KEY).endpoint(server.getEndpoint())
+                                                        .metricsListener(listener).buildAsync();
+        try {
+            server.respond(200, "{\"delivery_reports\": []}");
+            client.messaging().checkDeliveryReports().get(5, TimeUnit.SECONDS);
+
+            EndpointMetrics deliveryReports = listener.getEndpoint("/v1/delivery_reports");
+            assertEquals(1, deliveryReports.getRequests());
+            assertEquals(1, deliveryReports.getStatusFamilyCount(2));
+            assertEquals(1, deliveryReports.getLeaseWait().getCount());
+            assertTrue(deliveryReports.getSigningNanos() > 0);
+        } finally {
+            client.close();
+        }
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual + " is not within 12.5% of " + expected, Math.abs(actual - expected) <= expected / 8);
+    }
+}